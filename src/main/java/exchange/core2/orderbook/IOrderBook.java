@@ -82,6 +82,132 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
      */
     void sendL2Snapshot(DirectBuffer buffer, int offset);
 
+    /**
+     * Cancel all GTD orders with expiration timestamp less or equal to provided timestamp.
+     * Produces single response with maker reduce event for every expired order.
+     * Number of expired orders is limited by space left in results buffer, remaining due orders are expired by next call.
+     *
+     * @param timestamp - current time (same units as order timestamps)
+     */
+    void expireOrders(long timestamp);
+
+    /**
+     * Start call auction phase.
+     * During call phase orders are collected without matching (order book can be crossed),
+     * only resting order types (GTC, ICEBERG, GTD, STOP, STOP_LIMIT) without place flags are accepted.
+     * Does not produce any response.
+     */
+    void startAuction();
+
+    /**
+     * Finish call auction phase - execute all crossed volume at single equilibrium price
+     * (maximum executable volume, then minimum imbalance), and return to continuous trading.
+     * Produces single response with fill event for every executed order of both sides.
+     */
+    void uncross();
+
+    /**
+     * Publish indicative auction price, volume and imbalance (result of uncross if it was called now).
+     * Does not change order book state, cost is proportional to the number of crossed price levels.
+     */
+    void sendAuctionIndicative();
+
+    /**
+     * Atomically replace quote set of the user (market maker) with new bid/ask entries.
+     * Previous quote order with the same action and price is reused (keeps time priority if size is not increased),
+     * other previous quote orders are cancelled. New quote orders are post-only: entry which would take liquidity is rejected.
+     * Empty entries list cancels all quote orders of the user.
+     * Produces single response with maker reduce event for every cancelled or reduced quote order and one record per entry.
+     *
+     * @param buffer    - buffer with arguments
+     * @param offset    - arguments base offset int the buffer
+     * @param timestamp - timestamp to keep inside new orders
+     */
+    void massQuote(DirectBuffer buffer, int offset, long timestamp);
+
+    /**
+     * Execute batch of framed commands (see BATCH_FRAME_* offsets) in order of appearance.
+     * Responses are written the same way as for individual calls.
+     * Commands which require timestamp (place, mass quote, expire) are executed with batch timestamp.
+     *
+     * @param buffer    - buffer with framed commands
+     * @param offset    - offset of the first frame
+     * @param length    - total length of all frames
+     * @param timestamp - batch timestamp
+     * @return number of executed commands
+     */
+    default int processCommands(final DirectBuffer buffer, final int offset, final int length, final long timestamp) {
+
+        final int end = offset + length;
+        int position = offset;
+        int commands = 0;
+
+        while (position < end) {
+
+            if (position + BATCH_FRAME_OFFSET_COMMAND > end) {
+                throw new IllegalArgumentException("Truncated frame header at " + position);
+            }
+
+            final int frameLength = buffer.getInt(position + BATCH_FRAME_OFFSET_LENGTH);
+            final int frameEnd = position + BATCH_FRAME_OFFSET_COMMAND_CODE + frameLength;
+            if (frameLength < BitUtil.SIZE_OF_BYTE || frameEnd > end || frameEnd < position) {
+                throw new IllegalArgumentException("Incorrect frame length " + frameLength + " at " + position);
+            }
+
+            final byte cmdCode = buffer.getByte(position + BATCH_FRAME_OFFSET_COMMAND_CODE);
+            final int cmdOffset = position + BATCH_FRAME_OFFSET_COMMAND;
+            if (cmdCode < COMMAND_PLACE_ORDER || cmdCode > COMMAND_START_AUCTION) {
+                throw new IllegalArgumentException("Unexpected command code " + cmdCode + " at " + position);
+            }
+
+            // command should not read beyond its frame
+            final int cmdLength = frameLength - BitUtil.SIZE_OF_BYTE;
+            if (cmdLength < fixedCommandSize(cmdCode) || cmdLength < commandSize(buffer, cmdOffset, cmdCode)) {
+                throw new IllegalArgumentException("Frame length " + frameLength + " is too short for command " + cmdCode + " at " + position);
+            }
+
+            switch (cmdCode) {
+                case COMMAND_PLACE_ORDER:
+                    newOrder(buffer, cmdOffset, timestamp);
+                    break;
+                case COMMAND_CANCEL_ORDER:
+                    cancelOrder(buffer, cmdOffset);
+                    break;
+                case COMMAND_MOVE_ORDER:
+                    moveOrder(buffer, cmdOffset);
+                    break;
+                case COMMAND_REDUCE_ORDER:
+                    reduceOrder(buffer, cmdOffset);
+                    break;
+                case QUERY_ORDER_BOOK:
+                    sendL2Snapshot(buffer, cmdOffset);
+                    break;
+                case COMMAND_EXPIRE_ORDERS:
+                    expireOrders(timestamp);
+                    break;
+                case COMMAND_UNCROSS:
+                    uncross();
+                    break;
+                case QUERY_AUCTION_INDICATIVE:
+                    sendAuctionIndicative();
+                    break;
+                case COMMAND_MASS_QUOTE:
+                    massQuote(buffer, cmdOffset, timestamp);
+                    break;
+                case COMMAND_START_AUCTION:
+                    startAuction();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected command code " + cmdCode + " at " + position);
+            }
+
+            position = frameEnd;
+            commands++;
+        }
+
+        return commands;
+    }
+
     /**
      * get order by id
      *
@@ -152,6 +278,11 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
     byte COMMAND_MOVE_ORDER = 3;
     byte COMMAND_REDUCE_ORDER = 4;
     byte QUERY_ORDER_BOOK = 5;
+    byte COMMAND_EXPIRE_ORDERS = 6;
+    byte COMMAND_UNCROSS = 7;
+    byte QUERY_AUCTION_INDICATIVE = 8;
+    byte COMMAND_MASS_QUOTE = 9;
+    byte COMMAND_START_AUCTION = 10; // batch only, does not produce response
 
     /*
      * Error codes
@@ -167,7 +298,16 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
     short RESULT_INCORRECT_L2_SIZE_LIMIT = 8;
 
     short RESULT_UNKNOWN_SYMBOL = 9;
-
+    short RESULT_INCORRECT_PEG_OFFSET = 10;
+    short RESULT_AUCTION_NOT_STARTED = 11;
+    short RESULT_INCORRECT_QUOTE_ENTRIES = 12;
+    short RESULT_INCORRECT_PRICE = 13; // not a multiple of tick size
+    short RESULT_PRICE_OUT_OF_BAND = 14;
+    short RESULT_POST_ONLY_WOULD_TAKE = 15; // mass quote entry would take liquidity
+    short RESULT_DUPLICATE_ORDER_ID = 16; // mass quote entry order id is used by another order
+    short RESULT_MAX_CODE = RESULT_DUPLICATE_ORDER_ID; // highest result code above, update when adding a new one
+
+    short RESULT_OFFSET_COMPACT_TEVT_FLAG = (short) (1 << 15); // place/move response carries compact trade events block
     short RESULT_OFFSET_REDUCE_EVT_FLAG = 1 << 14;
     short RESULT_OFFSET_TAKER_ACTION_BID_FLAG = 1 << 13;
     short RESULT_OFFSET_TAKE_ORDER_COMPLETED_FLAG = 1 << 12;
@@ -186,7 +326,28 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
     int PLACE_OFFSET_USER_COOKIE = PLACE_OFFSET_SIZE + BitUtil.SIZE_OF_LONG;
     int PLACE_OFFSET_ACTION = PLACE_OFFSET_USER_COOKIE + BitUtil.SIZE_OF_INT;
     int PLACE_OFFSET_TYPE = PLACE_OFFSET_ACTION + BitUtil.SIZE_OF_BYTE;
-    int PLACE_OFFSET_END = PLACE_OFFSET_TYPE + BitUtil.SIZE_OF_BYTE;
+    int PLACE_OFFSET_FLAGS = PLACE_OFFSET_TYPE + BitUtil.SIZE_OF_BYTE;
+    int PLACE_OFFSET_END = PLACE_OFFSET_FLAGS + BitUtil.SIZE_OF_BYTE;
+
+    // stop orders extension (ORDER_TYPE_STOP and ORDER_TYPE_STOP_LIMIT only)
+    int PLACE_OFFSET_STOP_PRICE = PLACE_OFFSET_END;
+    int PLACE_STOP_OFFSET_END = PLACE_OFFSET_STOP_PRICE + BitUtil.SIZE_OF_LONG;
+
+    // iceberg orders extension (ORDER_TYPE_ICEBERG only)
+    int PLACE_OFFSET_DISPLAY_SIZE = PLACE_OFFSET_END;
+    int PLACE_ICEBERG_OFFSET_END = PLACE_OFFSET_DISPLAY_SIZE + BitUtil.SIZE_OF_LONG;
+
+    // good-till-date orders extension (ORDER_TYPE_GTD only)
+    int PLACE_OFFSET_EXPIRE_TIMESTAMP = PLACE_OFFSET_END;
+    int PLACE_GTD_OFFSET_END = PLACE_OFFSET_EXPIRE_TIMESTAMP + BitUtil.SIZE_OF_LONG;
+
+    // pegged orders extension (ORDER_TYPE_PEGGED only)
+    int PLACE_OFFSET_PEG_OFFSET = PLACE_OFFSET_END;
+    int PLACE_OFFSET_PEG_TYPE = PLACE_OFFSET_PEG_OFFSET + BitUtil.SIZE_OF_LONG;
+    int PLACE_PEGGED_OFFSET_END = PLACE_OFFSET_PEG_TYPE + BitUtil.SIZE_OF_BYTE;
+
+    // minimum quantity extension (PLACE_FLAG_MIN_QUANTITY only), follows order type extension
+    int PLACE_MIN_QUANTITY_EXTENSION_SIZE = BitUtil.SIZE_OF_LONG;
 
     // Cancel
     int CANCEL_OFFSET_UID = 0;
@@ -205,10 +366,39 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
     int MOVE_OFFSET_PRICE = MOVE_OFFSET_ORDER_ID + BitUtil.SIZE_OF_LONG;
     int MOVE_OFFSET_END = MOVE_OFFSET_PRICE + BitUtil.SIZE_OF_LONG;
 
+    // Mass quote: header followed by entries, new quote orders get ids firstOrderId + entry index
+    int QUOTE_OFFSET_UID = 0;
+    int QUOTE_OFFSET_QUOTE_SET_ID = QUOTE_OFFSET_UID + BitUtil.SIZE_OF_LONG;
+    int QUOTE_OFFSET_FIRST_ORDER_ID = QUOTE_OFFSET_QUOTE_SET_ID + BitUtil.SIZE_OF_LONG;
+    int QUOTE_OFFSET_ENTRIES_NUM = QUOTE_OFFSET_FIRST_ORDER_ID + BitUtil.SIZE_OF_LONG;
+    int QUOTE_OFFSET_END = QUOTE_OFFSET_ENTRIES_NUM + BitUtil.SIZE_OF_INT;
+
+    // Mass quote entry
+    int QUOTE_ENTRY_OFFSET_PRICE = 0;
+    int QUOTE_ENTRY_OFFSET_RESERVED_BID_PRICE = QUOTE_ENTRY_OFFSET_PRICE + BitUtil.SIZE_OF_LONG;
+    int QUOTE_ENTRY_OFFSET_SIZE = QUOTE_ENTRY_OFFSET_RESERVED_BID_PRICE + BitUtil.SIZE_OF_LONG;
+    int QUOTE_ENTRY_OFFSET_ACTION = QUOTE_ENTRY_OFFSET_SIZE + BitUtil.SIZE_OF_LONG;
+    int QUOTE_ENTRY_OFFSET_END = QUOTE_ENTRY_OFFSET_ACTION + BitUtil.SIZE_OF_BYTE;
+
+    int QUOTE_MAX_ENTRIES = 256;
+
+    // Commands batch frame: [int length][byte command code][command], length includes command code
+    int BATCH_FRAME_OFFSET_LENGTH = 0;
+    int BATCH_FRAME_OFFSET_COMMAND_CODE = BATCH_FRAME_OFFSET_LENGTH + BitUtil.SIZE_OF_INT;
+    int BATCH_FRAME_OFFSET_COMMAND = BATCH_FRAME_OFFSET_COMMAND_CODE + BitUtil.SIZE_OF_BYTE;
+
     /*
      * Outgoing message offset
      */
 
+    // optional response header (ISymbolSpecification.isResponseHeaderEnabled), written before command type of every response
+    // [byte RESPONSE_HEADER][int symbolId][long timestamp][long sequence] - sequence is incremented by 1 for every response of the order book
+    byte RESPONSE_HEADER = 64;
+    int RESPONSE_HEADER_OFFSET_SYMBOL_ID = BitUtil.SIZE_OF_BYTE;
+    int RESPONSE_HEADER_OFFSET_TIMESTAMP = RESPONSE_HEADER_OFFSET_SYMBOL_ID + BitUtil.SIZE_OF_INT;
+    int RESPONSE_HEADER_OFFSET_SEQUENCE = RESPONSE_HEADER_OFFSET_TIMESTAMP + BitUtil.SIZE_OF_LONG;
+    int RESPONSE_HEADER_SIZE = RESPONSE_HEADER_OFFSET_SEQUENCE + BitUtil.SIZE_OF_LONG;
+
     // trade event
     int RESPONSE_OFFSET_TEVT_MAKER_ORDER_ID = 0;
     int RESPONSE_OFFSET_TEVT_MAKER_UID = RESPONSE_OFFSET_TEVT_MAKER_ORDER_ID + BitUtil.SIZE_OF_LONG;
@@ -218,13 +408,65 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
     int RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED = RESPONSE_OFFSET_TEVT_TRADE_SIZE + BitUtil.SIZE_OF_LONG;
     int RESPONSE_OFFSET_TEVT_END = RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED + BitUtil.SIZE_OF_BYTE;
 
+    // trade event flags (RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED byte)
+    byte TEVT_FLAG_MAKER_COMPLETED = 1;
+    byte TEVT_FLAG_MAKER_REDUCED = 2; // not a trade - maker order was reduced (self-trade prevention, expiration), size field is reduced size
+    byte TEVT_FLAG_MAKER_ACTION_BID = 4; // maker order action (maker reduce events and auction fill events only)
+    byte TEVT_FLAG_LEVEL_TRADE = 64; // not a maker trade - aggregate of trades at one price level (TRADE_REPORTING_* modes)
+
+    // level trade record has trade event layout: maker order id and maker uid fields are replaced by counters,
+    // price is level price, reserved bid price is 0, size is total traded volume
+    int RESPONSE_OFFSET_TEVT_LEVEL_MAKERS = RESPONSE_OFFSET_TEVT_MAKER_ORDER_ID;
+    int RESPONSE_OFFSET_TEVT_LEVEL_COMPLETED_MAKERS = RESPONSE_OFFSET_TEVT_MAKER_UID;
+
+    // compact trade events block (place and move responses, TRADE_EVENTS_FORMAT_COMPACT), replaces fixed-size events:
+    // [int number of records][records], each record is [byte flags][varint orderId delta]
+    // [varint uid delta][varint price delta][varint reserved bid price delta][varint size]
+    // deltas are zigzag-encoded against previous record of the block (zeros for the first record),
+    // uid, price and reserved bid price are present only if flagged (changed), so trades of one level take few bytes
+    // flags byte keeps TEVT_FLAG_* bits; level trade record is [byte flags][varint makers][varint completed makers]
+    // [varint price delta][varint volume] (price only if flagged), and does not change orderId and uid deltas base
+    byte CTEVT_FLAG_UID = 8;
+    byte CTEVT_FLAG_PRICE = 16;
+    byte CTEVT_FLAG_RESERV_BID_PRICE = 32;
+
     // reduce event
     int RESPONSE_OFFSET_REVT_PRICE = 0;
     int RESPONSE_OFFSET_REVT_RESERV_BID_PRICE = RESPONSE_OFFSET_REVT_PRICE + BitUtil.SIZE_OF_LONG;
     int RESPONSE_OFFSET_REVT_REDUCED_SIZE = RESPONSE_OFFSET_REVT_RESERV_BID_PRICE + BitUtil.SIZE_OF_LONG;
     int RESPONSE_OFFSET_REVT_END = RESPONSE_OFFSET_REVT_REDUCED_SIZE + BitUtil.SIZE_OF_LONG;
 
-    // L2 data header // TODO add symbolId and time ()
+    // expire orders response (reverse offsets): [maker reduce events][int number of events][short result code]
+    int RESPONSE_OFFSET_EXPIRE_RESULT = BitUtil.SIZE_OF_SHORT;
+    int RESPONSE_OFFSET_EXPIRE_RECORDS = RESPONSE_OFFSET_EXPIRE_RESULT + BitUtil.SIZE_OF_INT;
+
+    // uncross response (reverse offsets): [auction fill events][long price][long volume][int number of events][short result code]
+    // auction fill event has trade event layout, price is auction price
+    int RESPONSE_OFFSET_UNCROSS_RESULT = BitUtil.SIZE_OF_SHORT;
+    int RESPONSE_OFFSET_UNCROSS_RECORDS = RESPONSE_OFFSET_UNCROSS_RESULT + BitUtil.SIZE_OF_INT;
+    int RESPONSE_OFFSET_UNCROSS_VOLUME = RESPONSE_OFFSET_UNCROSS_RECORDS + BitUtil.SIZE_OF_LONG;
+    int RESPONSE_OFFSET_UNCROSS_PRICE = RESPONSE_OFFSET_UNCROSS_VOLUME + BitUtil.SIZE_OF_LONG;
+
+    // auction indicative response (reverse offsets): [long price][long volume][long imbalance][short result code]
+    int RESPONSE_OFFSET_AUCTION_RESULT = BitUtil.SIZE_OF_SHORT;
+    int RESPONSE_OFFSET_AUCTION_IMBALANCE = RESPONSE_OFFSET_AUCTION_RESULT + BitUtil.SIZE_OF_LONG;
+    int RESPONSE_OFFSET_AUCTION_VOLUME = RESPONSE_OFFSET_AUCTION_IMBALANCE + BitUtil.SIZE_OF_LONG;
+    int RESPONSE_OFFSET_AUCTION_PRICE = RESPONSE_OFFSET_AUCTION_VOLUME + BitUtil.SIZE_OF_LONG;
+
+    // mass quote response: [byte command][long uid][long quote set id][maker reduce events][entry records]
+    // followed by (reverse offsets): [int number of entry records][int number of maker reduce events][short result code]
+    int RESPONSE_OFFSET_QUOTE_RESULT = BitUtil.SIZE_OF_SHORT;
+    int RESPONSE_OFFSET_QUOTE_REDUCE_RECORDS = RESPONSE_OFFSET_QUOTE_RESULT + BitUtil.SIZE_OF_INT;
+    int RESPONSE_OFFSET_QUOTE_ENTRY_RECORDS = RESPONSE_OFFSET_QUOTE_REDUCE_RECORDS + BitUtil.SIZE_OF_INT;
+    int RESPONSE_QUOTE_HEADER_SIZE = BitUtil.SIZE_OF_BYTE + BitUtil.SIZE_OF_LONG + BitUtil.SIZE_OF_LONG;
+
+    // mass quote entry record (in the same order as command entries), size is 0 and result code is set if entry was rejected
+    int RESPONSE_OFFSET_QREC_ORDER_ID = 0;
+    int RESPONSE_OFFSET_QREC_SIZE = RESPONSE_OFFSET_QREC_ORDER_ID + BitUtil.SIZE_OF_LONG;
+    int RESPONSE_OFFSET_QREC_RESULT = RESPONSE_OFFSET_QREC_SIZE + BitUtil.SIZE_OF_LONG;
+    int RESPONSE_OFFSET_QREC_END = RESPONSE_OFFSET_QREC_RESULT + BitUtil.SIZE_OF_SHORT;
+
+    // L2 data header (symbolId and time - see RESPONSE_HEADER)
     int RESPONSE_OFFSET_L2_RESULT = BitUtil.SIZE_OF_SHORT;
     int RESPONSE_OFFSET_L2_BID_RECORDS = RESPONSE_OFFSET_L2_RESULT + BitUtil.SIZE_OF_INT;
     int RESPONSE_OFFSET_L2_ASK_RECORDS = RESPONSE_OFFSET_L2_BID_RECORDS + BitUtil.SIZE_OF_INT;
@@ -249,6 +491,84 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
     byte ORDER_TYPE_FOK = 3; // with price cap
     byte ORDER_TYPE_FOK_BUDGET = 4; // total amount cap
 
+    // Stop orders - waiting in the trigger book until trade price reaches stop price (PLACE_OFFSET_STOP_PRICE)
+    // buy stop is triggered by trade price >= stop price, sell stop - by trade price <= stop price
+    byte ORDER_TYPE_STOP = 5; // stop-market, becomes IOC (price is protection limit)
+    byte ORDER_TYPE_STOP_LIMIT = 6; // becomes GTC
+
+    // GTC order showing only display size (PLACE_OFFSET_DISPLAY_SIZE) in the order book,
+    // displayed slice is replenished from hidden reserve when filled (losing time priority)
+    byte ORDER_TYPE_ICEBERG = 7;
+
+    // GTC order canceled by expireOrders call after expiration timestamp (PLACE_OFFSET_EXPIRE_TIMESTAMP)
+    byte ORDER_TYPE_GTD = 8;
+
+    // GTC order without own price, priced lazily from best prices of regular orders (PLACE_OFFSET_PEG_TYPE),
+    // moved away from the opposite side by non-negative offset (PLACE_OFFSET_PEG_OFFSET), never takes liquidity
+    byte ORDER_TYPE_PEGGED = 9;
+
+
+    /*
+     * Peg types (PLACE_OFFSET_PEG_TYPE)
+     * Pegged bid never goes above floor(midpoint), pegged ask never goes below floor(midpoint)+1,
+     * so pegged orders can not cross the book.
+     */
+
+    byte PEG_TYPE_NONE = 0; // regular order
+    byte PEG_TYPE_PRIMARY = 1; // best price of the same side
+    byte PEG_TYPE_MIDPOINT = 2; // midpoint between best bid and best ask
+    byte PEG_TYPE_MARKET = 3; // best price of the opposite side
+
+
+    /*
+     * Place order flags (PLACE_OFFSET_FLAGS)
+     */
+
+    // post-only (GTC, ICEBERG, GTD): cancel order if it would take liquidity (checked against best opposite price)
+    byte PLACE_FLAG_POST_ONLY = 1;
+    // post-only (GTC, ICEBERG, GTD): reprice order one price step behind best opposite price if it would take liquidity,
+    // reject order (RESULT_PRICE_OUT_OF_BAND or RESULT_INCORRECT_PRICE) if new price is outside of price band or not positive
+    byte PLACE_FLAG_POST_ONLY_SLIDE = 1 << 1;
+    // minimum quantity (GTC, ICEBERG, GTD, IOC): cancel order if less than minimum quantity can be matched instantly
+    // (hidden iceberg reserves are counted as available)
+    byte PLACE_FLAG_MIN_QUANTITY = 1 << 2;
+
+
+    /*
+     * Self-trade prevention modes (ISymbolSpecification.getSelfTradePreventionMode)
+     */
+
+    byte SELF_TRADE_PREVENTION_NONE = 0; // allow self-trades
+    byte SELF_TRADE_PREVENTION_CANCEL_TAKER = 1; // cancel remaining taker order size
+    byte SELF_TRADE_PREVENTION_CANCEL_MAKER = 2; // cancel resting maker order, continue matching
+    byte SELF_TRADE_PREVENTION_CANCEL_BOTH = 3; // cancel both maker and remaining taker order size
+    byte SELF_TRADE_PREVENTION_DECREMENT = 4; // reduce both orders by smaller remaining size
+
+
+    /*
+     * Matching policies within a price level (ISymbolSpecification.getMatchingPolicy)
+     */
+
+    byte MATCHING_POLICY_FIFO = 0; // price-time priority
+    // eldest (top) order is filled first, rest of the volume is allocated proportionally to displayed sizes (rounded down),
+    // rounding remainder is allocated in time priority; applied only when the level is not consumed completely
+    byte MATCHING_POLICY_PRO_RATA = 1;
+
+    /*
+     * Trade events encoding in place and move responses (ISymbolSpecification.getTradeEventsFormat)
+     */
+
+    byte TRADE_EVENTS_FORMAT_FIXED = 0; // fixed-size trade events, RESPONSE_OFFSET_TEVT_* layout
+    byte TRADE_EVENTS_FORMAT_COMPACT = 1; // variable-size delta-encoded records, see CTEVT_FLAG_*
+
+    /*
+     * Trades reporting in place and move responses (ISymbolSpecification.getTradeReportingMode)
+     */
+
+    byte TRADE_REPORTING_PER_ORDER = 0; // one trade event per maker order
+    byte TRADE_REPORTING_PER_ORDER_AND_LEVEL = 1; // trade events followed by level trade record for every price level crossed
+    byte TRADE_REPORTING_PER_LEVEL = 2; // level trade records only (public market data, maker reduce events are still reported)
+
 
     /**
      * Other constants
@@ -256,6 +576,13 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
     int UNSPECIFIED_REMAINING_SIZE_MARKER = -1;
 
 
+    /**
+     * Size of fixed part of the command (for place order - without order type extension and flags extensions,
+     * for mass quote - header without entries)
+     *
+     * @param cmdCode - command code
+     * @return fixed size
+     */
     static int fixedCommandSize(final byte cmdCode) {
 
         switch (cmdCode) {
@@ -271,10 +598,72 @@ public interface IOrderBook<S extends ISymbolSpecification> extends StateHash {
             case COMMAND_REDUCE_ORDER:
                 return REDUCE_OFFSET_END;
 
-                // TODO add L2 query and other commands
+            case QUERY_ORDER_BOOK:
+                return BitUtil.SIZE_OF_INT;
+
+            case COMMAND_EXPIRE_ORDERS:
+            case COMMAND_UNCROSS:
+            case QUERY_AUCTION_INDICATIVE:
+            case COMMAND_START_AUCTION:
+                return 0;
+
+            case COMMAND_MASS_QUOTE:
+                return QUOTE_OFFSET_END;
 
             default:
                 throw new IllegalStateException("Unexpected command code: " + cmdCode);
         }
     }
+
+    /**
+     * Full size of the command, including variable parts defined by the command itself
+     * (place order extensions, mass quote entries). Fixed part should be available in the buffer.
+     * Mass quote with incorrect number of entries has header size only (it is rejected without reading entries).
+     *
+     * @param buffer  - buffer with command
+     * @param offset  - command offset
+     * @param cmdCode - command code
+     * @return command size
+     */
+    static int commandSize(final DirectBuffer buffer, final int offset, final byte cmdCode) {
+
+        switch (cmdCode) {
+            case COMMAND_PLACE_ORDER:
+                return placeCommandSize(buffer.getByte(offset + PLACE_OFFSET_TYPE), buffer.getByte(offset + PLACE_OFFSET_FLAGS));
+
+            case COMMAND_MASS_QUOTE:
+                final int entriesNum = buffer.getInt(offset + QUOTE_OFFSET_ENTRIES_NUM);
+                return entriesNum > 0 && entriesNum <= QUOTE_MAX_ENTRIES
+                        ? QUOTE_OFFSET_END + entriesNum * QUOTE_ENTRY_OFFSET_END
+                        : QUOTE_OFFSET_END;
+
+            default:
+                return fixedCommandSize(cmdCode);
+        }
+    }
+
+    static int placeCommandSize(final byte orderType) {
+        switch (orderType) {
+            case ORDER_TYPE_STOP:
+            case ORDER_TYPE_STOP_LIMIT:
+                return PLACE_STOP_OFFSET_END;
+
+            case ORDER_TYPE_ICEBERG:
+                return PLACE_ICEBERG_OFFSET_END;
+
+            case ORDER_TYPE_GTD:
+                return PLACE_GTD_OFFSET_END;
+
+            case ORDER_TYPE_PEGGED:
+                return PLACE_PEGGED_OFFSET_END;
+
+            default:
+                return PLACE_OFFSET_END;
+        }
+    }
+
+    static int placeCommandSize(final byte orderType, final byte flags) {
+        final int size = placeCommandSize(orderType);
+        return (flags & PLACE_FLAG_MIN_QUANTITY) != 0 ? size + PLACE_MIN_QUANTITY_EXTENSION_SIZE : size;
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook;
+
+/**
+ * Receiver of order book command results, called by matching engine while command is processed.
+ * <p>
+ * {@link OrderBookEventsHelper} encodes results into response buffer (binary protocol),
+ * {@link OrderBookEventsDispatcher} invokes {@link IResponseHandler} callbacks directly (no encoding and decoding).
+ * <p>
+ * Every command result is started by begin* method and completed by appendResultCode or complete* method.
+ * L2 data query is not covered - it is always written into response buffer.
+ */
+public interface IOrderBookEventsSink {
+
+    /**
+     * Start place order result (followed by trade events)
+     *
+     * @param uid        - order owner uid
+     * @param orderId    - order id
+     * @param userCookie - user cookie
+     */
+    void beginPlaceOrder(long uid, long orderId, int userCookie);
+
+    void beginCancelOrder(long uid, long orderId);
+
+    void beginReduceOrder(long uid, long orderId);
+
+    /**
+     * Start move order result (followed by trade events)
+     *
+     * @param uid     - order owner uid
+     * @param orderId - order id
+     */
+    void beginMoveOrder(long uid, long orderId);
+
+    void appendTradeEvent(IOrder matchingOrder, boolean makerOrderCompleted, long tradeVolume, long bidderHoldPrice);
+
+    /**
+     * Number of maker events (trade or maker reduce events) which still can be appended to the current result,
+     * leaving space for its closing records. Order book stops matching when it is exhausted (remaining taker size is cancelled),
+     * so result is never cut by buffer overflow after the order book was changed.
+     *
+     * @return number of maker events, Integer.MAX_VALUE if not limited
+     */
+    int getMakerEventsCapacity();
+
+    /**
+     * Complete trades of the last price level crossed by taker order (should be called when matching is finished).
+     */
+    void completeLevelTrades();
+
+    /**
+     * Maker order reduced without trade (self-trade prevention, mass quote replacement or expiration)
+     *
+     * @param makerOrder          - maker order
+     * @param makerOrderCompleted - true if maker order was removed from the order book
+     * @param reduceSize          - reduced size
+     */
+    void appendMakerReduceEvent(IOrder makerOrder, boolean makerOrderCompleted, long reduceSize);
+
+    void appendReduceEvent(long price, long bidderHoldPrice, long reduceSize);
+
+    /**
+     * Remaining size of taker order (only if taker order is not completed, right before result code)
+     *
+     * @param remainingSize - unmatched size
+     */
+    void appendRemainingSize(long remainingSize);
+
+    /**
+     * Complete place, cancel, reduce or move order result
+     *
+     * @param resultCode          - result code
+     * @param takerOrderCompleted - true if order is not in the order book anymore
+     * @param takerAction         - order action
+     * @param hasReduceEvent      - true if reduce event was appended
+     */
+    void appendResultCode(short resultCode, boolean takerOrderCompleted, OrderAction takerAction, boolean hasReduceEvent);
+
+    /**
+     * Check if triggered stop orders results can be delivered
+     *
+     * @return false if stop orders should be rejected
+     */
+    boolean isTriggeredOrdersSupported();
+
+    /**
+     * Check if one more triggered stop order result (with at least one maker event) can be delivered.
+     * Otherwise triggered stop orders are kept in the trigger book and released by the next command.
+     *
+     * @return true if there is enough space for triggered order result
+     */
+    boolean hasTriggeredOrderCapacity();
+
+    /**
+     * Start result of triggered stop order (delivered as place order result, after result of triggering command)
+     *
+     * @param uid        - order owner uid
+     * @param orderId    - order id
+     * @param userCookie - user cookie
+     */
+    void beginTriggeredOrder(long uid, long orderId, int userCookie);
+
+    void completeTriggeredOrder();
+
+    void beginMassQuote(long uid, long quoteSetId);
+
+    void appendQuoteEntry(long orderId, long size, short resultCode);
+
+    void completeMassQuote(short resultCode, int entries, int reduceEvents);
+
+    void beginExpireOrders();
+
+    void completeExpireOrders(int expiredOrders);
+
+    void beginUncross();
+
+    void appendAuctionFillEvent(IOrder order, boolean orderCompleted, long fillSize, long auctionPrice);
+
+    /**
+     * Complete uncross result (number of fills is counted by sink)
+     *
+     * @param resultCode - result code
+     * @param price      - auction price
+     * @param volume     - executed volume
+     */
+    void completeUncross(short resultCode, long price, long volume);
+
+    void appendAuctionIndicative(short resultCode, long price, long volume, long imbalance);
+}
@@ -22,6 +22,18 @@ public interface IResponseHandler {
 
     // TODO think how this log allows to rebuild order book (similar to Nasdaq ITCH) for all possible cases
 
+    /**
+     * Response header (ISymbolSpecification.isResponseHeaderEnabled), delivered before other callbacks of the response
+     *
+     * @param symbolId  - symbol id
+     * @param timestamp - engine timestamp
+     * @param sequence  - response sequence number of the order book (incremented by 1, gaps mean lost responses)
+     */
+    default void onResponseHeader(int symbolId,
+                                  long timestamp,
+                                  long sequence) {
+    }
+
     void onOrderPlaceResult(short resultCode,
                             long time,
                             long correlationId,
@@ -85,6 +97,153 @@ public interface IResponseHandler {
                        long price,
                        long reservedBidPrice);
 
+    /**
+     * Trades of taker order at one price level (level trades reporting mode), delivered after trade events of the level
+     *
+     * @param symbolId        - symbol id
+     * @param time            - time
+     * @param takerUid        - taker order owner uid
+     * @param takerOrderId    - taker order id
+     * @param takerAction     - taker order action
+     * @param price           - level price
+     * @param volume          - total traded volume
+     * @param makers          - number of maker orders traded
+     * @param completedMakers - number of maker orders removed from the order book
+     */
+    default void onLevelTradeEvent(int symbolId,
+                                   long time,
+                                   long takerUid,
+                                   long takerOrderId,
+                                   OrderAction takerAction,
+                                   long price,
+                                   long volume,
+                                   int makers,
+                                   int completedMakers) {
+    }
+
+
+    /**
+     * Result of expireOrders call, reduce events for expired orders are delivered before
+     *
+     * @param resultCode    - result code
+     * @param time          - time
+     * @param correlationId - correlation id
+     * @param symbolId      - symbol id
+     * @param expiredOrders - number of expired orders
+     */
+    default void onOrdersExpireResult(short resultCode,
+                                      long time,
+                                      long correlationId,
+                                      int symbolId,
+                                      int expiredOrders) {
+    }
+
+    /**
+     * Order executed by call auction uncross, delivered before uncross result
+     *
+     * @param symbolId         - symbol id
+     * @param time             - time
+     * @param uid              - order owner uid
+     * @param orderId          - order id
+     * @param action           - order action
+     * @param price            - auction price
+     * @param reservedBidPrice - order reserved bid price
+     * @param fillSize         - executed size
+     * @param orderCompleted   - true if order was removed from the order book
+     */
+    default void onAuctionFillEvent(int symbolId,
+                                    long time,
+                                    long uid,
+                                    long orderId,
+                                    OrderAction action,
+                                    long price,
+                                    long reservedBidPrice,
+                                    long fillSize,
+                                    boolean orderCompleted) {
+    }
+
+    /**
+     * Result of uncross call
+     *
+     * @param resultCode    - result code
+     * @param time          - time
+     * @param correlationId - correlation id
+     * @param symbolId      - symbol id
+     * @param price         - auction price (0 if nothing executed)
+     * @param volume        - executed volume
+     * @param fills         - number of auction fill events
+     */
+    default void onUncrossResult(short resultCode,
+                                 long time,
+                                 long correlationId,
+                                 int symbolId,
+                                 long price,
+                                 long volume,
+                                 int fills) {
+    }
+
+    /**
+     * Indicative auction price published during call phase
+     *
+     * @param resultCode    - result code
+     * @param time          - time
+     * @param correlationId - correlation id
+     * @param symbolId      - symbol id
+     * @param price         - indicative price (0 if order book is not crossed)
+     * @param volume        - volume executable at indicative price
+     * @param imbalance     - bid volume minus ask volume at indicative price
+     */
+    default void onAuctionIndicativeResult(short resultCode,
+                                           long time,
+                                           long correlationId,
+                                           int symbolId,
+                                           long price,
+                                           long volume,
+                                           long imbalance) {
+    }
+
+    /**
+     * Result of single mass quote entry, delivered before mass quote result
+     * (reduce events for cancelled and reduced previous quote orders are delivered before entries)
+     *
+     * @param symbolId   - symbol id
+     * @param time       - time
+     * @param uid        - market maker uid
+     * @param quoteSetId - quote set id
+     * @param entryIndex - index of the entry in the command
+     * @param orderId    - new or reused quote order id
+     * @param size       - resting size of quote order (0 if entry was rejected)
+     * @param resultCode - RESULT_SUCCESS, or reason of entry rejection
+     */
+    default void onQuoteEntryResult(int symbolId,
+                                    long time,
+                                    long uid,
+                                    long quoteSetId,
+                                    int entryIndex,
+                                    long orderId,
+                                    long size,
+                                    short resultCode) {
+    }
+
+    /**
+     * Result of mass quote command
+     *
+     * @param resultCode    - result code
+     * @param time          - time
+     * @param correlationId - correlation id
+     * @param symbolId      - symbol id
+     * @param uid           - market maker uid
+     * @param quoteSetId    - quote set id
+     * @param entries       - number of entry results
+     */
+    default void onMassQuoteResult(short resultCode,
+                                   long time,
+                                   long correlationId,
+                                   int symbolId,
+                                   long uid,
+                                   long quoteSetId,
+                                   int entries) {
+    }
 
     // Technically it is a query response, but must be garbage-free optimized
     void onL2DataResult(short resultCode,
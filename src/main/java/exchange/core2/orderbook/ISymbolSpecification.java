@@ -23,5 +23,132 @@ public interface ISymbolSpecification extends StateHash {
 
     int getSymbolId();
 
+    /**
+     * Self-trade prevention mode, applied when taker order meets resting order of the same uid
+     *
+     * @return one of IOrderBook.SELF_TRADE_PREVENTION_* modes
+     */
+    default byte getSelfTradePreventionMode() {
+        return IOrderBook.SELF_TRADE_PREVENTION_NONE;
+    }
+
+    /**
+     * Matching policy, defines how taker volume is allocated between resting orders of the same price level
+     *
+     * @return one of IOrderBook.MATCHING_POLICY_* policies
+     */
+    default byte getMatchingPolicy() {
+        return IOrderBook.MATCHING_POLICY_FIFO;
+    }
+
+    /**
+     * Encoding of trade events in place and move responses (decoders detect it from response)
+     *
+     * @return one of IOrderBook.TRADE_EVENTS_FORMAT_* formats
+     */
+    default byte getTradeEventsFormat() {
+        return IOrderBook.TRADE_EVENTS_FORMAT_FIXED;
+    }
+
+    /**
+     * Granularity of trades reported in place and move responses
+     *
+     * @return one of IOrderBook.TRADE_REPORTING_* modes
+     */
+    default byte getTradeReportingMode() {
+        return IOrderBook.TRADE_REPORTING_PER_ORDER;
+    }
+
+    /**
+     * Write IOrderBook.RESPONSE_HEADER (symbol id, timestamp and sequence number) before every response.
+     * Decoders detect header from response.
+     *
+     * @return true if header is enabled
+     */
+    default boolean isResponseHeaderEnabled() {
+        return false;
+    }
+
+    /**
+     * Price grid step, order prices should be multiples of tick size
+     *
+     * @return tick size, 0 - not specified (any price is accepted)
+     */
+    default long getTickSize() {
+        return 0L;
+    }
+
+    /**
+     * Size step, order sizes should be multiples of lot size
+     *
+     * @return lot size, 0 - not specified (any size is accepted)
+     */
+    default long getLotSize() {
+        return 0L;
+    }
+
+    /**
+     * Lowest accepted order price (inclusive)
+     *
+     * @return price, 0 - not limited
+     */
+    default long getPriceBandLow() {
+        return 0L;
+    }
+
+    /**
+     * Highest accepted order price (inclusive)
+     *
+     * @return price, 0 - not limited
+     */
+    default long getPriceBandHigh() {
+        return 0L;
+    }
+
+    /**
+     * GTD orders expiration timer wheel tick, in order timestamp units.
+     * Default is 2^20 (~1ms for nanosecond timestamps), coarser timestamps (e.g. milliseconds) need smaller tick.
+     *
+     * @return tick resolution (power of 2), 0 - default
+     */
+    default long getExpiryTickResolution() {
+        return 0L;
+    }
+
+    /**
+     * Lowest expected trading price - capacity hint for engines, not validated
+     *
+     * @return price, 0 - unknown
+     */
+    default long getExpectedPriceLow() {
+        return 0L;
+    }
+
+    /**
+     * Highest expected trading price - capacity hint for engines, not validated
+     *
+     * @return price, 0 - unknown
+     */
+    default long getExpectedPriceHigh() {
+        return 0L;
+    }
+
+    /**
+     * Number of ticks in expected price range, which is the size of direct-mapped price ladder.
+     * Price inside the range can be kept as int tick index: (price - expectedPriceLow) / tickSize
+     *
+     * @return number of ticks, 0 if expected range is not specified or does not fit into int
+     */
+    default int getExpectedPriceTicks() {
+        final long low = getExpectedPriceLow();
+        final long high = getExpectedPriceHigh();
+        if (low <= 0 || high < low) {
+            return 0;
+        }
+        final long tickSize = getTickSize();
+        final long ticks = (high - low) / (tickSize == 0 ? 1 : tickSize) + 1;
+        return ticks > Integer.MAX_VALUE ? 0 : (int) ticks;
+    }
+
 }
 
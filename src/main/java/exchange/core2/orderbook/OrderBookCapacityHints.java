@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook;
+
+/**
+ * Expected order book size, used by engines to pre-size internal structures
+ * (so loading a large book does not trigger rehashing and pool growth during trading).
+ * Hints are not limits - structures grow as usual when exceeded. 0 - no hint (default size).
+ */
+public final class OrderBookCapacityHints {
+
+    public static final OrderBookCapacityHints NONE = new OrderBookCapacityHints(0, 0, 0);
+
+    private final int expectedOrders;
+    private final int expectedLevels;
+    private final int expectedUsers;
+
+    /**
+     * @param expectedOrders - resting orders (both sides)
+     * @param expectedLevels - price levels per side
+     * @param expectedUsers  - users having resting orders (market makers quoting)
+     */
+    public OrderBookCapacityHints(final int expectedOrders,
+                                  final int expectedLevels,
+                                  final int expectedUsers) {
+
+        if (expectedOrders < 0 || expectedLevels < 0 || expectedUsers < 0) {
+            throw new IllegalArgumentException("capacity hints can not be negative");
+        }
+
+        this.expectedOrders = expectedOrders;
+        this.expectedLevels = expectedLevels;
+        this.expectedUsers = expectedUsers;
+    }
+
+    public int getExpectedOrders() {
+        return expectedOrders;
+    }
+
+    public int getExpectedLevels() {
+        return expectedLevels;
+    }
+
+    public int getExpectedUsers() {
+        return expectedUsers;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderBookCapacityHints{" +
+                "expectedOrders=" + expectedOrders +
+                ", expectedLevels=" + expectedLevels +
+                ", expectedUsers=" + expectedUsers +
+                '}';
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook;
+
+import exchange.core2.orderbook.stats.IOrderBookCounters;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Events sink invoking {@link IResponseHandler} callbacks directly from the matching engine (direct dispatch mode).
+ * Co-located consumers receive the same callbacks as from ResponseFastDecoder, without encoding and decoding responses.
+ * <p>
+ * Differences from decoded responses:
+ * - trade events and maker reduce events are delivered while matching, before taker reduce event (decoder delivers taker reduce event first);
+ * - compact trade events format is not applicable (nothing is encoded).
+ * <p>
+ * Time and correlation id of the command should be provided with {@link #startCommand} before every call of the order book.
+ * Not thread safe, handler is called from the matching thread.
+ */
+public final class OrderBookEventsDispatcher implements IOrderBookEventsSink {
+
+    private final IResponseHandler handler;
+    private final int symbolId;
+    private final IOrderBookCounters counters;
+
+    private final boolean reportOrderTrades;
+    private final boolean reportLevelTrades;
+
+    // current command
+    private long time;
+    private long correlationId;
+
+    // current order command result
+    private byte commandType;
+    private long uid;
+    private long orderId;
+    private int userCookie;
+    private long remainingSize;
+
+    // taker reduce event (delivered with result code, when taker action is known)
+    private long reducePrice;
+    private long reduceBidderHoldPrice;
+    private long reduceSize;
+
+    // trades of the current price level (level trades reporting)
+    private OrderAction levelTakerAction;
+    private long levelPrice;
+    private long levelVolume;
+    private int levelMakers;
+    private int levelCompletedMakers;
+
+    // current mass quote
+    private long quoteSetId;
+    private int quoteEntries;
+
+    private int auctionFills;
+
+    public OrderBookEventsDispatcher(final IResponseHandler handler,
+                                     final int symbolId) {
+        this(handler, symbolId, IOrderBookCounters.NONE, TRADE_REPORTING_PER_ORDER);
+    }
+
+    public OrderBookEventsDispatcher(final IResponseHandler handler,
+                                     final int symbolId,
+                                     final IOrderBookCounters counters,
+                                     final byte tradeReportingMode) {
+        this.handler = handler;
+        this.symbolId = symbolId;
+        this.counters = counters;
+        this.reportOrderTrades = tradeReportingMode != TRADE_REPORTING_PER_LEVEL;
+        this.reportLevelTrades = tradeReportingMode != TRADE_REPORTING_PER_ORDER;
+    }
+
+    /**
+     * Provide time and correlation id, reported with results of the next order book call
+     *
+     * @param time          - time
+     * @param correlationId - correlation id
+     */
+    public void startCommand(final long time,
+                             final long correlationId) {
+        this.time = time;
+        this.correlationId = correlationId;
+    }
+
+    @Override
+    public void beginPlaceOrder(final long uid,
+                                final long orderId,
+                                final int userCookie) {
+        beginOrderCommand(COMMAND_PLACE_ORDER, uid, orderId);
+        this.userCookie = userCookie;
+    }
+
+    @Override
+    public void beginCancelOrder(final long uid,
+                                 final long orderId) {
+        beginOrderCommand(COMMAND_CANCEL_ORDER, uid, orderId);
+    }
+
+    @Override
+    public void beginReduceOrder(final long uid,
+                                 final long orderId) {
+        beginOrderCommand(COMMAND_REDUCE_ORDER, uid, orderId);
+    }
+
+    @Override
+    public void beginMoveOrder(final long uid,
+                               final long orderId) {
+        beginOrderCommand(COMMAND_MOVE_ORDER, uid, orderId);
+    }
+
+    private void beginOrderCommand(final byte commandType,
+                                   final long uid,
+                                   final long orderId) {
+        this.commandType = commandType;
+        this.uid = uid;
+        this.orderId = orderId;
+        this.userCookie = 0;
+        this.remainingSize = UNSPECIFIED_REMAINING_SIZE_MARKER;
+    }
+
+    @Override
+    public void appendTradeEvent(final IOrder matchingOrder,
+                                 final boolean makerOrderCompleted,
+                                 final long tradeVolume,
+                                 final long bidderHoldPrice) {
+
+        final OrderAction takerAction = matchingOrder.getAction().opposite();
+
+        if (reportLevelTrades) {
+            if (levelMakers != 0 && matchingOrder.getPrice() != levelPrice) {
+                dispatchLevelTrade();
+            }
+            levelTakerAction = takerAction;
+            levelPrice = matchingOrder.getPrice();
+            levelVolume += tradeVolume;
+            levelMakers++;
+            if (makerOrderCompleted) {
+                levelCompletedMakers++;
+            }
+        }
+
+        if (reportOrderTrades) {
+            handler.onTradeEvent(
+                    symbolId,
+                    time,
+                    uid,
+                    orderId,
+                    takerAction,
+                    matchingOrder.getUid(),
+                    matchingOrder.getOrderId(),
+                    matchingOrder.getPrice(),
+                    bidderHoldPrice,
+                    tradeVolume,
+                    makerOrderCompleted);
+        }
+
+        counters.onTrade(tradeVolume);
+    }
+
+    @Override
+    public void completeLevelTrades() {
+        if (levelMakers != 0) {
+            dispatchLevelTrade();
+        }
+    }
+
+    private void dispatchLevelTrade() {
+
+        handler.onLevelTradeEvent(
+                symbolId,
+                time,
+                uid,
+                orderId,
+                levelTakerAction,
+                levelPrice,
+                levelVolume,
+                levelMakers,
+                levelCompletedMakers);
+
+        levelVolume = 0L;
+        levelMakers = 0;
+        levelCompletedMakers = 0;
+    }
+
+    @Override
+    public void appendMakerReduceEvent(final IOrder makerOrder,
+                                       final boolean makerOrderCompleted,
+                                       final long reduceSize) {
+
+        handler.onReduceEvent(
+                symbolId,
+                time,
+                makerOrder.getUid(),
+                makerOrder.getOrderId(),
+                makerOrder.getAction(),
+                reduceSize,
+                makerOrder.getPrice(),
+                makerOrder.getReserveBidPrice());
+    }
+
+    @Override
+    public void appendReduceEvent(final long price,
+                                  final long bidderHoldPrice,
+                                  final long reduceSize) {
+        this.reducePrice = price;
+        this.reduceBidderHoldPrice = bidderHoldPrice;
+        this.reduceSize = reduceSize;
+    }
+
+    @Override
+    public void appendRemainingSize(final long remainingSize) {
+        this.remainingSize = remainingSize;
+    }
+
+    @Override
+    public void appendResultCode(final short resultCode,
+                                 final boolean takerOrderCompleted,
+                                 final OrderAction takerAction,
+                                 final boolean hasReduceEvent) {
+
+        if (resultCode != RESULT_SUCCESS) {
+            counters.onReject(resultCode);
+        }
+
+        if (hasReduceEvent) {
+            handler.onReduceEvent(symbolId, time, uid, orderId, takerAction, reduceSize, reducePrice, reduceBidderHoldPrice);
+        }
+
+        final long remaining = takerOrderCompleted ? UNSPECIFIED_REMAINING_SIZE_MARKER : remainingSize;
+
+        switch (commandType) {
+            case COMMAND_PLACE_ORDER:
+                handler.onOrderPlaceResult(resultCode, time, correlationId, symbolId, uid, orderId, takerAction, takerOrderCompleted, userCookie, remaining);
+                break;
+
+            case COMMAND_CANCEL_ORDER:
+                handler.onOrderCancelResult(resultCode, time, correlationId, symbolId, uid, orderId, takerAction, takerOrderCompleted);
+                break;
+
+            case COMMAND_MOVE_ORDER:
+                handler.onOrderMoveResult(resultCode, time, correlationId, symbolId, uid, orderId, takerAction, takerOrderCompleted, remaining);
+                break;
+
+            case COMMAND_REDUCE_ORDER:
+                handler.onOrderReduceResult(resultCode, time, correlationId, symbolId, uid, orderId, takerAction, takerOrderCompleted, remaining);
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown commandType=" + commandType);
+        }
+    }
+
+    @Override
+    public boolean isTriggeredOrdersSupported() {
+        return true;
+    }
+
+    @Override
+    public void beginTriggeredOrder(final long uid,
+                                    final long orderId,
+                                    final int userCookie) {
+        beginPlaceOrder(uid, orderId, userCookie);
+    }
+
+    @Override
+    public int getMakerEventsCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean hasTriggeredOrderCapacity() {
+        return true;
+    }
+
+    @Override
+    public void completeTriggeredOrder() {
+        // already dispatched by appendResultCode
+    }
+
+    @Override
+    public void beginMassQuote(final long uid,
+                               final long quoteSetId) {
+        this.uid = uid;
+        this.quoteSetId = quoteSetId;
+        this.quoteEntries = 0;
+    }
+
+    @Override
+    public void appendQuoteEntry(final long orderId,
+                                 final long size,
+                                 final short resultCode) {
+        handler.onQuoteEntryResult(symbolId, time, uid, quoteSetId, quoteEntries++, orderId, size, resultCode);
+    }
+
+    @Override
+    public void completeMassQuote(final short resultCode,
+                                  final int entries,
+                                  final int reduceEvents) {
+        handler.onMassQuoteResult(resultCode, time, correlationId, symbolId, uid, quoteSetId, entries);
+    }
+
+    @Override
+    public void beginExpireOrders() {
+    }
+
+    @Override
+    public void completeExpireOrders(final int expiredOrders) {
+        handler.onOrdersExpireResult(RESULT_SUCCESS, time, correlationId, symbolId, expiredOrders);
+    }
+
+    @Override
+    public void beginUncross() {
+        auctionFills = 0;
+    }
+
+    @Override
+    public void appendAuctionFillEvent(final IOrder order,
+                                       final boolean orderCompleted,
+                                       final long fillSize,
+                                       final long auctionPrice) {
+
+        handler.onAuctionFillEvent(
+                symbolId,
+                time,
+                order.getUid(),
+                order.getOrderId(),
+                order.getAction(),
+                auctionPrice,
+                order.getReserveBidPrice(),
+                fillSize,
+                orderCompleted);
+
+        auctionFills++;
+    }
+
+    @Override
+    public void completeUncross(final short resultCode,
+                                final long price,
+                                final long volume) {
+        handler.onUncrossResult(resultCode, time, correlationId, symbolId, price, volume, auctionFills);
+    }
+
+    @Override
+    public void appendAuctionIndicative(final short resultCode,
+                                        final long price,
+                                        final long volume,
+                                        final long imbalance) {
+        handler.onAuctionIndicativeResult(resultCode, time, correlationId, symbolId, price, volume, imbalance);
+    }
+}
@@ -15,26 +15,203 @@
  */
 package exchange.core2.orderbook;
 
+import exchange.core2.orderbook.stats.IOrderBookCounters;
 import exchange.core2.orderbook.util.BufferWriter;
+import org.agrona.BitUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static exchange.core2.orderbook.IOrderBook.*;
 
-public class OrderBookEventsHelper {
+/**
+ * Events sink encoding command results into response buffer (binary protocol, see IOrderBook RESPONSE_OFFSET_* constants).
+ */
+public class OrderBookEventsHelper implements IOrderBookEventsSink {
 
     private static final Logger log = LoggerFactory.getLogger(OrderBookEventsHelper.class);
 
+    // worst case size of maker event: compact record (largest trade or reduce event encoding),
+    // followed by level trade record if every maker has its own price level
+    private static final int MAX_MAKER_EVENT_SIZE = 2 * (BitUtil.SIZE_OF_BYTE + 5 * BufferWriter.MAX_VAR_LONG_SIZE);
+
+    // place or move result without maker events: header, command fields, compact block header,
+    // taker reduce event, remaining size and result code
+    private static final int MAX_RESULT_FRAME_SIZE = RESPONSE_HEADER_SIZE + BitUtil.SIZE_OF_BYTE
+            + 2 * BitUtil.SIZE_OF_LONG + 2 * BitUtil.SIZE_OF_INT
+            + RESPONSE_OFFSET_REVT_END + BitUtil.SIZE_OF_LONG + BitUtil.SIZE_OF_SHORT;
+
     private final BufferWriter resultsBuffer;
 
+    // responses of triggered stop orders, framed as [int length][place order response], null - stop orders not supported
+    private final BufferWriter triggeredResultsBuffer;
+
+    private final IOrderBookCounters counters;
+
     private final boolean debug;
 
+    private final boolean compactTradeEvents;
+
+    private final boolean reportOrderTrades;
+    private final boolean reportLevelTrades;
+
+    // trades of the current price level (level trades reporting)
+    private long levelPrice;
+    private long levelVolume;
+    private int levelMakers;
+    private int levelCompletedMakers;
+
+    // compact trade events block of the current response (-1 if not started), see CTEVT_FLAG_*
+    private int compactBlockOffset = -1;
+    private int compactRecords;
+    private long lastOrderId;
+    private long lastUid;
+    private long lastPrice;
+    private long lastReservedBidPrice;
+
+    // start of triggered order response (moved into triggered results buffer when completed), -1 if not started
+    private int triggeredResponseStart = -1;
+
+    // auction fill events of the current uncross response
+    private int auctionFills;
+
+    // response header (see RESPONSE_HEADER)
+    private boolean responseHeader;
+    private int symbolId;
+    private long timestamp;
+    private long sequence;
+
+    public OrderBookEventsHelper(final BufferWriter resultsBuffer,
+                                 final boolean debug) {
+        this(resultsBuffer, IOrderBookCounters.NONE, debug);
+    }
+
     public OrderBookEventsHelper(final BufferWriter resultsBuffer,
+                                 final IOrderBookCounters counters,
                                  final boolean debug) {
+        this(resultsBuffer, counters, debug, TRADE_EVENTS_FORMAT_FIXED, TRADE_REPORTING_PER_ORDER);
+    }
+
+    public OrderBookEventsHelper(final BufferWriter resultsBuffer,
+                                 final IOrderBookCounters counters,
+                                 final boolean debug,
+                                 final byte tradeEventsFormat,
+                                 final byte tradeReportingMode) {
+        this(resultsBuffer, null, counters, debug, tradeEventsFormat, tradeReportingMode);
+    }
+
+    public OrderBookEventsHelper(final BufferWriter resultsBuffer,
+                                 final BufferWriter triggeredResultsBuffer,
+                                 final IOrderBookCounters counters,
+                                 final boolean debug,
+                                 final byte tradeEventsFormat,
+                                 final byte tradeReportingMode) {
         this.resultsBuffer = resultsBuffer;
+        this.triggeredResultsBuffer = triggeredResultsBuffer;
+        this.counters = counters;
         this.debug = debug;
+        this.compactTradeEvents = tradeEventsFormat == TRADE_EVENTS_FORMAT_COMPACT;
+        this.reportOrderTrades = tradeReportingMode != TRADE_REPORTING_PER_LEVEL;
+        this.reportLevelTrades = tradeReportingMode != TRADE_REPORTING_PER_ORDER;
+    }
+
+    /**
+     * Enable response header, written before every response
+     *
+     * @param symbolId - symbol id reported in header
+     */
+    public void enableResponseHeader(final int symbolId) {
+        this.responseHeader = true;
+        this.symbolId = symbolId;
+    }
+
+    /**
+     * Set engine time reported in response header (timestamp of the last command providing it)
+     *
+     * @param timestamp - timestamp
+     */
+    public void setTimestamp(final long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return sequence number of the last response with header (0 if nothing written yet)
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Start response - write response header (if enabled) and command type
+     *
+     * @param commandType - command type
+     */
+    public void beginResponse(final byte commandType) {
+        if (responseHeader) {
+            resultsBuffer.appendByte(RESPONSE_HEADER);
+            resultsBuffer.appendInt(symbolId);
+            resultsBuffer.appendLong(timestamp);
+            resultsBuffer.appendLong(++sequence);
+        }
+        resultsBuffer.appendByte(commandType);
+    }
+
+    @Override
+    public void beginPlaceOrder(final long uid,
+                                final long orderId,
+                                final int userCookie) {
+
+        beginResponse(COMMAND_PLACE_ORDER);
+        resultsBuffer.appendLong(uid);
+        resultsBuffer.appendLong(orderId);
+        resultsBuffer.appendInt(userCookie);
+        beginTradeEvents();
     }
 
+    @Override
+    public void beginCancelOrder(final long uid,
+                                 final long orderId) {
+
+        beginResponse(COMMAND_CANCEL_ORDER);
+        resultsBuffer.appendLong(uid);
+        resultsBuffer.appendLong(orderId);
+    }
+
+    @Override
+    public void beginReduceOrder(final long uid,
+                                 final long orderId) {
+
+        beginResponse(COMMAND_REDUCE_ORDER);
+        resultsBuffer.appendLong(uid);
+        resultsBuffer.appendLong(orderId);
+    }
+
+    @Override
+    public void beginMoveOrder(final long uid,
+                               final long orderId) {
+
+        beginResponse(COMMAND_MOVE_ORDER);
+        resultsBuffer.appendLong(uid);
+        resultsBuffer.appendLong(orderId);
+        beginTradeEvents();
+    }
+
+    /**
+     * Start trade events block of place or move response (right after response header).
+     * For compact format writes block header, block is completed by {@link #appendResultCode}.
+     */
+    private void beginTradeEvents() {
+        if (compactTradeEvents) {
+            compactBlockOffset = resultsBuffer.getWriterPosition();
+            resultsBuffer.appendInt(0);
+            compactRecords = 0;
+            lastOrderId = 0L;
+            lastUid = 0L;
+            lastPrice = 0L;
+            lastReservedBidPrice = 0L;
+        }
+    }
+
+    @Override
     public void appendTradeEvent(final IOrder matchingOrder,
                                  final boolean makerOrderCompleted,
                                  final long tradeVolume,
@@ -45,12 +222,33 @@ public class OrderBookEventsHelper {
                     matchingOrder.getOrderId(), matchingOrder, tradeVolume, makerOrderCompleted);
         }
 
-        resultsBuffer.appendLong(matchingOrder.getOrderId());
-        resultsBuffer.appendLong(matchingOrder.getUid());
-        resultsBuffer.appendLong(matchingOrder.getPrice());
-        resultsBuffer.appendLong(bidderHoldPrice); // matching order reserved price for released Exchange Bids funds
-        resultsBuffer.appendLong(tradeVolume);
-        resultsBuffer.appendByte(makerOrderCompleted ? (byte) 1 : 0);
+        if (reportLevelTrades) {
+            if (levelMakers != 0 && matchingOrder.getPrice() != levelPrice) {
+                appendLevelTrade();
+            }
+            levelPrice = matchingOrder.getPrice();
+            levelVolume += tradeVolume;
+            levelMakers++;
+            if (makerOrderCompleted) {
+                levelCompletedMakers++;
+            }
+        }
+
+        if (reportOrderTrades) {
+            final byte flags = makerOrderCompleted ? TEVT_FLAG_MAKER_COMPLETED : 0;
+            if (compactBlockOffset >= 0) {
+                appendCompactRecord(flags, matchingOrder.getOrderId(), matchingOrder.getUid(), matchingOrder.getPrice(), bidderHoldPrice, tradeVolume);
+            } else {
+                resultsBuffer.appendLong(matchingOrder.getOrderId());
+                resultsBuffer.appendLong(matchingOrder.getUid());
+                resultsBuffer.appendLong(matchingOrder.getPrice());
+                resultsBuffer.appendLong(bidderHoldPrice); // matching order reserved price for released Exchange Bids funds
+                resultsBuffer.appendLong(tradeVolume);
+                resultsBuffer.appendByte(flags);
+            }
+        }
+
+        counters.onTrade(tradeVolume);
 
 //        log.debug("BUF after trade event: \n{}", PrintBufferUtil.hexDump(resultsBuffer, 0, 128));
 
@@ -59,6 +257,169 @@ public class OrderBookEventsHelper {
         }
     }
 
+    /**
+     * Triggered order response is copied into triggered results buffer when completed, so it should fit into both buffers.
+     */
+    @Override
+    public int getMakerEventsCapacity() {
+
+        long space = resultsBuffer.remainingCapacity();
+        if (triggeredResponseStart >= 0) {
+            final int written = resultsBuffer.getWriterPosition() - triggeredResponseStart;
+            space = Math.min(space, triggeredResultsBuffer.remainingCapacity() - BitUtil.SIZE_OF_INT - written);
+        }
+
+        final long events = (space - MAX_RESULT_FRAME_SIZE) / MAX_MAKER_EVENT_SIZE;
+        return events <= 0 ? 0 : (int) Math.min(events, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Complete trades of the last price level crossed by taker order (should be called when matching is finished).
+     * Appends level trade record if level trades reporting is enabled and there were trades.
+     */
+    @Override
+    public void completeLevelTrades() {
+        if (levelMakers != 0) {
+            appendLevelTrade();
+        }
+    }
+
+    private void appendLevelTrade() {
+
+        if (debug) {
+            log.debug("LEVEL TRADE: price={} volume={} makers={} completedMakers={}",
+                    levelPrice, levelVolume, levelMakers, levelCompletedMakers);
+        }
+
+        if (compactBlockOffset >= 0) {
+            byte flags = TEVT_FLAG_LEVEL_TRADE;
+            if (levelPrice != lastPrice) {
+                flags |= CTEVT_FLAG_PRICE;
+            }
+            resultsBuffer.appendByte(flags);
+            resultsBuffer.appendVarLong(levelMakers);
+            resultsBuffer.appendVarLong(levelCompletedMakers);
+            if (levelPrice != lastPrice) {
+                resultsBuffer.appendZigZagVarLong(levelPrice - lastPrice);
+                lastPrice = levelPrice;
+            }
+            resultsBuffer.appendVarLong(levelVolume);
+            compactRecords++;
+        } else {
+            resultsBuffer.appendLong(levelMakers);
+            resultsBuffer.appendLong(levelCompletedMakers);
+            resultsBuffer.appendLong(levelPrice);
+            resultsBuffer.appendLong(0L);
+            resultsBuffer.appendLong(levelVolume);
+            resultsBuffer.appendByte(TEVT_FLAG_LEVEL_TRADE);
+        }
+
+        levelVolume = 0L;
+        levelMakers = 0;
+        levelCompletedMakers = 0;
+    }
+
+    /**
+     * Append maker order reduce event (same layout as trade event, marked with TEVT_FLAG_MAKER_REDUCED flag)
+     *
+     * @param makerOrder          - maker order
+     * @param makerOrderCompleted - true if maker order was removed from the order book
+     * @param reduceSize          - reduced size
+     */
+    @Override
+    public void appendMakerReduceEvent(final IOrder makerOrder,
+                                       final boolean makerOrderCompleted,
+                                       final long reduceSize) {
+
+        if (debug) {
+            log.debug("MAKER REDUCE: makerOrder={} reduceSize={} makerOrderCompleted={}",
+                    makerOrder, reduceSize, makerOrderCompleted);
+        }
+
+        final byte flags = (byte) (TEVT_FLAG_MAKER_REDUCED
+                | (makerOrderCompleted ? TEVT_FLAG_MAKER_COMPLETED : 0)
+                | (makerOrder.getAction() == OrderAction.BID ? TEVT_FLAG_MAKER_ACTION_BID : 0));
+
+        if (compactBlockOffset >= 0) {
+            appendCompactRecord(flags, makerOrder.getOrderId(), makerOrder.getUid(), makerOrder.getPrice(), makerOrder.getReserveBidPrice(), reduceSize);
+        } else {
+            resultsBuffer.appendLong(makerOrder.getOrderId());
+            resultsBuffer.appendLong(makerOrder.getUid());
+            resultsBuffer.appendLong(makerOrder.getPrice());
+            resultsBuffer.appendLong(makerOrder.getReserveBidPrice());
+            resultsBuffer.appendLong(reduceSize);
+            resultsBuffer.appendByte(flags);
+        }
+    }
+
+    private void appendCompactRecord(byte flags,
+                                     final long orderId,
+                                     final long uid,
+                                     final long price,
+                                     final long reservedBidPrice,
+                                     final long size) {
+
+        if (uid != lastUid) {
+            flags |= CTEVT_FLAG_UID;
+        }
+        if (price != lastPrice) {
+            flags |= CTEVT_FLAG_PRICE;
+        }
+        if (reservedBidPrice != lastReservedBidPrice) {
+            flags |= CTEVT_FLAG_RESERV_BID_PRICE;
+        }
+
+        resultsBuffer.appendByte(flags);
+        resultsBuffer.appendZigZagVarLong(orderId - lastOrderId);
+        if (uid != lastUid) {
+            resultsBuffer.appendZigZagVarLong(uid - lastUid);
+        }
+        if (price != lastPrice) {
+            resultsBuffer.appendZigZagVarLong(price - lastPrice);
+        }
+        if (reservedBidPrice != lastReservedBidPrice) {
+            resultsBuffer.appendZigZagVarLong(reservedBidPrice - lastReservedBidPrice);
+        }
+        resultsBuffer.appendVarLong(size);
+
+        lastOrderId = orderId;
+        lastUid = uid;
+        lastPrice = price;
+        lastReservedBidPrice = reservedBidPrice;
+        compactRecords++;
+    }
+
+    /**
+     * Append auction fill event (same layout as trade event, order action in TEVT_FLAG_MAKER_ACTION_BID flag).
+     * Trade counter is not updated - executed volume is counted once per uncross.
+     *
+     * @param order          - executed order
+     * @param orderCompleted - true if order was removed from the order book
+     * @param fillSize       - executed size
+     * @param auctionPrice   - auction price
+     */
+    @Override
+    public void appendAuctionFillEvent(final IOrder order,
+                                       final boolean orderCompleted,
+                                       final long fillSize,
+                                       final long auctionPrice) {
+
+        if (debug) {
+            log.debug("AUCTION FILL: order={} fillSize={} auctionPrice={} orderCompleted={}",
+                    order, fillSize, auctionPrice, orderCompleted);
+        }
+
+        resultsBuffer.appendLong(order.getOrderId());
+        resultsBuffer.appendLong(order.getUid());
+        resultsBuffer.appendLong(auctionPrice);
+        resultsBuffer.appendLong(order.getReserveBidPrice());
+        resultsBuffer.appendLong(fillSize);
+        resultsBuffer.appendByte((byte) ((orderCompleted ? TEVT_FLAG_MAKER_COMPLETED : 0)
+                | (order.getAction() == OrderAction.BID ? TEVT_FLAG_MAKER_ACTION_BID : 0)));
+        auctionFills++;
+    }
+
+    @Override
     public void appendReduceEvent(final long price,
                                   final long bidderHoldPrice,
                                   final long reduceSize) {
@@ -68,23 +429,144 @@ public class OrderBookEventsHelper {
         resultsBuffer.appendLong(reduceSize);
     }
 
+    @Override
+    public void appendRemainingSize(final long remainingSize) {
+        resultsBuffer.appendLong(remainingSize);
+    }
+
+    @Override
     public void appendResultCode(final short resultCode,
                                  final boolean takerOrderCompleted,
                                  final OrderAction takerAction,
                                  final boolean hasReduceEvent) {
 
+        final boolean compactBlock = compactBlockOffset >= 0;
+        if (compactBlock) {
+            resultsBuffer.overwriteInt(compactBlockOffset, compactRecords);
+            compactBlockOffset = -1;
+        }
+
         final short encodedResult = (short) (resultCode
+                | (compactBlock ? RESULT_OFFSET_COMPACT_TEVT_FLAG : 0)
                 | (takerOrderCompleted ? RESULT_OFFSET_TAKE_ORDER_COMPLETED_FLAG : 0)
                 | (takerAction == OrderAction.BID ? RESULT_OFFSET_TAKER_ACTION_BID_FLAG : 0)
                 | (hasReduceEvent ? RESULT_OFFSET_REDUCE_EVT_FLAG : 0));
 
         resultsBuffer.appendShort(encodedResult);
 
+        if (resultCode != RESULT_SUCCESS) {
+            counters.onReject(resultCode);
+        }
+
         if (debug) {
             log.debug("encodedResult={} BUF after fillEventsHeader: \n{}", encodedResult, resultsBuffer.prettyHexDump());
         }
     }
 
+    @Override
+    public boolean isTriggeredOrdersSupported() {
+        return triggeredResultsBuffer != null;
+    }
+
+    @Override
+    public boolean hasTriggeredOrderCapacity() {
+        final int resultSize = MAX_RESULT_FRAME_SIZE + MAX_MAKER_EVENT_SIZE;
+        return resultsBuffer.remainingCapacity() >= resultSize
+                && triggeredResultsBuffer.remainingCapacity() >= BitUtil.SIZE_OF_INT + resultSize;
+    }
+
+    /**
+     * Response is written as usual, then moved into triggered results buffer by {@link #completeTriggeredOrder}
+     */
+    @Override
+    public void beginTriggeredOrder(final long uid,
+                                    final long orderId,
+                                    final int userCookie) {
+
+        triggeredResponseStart = resultsBuffer.getWriterPosition();
+        beginPlaceOrder(uid, orderId, userCookie);
+    }
+
+    @Override
+    public void completeTriggeredOrder() {
+
+        final int responseLength = resultsBuffer.getWriterPosition() - triggeredResponseStart;
+        triggeredResultsBuffer.appendInt(responseLength);
+        triggeredResultsBuffer.appendBytes(resultsBuffer.getBuffer(), triggeredResponseStart, responseLength);
+        resultsBuffer.rewind(triggeredResponseStart);
+        triggeredResponseStart = -1;
+    }
+
+    @Override
+    public void beginMassQuote(final long uid,
+                               final long quoteSetId) {
+
+        beginResponse(COMMAND_MASS_QUOTE);
+        resultsBuffer.appendLong(uid);
+        resultsBuffer.appendLong(quoteSetId);
+    }
+
+    @Override
+    public void appendQuoteEntry(final long orderId,
+                                 final long size,
+                                 final short resultCode) {
+
+        resultsBuffer.appendLong(orderId);
+        resultsBuffer.appendLong(size);
+        resultsBuffer.appendShort(resultCode);
+    }
+
+    @Override
+    public void completeMassQuote(final short resultCode,
+                                  final int entries,
+                                  final int reduceEvents) {
+
+        resultsBuffer.appendInt(entries);
+        resultsBuffer.appendInt(reduceEvents);
+        resultsBuffer.appendShort(resultCode);
+    }
+
+    @Override
+    public void beginExpireOrders() {
+        beginResponse(COMMAND_EXPIRE_ORDERS);
+    }
+
+    @Override
+    public void completeExpireOrders(final int expiredOrders) {
+        resultsBuffer.appendInt(expiredOrders);
+        resultsBuffer.appendShort(RESULT_SUCCESS);
+    }
+
+    @Override
+    public void beginUncross() {
+        beginResponse(COMMAND_UNCROSS);
+        auctionFills = 0;
+    }
+
+    @Override
+    public void completeUncross(final short resultCode,
+                                final long price,
+                                final long volume) {
+
+        resultsBuffer.appendLong(price);
+        resultsBuffer.appendLong(volume);
+        resultsBuffer.appendInt(auctionFills);
+        resultsBuffer.appendShort(resultCode);
+    }
+
+    @Override
+    public void appendAuctionIndicative(final short resultCode,
+                                        final long price,
+                                        final long volume,
+                                        final long imbalance) {
+
+        beginResponse(QUERY_AUCTION_INDICATIVE);
+        resultsBuffer.appendLong(price);
+        resultsBuffer.appendLong(volume);
+        resultsBuffer.appendLong(imbalance);
+        resultsBuffer.appendShort(resultCode);
+    }
+
 
     public void appendL2Record(final long price,
                                final long volume,
@@ -95,6 +95,45 @@ public final class VoidOrderBookImpl<T extends ISymbolSpecification> implements
         resultsBuffer.appendShort(RESULT_UNKNOWN_SYMBOL);
     }
 
+    @Override
+    public void expireOrders(long timestamp) {
+        resultsBuffer.appendByte(IOrderBook.COMMAND_EXPIRE_ORDERS);
+        resultsBuffer.appendInt(0);
+        resultsBuffer.appendShort(RESULT_UNKNOWN_SYMBOL);
+    }
+
+    @Override
+    public void startAuction() {
+    }
+
+    @Override
+    public void uncross() {
+        resultsBuffer.appendByte(IOrderBook.COMMAND_UNCROSS);
+        resultsBuffer.appendLong(0);
+        resultsBuffer.appendLong(0);
+        resultsBuffer.appendInt(0);
+        resultsBuffer.appendShort(RESULT_UNKNOWN_SYMBOL);
+    }
+
+    @Override
+    public void sendAuctionIndicative() {
+        resultsBuffer.appendByte(IOrderBook.QUERY_AUCTION_INDICATIVE);
+        resultsBuffer.appendLong(0);
+        resultsBuffer.appendLong(0);
+        resultsBuffer.appendLong(0);
+        resultsBuffer.appendShort(RESULT_UNKNOWN_SYMBOL);
+    }
+
+    @Override
+    public void massQuote(DirectBuffer buffer, int offset, long timestamp) {
+        resultsBuffer.appendByte(IOrderBook.COMMAND_MASS_QUOTE);
+        resultsBuffer.appendLong(buffer.getLong(offset + QUOTE_OFFSET_UID));
+        resultsBuffer.appendLong(buffer.getLong(offset + QUOTE_OFFSET_QUOTE_SET_ID));
+        resultsBuffer.appendInt(0);
+        resultsBuffer.appendInt(0);
+        resultsBuffer.appendShort(RESULT_UNKNOWN_SYMBOL);
+    }
+
     @Override
     public IOrder getOrderById(long orderId) {
         throw new IllegalStateException();
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.api;
+
+import exchange.core2.orderbook.OrderAction;
+
+import java.util.Objects;
+
+/**
+ * Order (partially) executed by call auction uncross, at auction price.
+ */
+public final class AuctionFillEvent {
+
+    private final long orderId;
+    private final long uid;
+    private final OrderAction action;
+    private final long price;
+    private final long reservedBidPrice;
+    private final long fillSize;
+    private final boolean orderCompleted;
+
+    public AuctionFillEvent(long orderId,
+                            long uid,
+                            OrderAction action,
+                            long price,
+                            long reservedBidPrice,
+                            long fillSize,
+                            boolean orderCompleted) {
+
+        this.orderId = orderId;
+        this.uid = uid;
+        this.action = action;
+        this.price = price;
+        this.reservedBidPrice = reservedBidPrice;
+        this.fillSize = fillSize;
+        this.orderCompleted = orderCompleted;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public long getUid() {
+        return uid;
+    }
+
+    public OrderAction getAction() {
+        return action;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getReservedBidPrice() {
+        return reservedBidPrice;
+    }
+
+    public long getFillSize() {
+        return fillSize;
+    }
+
+    public boolean isOrderCompleted() {
+        return orderCompleted;
+    }
+
+    @Override
+    public String toString() {
+        return "AuctionFillEvent{" +
+                "orderId=" + orderId +
+                ", uid=" + uid +
+                ", action=" + action +
+                ", price=" + price +
+                ", reservedBidPrice=" + reservedBidPrice +
+                ", fillSize=" + fillSize +
+                ", orderCompleted=" + orderCompleted +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AuctionFillEvent that = (AuctionFillEvent) o;
+        return orderId == that.orderId &&
+                uid == that.uid &&
+                action == that.action &&
+                price == that.price &&
+                reservedBidPrice == that.reservedBidPrice &&
+                fillSize == that.fillSize &&
+                orderCompleted == that.orderCompleted;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(orderId, uid, action, price, reservedBidPrice, fillSize, orderCompleted);
+    }
+}
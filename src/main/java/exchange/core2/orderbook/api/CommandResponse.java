@@ -18,6 +18,7 @@ package exchange.core2.orderbook.api;
 
 import exchange.core2.orderbook.OrderAction;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +33,8 @@ public abstract class CommandResponse extends OrderBookResponse{
 
     private final List<TradeEvent> trades;
     private final ReduceEvent reduceEvent;
+    private final List<MakerReduceEvent> makerReduceEvents;
+    private final List<LevelTradeEvent> levelTrades;
 
     public CommandResponse(final short resultCode,
                            final long uid,
@@ -42,6 +45,33 @@ public abstract class CommandResponse extends OrderBookResponse{
                            final List<TradeEvent> trades,
                            final ReduceEvent reduceEvent) {
 
+        this(resultCode, uid, orderId, takerAction, orderCompleted, remainingSize, trades, reduceEvent, Collections.emptyList());
+    }
+
+    public CommandResponse(final short resultCode,
+                           final long uid,
+                           final long orderId,
+                           final OrderAction takerAction,
+                           final boolean orderCompleted,
+                           final Long remainingSize,
+                           final List<TradeEvent> trades,
+                           final ReduceEvent reduceEvent,
+                           final List<MakerReduceEvent> makerReduceEvents) {
+
+        this(resultCode, uid, orderId, takerAction, orderCompleted, remainingSize, trades, reduceEvent, makerReduceEvents, Collections.emptyList());
+    }
+
+    public CommandResponse(final short resultCode,
+                           final long uid,
+                           final long orderId,
+                           final OrderAction takerAction,
+                           final boolean orderCompleted,
+                           final Long remainingSize,
+                           final List<TradeEvent> trades,
+                           final ReduceEvent reduceEvent,
+                           final List<MakerReduceEvent> makerReduceEvents,
+                           final List<LevelTradeEvent> levelTrades) {
+
         super(resultCode);
 
         this.uid = uid;
@@ -51,6 +81,8 @@ public abstract class CommandResponse extends OrderBookResponse{
         this.remainingSize = remainingSize;
         this.trades = trades;
         this.reduceEvent = reduceEvent;
+        this.makerReduceEvents = makerReduceEvents;
+        this.levelTrades = levelTrades;
     }
 
     public long getUid() {
@@ -73,6 +105,24 @@ public abstract class CommandResponse extends OrderBookResponse{
         return trades;
     }
 
+    /**
+     * Resting orders reduced without trade (self-trade prevention), in the same sequence as trades
+     *
+     * @return maker reduce events
+     */
+    public List<MakerReduceEvent> getMakerReduceEvents() {
+        return makerReduceEvents;
+    }
+
+    /**
+     * Trades aggregated per price level, in the same sequence as levels were crossed (level trades reporting mode only)
+     *
+     * @return level trade events
+     */
+    public List<LevelTradeEvent> getLevelTrades() {
+        return levelTrades;
+    }
+
     public Optional<ReduceEvent> getReduceEventOpt() {
         return Optional.ofNullable(reduceEvent);
     }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.api;
+
+import java.util.List;
+import java.util.Objects;
+
+public class CommandResponseExpire extends OrderBookResponse {
+
+    private final List<MakerReduceEvent> expiredOrders;
+
+    public CommandResponseExpire(final short resultCode, final List<MakerReduceEvent> expiredOrders) {
+        super(resultCode);
+        this.expiredOrders = expiredOrders;
+    }
+
+    /**
+     * Expired (cancelled) GTD orders, in the order of expiration
+     *
+     * @return maker reduce events
+     */
+    public List<MakerReduceEvent> getExpiredOrders() {
+        return expiredOrders;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CommandResponseExpire that = (CommandResponseExpire) o;
+        return getResultCode() == that.getResultCode() &&
+                Objects.equals(expiredOrders, that.expiredOrders);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getResultCode(), expiredOrders);
+    }
+
+    @Override
+    public String toString() {
+        return "CommandResponseExpire{" +
+                "resultCode=" + getResultCode() +
+                ", expiredOrders=" + expiredOrders +
+                '}';
+    }
+}
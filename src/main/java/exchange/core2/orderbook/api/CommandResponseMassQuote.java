@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.api;
+
+import java.util.List;
+import java.util.Objects;
+
+public class CommandResponseMassQuote extends OrderBookResponse {
+
+    private final long uid;
+    private final long quoteSetId;
+    private final List<MakerReduceEvent> reducedOrders;
+    private final List<QuoteEntryResult> entries;
+
+    public CommandResponseMassQuote(final short resultCode,
+                                    final long uid,
+                                    final long quoteSetId,
+                                    final List<MakerReduceEvent> reducedOrders,
+                                    final List<QuoteEntryResult> entries) {
+        super(resultCode);
+        this.uid = uid;
+        this.quoteSetId = quoteSetId;
+        this.reducedOrders = reducedOrders;
+        this.entries = entries;
+    }
+
+    public long getUid() {
+        return uid;
+    }
+
+    public long getQuoteSetId() {
+        return quoteSetId;
+    }
+
+    /**
+     * Previous quote orders cancelled (not reused) or reduced in place
+     *
+     * @return maker reduce events
+     */
+    public List<MakerReduceEvent> getReducedOrders() {
+        return reducedOrders;
+    }
+
+    /**
+     * @return entry results, in the same order as command entries
+     */
+    public List<QuoteEntryResult> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CommandResponseMassQuote that = (CommandResponseMassQuote) o;
+        return getResultCode() == that.getResultCode() &&
+                uid == that.uid &&
+                quoteSetId == that.quoteSetId &&
+                Objects.equals(reducedOrders, that.reducedOrders) &&
+                Objects.equals(entries, that.entries);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getResultCode(), uid, quoteSetId, reducedOrders, entries);
+    }
+
+    @Override
+    public String toString() {
+        return "CommandResponseMassQuote{" +
+                "resultCode=" + getResultCode() +
+                ", uid=" + uid +
+                ", quoteSetId=" + quoteSetId +
+                ", reducedOrders=" + reducedOrders +
+                ", entries=" + entries +
+                '}';
+    }
+}
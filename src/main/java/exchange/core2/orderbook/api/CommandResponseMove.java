@@ -18,6 +18,7 @@ package exchange.core2.orderbook.api;
 
 import exchange.core2.orderbook.OrderAction;
 
+import java.util.Collections;
 import java.util.List;
 
 public final class CommandResponseMove extends CommandResponse {
@@ -31,7 +32,34 @@ public final class CommandResponseMove extends CommandResponse {
                                final List<TradeEvent> trades,
                                final ReduceEvent reduceEvent) {
 
-        super(resultCode, uid, orderId, takerAction, orderCompleted, remainingSize, trades, reduceEvent);
+        this(resultCode, uid, orderId, takerAction, orderCompleted, remainingSize, trades, reduceEvent, Collections.emptyList());
+    }
+
+    public CommandResponseMove(final short resultCode,
+                               final long uid,
+                               final long orderId,
+                               final OrderAction takerAction,
+                               final boolean orderCompleted,
+                               final Long remainingSize,
+                               final List<TradeEvent> trades,
+                               final ReduceEvent reduceEvent,
+                               final List<MakerReduceEvent> makerReduceEvents) {
+
+        this(resultCode, uid, orderId, takerAction, orderCompleted, remainingSize, trades, reduceEvent, makerReduceEvents, Collections.emptyList());
+    }
+
+    public CommandResponseMove(final short resultCode,
+                               final long uid,
+                               final long orderId,
+                               final OrderAction takerAction,
+                               final boolean orderCompleted,
+                               final Long remainingSize,
+                               final List<TradeEvent> trades,
+                               final ReduceEvent reduceEvent,
+                               final List<MakerReduceEvent> makerReduceEvents,
+                               final List<LevelTradeEvent> levelTrades) {
+
+        super(resultCode, uid, orderId, takerAction, orderCompleted, remainingSize, trades, reduceEvent, makerReduceEvents, levelTrades);
     }
 
     @Override
@@ -44,6 +72,8 @@ public final class CommandResponseMove extends CommandResponse {
                 ", remainingSize=" + getRemainingSizeOpt() +
                 ", trades=" + getTrades() +
                 ", reduceEvent=" + getReduceEventOpt() +
+                ", makerReduceEvents=" + getMakerReduceEvents() +
+                ", levelTrades=" + getLevelTrades() +
                 '}';
     }
 
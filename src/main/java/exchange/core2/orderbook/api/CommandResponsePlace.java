@@ -18,6 +18,7 @@ package exchange.core2.orderbook.api;
 
 import exchange.core2.orderbook.OrderAction;
 
+import java.util.Collections;
 import java.util.List;
 
 public final class CommandResponsePlace extends CommandResponse {
@@ -34,7 +35,36 @@ public final class CommandResponsePlace extends CommandResponse {
                                 final List<TradeEvent> trades,
                                 final ReduceEvent reduceEvent) {
 
-        super(resultCode, uid, orderId, takerAction, orderCompleted, remainingSize, trades, reduceEvent);
+        this(resultCode, uid, orderId, takerAction, orderCompleted, userCookie, remainingSize, trades, reduceEvent, Collections.emptyList());
+    }
+
+    public CommandResponsePlace(final short resultCode,
+                                final long uid,
+                                final long orderId,
+                                final OrderAction takerAction,
+                                final boolean orderCompleted,
+                                final int userCookie,
+                                final Long remainingSize,
+                                final List<TradeEvent> trades,
+                                final ReduceEvent reduceEvent,
+                                final List<MakerReduceEvent> makerReduceEvents) {
+
+        this(resultCode, uid, orderId, takerAction, orderCompleted, userCookie, remainingSize, trades, reduceEvent, makerReduceEvents, Collections.emptyList());
+    }
+
+    public CommandResponsePlace(final short resultCode,
+                                final long uid,
+                                final long orderId,
+                                final OrderAction takerAction,
+                                final boolean orderCompleted,
+                                final int userCookie,
+                                final Long remainingSize,
+                                final List<TradeEvent> trades,
+                                final ReduceEvent reduceEvent,
+                                final List<MakerReduceEvent> makerReduceEvents,
+                                final List<LevelTradeEvent> levelTrades) {
+
+        super(resultCode, uid, orderId, takerAction, orderCompleted, remainingSize, trades, reduceEvent, makerReduceEvents, levelTrades);
 
         this.userCookie = userCookie;
     }
@@ -54,6 +84,8 @@ public final class CommandResponsePlace extends CommandResponse {
                 ", remainingSize=" + getRemainingSizeOpt() +
                 ", trades=" + getTrades() +
                 ", reduceEvent=" + getReduceEventOpt() +
+                ", makerReduceEvents=" + getMakerReduceEvents() +
+                ", levelTrades=" + getLevelTrades() +
                 '}';
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.api;
+
+import java.util.List;
+import java.util.Objects;
+
+public class CommandResponseUncross extends OrderBookResponse {
+
+    private final long price;
+    private final long volume;
+    private final List<AuctionFillEvent> fills;
+
+    public CommandResponseUncross(final short resultCode,
+                                  final long price,
+                                  final long volume,
+                                  final List<AuctionFillEvent> fills) {
+        super(resultCode);
+        this.price = price;
+        this.volume = volume;
+        this.fills = fills;
+    }
+
+    /**
+     * @return auction price (0 if nothing was executed)
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * @return executed volume (same for both sides)
+     */
+    public long getVolume() {
+        return volume;
+    }
+
+    /**
+     * Executed orders - bids first, then asks, each side in price-time priority
+     *
+     * @return auction fill events
+     */
+    public List<AuctionFillEvent> getFills() {
+        return fills;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CommandResponseUncross that = (CommandResponseUncross) o;
+        return getResultCode() == that.getResultCode() &&
+                price == that.price &&
+                volume == that.volume &&
+                Objects.equals(fills, that.fills);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getResultCode(), price, volume, fills);
+    }
+
+    @Override
+    public String toString() {
+        return "CommandResponseUncross{" +
+                "resultCode=" + getResultCode() +
+                ", price=" + price +
+                ", volume=" + volume +
+                ", fills=" + fills +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.api;
+
+import java.util.Objects;
+
+/**
+ * Trades of one taker order at one price level, aggregated (level trades reporting mode).
+ */
+public final class LevelTradeEvent {
+
+    private final long price;
+    private final long volume;
+    private final int makers;
+    private final int completedMakers;
+
+    public LevelTradeEvent(long price,
+                           long volume,
+                           int makers,
+                           int completedMakers) {
+
+        this.price = price;
+        this.volume = volume;
+        this.makers = makers;
+        this.completedMakers = completedMakers;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    public int getMakers() {
+        return makers;
+    }
+
+    public int getCompletedMakers() {
+        return completedMakers;
+    }
+
+    @Override
+    public String toString() {
+        return "LevelTradeEvent{" +
+                "price=" + price +
+                ", volume=" + volume +
+                ", makers=" + makers +
+                ", completedMakers=" + completedMakers +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LevelTradeEvent that = (LevelTradeEvent) o;
+        return price == that.price &&
+                volume == that.volume &&
+                makers == that.makers &&
+                completedMakers == that.completedMakers;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(price, volume, makers, completedMakers);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package exchange.core2.orderbook.api;
+
+import exchange.core2.orderbook.OrderAction;
+
+import java.util.Objects;
+
+/**
+ * Resting (maker) order reduced without trade, for example by self-trade prevention or expiration.
+ */
+public final class MakerReduceEvent {
+
+    private final long makerOrderId;
+    private final long makerUid;
+    private final OrderAction makerAction;
+    private final long price;
+    private final long reservedBidPrice;
+    private final long reducedSize;
+    private final boolean makerOrderCompleted;
+
+    public MakerReduceEvent(long makerOrderId,
+                            long makerUid,
+                            OrderAction makerAction,
+                            long price,
+                            long reservedBidPrice,
+                            long reducedSize,
+                            boolean makerOrderCompleted) {
+
+        this.makerOrderId = makerOrderId;
+        this.makerUid = makerUid;
+        this.makerAction = makerAction;
+        this.price = price;
+        this.reservedBidPrice = reservedBidPrice;
+        this.reducedSize = reducedSize;
+        this.makerOrderCompleted = makerOrderCompleted;
+    }
+
+    public long getMakerOrderId() {
+        return makerOrderId;
+    }
+
+    public long getMakerUid() {
+        return makerUid;
+    }
+
+    public OrderAction getMakerAction() {
+        return makerAction;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public long getReservedBidPrice() {
+        return reservedBidPrice;
+    }
+
+    public long getReducedSize() {
+        return reducedSize;
+    }
+
+    public boolean isMakerOrderCompleted() {
+        return makerOrderCompleted;
+    }
+
+    @Override
+    public String toString() {
+        return "MakerReduceEvent{" +
+                "makerOrderId=" + makerOrderId +
+                ", makerUid=" + makerUid +
+                ", makerAction=" + makerAction +
+                ", price=" + price +
+                ", reservedBidPrice=" + reservedBidPrice +
+                ", reducedSize=" + reducedSize +
+                ", makerOrderCompleted=" + makerOrderCompleted +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MakerReduceEvent that = (MakerReduceEvent) o;
+        return makerOrderId == that.makerOrderId &&
+                makerUid == that.makerUid &&
+                makerAction == that.makerAction &&
+                price == that.price &&
+                reservedBidPrice == that.reservedBidPrice &&
+                reducedSize == that.reducedSize &&
+                makerOrderCompleted == that.makerOrderCompleted;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(makerOrderId, makerUid, makerAction, price, reservedBidPrice, reducedSize, makerOrderCompleted);
+    }
+}
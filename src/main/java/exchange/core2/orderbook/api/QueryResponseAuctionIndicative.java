@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.api;
+
+import java.util.Objects;
+
+public class QueryResponseAuctionIndicative extends OrderBookResponse {
+
+    private final long price;
+    private final long volume;
+    private final long imbalance;
+
+    public QueryResponseAuctionIndicative(final short resultCode,
+                                          final long price,
+                                          final long volume,
+                                          final long imbalance) {
+        super(resultCode);
+        this.price = price;
+        this.volume = volume;
+        this.imbalance = imbalance;
+    }
+
+    /**
+     * @return indicative auction price (0 if order book is not crossed)
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * @return volume executable at indicative price
+     */
+    public long getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return bid volume minus ask volume at indicative price (positive - buy surplus, negative - sell surplus)
+     */
+    public long getImbalance() {
+        return imbalance;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        QueryResponseAuctionIndicative that = (QueryResponseAuctionIndicative) o;
+        return getResultCode() == that.getResultCode() &&
+                price == that.price &&
+                volume == that.volume &&
+                imbalance == that.imbalance;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getResultCode(), price, volume, imbalance);
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResponseAuctionIndicative{" +
+                "resultCode=" + getResultCode() +
+                ", price=" + price +
+                ", volume=" + volume +
+                ", imbalance=" + imbalance +
+                '}';
+    }
+}
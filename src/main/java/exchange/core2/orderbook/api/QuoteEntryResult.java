@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.api;
+
+import java.util.Objects;
+
+import static exchange.core2.orderbook.IOrderBook.RESULT_SUCCESS;
+
+/**
+ * Result of single mass quote entry (in the same order as command entries).
+ */
+public final class QuoteEntryResult {
+
+    private final long orderId;
+    private final long size;
+    private final short resultCode;
+
+    public QuoteEntryResult(long orderId, long size, short resultCode) {
+        this.orderId = orderId;
+        this.size = size;
+        this.resultCode = resultCode;
+    }
+
+    /**
+     * @return id of new or reused quote order
+     */
+    public long getOrderId() {
+        return orderId;
+    }
+
+    /**
+     * @return resting (unmatched) size of quote order, 0 if entry was rejected
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return RESULT_SUCCESS, or reason of entry rejection
+     */
+    public short getResultCode() {
+        return resultCode;
+    }
+
+    public boolean isRejected() {
+        return resultCode != RESULT_SUCCESS;
+    }
+
+    @Override
+    public String toString() {
+        return "QuoteEntryResult{" +
+                "orderId=" + orderId +
+                ", size=" + size +
+                ", resultCode=" + resultCode +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        QuoteEntryResult that = (QuoteEntryResult) o;
+        return orderId == that.orderId &&
+                size == that.size &&
+                resultCode == that.resultCode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(orderId, size, resultCode);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.api;
+
+import java.util.Objects;
+
+/**
+ * Optional response header: symbol id, engine timestamp and per-order book sequence number.
+ */
+public final class ResponseHeader {
+
+    private final int symbolId;
+    private final long timestamp;
+    private final long sequence;
+
+    public ResponseHeader(int symbolId,
+                          long timestamp,
+                          long sequence) {
+
+        this.symbolId = symbolId;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseHeader{" +
+                "symbolId=" + symbolId +
+                ", timestamp=" + timestamp +
+                ", sequence=" + sequence +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ResponseHeader that = (ResponseHeader) o;
+        return symbolId == that.symbolId &&
+                timestamp == that.timestamp &&
+                sequence == that.sequence;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(symbolId, timestamp, sequence);
+    }
+}
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.gateway;
+
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.util.CommandsBatchEncoder;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.PlaceOrderFlyweight;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Streaming FIX tag=value decoder for order entry messages, does not allocate (values are parsed in place).<p>
+ * Supported messages:<p>
+ * NewOrderSingle (D) - place order. OrdType(40): 2-limit, 3-stop, 4-stop limit (Price(44) is required as protection limit).
+ * TimeInForce(59): 0-day or 1-GTC (GTC, or ICEBERG if MaxFloor(111) is specified), 3-IOC, 4-FOK.
+ * MinQty(110) sets min quantity flag, ExecInst(18) containing '6' sets post-only flag.<p>
+ * OrderCancelRequest (F) - cancel order OrigClOrdID(41), or reduce it by CxlQty(84) if specified.<p>
+ * OrderCancelReplaceRequest (G) - move order OrigClOrdID(41) to new Price(44).<p>
+ * Order ids (ClOrdID, OrigClOrdID) and Account (uid) must be numeric. Book price is FIX price multiplied by 10^priceScale.
+ * BodyLength(9) and CheckSum(10) are verified if present, session level fields are ignored.
+ */
+public final class FixCommandDecoder {
+
+    public static final byte SOH = 1;
+
+    public static final int TAG_ACCOUNT = 1;
+    public static final int TAG_BEGIN_STRING = 8;
+    public static final int TAG_BODY_LENGTH = 9;
+    public static final int TAG_CHECKSUM = 10;
+    public static final int TAG_CL_ORD_ID = 11;
+    public static final int TAG_EXEC_INST = 18;
+    public static final int TAG_MSG_TYPE = 35;
+    public static final int TAG_ORDER_QTY = 38;
+    public static final int TAG_ORD_TYPE = 40;
+    public static final int TAG_ORIG_CL_ORD_ID = 41;
+    public static final int TAG_PRICE = 44;
+    public static final int TAG_SIDE = 54;
+    public static final int TAG_TIME_IN_FORCE = 59;
+    public static final int TAG_CXL_QTY = 84;
+    public static final int TAG_STOP_PX = 99;
+    public static final int TAG_MIN_QTY = 110;
+    public static final int TAG_MAX_FLOOR = 111;
+
+    public static final byte MSG_TYPE_NEW_ORDER_SINGLE = 'D';
+    public static final byte MSG_TYPE_ORDER_CANCEL_REQUEST = 'F';
+    public static final byte MSG_TYPE_ORDER_CANCEL_REPLACE_REQUEST = 'G';
+
+    public static final short ERROR_NONE = 0;
+    public static final short ERROR_MALFORMED = 1;
+    public static final short ERROR_BODY_LENGTH = 2;
+    public static final short ERROR_CHECKSUM = 3;
+    public static final short ERROR_UNSUPPORTED_MSG_TYPE = 4;
+    public static final short ERROR_MISSING_FIELD = 5;
+    public static final short ERROR_INVALID_VALUE = 6;
+    public static final short ERROR_UNSUPPORTED_VALUE = 7;
+
+    // presence bits of parsed fields
+    private static final int FIELD_ACCOUNT = 1;
+    private static final int FIELD_CL_ORD_ID = 1 << 1;
+    private static final int FIELD_ORIG_CL_ORD_ID = 1 << 2;
+    private static final int FIELD_SIDE = 1 << 3;
+    private static final int FIELD_ORDER_QTY = 1 << 4;
+    private static final int FIELD_ORD_TYPE = 1 << 5;
+    private static final int FIELD_PRICE = 1 << 6;
+    private static final int FIELD_STOP_PX = 1 << 7;
+    private static final int FIELD_MAX_FLOOR = 1 << 8;
+    private static final int FIELD_MIN_QTY = 1 << 9;
+    private static final int FIELD_CXL_QTY = 1 << 10;
+
+    private final int priceScale;
+    private final PlaceOrderFlyweight placeFlyweight = new PlaceOrderFlyweight();
+
+    private int fields;
+    private byte msgType;
+    private byte ordType;
+    private byte timeInForce;
+    private long uid;
+    private long orderId;
+    private long origOrderId;
+    private OrderAction action;
+    private long size;
+    private long price;
+    private long stopPrice;
+    private long displaySize;
+    private long minQuantity;
+    private long cxlQuantity;
+    private boolean postOnly;
+
+    // result of parsing
+    private byte commandCode;
+    private byte orderType;
+    private short error;
+    private int errorTag;
+
+    public FixCommandDecoder(final int priceScale) {
+        if (priceScale < 0 || priceScale > 18) {
+            throw new IllegalArgumentException("Unsupported price scale: " + priceScale);
+        }
+        this.priceScale = priceScale;
+    }
+
+    /**
+     * Find length of the first complete message in the stream (message ends with CheckSum(10) field)
+     *
+     * @param buffer - buffer
+     * @param offset - message start offset
+     * @param length - number of available bytes
+     * @return message length, or 0 if message is not complete yet
+     */
+    public static int messageLength(final DirectBuffer buffer, final int offset, final int length) {
+        final int end = offset + length;
+        for (int i = offset; i + 3 < end; i++) {
+            if (buffer.getByte(i) == SOH
+                    && buffer.getByte(i + 1) == '1'
+                    && buffer.getByte(i + 2) == '0'
+                    && buffer.getByte(i + 3) == '=') {
+
+                for (int j = i + 4; j < end; j++) {
+                    if (buffer.getByte(j) == SOH) {
+                        return j + 1 - offset;
+                    }
+                }
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Parse one message
+     *
+     * @param buffer - buffer
+     * @param offset - message start offset
+     * @param length - message length (including trailing SOH)
+     * @return true if message is successfully parsed into order book command, otherwise see {@link #getError()}
+     */
+    public boolean parse(final DirectBuffer buffer, final int offset, final int length) {
+
+        reset();
+
+        final int end = offset + length;
+        int position = offset;
+        int bodyStart = -1;
+        int declaredBodyLength = -1;
+
+        while (position < end) {
+
+            final int fieldStart = position;
+            int tag = 0;
+            byte b;
+            while (position < end && (b = buffer.getByte(position)) != '=') {
+                if (b < '0' || b > '9' || tag > 99_999) {
+                    return fail(ERROR_MALFORMED, tag);
+                }
+                tag = tag * 10 + (b - '0');
+                position++;
+            }
+            if (position == end || position == fieldStart) {
+                return fail(ERROR_MALFORMED, tag);
+            }
+
+            final int valueStart = ++position;
+            while (position < end && buffer.getByte(position) != SOH) {
+                position++;
+            }
+            if (position == end || position == valueStart) {
+                return fail(ERROR_MALFORMED, tag);
+            }
+            final int valueEnd = position++;
+
+            if (tag == TAG_CHECKSUM) {
+                if (position != end) {
+                    return fail(ERROR_MALFORMED, tag);
+                }
+                if (bodyStart != -1 && fieldStart - bodyStart != declaredBodyLength) {
+                    return fail(ERROR_BODY_LENGTH, TAG_BODY_LENGTH);
+                }
+                int checksum = 0;
+                for (int i = offset; i < fieldStart; i++) {
+                    checksum += buffer.getByte(i) & 0xFF;
+                }
+                if ((checksum & 0xFF) != parseLong(buffer, valueStart, valueEnd)) {
+                    return fail(ERROR_CHECKSUM, tag);
+                }
+                break;
+            }
+
+            if (tag == TAG_BODY_LENGTH) {
+                declaredBodyLength = (int) parseLong(buffer, valueStart, valueEnd);
+                bodyStart = position;
+            } else if (!onField(tag, buffer, valueStart, valueEnd)) {
+                return false;
+            }
+        }
+
+        return buildCommand();
+    }
+
+    private boolean onField(final int tag, final DirectBuffer buffer, final int valueStart, final int valueEnd) {
+
+        switch (tag) {
+            case TAG_MSG_TYPE:
+                if (valueEnd - valueStart != 1) {
+                    return fail(ERROR_UNSUPPORTED_MSG_TYPE, tag);
+                }
+                msgType = buffer.getByte(valueStart);
+                return true;
+
+            case TAG_ACCOUNT:
+                uid = parseLong(buffer, valueStart, valueEnd);
+                return present(FIELD_ACCOUNT, uid, tag);
+
+            case TAG_CL_ORD_ID:
+                orderId = parseLong(buffer, valueStart, valueEnd);
+                return present(FIELD_CL_ORD_ID, orderId, tag);
+
+            case TAG_ORIG_CL_ORD_ID:
+                origOrderId = parseLong(buffer, valueStart, valueEnd);
+                return present(FIELD_ORIG_CL_ORD_ID, origOrderId, tag);
+
+            case TAG_SIDE:
+                final byte side = valueEnd - valueStart == 1 ? buffer.getByte(valueStart) : 0;
+                if (side == '1') {
+                    action = OrderAction.BID;
+                } else if (side == '2') {
+                    action = OrderAction.ASK;
+                } else {
+                    return fail(ERROR_UNSUPPORTED_VALUE, tag);
+                }
+                fields |= FIELD_SIDE;
+                return true;
+
+            case TAG_ORDER_QTY:
+                size = parseLong(buffer, valueStart, valueEnd);
+                return present(FIELD_ORDER_QTY, size, tag);
+
+            case TAG_ORD_TYPE:
+                if (valueEnd - valueStart != 1) {
+                    return fail(ERROR_UNSUPPORTED_VALUE, tag);
+                }
+                ordType = buffer.getByte(valueStart);
+                fields |= FIELD_ORD_TYPE;
+                return true;
+
+            case TAG_TIME_IN_FORCE:
+                if (valueEnd - valueStart != 1) {
+                    return fail(ERROR_UNSUPPORTED_VALUE, tag);
+                }
+                timeInForce = buffer.getByte(valueStart);
+                return true;
+
+            case TAG_PRICE:
+                price = parsePrice(buffer, valueStart, valueEnd);
+                return present(FIELD_PRICE, price, tag);
+
+            case TAG_STOP_PX:
+                stopPrice = parsePrice(buffer, valueStart, valueEnd);
+                return present(FIELD_STOP_PX, stopPrice, tag);
+
+            case TAG_MAX_FLOOR:
+                displaySize = parseLong(buffer, valueStart, valueEnd);
+                return present(FIELD_MAX_FLOOR, displaySize, tag);
+
+            case TAG_MIN_QTY:
+                minQuantity = parseLong(buffer, valueStart, valueEnd);
+                return present(FIELD_MIN_QTY, minQuantity, tag);
+
+            case TAG_CXL_QTY:
+                cxlQuantity = parseLong(buffer, valueStart, valueEnd);
+                return present(FIELD_CXL_QTY, cxlQuantity, tag);
+
+            case TAG_EXEC_INST:
+                // multiple space-separated values
+                for (int i = valueStart; i < valueEnd; i++) {
+                    if (buffer.getByte(i) == '6') {
+                        postOnly = true;
+                    }
+                }
+                return true;
+
+            default:
+                // not relevant for order book
+                return true;
+        }
+    }
+
+    private boolean buildCommand() {
+
+        switch (msgType) {
+            case MSG_TYPE_NEW_ORDER_SINGLE:
+                if (!require(FIELD_CL_ORD_ID, TAG_CL_ORD_ID) || !require(FIELD_ACCOUNT, TAG_ACCOUNT)
+                        || !require(FIELD_SIDE, TAG_SIDE) || !require(FIELD_ORDER_QTY, TAG_ORDER_QTY)
+                        || !require(FIELD_ORD_TYPE, TAG_ORD_TYPE) || !require(FIELD_PRICE, TAG_PRICE)) {
+                    return false;
+                }
+                commandCode = COMMAND_PLACE_ORDER;
+                return resolveOrderType();
+
+            case MSG_TYPE_ORDER_CANCEL_REQUEST:
+                if (!require(FIELD_ORIG_CL_ORD_ID, TAG_ORIG_CL_ORD_ID) || !require(FIELD_ACCOUNT, TAG_ACCOUNT)) {
+                    return false;
+                }
+                commandCode = (fields & FIELD_CXL_QTY) != 0 ? COMMAND_REDUCE_ORDER : COMMAND_CANCEL_ORDER;
+                return true;
+
+            case MSG_TYPE_ORDER_CANCEL_REPLACE_REQUEST:
+                if (!require(FIELD_ORIG_CL_ORD_ID, TAG_ORIG_CL_ORD_ID) || !require(FIELD_ACCOUNT, TAG_ACCOUNT)
+                        || !require(FIELD_PRICE, TAG_PRICE)) {
+                    return false;
+                }
+                commandCode = COMMAND_MOVE_ORDER;
+                return true;
+
+            default:
+                return fail(ERROR_UNSUPPORTED_MSG_TYPE, TAG_MSG_TYPE);
+        }
+    }
+
+    private boolean resolveOrderType() {
+
+        final boolean resting = timeInForce == 0 || timeInForce == '0' || timeInForce == '1';
+
+        switch (ordType) {
+            case '2':
+                if (resting) {
+                    orderType = (fields & FIELD_MAX_FLOOR) != 0 ? ORDER_TYPE_ICEBERG : ORDER_TYPE_GTC;
+                } else if (timeInForce == '3') {
+                    orderType = ORDER_TYPE_IOC;
+                } else if (timeInForce == '4') {
+                    orderType = ORDER_TYPE_FOK;
+                } else {
+                    return fail(ERROR_UNSUPPORTED_VALUE, TAG_TIME_IN_FORCE);
+                }
+                break;
+
+            case '3':
+            case '4':
+                if (!resting) {
+                    return fail(ERROR_UNSUPPORTED_VALUE, TAG_TIME_IN_FORCE);
+                }
+                if (!require(FIELD_STOP_PX, TAG_STOP_PX)) {
+                    return false;
+                }
+                orderType = ordType == '3' ? ORDER_TYPE_STOP : ORDER_TYPE_STOP_LIMIT;
+                break;
+
+            default:
+                return fail(ERROR_UNSUPPORTED_VALUE, TAG_ORD_TYPE);
+        }
+
+        if ((fields & FIELD_MAX_FLOOR) != 0 && orderType != ORDER_TYPE_ICEBERG) {
+            return fail(ERROR_UNSUPPORTED_VALUE, TAG_MAX_FLOOR);
+        }
+        return true;
+    }
+
+    /**
+     * Write parsed command in IOrderBook layout
+     *
+     * @return command size
+     */
+    public int encodeCommand(final MutableDirectBuffer buffer, final int offset) {
+
+        switch (commandCode) {
+            case COMMAND_PLACE_ORDER:
+                final int cmdSize = CommandsEncoder.placeOrder(buffer, offset, orderType, orderId, uid, price, price, size, action, 0, getPlaceFlags(), minQuantity);
+                writeOrderTypeExtension(buffer, offset);
+                return cmdSize;
+
+            case COMMAND_CANCEL_ORDER:
+                return CommandsEncoder.cancel(buffer, offset, origOrderId, uid);
+
+            case COMMAND_REDUCE_ORDER:
+                return CommandsEncoder.reduce(buffer, offset, origOrderId, uid, cxlQuantity);
+
+            case COMMAND_MOVE_ORDER:
+                return CommandsEncoder.move(buffer, offset, origOrderId, uid, price);
+
+            default:
+                throw new IllegalStateException("No successfully parsed message");
+        }
+    }
+
+    /**
+     * Append parsed command to the batch
+     */
+    public void encodeCommand(final CommandsBatchEncoder batchEncoder) {
+
+        switch (commandCode) {
+            case COMMAND_PLACE_ORDER:
+                final int frameOffset = batchEncoder.getPosition();
+                batchEncoder.placeOrder(orderType, orderId, uid, price, price, size, action, 0, getPlaceFlags(), minQuantity);
+                writeOrderTypeExtension(batchEncoder.getBuffer(), frameOffset + BATCH_FRAME_OFFSET_COMMAND);
+                break;
+
+            case COMMAND_CANCEL_ORDER:
+                batchEncoder.cancel(origOrderId, uid);
+                break;
+
+            case COMMAND_REDUCE_ORDER:
+                batchEncoder.reduce(origOrderId, uid, cxlQuantity);
+                break;
+
+            case COMMAND_MOVE_ORDER:
+                batchEncoder.move(origOrderId, uid, price);
+                break;
+
+            default:
+                throw new IllegalStateException("No successfully parsed message");
+        }
+    }
+
+    private byte getPlaceFlags() {
+        byte flags = 0;
+        if (postOnly) {
+            flags |= PLACE_FLAG_POST_ONLY;
+        }
+        if ((fields & FIELD_MIN_QTY) != 0) {
+            flags |= PLACE_FLAG_MIN_QUANTITY;
+        }
+        return flags;
+    }
+
+    private void writeOrderTypeExtension(final MutableDirectBuffer buffer, final int offset) {
+        if (orderType == ORDER_TYPE_STOP || orderType == ORDER_TYPE_STOP_LIMIT) {
+            placeFlyweight.wrap(buffer, offset).stopPrice(stopPrice);
+        } else if (orderType == ORDER_TYPE_ICEBERG) {
+            placeFlyweight.wrap(buffer, offset).displaySize(displaySize);
+        }
+    }
+
+    /**
+     * @return IOrderBook.COMMAND_* code of parsed message, 0 if parsing failed
+     */
+    public byte getCommandCode() {
+        return commandCode;
+    }
+
+    public byte getMsgType() {
+        return msgType;
+    }
+
+    public byte getOrderType() {
+        return orderType;
+    }
+
+    public long getUid() {
+        return uid;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public long getOrigOrderId() {
+        return origOrderId;
+    }
+
+    public OrderAction getAction() {
+        return action;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    public short getError() {
+        return error;
+    }
+
+    /**
+     * @return tag of the field that caused an error
+     */
+    public int getErrorTag() {
+        return errorTag;
+    }
+
+    private void reset() {
+        fields = 0;
+        msgType = 0;
+        ordType = 0;
+        timeInForce = 0;
+        uid = 0;
+        orderId = 0;
+        origOrderId = 0;
+        action = null;
+        size = 0;
+        price = 0;
+        stopPrice = 0;
+        displaySize = 0;
+        minQuantity = 0;
+        cxlQuantity = 0;
+        postOnly = false;
+        commandCode = 0;
+        orderType = 0;
+        error = ERROR_NONE;
+        errorTag = 0;
+    }
+
+    private boolean present(final int field, final long value, final int tag) {
+        if (value < 0) {
+            return fail(ERROR_INVALID_VALUE, tag);
+        }
+        fields |= field;
+        return true;
+    }
+
+    private boolean require(final int field, final int tag) {
+        return (fields & field) != 0 || fail(ERROR_MISSING_FIELD, tag);
+    }
+
+    private boolean fail(final short error, final int tag) {
+        this.error = error;
+        this.errorTag = tag;
+        this.commandCode = 0;
+        return false;
+    }
+
+    /**
+     * @return non-negative value, or -1 if value is not a valid non-negative number
+     */
+    private static long parseLong(final DirectBuffer buffer, final int start, final int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = buffer.getByte(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parse decimal price into integer number of 10^-priceScale units
+     *
+     * @return non-negative value, or -1 if value is not a valid non-negative number (or has non-zero digits beyond scale)
+     */
+    private long parsePrice(final DirectBuffer buffer, final int start, final int end) {
+        long value = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            final byte b = buffer.getByte(i);
+            if (b == '.' && decimals == -1) {
+                decimals = 0;
+                continue;
+            }
+            final int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            if (decimals >= priceScale) {
+                // extra decimals are accepted only as trailing zeros
+                if (digit != 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+            if (decimals != -1) {
+                decimals++;
+            }
+        }
+        for (int i = Math.max(decimals, 0); i < priceScale; i++) {
+            if (value > Long.MAX_VALUE / 10) {
+                return -1;
+            }
+            value *= 10;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.gateway;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.IResponseHandler;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.util.BufferWriter;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import static exchange.core2.orderbook.gateway.FixCommandDecoder.SOH;
+
+/**
+ * Writes FIX ExecutionReport (8) and OrderCancelReject (9) messages for order book responses, does not allocate.<p>
+ * Order id is reported as both OrderID(37) and ClOrdID(11), symbol id as Symbol(55), uid as Account(1).
+ * Every trade produces two Trade reports (maker and taker), taker status is PartiallyFilled until command result.
+ * Command result report: New/PartiallyFilled/Filled for accepted place, Replaced for move and partial reduce,
+ * Canceled for cancel and for IOC/FOK remainder, Rejected (or OrderCancelReject) for failed command.
+ * Reduce event of other orders (self-trade prevention, expiration) is reported as Canceled with reduced quantity in CxlQty(84).<p>
+ * Reduce event is held until command result (to be merged into it), so {@link #flush()} should be called after every response.
+ * Session level fields (comp ids, sequence numbers, sending time) are not written.
+ */
+public final class FixExecutionReportEncoder implements IResponseHandler {
+
+    private static final String BEGIN_STRING = "8=FIX.4.4\u00019=";
+
+    private static final int TAG_AVG_PX = 6;
+    private static final int TAG_CUM_QTY = 14;
+    private static final int TAG_EXEC_ID = 17;
+    private static final int TAG_LAST_PX = 31;
+    private static final int TAG_LAST_QTY = 32;
+    private static final int TAG_ORDER_ID = 37;
+    private static final int TAG_ORD_STATUS = 39;
+    private static final int TAG_SYMBOL = 55;
+    private static final int TAG_TEXT = 58;
+    private static final int TAG_EXEC_TYPE = 150;
+    private static final int TAG_LEAVES_QTY = 151;
+    private static final int TAG_CXL_REJ_RESPONSE_TO = 434;
+
+    private static final byte MSG_TYPE_EXECUTION_REPORT = '8';
+    private static final byte MSG_TYPE_ORDER_CANCEL_REJECT = '9';
+
+    private static final byte EXEC_TYPE_NEW = '0';
+    private static final byte EXEC_TYPE_CANCELED = '4';
+    private static final byte EXEC_TYPE_REPLACED = '5';
+    private static final byte EXEC_TYPE_REJECTED = '8';
+    private static final byte EXEC_TYPE_TRADE = 'F';
+
+    private static final byte ORD_STATUS_NEW = '0';
+    private static final byte ORD_STATUS_PARTIALLY_FILLED = '1';
+    private static final byte ORD_STATUS_FILLED = '2';
+    private static final byte ORD_STATUS_CANCELED = '4';
+    private static final byte ORD_STATUS_REJECTED = '8';
+
+    private static final byte CXL_REJ_RESPONSE_TO_CANCEL = '1';
+    private static final byte CXL_REJ_RESPONSE_TO_REPLACE = '2';
+
+    // "8=FIX.4.4|9=" + body length + "|" and "10=NNN|"
+    private static final int MAX_FRAMING_SIZE = BEGIN_STRING.length() + 11 + 7;
+
+    private final BufferWriter writer;
+    private final long priceMultiplier;
+    private final int priceScale;
+
+    private final MutableDirectBuffer body = new ExpandableArrayBuffer(256);
+    private int bodyLength;
+
+    private long execId = 0;
+
+    // traded size of the current taker order
+    private long takerOrderId = -1;
+    private long takerTradedSize = 0;
+
+    // reduce event waiting for command result
+    private boolean reducePending = false;
+    private int reduceSymbolId;
+    private long reduceUid;
+    private long reduceOrderId;
+    private OrderAction reduceAction;
+    private long reduceSize;
+
+    /**
+     * @param writer     - output for FIX messages
+     * @param priceScale - number of decimals, FIX price is book price divided by 10^priceScale
+     */
+    public FixExecutionReportEncoder(final BufferWriter writer, final int priceScale) {
+        if (priceScale < 0 || priceScale > 18) {
+            throw new IllegalArgumentException("Unsupported price scale: " + priceScale);
+        }
+        this.writer = writer;
+        this.priceScale = priceScale;
+        long m = 1;
+        for (int i = 0; i < priceScale; i++) {
+            m *= 10;
+        }
+        this.priceMultiplier = m;
+    }
+
+    public BufferWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Write held reduce event report (if any)
+     */
+    public void flush() {
+        if (reducePending) {
+            reducePending = false;
+            writeCanceled(reduceSymbolId, reduceUid, reduceOrderId, reduceAction, reduceSize);
+        }
+    }
+
+    @Override
+    public void onOrderPlaceResult(short resultCode,
+                                   long time,
+                                   long correlationId,
+                                   int symbolId,
+                                   long uid,
+                                   long orderId,
+                                   OrderAction action,
+                                   boolean orderCompleted,
+                                   int userCookie,
+                                   long remainingSize) {
+
+        if (resultCode != IOrderBook.RESULT_SUCCESS) {
+            flush();
+            beginReport(MSG_TYPE_EXECUTION_REPORT, symbolId, uid, orderId, action);
+            appendChar(TAG_EXEC_TYPE, EXEC_TYPE_REJECTED);
+            appendChar(TAG_ORD_STATUS, ORD_STATUS_REJECTED);
+            appendLong(TAG_TEXT, resultCode);
+            completeMessage();
+
+        } else if (takeReduce(uid, orderId)) {
+            // IOC or FOK remainder
+            writeCanceled(symbolId, uid, orderId, action, reduceSize);
+
+        } else {
+            final long traded = tradedSize(orderId);
+            beginReport(MSG_TYPE_EXECUTION_REPORT, symbolId, uid, orderId, action);
+            appendChar(TAG_EXEC_TYPE, EXEC_TYPE_NEW);
+            appendChar(TAG_ORD_STATUS, orderCompleted ? ORD_STATUS_FILLED : traded != 0 ? ORD_STATUS_PARTIALLY_FILLED : ORD_STATUS_NEW);
+            appendLong(TAG_CUM_QTY, traded);
+            appendLong(TAG_LEAVES_QTY, orderCompleted ? 0L : remainingSize);
+            completeMessage();
+        }
+        resetTaker();
+    }
+
+    @Override
+    public void onOrderCancelResult(short resultCode,
+                                    long time,
+                                    long correlationId,
+                                    int symbolId,
+                                    long uid,
+                                    long orderId,
+                                    OrderAction action,
+                                    boolean orderCompleted) {
+
+        if (resultCode != IOrderBook.RESULT_SUCCESS) {
+            flush();
+            writeCancelReject(symbolId, uid, orderId, CXL_REJ_RESPONSE_TO_CANCEL, resultCode);
+        } else {
+            writeCanceled(symbolId, uid, orderId, action, takeReduce(uid, orderId) ? reduceSize : 0L);
+        }
+    }
+
+    @Override
+    public void onOrderMoveResult(short resultCode,
+                                  long time,
+                                  long correlationId,
+                                  int symbolId,
+                                  long uid,
+                                  long orderId,
+                                  OrderAction action,
+                                  boolean orderCompleted,
+                                  long remainingSize) {
+
+        if (resultCode != IOrderBook.RESULT_SUCCESS) {
+            flush();
+            writeCancelReject(symbolId, uid, orderId, CXL_REJ_RESPONSE_TO_REPLACE, resultCode);
+        } else {
+            flush();
+            final long traded = tradedSize(orderId);
+            beginReport(MSG_TYPE_EXECUTION_REPORT, symbolId, uid, orderId, action);
+            appendChar(TAG_EXEC_TYPE, EXEC_TYPE_REPLACED);
+            appendChar(TAG_ORD_STATUS, orderCompleted ? ORD_STATUS_FILLED : traded != 0 ? ORD_STATUS_PARTIALLY_FILLED : ORD_STATUS_NEW);
+            appendLong(TAG_LEAVES_QTY, orderCompleted ? 0L : remainingSize);
+            completeMessage();
+        }
+        resetTaker();
+    }
+
+    @Override
+    public void onOrderReduceResult(short resultCode,
+                                    long time,
+                                    long correlationId,
+                                    int symbolId,
+                                    long uid,
+                                    long orderId,
+                                    OrderAction action,
+                                    boolean orderCompleted,
+                                    long remainingSize) {
+
+        if (resultCode != IOrderBook.RESULT_SUCCESS) {
+            flush();
+            writeCancelReject(symbolId, uid, orderId, CXL_REJ_RESPONSE_TO_CANCEL, resultCode);
+            return;
+        }
+
+        final long reduced = takeReduce(uid, orderId) ? reduceSize : 0L;
+        if (orderCompleted) {
+            writeCanceled(symbolId, uid, orderId, action, reduced);
+        } else {
+            beginReport(MSG_TYPE_EXECUTION_REPORT, symbolId, uid, orderId, action);
+            appendChar(TAG_EXEC_TYPE, EXEC_TYPE_REPLACED);
+            appendChar(TAG_ORD_STATUS, ORD_STATUS_NEW);
+            appendLong(TAG_LEAVES_QTY, remainingSize);
+            appendLong(FixCommandDecoder.TAG_CXL_QTY, reduced);
+            completeMessage();
+        }
+    }
+
+    @Override
+    public void onTradeEvent(int symbolId,
+                             long time,
+                             long takerUid,
+                             long takerOrderId,
+                             OrderAction takerAction,
+                             long makerUid,
+                             long makerOrderId,
+                             long tradePrice,
+                             long reservedBidPrice,
+                             long tradeVolume,
+                             boolean makerOrderCompleted) {
+
+        if (this.takerOrderId != takerOrderId) {
+            this.takerOrderId = takerOrderId;
+            this.takerTradedSize = 0;
+        }
+        takerTradedSize += tradeVolume;
+
+        writeTrade(symbolId, makerUid, makerOrderId, takerAction.opposite(), tradePrice, tradeVolume,
+                makerOrderCompleted ? ORD_STATUS_FILLED : ORD_STATUS_PARTIALLY_FILLED);
+
+        writeTrade(symbolId, takerUid, takerOrderId, takerAction, tradePrice, tradeVolume, ORD_STATUS_PARTIALLY_FILLED);
+    }
+
+    @Override
+    public void onReduceEvent(int symbolId,
+                              long time,
+                              long uid,
+                              long orderId,
+                              OrderAction action,
+                              long reducedSize,
+                              long price,
+                              long reservedBidPrice) {
+
+        flush();
+        reducePending = true;
+        reduceSymbolId = symbolId;
+        reduceUid = uid;
+        reduceOrderId = orderId;
+        reduceAction = action;
+        reduceSize = reducedSize;
+    }
+
+    @Override
+    public void onOrdersExpireResult(short resultCode,
+                                     long time,
+                                     long correlationId,
+                                     int symbolId,
+                                     int expiredOrdersNum) {
+        flush();
+    }
+
+    @Override
+    public void onL2DataResult(short resultCode,
+                               long time,
+                               long correlationId,
+                               int symbolId,
+                               IL2Proxy l2dataProxy) {
+        // not an order entry response
+    }
+
+    private void writeTrade(final int symbolId,
+                            final long uid,
+                            final long orderId,
+                            final OrderAction action,
+                            final long price,
+                            final long volume,
+                            final byte ordStatus) {
+
+        beginReport(MSG_TYPE_EXECUTION_REPORT, symbolId, uid, orderId, action);
+        appendChar(TAG_EXEC_TYPE, EXEC_TYPE_TRADE);
+        appendChar(TAG_ORD_STATUS, ordStatus);
+        appendPrice(TAG_LAST_PX, price);
+        appendLong(TAG_LAST_QTY, volume);
+        appendPrice(TAG_AVG_PX, price);
+        completeMessage();
+    }
+
+    private void writeCanceled(final int symbolId,
+                               final long uid,
+                               final long orderId,
+                               final OrderAction action,
+                               final long reducedSize) {
+
+        beginReport(MSG_TYPE_EXECUTION_REPORT, symbolId, uid, orderId, action);
+        appendChar(TAG_EXEC_TYPE, EXEC_TYPE_CANCELED);
+        appendChar(TAG_ORD_STATUS, ORD_STATUS_CANCELED);
+        appendLong(TAG_LEAVES_QTY, 0L);
+        appendLong(FixCommandDecoder.TAG_CXL_QTY, reducedSize);
+        completeMessage();
+    }
+
+    private void writeCancelReject(final int symbolId,
+                                   final long uid,
+                                   final long orderId,
+                                   final byte responseTo,
+                                   final short resultCode) {
+
+        beginReport(MSG_TYPE_ORDER_CANCEL_REJECT, symbolId, uid, orderId, null);
+        appendLong(FixCommandDecoder.TAG_ORIG_CL_ORD_ID, orderId);
+        appendChar(TAG_ORD_STATUS, ORD_STATUS_REJECTED);
+        appendChar(TAG_CXL_REJ_RESPONSE_TO, responseTo);
+        appendLong(TAG_TEXT, resultCode);
+        completeMessage();
+    }
+
+    private boolean takeReduce(final long uid, final long orderId) {
+        if (reducePending && reduceOrderId == orderId && reduceUid == uid) {
+            reducePending = false;
+            return true;
+        }
+        flush();
+        return false;
+    }
+
+    private long tradedSize(final long orderId) {
+        return takerOrderId == orderId ? takerTradedSize : 0L;
+    }
+
+    private void resetTaker() {
+        takerOrderId = -1;
+        takerTradedSize = 0;
+    }
+
+    private void beginReport(final byte msgType,
+                             final int symbolId,
+                             final long uid,
+                             final long orderId,
+                             final OrderAction action) {
+
+        bodyLength = 0;
+        appendChar(FixCommandDecoder.TAG_MSG_TYPE, msgType);
+        appendLong(TAG_ORDER_ID, orderId);
+        appendLong(FixCommandDecoder.TAG_CL_ORD_ID, orderId);
+        appendLong(TAG_EXEC_ID, ++execId);
+        appendLong(FixCommandDecoder.TAG_ACCOUNT, uid);
+        appendLong(TAG_SYMBOL, symbolId);
+        if (action != null) {
+            appendChar(FixCommandDecoder.TAG_SIDE, action == OrderAction.BID ? (byte) '1' : (byte) '2');
+        }
+    }
+
+    private void appendTag(final int tag) {
+        bodyLength += body.putNaturalIntAscii(bodyLength, tag);
+        body.putByte(bodyLength++, (byte) '=');
+    }
+
+    private void appendChar(final int tag, final byte value) {
+        appendTag(tag);
+        body.putByte(bodyLength++, value);
+        body.putByte(bodyLength++, SOH);
+    }
+
+    private void appendLong(final int tag, final long value) {
+        appendTag(tag);
+        bodyLength += body.putLongAscii(bodyLength, value);
+        body.putByte(bodyLength++, SOH);
+    }
+
+    private void appendPrice(final int tag, final long price) {
+        appendTag(tag);
+        bodyLength += body.putLongAscii(bodyLength, price / priceMultiplier);
+        if (priceScale != 0) {
+            body.putByte(bodyLength++, (byte) '.');
+            long fraction = Math.abs(price % priceMultiplier);
+            for (int i = priceScale - 1; i >= 0; i--) {
+                body.putByte(bodyLength + i, (byte) ('0' + fraction % 10));
+                fraction /= 10;
+            }
+            bodyLength += priceScale;
+        }
+        body.putByte(bodyLength++, SOH);
+    }
+
+    private void completeMessage() {
+
+        writer.ensureCapacity(MAX_FRAMING_SIZE + bodyLength);
+
+        final MutableDirectBuffer buffer = writer.getBuffer();
+        final int start = writer.getWriterPosition();
+        int position = start;
+
+        position += buffer.putStringWithoutLengthAscii(position, BEGIN_STRING);
+        position += buffer.putNaturalIntAscii(position, bodyLength);
+        buffer.putByte(position++, SOH);
+        buffer.putBytes(position, body, 0, bodyLength);
+        position += bodyLength;
+
+        int checksum = 0;
+        for (int i = start; i < position; i++) {
+            checksum += buffer.getByte(i) & 0xFF;
+        }
+        checksum &= 0xFF;
+
+        buffer.putByte(position++, (byte) '1');
+        buffer.putByte(position++, (byte) '0');
+        buffer.putByte(position++, (byte) '=');
+        buffer.putByte(position++, (byte) ('0' + checksum / 100));
+        buffer.putByte(position++, (byte) ('0' + checksum / 10 % 10));
+        buffer.putByte(position++, (byte) ('0' + checksum % 10));
+        buffer.putByte(position++, SOH);
+
+        writer.skipBytes(position - start);
+    }
+}
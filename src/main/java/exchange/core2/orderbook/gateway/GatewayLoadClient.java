@@ -0,0 +1,311 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.gateway;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsBatchEncoder;
+import org.HdrHistogram.Histogram;
+import org.agrona.BitUtil;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Load client for {@link OrderBookGatewayServer}: every connection runs in its own thread and keeps up to window commands
+ * in flight (responses come in order of commands). Command mix: resting GTC orders around mid price,
+ * crossing IOC orders (trades with orders of other connections), cancels and moves of own orders.
+ * Round trip latency is measured from encoding command to reading its response.<p>
+ * main([connections] [commandsPerConnection] [window]) runs the client against embedded loopback server.
+ */
+public final class GatewayLoadClient {
+
+    private static final Logger log = LoggerFactory.getLogger(GatewayLoadClient.class);
+
+    private static final long HIGHEST_TRACKABLE_VALUE_NS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final long MID_PRICE = 10_000L;
+    private static final long UID_BASE = 1000L;
+
+    // enough for any command of the mix
+    private static final int MAX_COMMAND_FRAME_SIZE = 64;
+
+    private final InetSocketAddress address;
+    private final int connectionsNum;
+    private final int commandsPerConnection;
+    private final int window;
+
+    public GatewayLoadClient(final InetSocketAddress address,
+                             final int connectionsNum,
+                             final int commandsPerConnection,
+                             final int window) {
+
+        this.address = address;
+        this.connectionsNum = connectionsNum;
+        this.commandsPerConnection = commandsPerConnection;
+        this.window = window;
+    }
+
+    public Result run() throws InterruptedException {
+
+        final Worker[] workers = new Worker[connectionsNum];
+        final Thread[] threads = new Thread[connectionsNum];
+        final CountDownLatch startLatch = new CountDownLatch(1);
+
+        for (int i = 0; i < connectionsNum; i++) {
+            workers[i] = new Worker(i, startLatch);
+            threads[i] = new Thread(workers[i], "load-client-" + i);
+            threads[i].start();
+        }
+
+        final long startNs = System.nanoTime();
+        startLatch.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final long durationNs = System.nanoTime() - startNs;
+
+        final Histogram latency = new Histogram(HIGHEST_TRACKABLE_VALUE_NS, 3);
+        long responses = 0;
+        for (final Worker worker : workers) {
+            if (worker.failure != null) {
+                throw new IllegalStateException("Connection " + worker.index + " failed", worker.failure);
+            }
+            latency.add(worker.latency);
+            responses += worker.responses;
+        }
+
+        return new Result(responses, durationNs, latency);
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int index;
+        private final CountDownLatch startLatch;
+        private final long uid;
+        private final long orderIdBase;
+
+        private final Histogram latency = new Histogram(HIGHEST_TRACKABLE_VALUE_NS, 3);
+        private final long[] sendTimes = new long[window];
+
+        private final ByteBuffer output = ByteBuffer.allocateDirect(Math.max(window, 1) * MAX_COMMAND_FRAME_SIZE);
+        private final CommandsBatchEncoder encoder = new CommandsBatchEncoder(new UnsafeBuffer(output), 0);
+        private final ByteBuffer input = ByteBuffer.allocateDirect(OrderBookGatewayServer.DEFAULT_CONNECTION_BUFFER_SIZE);
+        private final UnsafeBuffer inputView = new UnsafeBuffer(input);
+
+        private long random;
+        private long responses = 0;
+        private Throwable failure;
+
+        private Worker(final int index, final CountDownLatch startLatch) {
+            this.index = index;
+            this.startLatch = startLatch;
+            this.uid = UID_BASE + index;
+            this.orderIdBase = (long) (index + 1) << 40;
+            this.random = 0x9E3779B97F4A7C15L * (index + 1);
+        }
+
+        @Override
+        public void run() {
+            try (SocketChannel channel = SocketChannel.open(address)) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                startLatch.await();
+                runCommands(channel);
+            } catch (final Exception ex) {
+                failure = ex;
+            }
+        }
+
+        private void runCommands(final SocketChannel channel) throws IOException {
+
+            long sent = 0;
+
+            while (responses < commandsPerConnection) {
+
+                encoder.reset();
+                while (sent < commandsPerConnection && sent - responses < window) {
+                    encodeCommand(sent);
+                    sendTimes[(int) (sent % window)] = System.nanoTime();
+                    sent++;
+                }
+
+                if (encoder.getLength() != 0) {
+                    output.limit(encoder.getLength());
+                    output.position(0);
+                    while (output.hasRemaining()) {
+                        channel.write(output);
+                    }
+                    output.clear();
+                }
+
+                if (channel.read(input) == -1) {
+                    throw new IOException("Connection closed by server");
+                }
+                readResponses();
+            }
+        }
+
+        private void readResponses() {
+
+            final int end = input.position();
+            int position = 0;
+            while (end - position >= BitUtil.SIZE_OF_INT) {
+                final int frameSize = BitUtil.SIZE_OF_INT + inputView.getInt(position);
+                if (end - position < frameSize) {
+                    break;
+                }
+                latency.recordValue(Math.min(System.nanoTime() - sendTimes[(int) (responses % window)], HIGHEST_TRACKABLE_VALUE_NS));
+                responses++;
+                position += frameSize;
+            }
+
+            input.limit(end);
+            input.position(position);
+            input.compact();
+        }
+
+        private void encodeCommand(final long seq) {
+
+            final int r = (int) (nextRandom() % 100);
+            final long offset = 1 + nextRandom() % 10;
+            final OrderAction action = (nextRandom() & 1) == 0 ? OrderAction.ASK : OrderAction.BID;
+            final long previousOrderId = orderIdBase + (seq == 0 ? 0 : nextRandom() % seq);
+
+            if (r < 40) {
+                // resting order
+                final long price = action == OrderAction.ASK ? MID_PRICE + offset : MID_PRICE - offset;
+                encoder.placeOrder(ORDER_TYPE_GTC, orderIdBase + seq, uid, price, price, 1 + offset, action, 0);
+            } else if (r < 60) {
+                // crossing order
+                final long price = action == OrderAction.BID ? MID_PRICE + offset : MID_PRICE - offset;
+                encoder.placeOrder(ORDER_TYPE_IOC, orderIdBase + seq, uid, price, price, offset, action, 0);
+            } else if (r < 95) {
+                encoder.cancel(previousOrderId, uid);
+            } else {
+                encoder.move(previousOrderId, uid, MID_PRICE + (action == OrderAction.ASK ? offset : -offset));
+            }
+        }
+
+        private long nextRandom() {
+            // xorshift, non-negative
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            return random >>> 1;
+        }
+    }
+
+    public static final class Result {
+
+        private final long responses;
+        private final long durationNs;
+        private final Histogram latency;
+
+        private Result(final long responses, final long durationNs, final Histogram latency) {
+            this.responses = responses;
+            this.durationNs = durationNs;
+            this.latency = latency;
+        }
+
+        public long getResponses() {
+            return responses;
+        }
+
+        public long getDurationNs() {
+            return durationNs;
+        }
+
+        /**
+         * @return round trip latency histogram (nanoseconds)
+         */
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        public long getThroughput() {
+            return durationNs == 0 ? 0 : responses * TimeUnit.SECONDS.toNanos(1) / durationNs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d commands, %d cmd/s, latency us: 50%%=%.1f 90%%=%.1f 99%%=%.1f 99.9%%=%.1f 99.99%%=%.1f max=%.1f",
+                    responses,
+                    getThroughput(),
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(90) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getValueAtPercentile(99.99) / 1000.0,
+                    latency.getMaxValue() / 1000.0);
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+
+        final int connectionsNum = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int commandsPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        final int window = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        final BufferWriter resultsBuffer = new BufferWriter(new ExpandableDirectByteBuffer(1 << 16), 0);
+        final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(new LoadTestSymbolSpecification(), false, resultsBuffer);
+
+        try (OrderBookGatewayServer server = new OrderBookGatewayServer(
+                orderBook, resultsBuffer, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+
+            server.start();
+            final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+
+            // warm-up
+            new GatewayLoadClient(address, connectionsNum, Math.min(commandsPerConnection, 100_000), window).run();
+
+            final Result result = new GatewayLoadClient(address, connectionsNum, commandsPerConnection, window).run();
+            log.info("{} connections, window {}: {}", connectionsNum, window, result);
+        }
+    }
+
+    private static final class LoadTestSymbolSpecification implements ISymbolSpecification {
+
+        @Override
+        public boolean isExchangeType() {
+            return true;
+        }
+
+        @Override
+        public int getSymbolId() {
+            return 1;
+        }
+
+        @Override
+        public int stateHash() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.gateway;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.util.BufferWriter;
+import org.agrona.BitUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.YieldingIdleStrategy;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Non-blocking TCP front end for single order book.<p>
+ * Clients send commands framed as IOrderBook.BATCH_FRAME_* ([int length][byte command code][command], little-endian),
+ * and receive one frame [int length][response] per command that produced a response
+ * (same framing as ResponseFastDecoder.readResults). Start auction does not produce a response.<p>
+ * IO thread owns the selector and all connections, matcher thread owns the order book.
+ * Threads exchange framed messages through two single-producer ring buffers, ring message type is the connection session id.
+ * Buffers are allocated per connection on accept, nothing is allocated per message.<p>
+ * Slow consumer (connection whose output buffer can not take next response) is disconnected.
+ * Connection is also closed if its command failed or produced response larger than ring buffer max message length.
+ * Triggered orders responses (if order book has separate triggered results buffer) are not streamed.
+ */
+public final class OrderBookGatewayServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderBookGatewayServer.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    public static final int DEFAULT_RING_BUFFER_CAPACITY = 1 << 22;
+    public static final int DEFAULT_CONNECTION_BUFFER_SIZE = 1 << 18;
+
+    // mass quote with QUOTE_MAX_ENTRIES fits
+    public static final int MAX_COMMAND_FRAME_LENGTH = 1 << 14;
+
+    private static final int MESSAGES_PER_POLL = 256;
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5_000L;
+
+    private final IOrderBook<?> orderBook;
+    private final BufferWriter resultsBuffer;
+    private final InetSocketAddress bindAddress;
+    private final int connectionBufferSize;
+
+    private final RingBuffer commandsRing;
+    private final RingBuffer responsesRing;
+
+    private final Connection[] connections;
+
+    private final IdleStrategy ioIdleStrategy = new YieldingIdleStrategy();
+    private final IdleStrategy matcherIdleStrategy = new YieldingIdleStrategy();
+
+    private final MessageHandler commandHandler = this::onCommand;
+    private final MessageHandler responseHandler = this::onResponse;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread ioThread;
+    private Thread matcherThread;
+
+    private volatile boolean running = false;
+
+    private int sessionGeneration = 0;
+
+    /**
+     * @param orderBook     - order book, used only by matcher thread after start
+     * @param resultsBuffer - results buffer of the order book
+     * @param bindAddress   - address to listen (port 0 - any free port)
+     */
+    public OrderBookGatewayServer(final IOrderBook<?> orderBook,
+                                  final BufferWriter resultsBuffer,
+                                  final InetSocketAddress bindAddress) {
+
+        this(orderBook, resultsBuffer, bindAddress, DEFAULT_MAX_CONNECTIONS, DEFAULT_RING_BUFFER_CAPACITY, DEFAULT_CONNECTION_BUFFER_SIZE);
+    }
+
+    /**
+     * @param ringBufferCapacity   - capacity of each ring buffer (power of 2), max response size is 1/8 of capacity
+     * @param connectionBufferSize - input and output buffer size of each connection
+     */
+    public OrderBookGatewayServer(final IOrderBook<?> orderBook,
+                                  final BufferWriter resultsBuffer,
+                                  final InetSocketAddress bindAddress,
+                                  final int maxConnections,
+                                  final int ringBufferCapacity,
+                                  final int connectionBufferSize) {
+
+        if (connectionBufferSize < MAX_COMMAND_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Connection buffer can not fit max command frame: " + connectionBufferSize);
+        }
+
+        this.orderBook = orderBook;
+        this.resultsBuffer = resultsBuffer;
+        this.bindAddress = bindAddress;
+        this.connectionBufferSize = connectionBufferSize;
+        this.connections = new Connection[maxConnections];
+
+        this.commandsRing = new OneToOneRingBuffer(new UnsafeBuffer(
+                ByteBuffer.allocateDirect(ringBufferCapacity + RingBufferDescriptor.TRAILER_LENGTH)));
+        this.responsesRing = new OneToOneRingBuffer(new UnsafeBuffer(
+                ByteBuffer.allocateDirect(ringBufferCapacity + RingBufferDescriptor.TRAILER_LENGTH)));
+    }
+
+    public synchronized void start() throws IOException {
+
+        if (running) {
+            throw new IllegalStateException("Already started");
+        }
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(bindAddress);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+
+        matcherThread = new Thread(this::runMatcher, "gateway-matcher");
+        ioThread = new Thread(this::runIo, "gateway-io");
+        matcherThread.start();
+        ioThread.start();
+
+        log.info("Gateway is listening on {}", serverChannel.getLocalAddress());
+    }
+
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        awaitTermination(ioThread);
+        awaitTermination(matcherThread);
+
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] != null) {
+                closeConnection(connections[i]);
+            }
+        }
+        serverChannel.close();
+        selector.close();
+    }
+
+    /**
+     * Wait for thread to stop, interruption is not propagated (interrupt flag is restored)
+     */
+    private static void awaitTermination(final Thread thread) {
+        try {
+            thread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("Thread {} did not stop in {} ms", thread.getName(), SHUTDOWN_TIMEOUT_MS);
+        }
+    }
+
+    /*
+     * Matcher thread
+     */
+
+    private void runMatcher() {
+        while (running) {
+            matcherIdleStrategy.idle(commandsRing.read(commandHandler, MESSAGES_PER_POLL));
+        }
+    }
+
+    private void onCommand(final int sessionId, final MutableDirectBuffer buffer, final int index, final int length) {
+
+        resultsBuffer.reset();
+        try {
+            orderBook.processCommands(buffer, index, length, System.nanoTime());
+        } catch (final IllegalArgumentException ex) {
+            // frame is shorter than its command - not executed
+            log.warn("Invalid command from session {}: {}", sessionId, ex.getMessage());
+            return;
+        } catch (final Exception ex) {
+            // response is incomplete, client would wait for it forever
+            log.error("Command from session {} failed, closing session", sessionId, ex);
+            publishResponse(sessionId, resultsBuffer.getBuffer(), 0, 0);
+            return;
+        }
+
+        final int responseSize = resultsBuffer.getWriterPosition() - resultsBuffer.getInitialPosition();
+        if (responseSize == 0) {
+            return;
+        }
+
+        if (responseSize > responsesRing.maxMsgLength()) {
+            log.warn("Response of {} bytes does not fit into ring buffer, closing session {}", responseSize, sessionId);
+            publishResponse(sessionId, resultsBuffer.getBuffer(), 0, 0);
+            return;
+        }
+
+        publishResponse(sessionId, resultsBuffer.getBuffer(), resultsBuffer.getInitialPosition(), responseSize);
+    }
+
+    /**
+     * Pass response to IO thread, empty response closes the session
+     */
+    private void publishResponse(final int sessionId, final MutableDirectBuffer buffer, final int index, final int length) {
+
+        // back pressure - wait for IO thread
+        while (!responsesRing.write(sessionId, buffer, index, length)) {
+            if (!running) {
+                return;
+            }
+            matcherIdleStrategy.idle();
+        }
+    }
+
+    /*
+     * IO thread
+     */
+
+    private void runIo() {
+        try {
+            while (running) {
+                int workCount = selector.selectNow();
+                if (workCount != 0) {
+                    processSelectedKeys();
+                }
+
+                // retry input that did not fit into commands ring before
+                for (int i = 0; i < connections.length; i++) {
+                    final Connection connection = connections[i];
+                    if (connection != null && connection.inputPending) {
+                        workCount += enqueueCommands(connection);
+                    }
+                }
+
+                workCount += responsesRing.read(responseHandler, MESSAGES_PER_POLL);
+
+                for (int i = 0; i < connections.length; i++) {
+                    final Connection connection = connections[i];
+                    if (connection != null && connection.output.position() != 0) {
+                        workCount += flush(connection);
+                    }
+                }
+
+                ioIdleStrategy.idle(workCount);
+            }
+        } catch (final IOException ex) {
+            log.error("Gateway IO failure", ex);
+            running = false;
+        }
+    }
+
+    private void processSelectedKeys() throws IOException {
+
+        final Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            final SelectionKey key = iterator.next();
+            iterator.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isAcceptable()) {
+                accept();
+            } else if (key.isReadable()) {
+                read((Connection) key.attachment());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        int slot = -1;
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] == null) {
+                slot = i;
+                break;
+            }
+        }
+
+        if (slot == -1) {
+            log.warn("Connections limit reached, rejecting {}", channel.getRemoteAddress());
+            channel.close();
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+        // session id is never reused by the next connection in the same slot, so late responses are dropped
+        sessionGeneration = (sessionGeneration + 1) & 0x7FFF;
+        final int sessionId = (sessionGeneration << 16) | (slot + 1);
+
+        final Connection connection = new Connection(channel, slot, sessionId, connectionBufferSize);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections[slot] = connection;
+
+        log.debug("Accepted connection {} from {}", sessionId, channel.getRemoteAddress());
+    }
+
+    private void read(final Connection connection) {
+
+        if (connection.inputPending) {
+            // commands ring is full, do not read more
+            return;
+        }
+
+        try {
+            if (connection.channel.read(connection.input) == -1) {
+                closeConnection(connection);
+                return;
+            }
+        } catch (final IOException ex) {
+            log.debug("Connection {} read failed: {}", connection.sessionId, ex.getMessage());
+            closeConnection(connection);
+            return;
+        }
+
+        enqueueCommands(connection);
+    }
+
+    /**
+     * Pass all complete frames of the input buffer to matcher thread
+     *
+     * @return number of frames
+     */
+    private int enqueueCommands(final Connection connection) {
+
+        final ByteBuffer input = connection.input;
+        final UnsafeBuffer inputView = connection.inputView;
+        final int end = input.position();
+
+        int position = 0;
+        int frames = 0;
+        connection.inputPending = false;
+
+        while (end - position >= BATCH_FRAME_OFFSET_COMMAND) {
+
+            final int frameLength = inputView.getInt(position + BATCH_FRAME_OFFSET_LENGTH);
+            final byte cmdCode = inputView.getByte(position + BATCH_FRAME_OFFSET_COMMAND_CODE);
+            if (frameLength < BitUtil.SIZE_OF_BYTE || frameLength > MAX_COMMAND_FRAME_LENGTH
+                    || cmdCode < COMMAND_PLACE_ORDER || cmdCode > COMMAND_START_AUCTION) {
+                log.warn("Invalid frame (length={} command={}) from connection {}", frameLength, cmdCode, connection.sessionId);
+                closeConnection(connection);
+                return frames;
+            }
+
+            final int frameSize = BATCH_FRAME_OFFSET_COMMAND_CODE + frameLength;
+            if (end - position < frameSize) {
+                break;
+            }
+
+            if (!commandsRing.write(connection.sessionId, inputView, position, frameSize)) {
+                connection.inputPending = true;
+                break;
+            }
+
+            position += frameSize;
+            frames++;
+        }
+
+        // keep incomplete frame at the beginning of the buffer
+        input.limit(end);
+        input.position(position);
+        input.compact();
+
+        return frames;
+    }
+
+    private void onResponse(final int sessionId, final MutableDirectBuffer buffer, final int index, final int length) {
+
+        final Connection connection = connections[(sessionId & 0xFFFF) - 1];
+        if (connection == null || connection.sessionId != sessionId) {
+            // connection is closed
+            return;
+        }
+
+        if (length == 0) {
+            // command failed or its response is too large - deliver previous responses and close
+            flush(connection);
+            closeConnection(connection);
+            return;
+        }
+
+        final int frameSize = BitUtil.SIZE_OF_INT + length;
+        if (connection.output.remaining() < frameSize) {
+            flush(connection);
+            if (connection.output.remaining() < frameSize) {
+                log.warn("Slow consumer, closing connection {}", sessionId);
+                closeConnection(connection);
+                return;
+            }
+        }
+
+        final int position = connection.output.position();
+        connection.outputView.putInt(position, length);
+        connection.outputView.putBytes(position + BitUtil.SIZE_OF_INT, buffer, index, length);
+        connection.output.position(position + frameSize);
+    }
+
+    private int flush(final Connection connection) {
+
+        final ByteBuffer output = connection.output;
+        output.flip();
+        try {
+            final int bytesWritten = connection.channel.write(output);
+            output.compact();
+            return bytesWritten;
+        } catch (final IOException ex) {
+            log.debug("Connection {} write failed: {}", connection.sessionId, ex.getMessage());
+            output.clear();
+            closeConnection(connection);
+            return 0;
+        }
+    }
+
+    private void closeConnection(final Connection connection) {
+
+        if (connections[connection.slot] == connection) {
+            connections[connection.slot] = null;
+        }
+        connection.inputPending = false;
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        try {
+            connection.channel.close();
+        } catch (final IOException ex) {
+            log.debug("Connection {} close failed: {}", connection.sessionId, ex.getMessage());
+        }
+    }
+
+    private static final class Connection {
+
+        private final SocketChannel channel;
+        private final int slot;
+        private final int sessionId;
+
+        private final ByteBuffer input;
+        private final UnsafeBuffer inputView;
+        private final ByteBuffer output;
+        private final UnsafeBuffer outputView;
+
+        private SelectionKey key;
+
+        // complete frames are waiting for space in commands ring
+        private boolean inputPending = false;
+
+        private Connection(final SocketChannel channel, final int slot, final int sessionId, final int bufferSize) {
+            this.channel = channel;
+            this.slot = slot;
+            this.sessionId = sessionId;
+            this.input = ByteBuffer.allocateDirect(bufferSize);
+            this.inputView = new UnsafeBuffer(input);
+            this.output = ByteBuffer.allocateDirect(bufferSize);
+            this.outputView = new UnsafeBuffer(output);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+
+/**
+ * Mutable taker state shared between the order book and buckets while matching a single command.
+ * One instance per order book, reset before every match (no allocations).
+ */
+final class NaiveMatchingContext {
+
+    private final byte selfTradePreventionMode;
+    private final byte matchingPolicy;
+
+    long takerUid;
+
+    // taker size removed without trade by self-trade prevention (decrement mode)
+    long takerReducedSize;
+
+    // remaining taker size should not be matched or placed
+    boolean takerCancelled;
+
+    // maker events (trades and reduces) which still fit into the result
+    int makerEventsLeft;
+
+    NaiveMatchingContext(final byte selfTradePreventionMode, final byte matchingPolicy) {
+        this.selfTradePreventionMode = selfTradePreventionMode;
+        this.matchingPolicy = matchingPolicy;
+    }
+
+    void reset(final long takerUid, final int makerEventsCapacity) {
+        this.takerUid = takerUid;
+        this.takerReducedSize = 0;
+        this.takerCancelled = false;
+        this.makerEventsLeft = makerEventsCapacity;
+    }
+
+    byte getSelfTradePreventionMode() {
+        return selfTradePreventionMode;
+    }
+
+    byte getMatchingPolicy() {
+        return matchingPolicy;
+    }
+
+    /**
+     * Take space for one maker event. When result has no space left, remaining taker size is cancelled.
+     *
+     * @return false if matching should be stopped
+     */
+    boolean reserveMakerEvent() {
+        if (makerEventsLeft == 0) {
+            takerCancelled = true;
+            return false;
+        }
+        makerEventsLeft--;
+        return true;
+    }
+
+    boolean isSelfTrade(final long makerUid) {
+        return selfTradePreventionMode != IOrderBook.SELF_TRADE_PREVENTION_NONE && makerUid == takerUid;
+    }
+}
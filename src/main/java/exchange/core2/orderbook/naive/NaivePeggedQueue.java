@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBookEventsSink;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+/**
+ * Pegged orders of one side and one peg type.
+ * Buckets are keyed by peg offset (bucket price) and linked from the most aggressive (smallest offset) to the least aggressive.
+ * Pegged orders are never moved: effective price of every bucket is evaluated by the order book from current best prices,
+ * so best price change does not require any action here.
+ */
+final class NaivePeggedQueue {
+
+    private final byte pegType;
+    private final IOrderBookEventsSink eventsHelper;
+    private final LongConsumer orderRemover;
+
+    // offset -> bucket, used for linking new offset levels only
+    private final NavigableMap<Long, OrdersBucketNaive> buckets = new TreeMap<>();
+
+    // head of offset-sorted buckets list
+    private OrdersBucketNaive bestBucket;
+
+    NaivePeggedQueue(final byte pegType,
+                     final IOrderBookEventsSink eventsHelper,
+                     final LongConsumer orderRemover) {
+        this.pegType = pegType;
+        this.eventsHelper = eventsHelper;
+        this.orderRemover = orderRemover;
+    }
+
+    byte getPegType() {
+        return pegType;
+    }
+
+    /**
+     * @return bucket with the smallest offset, or null if there are no orders
+     */
+    OrdersBucketNaive getBestBucket() {
+        return bestBucket;
+    }
+
+    OrdersBucketNaive getOrCreateBucket(final long pegOffset) {
+
+        final OrdersBucketNaive existing = buckets.get(pegOffset);
+        if (existing != null) {
+            return existing;
+        }
+
+        final OrdersBucketNaive bucket = new OrdersBucketNaive(pegOffset, eventsHelper, orderRemover);
+
+        // find neighbour with smaller offset
+        final Map.Entry<Long, OrdersBucketNaive> lower = buckets.lowerEntry(bucket.getPriceKey());
+        final OrdersBucketNaive prev = (lower == null) ? null : lower.getValue();
+        final OrdersBucketNaive next = (prev == null) ? bestBucket : prev.next;
+
+        bucket.prev = prev;
+        bucket.next = next;
+        if (prev == null) {
+            bestBucket = bucket;
+        } else {
+            prev.next = bucket;
+        }
+        if (next != null) {
+            next.prev = bucket;
+        }
+
+        buckets.put(bucket.getPriceKey(), bucket);
+        return bucket;
+    }
+
+    /**
+     * Remove empty bucket
+     *
+     * @param bucket - bucket to remove
+     */
+    void removeBucket(final OrdersBucketNaive bucket) {
+
+        final OrdersBucketNaive prev = bucket.prev;
+        final OrdersBucketNaive next = bucket.next;
+
+        if (prev == null) {
+            bestBucket = next;
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        bucket.prev = null;
+        bucket.next = null;
+
+        buckets.remove(bucket.getPriceKey());
+    }
+
+    Collection<OrdersBucketNaive> getBuckets() {
+        return buckets.values();
+    }
+
+    void validate() {
+
+        OrdersBucketNaive linked = bestBucket;
+        OrdersBucketNaive prev = null;
+        for (final OrdersBucketNaive bucket : buckets.values()) {
+            if (bucket != linked || bucket.prev != prev) {
+                throw new IllegalStateException("Inconsistent peg offset level " + bucket.getPrice());
+            }
+            if (bucket.getNumOrders() == 0) {
+                throw new IllegalStateException("Empty peg offset level " + bucket.getPrice());
+            }
+            bucket.forEachOrder(order -> {
+                if (order.pegType != pegType) {
+                    throw new IllegalStateException("Unexpected order in pegged queue: " + order);
+                }
+            });
+            bucket.validate();
+            prev = bucket;
+            linked = bucket.next;
+        }
+
+        if (linked != null) {
+            throw new IllegalStateException("Unexpected linked peg offset level " + linked.getPrice());
+        }
+    }
+}
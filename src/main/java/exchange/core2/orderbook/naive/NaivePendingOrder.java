@@ -17,6 +17,7 @@
 package exchange.core2.orderbook.naive;
 
 import exchange.core2.orderbook.IOrder;
+import exchange.core2.orderbook.IOrderBook;
 import exchange.core2.orderbook.OrderAction;
 
 import java.util.Objects;
@@ -33,6 +34,21 @@ public final class NaivePendingOrder implements IOrder {
                              long uid,
                              long timestamp) {
 
+        init(orderId, price, size, filled, reserveBidPrice, action, uid, timestamp);
+    }
+
+    /**
+     * (Re-)initialize order fields, used for reusing pooled instances
+     */
+    void init(long orderId,
+              long price,
+              long size,
+              long filled,
+              long reserveBidPrice,
+              OrderAction action,
+              long uid,
+              long timestamp) {
+
         this.orderId = orderId;
         this.price = price;
         this.size = size;
@@ -41,9 +57,17 @@ public final class NaivePendingOrder implements IOrder {
         this.action = action;
         this.uid = uid;
         this.timestamp = timestamp;
+        this.orderType = IOrderBook.ORDER_TYPE_GTC;
+        this.stopPrice = 0;
+        this.userCookie = 0;
+        this.displaySize = 0;
+        this.visibleSize = 0;
+        this.timerId = NO_TIMER;
+        this.pegType = IOrderBook.PEG_TYPE_NONE;
+        this.quote = false;
     }
 
-    private final long orderId;
+    private long orderId;
 
     private long price;
 
@@ -52,14 +76,41 @@ public final class NaivePendingOrder implements IOrder {
     private long filled;
 
     // new orders - reserved price for fast moves of GTC bid orders in exchange mode
-    private final long reserveBidPrice;
+    private long reserveBidPrice;
 
     // required for PLACE_ORDER only;
-    private final OrderAction action;
+    private OrderAction action;
+
+    private long uid;
+
+    private long timestamp;
+
+    // ORDER_TYPE_STOP or ORDER_TYPE_STOP_LIMIT while waiting in the trigger book, ORDER_TYPE_GTC when resting in the order book
+    byte orderType;
+    long stopPrice;
+    int userCookie; // provided with response when stop order is triggered
+
+    // iceberg orders only (displaySize=0 for regular orders)
+    long displaySize;
+    long visibleSize; // remaining size of displayed slice
+
+    // GTD orders only - expiration timer in the order book timer wheel
+    static final long NO_TIMER = -1L;
+    long timerId;
+
+    // pegged orders only - bucket price is peg offset, order price is updated with effective price when matched
+    byte pegType;
+
+    // quote orders only - placed by mass quote, owned by quote set of the same uid
+    boolean quote;
 
-    private final long uid;
+    // pro-rata allocation - managed by OrdersBucketNaive, valid within single match call only
+    long allocatedSize;
 
-    private final long timestamp;
+    // intrusive links - managed by OrdersBucketNaive
+    OrdersBucketNaive bucket;
+    NaivePendingOrder prev;
+    NaivePendingOrder next;
 
     @Override
     public long getPrice() {
@@ -92,6 +143,41 @@ public final class NaivePendingOrder implements IOrder {
         return size - filled;
     }
 
+    /**
+     * Size visible in the order book (can be matched before replenishment)
+     *
+     * @return remaining displayed slice for iceberg orders, unmatched size for regular orders
+     */
+    long getVisibleSize() {
+        return displaySize == 0 ? getUnmatchedSize() : visibleSize;
+    }
+
+    /**
+     * Start a new displayed slice (iceberg orders only)
+     */
+    void replenishVisibleSize() {
+        if (displaySize != 0) {
+            visibleSize = Math.min(displaySize, getUnmatchedSize());
+        }
+    }
+
+    /**
+     * Keep displayed slice within unmatched size after size reduction (iceberg orders only)
+     */
+    void clampVisibleSize() {
+        if (displaySize != 0) {
+            visibleSize = Math.min(visibleSize, getUnmatchedSize());
+        }
+    }
+
+    boolean isStopPending() {
+        return orderType != IOrderBook.ORDER_TYPE_GTC;
+    }
+
+    boolean isPegged() {
+        return pegType != IOrderBook.PEG_TYPE_NONE;
+    }
+
 
     @Override
     public long getUid() {
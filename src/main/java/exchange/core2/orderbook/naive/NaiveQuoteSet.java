@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+/**
+ * Quote orders of one user (market maker), replaced atomically by mass quote command.
+ * Only order ids are kept: quote orders can be matched, cancelled or moved individually,
+ * so every id is checked against order book index before use.
+ */
+final class NaiveQuoteSet {
+
+    long quoteSetId;
+
+    final long[] orderIds;
+    int size;
+
+    NaiveQuoteSet(final int capacity) {
+        this.orderIds = new long[capacity];
+    }
+}
@@ -16,43 +16,228 @@
 package exchange.core2.orderbook.naive;
 
 import exchange.core2.orderbook.*;
+import exchange.core2.orderbook.stats.IOrderBookCounters;
 import exchange.core2.orderbook.util.BufferWriter;
 import org.agrona.DirectBuffer;
+import org.agrona.DeadlineTimerWheel;
 import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Stream;
 
 public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements IOrderBook<S> {
 
     private static final Logger log = LoggerFactory.getLogger(OrderBookNaiveImpl.class);
 
+    private static final int ORDERS_POOL_MAX_SIZE = 65536;
+
+    // GTD orders expiration wheel: 2^20 timestamp units per tick by default (~1ms for nanosecond timestamps)
+    private static final long DEFAULT_EXPIRY_TICK_RESOLUTION = 1L << 20;
+    private static final int EXPIRY_TICKS_PER_WHEEL = 1024;
+
+    // budget is never negative
+    private static final long BUDGET_NOT_ENOUGH_LIQUIDITY = -1L;
+
+    // pegged orders can not be priced (no reference price)
+    private static final long NO_PEGGED_PRICE = Long.MIN_VALUE;
+
+    // no regular or pegged orders at the side
+    private static final long NO_BEST_PRICE = Long.MIN_VALUE;
+
+    // sorted price index, used for linking new price levels only
     private final NavigableMap<Long, OrdersBucketNaive> askBuckets;
     private final NavigableMap<Long, OrdersBucketNaive> bidBuckets;
 
+    // price -> bucket (no boxing)
+    private final LongObjectHashMap<OrdersBucketNaive> askLevels;
+    private final LongObjectHashMap<OrdersBucketNaive> bidLevels;
+
+    // heads of price-sorted buckets lists
+    private OrdersBucketNaive bestAskBucket;
+    private OrdersBucketNaive bestBidBucket;
+
     private final S symbolSpec;
 
-    private final LongObjectHashMap<NaivePendingOrder> idMap = new LongObjectHashMap<>();
+    // price grid and band (0 - not specified)
+    private final long tickSize;
+    private final long lotSize;
+    private final long priceBandLow;
+    private final long priceBandHigh;
+
+    // smallest price difference (one tick)
+    private final long priceStep;
+
+    private final LongObjectHashMap<NaivePendingOrder> idMap;
+
+    // released orders for reuse (order objects allocation is not required in steady state)
+    private final ArrayDeque<NaivePendingOrder> ordersPool;
+
+    // completed maker orders callback (single instance, to avoid capturing lambda allocation)
+    private final LongConsumer orderRemover = this::removeCompletedMakerOrder;
 
     private final boolean logDebug;
 
     private final BufferWriter resultsBuffer;
+
+    // L2 data records (always written into results buffer)
     private final OrderBookEventsHelper eventsHelper;
 
+    // command results (same as eventsHelper, or direct dispatch sink)
+    private final IOrderBookEventsSink eventsSink;
+    private final IOrderBookCounters counters;
+
+    // taker state for self-trade prevention
+    private final NaiveMatchingContext matchingContext;
+
+    // trigger books: buy stops are triggered by rising trade price, sell stops by falling trade price
+    private final NavigableMap<Long, OrdersBucketNaive> buyStopBuckets = new TreeMap<>();
+    private final NavigableMap<Long, OrdersBucketNaive> sellStopBuckets = new TreeMap<>(Collections.reverseOrder());
+
+    // first trigger levels (cached for O(1) trigger check)
+    private OrdersBucketNaive nextBuyStopBucket;
+    private OrdersBucketNaive nextSellStopBucket;
+
+    private long lastTradePrice;
+    private boolean hasLastTradePrice;
+
+    // GTD orders expiration timers (O(1) schedule and cancel), timerId -> order
+    // wheel time unit is nominal - wheel works in order timestamp units
+    private final DeadlineTimerWheel expiryTimerWheel;
+    private final LongObjectHashMap<NaivePendingOrder> expiryTimers = new LongObjectHashMap<>();
+
+    // expired orders callback (single instance, to avoid capturing lambda allocation)
+    private final DeadlineTimerWheel.TimerHandler expiryHandler = this::onOrderExpiry;
+    private int expiredOrdersNum;
+
+    // pegged orders queues, indexed by peg type - 1 (priced lazily, best price change costs nothing)
+    private final NaivePeggedQueue[] askPeggedQueues;
+    private final NaivePeggedQueue[] bidPeggedQueues;
+
+    // effective price of the queue returned by getBestPeggedQueue
+    private long bestPeggedPrice;
+
+    // L2 snapshot merge cursors (one per peg type)
+    private final OrdersBucketNaive[] l2PeggedCursors = new OrdersBucketNaive[PEG_TYPE_MARKET];
+
+    // maker levels scan cursors (see nextMakerLevel): regular level and one pegged cursor per peg type
+    private OrdersBucketNaive scanBucket;
+    private final OrdersBucketNaive[] scanPeggedCursors = new OrdersBucketNaive[PEG_TYPE_MARKET];
+
+    // level found by nextMakerLevel, its price and volume
+    private OrdersBucketNaive scanLevel;
+    private long scanPrice;
+    private long scanVolume;
+
+    // call auction phase - orders are collected without matching, order book can be crossed
+    private boolean auction;
+
+    // equilibrium calculated by calculateEquilibrium
+    private long auctionPrice;
+    private long auctionVolume;
+    private long auctionImbalance;
+
+    // uid -> quote orders of market maker (mass quote)
+    private final LongObjectHashMap<NaiveQuoteSet> quoteSets;
+
+    // mass quote processing scratch: resting previous quote orders, and reused order per entry
+    private final NaivePendingOrder[] previousQuoteOrders = new NaivePendingOrder[QUOTE_MAX_ENTRIES];
+    private final NaivePendingOrder[] quoteEntryOrders = new NaivePendingOrder[QUOTE_MAX_ENTRIES];
+
 
     public OrderBookNaiveImpl(final S symbolSpec,
                               final boolean logDebug,
                               final BufferWriter resultsBuffer) {
 
+        this(symbolSpec, logDebug, resultsBuffer, IOrderBookCounters.NONE);
+    }
+
+    public OrderBookNaiveImpl(final S symbolSpec,
+                              final boolean logDebug,
+                              final BufferWriter resultsBuffer,
+                              final IOrderBookCounters counters) {
+
+        this(symbolSpec, logDebug, resultsBuffer, counters, null);
+    }
+
+    public OrderBookNaiveImpl(final S symbolSpec,
+                              final boolean logDebug,
+                              final BufferWriter resultsBuffer,
+                              final IOrderBookCounters counters,
+                              final BufferWriter triggeredResultsBuffer) {
+
+        this(symbolSpec, logDebug, resultsBuffer, counters, triggeredResultsBuffer, OrderBookCapacityHints.NONE);
+    }
+
+    public OrderBookNaiveImpl(final S symbolSpec,
+                              final boolean logDebug,
+                              final BufferWriter resultsBuffer,
+                              final IOrderBookCounters counters,
+                              final BufferWriter triggeredResultsBuffer,
+                              final OrderBookCapacityHints capacityHints) {
+
+        this(symbolSpec, logDebug, resultsBuffer, counters, capacityHints, new OrderBookEventsHelper(
+                resultsBuffer, triggeredResultsBuffer, counters, logDebug, symbolSpec.getTradeEventsFormat(), symbolSpec.getTradeReportingMode()));
+    }
+
+    /**
+     * Direct dispatch mode: command results are delivered into provided events sink (e.g. OrderBookEventsDispatcher),
+     * only L2 data is written into results buffer.
+     */
+    public OrderBookNaiveImpl(final S symbolSpec,
+                              final boolean logDebug,
+                              final BufferWriter resultsBuffer,
+                              final IOrderBookCounters counters,
+                              final OrderBookCapacityHints capacityHints,
+                              final IOrderBookEventsSink eventsSink) {
+
         this.symbolSpec = symbolSpec;
+        this.tickSize = symbolSpec.getTickSize();
+        this.lotSize = symbolSpec.getLotSize();
+        this.priceBandLow = symbolSpec.getPriceBandLow();
+        this.priceBandHigh = symbolSpec.getPriceBandHigh();
+        this.priceStep = tickSize == 0 ? 1 : tickSize;
         this.askBuckets = new TreeMap<>();
         this.bidBuckets = new TreeMap<>(Collections.reverseOrder());
         this.logDebug = logDebug;
         this.resultsBuffer = resultsBuffer;
-        this.eventsHelper = new OrderBookEventsHelper(resultsBuffer, logDebug);
+        this.counters = counters;
+        this.eventsSink = eventsSink;
+        this.eventsHelper = eventsSink instanceof OrderBookEventsHelper
+                ? (OrderBookEventsHelper) eventsSink
+                : new OrderBookEventsHelper(resultsBuffer, counters, logDebug);
+        if (symbolSpec.isResponseHeaderEnabled()) {
+            eventsHelper.enableResponseHeader(symbolSpec.getSymbolId());
+        }
+        this.matchingContext = new NaiveMatchingContext(symbolSpec.getSelfTradePreventionMode(), symbolSpec.getMatchingPolicy());
+        this.askPeggedQueues = createPeggedQueues();
+        this.bidPeggedQueues = createPeggedQueues();
+
+        // pre-sized structures (no rehashing while loading large order book)
+        this.idMap = new LongObjectHashMap<>(capacityHints.getExpectedOrders());
+        this.askLevels = new LongObjectHashMap<>(capacityHints.getExpectedLevels());
+        this.bidLevels = new LongObjectHashMap<>(capacityHints.getExpectedLevels());
+        this.quoteSets = new LongObjectHashMap<>(capacityHints.getExpectedUsers());
+        final long expiryTickResolution = symbolSpec.getExpiryTickResolution();
+        this.expiryTimerWheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, 0L,
+                expiryTickResolution == 0 ? DEFAULT_EXPIRY_TICK_RESOLUTION : expiryTickResolution, EXPIRY_TICKS_PER_WHEEL);
+
+        final int poolSize = Math.min(capacityHints.getExpectedOrders(), ORDERS_POOL_MAX_SIZE);
+        this.ordersPool = new ArrayDeque<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            ordersPool.addFirst(new NaivePendingOrder(0L, 0L, 0L, 0L, 0L, OrderAction.ASK, 0L, 0L));
+        }
+    }
+
+    private NaivePeggedQueue[] createPeggedQueues() {
+        return new NaivePeggedQueue[]{
+                new NaivePeggedQueue(PEG_TYPE_PRIMARY, eventsSink, orderRemover),
+                new NaivePeggedQueue(PEG_TYPE_MIDPOINT, eventsSink, orderRemover),
+                new NaivePeggedQueue(PEG_TYPE_MARKET, eventsSink, orderRemover)};
     }
 
 
@@ -68,32 +253,134 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
         final OrderAction action = OrderAction.of(buffer.getByte(offset + PLACE_OFFSET_ACTION));
         if (logDebug) log.debug("orderType={} userCookie={}", orderType, userCookie);
 
-        resultsBuffer.appendByte(IOrderBook.COMMAND_PLACE_ORDER);
-        resultsBuffer.appendLong(uid);
-        resultsBuffer.appendLong(newOrderId);
-        resultsBuffer.appendInt(userCookie);
+        counters.onOrderPlaced();
+
+        eventsHelper.setTimestamp(timestamp);
+        eventsSink.beginPlaceOrder(uid, newOrderId, userCookie);
 
         final long size = buffer.getLong(offset + PLACE_OFFSET_SIZE);
-        if (size <= 0) {
+        if (size <= 0 || !isLotSizeValid(size)) {
             if (logDebug) log.debug("RESULT_INCORRECT_ORDER_SIZE");
-            eventsHelper.appendResultCode(IOrderBook.RESULT_INCORRECT_ORDER_SIZE, true, action, false);
+            eventsSink.appendResultCode(IOrderBook.RESULT_INCORRECT_ORDER_SIZE, true, action, false);
+            return;
+        }
+
+        long price = buffer.getLong(offset + PLACE_OFFSET_PRICE);
+
+        final short priceResult = validatePlacePrices(buffer, offset, orderType, price);
+        if (priceResult != RESULT_SUCCESS) {
+            if (logDebug) log.debug("incorrect price {}: {}", price, priceResult);
+            eventsSink.appendResultCode(priceResult, true, action, false);
+            return;
+        }
+        final long reserveBidPrice = buffer.getLong(offset + PLACE_OFFSET_RESERVED_BID_PRICE);
+
+        final byte flags = buffer.getByte(offset + PLACE_OFFSET_FLAGS);
+
+        if (auction && (flags != 0 || !isAuctionOrderType(orderType))) {
+            // immediate execution conditions can not be checked against crossed order book
+            if (logDebug) log.debug("RESULT_UNSUPPORTED_ORDER_TYPE (call auction phase)");
+            eventsSink.appendResultCode(IOrderBook.RESULT_UNSUPPORTED_ORDER_TYPE, true, action, false);
             return;
         }
 
+        if (flags != 0) {
+
+            if (!isPlaceFlagsSupported(orderType, flags)) {
+                if (logDebug) log.debug("RESULT_UNSUPPORTED_ORDER_TYPE (flags={})", flags);
+                eventsSink.appendResultCode(IOrderBook.RESULT_UNSUPPORTED_ORDER_TYPE, true, action, false);
+                return;
+            }
+
+            // post-only: O(1) check against best opposite price (regular and pegged orders)
+            final long bestOppositePrice = (flags & (PLACE_FLAG_POST_ONLY | PLACE_FLAG_POST_ONLY_SLIDE)) != 0
+                    ? bestMakerPrice(action.opposite())
+                    : NO_BEST_PRICE;
+            if (bestOppositePrice != NO_BEST_PRICE && isMarketable(action, price, bestOppositePrice)) {
+
+                if ((flags & PLACE_FLAG_POST_ONLY) != 0) {
+                    if (logDebug) log.debug("post-only order would take, best opposite price {}", bestOppositePrice);
+                    eventsSink.appendReduceEvent(price, reserveBidPrice, size);
+                    eventsSink.appendResultCode(RESULT_SUCCESS, true, action, true);
+                    return;
+                }
+
+                price = action == OrderAction.BID ? bestOppositePrice - priceStep : bestOppositePrice + priceStep;
+                if (logDebug) log.debug("post-only order repriced to {}", price);
+
+                final short slidePriceResult = price > 0 ? validatePrice(price) : RESULT_INCORRECT_PRICE;
+                if (slidePriceResult != RESULT_SUCCESS) {
+                    if (logDebug) log.debug("post-only order can not be repriced to {}: {}", price, slidePriceResult);
+                    eventsSink.appendResultCode(slidePriceResult, true, action, false);
+                    return;
+                }
+            }
+
+            if ((flags & PLACE_FLAG_MIN_QUANTITY) != 0) {
+                final long minQuantity = buffer.getLong(offset + IOrderBook.placeCommandSize(orderType));
+                if (minQuantity <= 0 || minQuantity > size) {
+                    if (logDebug) log.debug("RESULT_INCORRECT_ORDER_SIZE (min quantity)");
+                    eventsSink.appendResultCode(IOrderBook.RESULT_INCORRECT_ORDER_SIZE, true, action, false);
+                    return;
+                }
+
+                if (!isQuantityAvailable(action, price, size, uid, minQuantity)) {
+                    if (logDebug) log.debug("can not match min quantity {}", minQuantity);
+                    eventsSink.appendReduceEvent(price, reserveBidPrice, size);
+                    eventsSink.appendResultCode(RESULT_SUCCESS, true, action, true);
+                    return;
+                }
+            }
+        }
+
         switch (orderType) {
             case ORDER_TYPE_GTC:
-                newOrderPlaceGtc(buffer, offset, size, newOrderId, uid, action, timestamp);
-                return;
+                newOrderPlaceGtc(price, reserveBidPrice, size, newOrderId, uid, action, timestamp, 0);
+                break;
+            case ORDER_TYPE_ICEBERG:
+                final long displaySize = buffer.getLong(offset + PLACE_OFFSET_DISPLAY_SIZE);
+                if (displaySize <= 0 || !isLotSizeValid(displaySize)) {
+                    if (logDebug) log.debug("RESULT_INCORRECT_ORDER_SIZE (display size)");
+                    eventsSink.appendResultCode(IOrderBook.RESULT_INCORRECT_ORDER_SIZE, true, action, false);
+                    return;
+                }
+                // display size covering whole order is just a regular GTC order
+                newOrderPlaceGtc(price, reserveBidPrice, size, newOrderId, uid, action, timestamp, displaySize < size ? displaySize : 0);
+                break;
+            case ORDER_TYPE_GTD:
+                final long expireTimestamp = buffer.getLong(offset + PLACE_OFFSET_EXPIRE_TIMESTAMP);
+                if (expireTimestamp <= timestamp) {
+                    // already expired - can only match instantly
+                    newOrderMatchIoc(price, reserveBidPrice, size, uid, action);
+                } else {
+                    final NaivePendingOrder placedOrder = newOrderPlaceGtc(price, reserveBidPrice, size, newOrderId, uid, action, timestamp, 0);
+                    if (placedOrder != null) {
+                        scheduleExpiry(placedOrder, timestamp, expireTimestamp);
+                    }
+                }
+                break;
             case ORDER_TYPE_IOC:
-                newOrderMatchIoc(buffer, offset, size, action);
-                return;
+                newOrderMatchIoc(price, reserveBidPrice, size, uid, action);
+                break;
             case ORDER_TYPE_FOK_BUDGET:
-                newOrderMatchFokBudget(buffer, offset, size, action);
-                return;
+                newOrderMatchFokBudget(price, reserveBidPrice, size, uid, action);
+                break;
+            case ORDER_TYPE_STOP:
+            case ORDER_TYPE_STOP_LIMIT:
+                newStopOrder(buffer.getLong(offset + PLACE_OFFSET_STOP_PRICE), orderType, price, reserveBidPrice, size, newOrderId, uid, userCookie, action, timestamp);
+                break;
+            case ORDER_TYPE_PEGGED:
+                newPeggedOrder(buffer.getByte(offset + PLACE_OFFSET_PEG_TYPE), buffer.getLong(offset + PLACE_OFFSET_PEG_OFFSET), price, reserveBidPrice, size, newOrderId, uid, action, timestamp);
+                break;
             // TODO IOC_BUDGET and FOK support
             default:
                 if (logDebug) log.debug("RESULT_UNSUPPORTED_ORDER_TYPE");
-                eventsHelper.appendResultCode(IOrderBook.RESULT_UNSUPPORTED_ORDER_TYPE, true, action, false);
+                eventsSink.appendResultCode(IOrderBook.RESULT_UNSUPPORTED_ORDER_TYPE, true, action, false);
+                return;
+        }
+
+        if (isStopOrderTriggered()) {
+            triggerStopOrders();
         }
     }
 
@@ -101,32 +388,32 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
     /**
      * Place GTC order
      *
-     * @param buffer
-     * @param offset
+     * @param price
+     * @param reserveBidPrice
      * @param size
      * @param newOrderId
      * @param uid
      * @param action
      * @param timestamp
+     * @param displaySize - iceberg display size (0 for regular orders)
+     * @return order placed into the order book, or null if nothing was placed
      */
-    private void newOrderPlaceGtc(final DirectBuffer buffer,
-                                  final int offset,
+    private NaivePendingOrder newOrderPlaceGtc(final long price,
+                                  final long reserveBidPrice,
                                   final long size,
                                   final long newOrderId,
                                   final long uid,
                                   final OrderAction action,
-                                  final long timestamp) {
-
-        final long price = buffer.getLong(offset + PLACE_OFFSET_PRICE);
-        final long reserveBidPrice = buffer.getLong(offset + PLACE_OFFSET_RESERVED_BID_PRICE);
+                                  final long timestamp,
+                                  final long displaySize) {
 
         if (logDebug) {
             log.debug("action={} price={} size={} reserveBidPrice={} newOrderId={} uid={}", action, price, size, reserveBidPrice, newOrderId, uid);
         }
 
         // check if order is marketable (if there are opposite matching orders)
-        final SortedMap<Long, OrdersBucketNaive> subTree = subtreeForMatching(action, price);
-        final long filledSize = tryMatchInstantly(size, reserveBidPrice, subTree, 0);
+        matchingContext.reset(uid, eventsSink.getMakerEventsCapacity());
+        final long filledSize = tryMatchInstantly(action, size, reserveBidPrice, price, 0);
 
 
         final boolean completed = (filledSize == size);
@@ -134,117 +421,353 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
         if (completed) {
             if (logDebug) log.debug("completed");
             // order was matched completely - nothing to place - can just return
-            eventsHelper.appendResultCode(RESULT_SUCCESS, true, action, false);
-            return;
+            eventsSink.appendResultCode(RESULT_SUCCESS, true, action, false);
+            return null;
         }
 
         final long nonMatchedSize = size - filledSize;
+        final long selfTradeReducedSize = matchingContext.takerReducedSize;
+
+        if (matchingContext.takerCancelled || selfTradeReducedSize == nonMatchedSize) {
+            // remaining size cancelled by self-trade prevention - nothing to place
+            eventsSink.appendReduceEvent(price, reserveBidPrice, nonMatchedSize);
+            eventsSink.appendResultCode(RESULT_SUCCESS, true, action, true);
+            return null;
+        }
 
         if (idMap.containsKey(newOrderId)) {
             // duplicate order id - can match, but can not place - reject it
-            eventsHelper.appendReduceEvent(price, reserveBidPrice, nonMatchedSize);
-            eventsHelper.appendResultCode(RESULT_SUCCESS, true, action, true);
+            eventsSink.appendReduceEvent(price, reserveBidPrice, nonMatchedSize);
+            eventsSink.appendResultCode(RESULT_SUCCESS, true, action, true);
 
             log.warn("reject duplicate order id: {}", newOrderId);
-            return;
+            return null;
         }
 
         // normally placing regular GTC limit order
-        final NaivePendingOrder orderRecord = new NaivePendingOrder(
+        final NaivePendingOrder orderRecord = newOrderRecord(
                 newOrderId,
                 price,
-                size,
+                size - selfTradeReducedSize,
                 filledSize,
                 reserveBidPrice,
                 action,
                 uid,
                 timestamp);
 
+        if (displaySize != 0) {
+            orderRecord.displaySize = displaySize;
+            orderRecord.replenishVisibleSize();
+        }
+
         if (logDebug) log.debug("placing into order book: {}", orderRecord);
 
-        getBucketsByAction(action)
-                .computeIfAbsent(price, p -> new OrdersBucketNaive(p, eventsHelper, idMap::remove))
-                .put(orderRecord);
+        final OrdersBucketNaive bucket = getOrCreateBucket(action, price);
+
+        bucket.put(orderRecord);
+        counters.onBucketDepth(bucket.getNumOrders());
 
         idMap.put(newOrderId, orderRecord);
 
-        resultsBuffer.appendLong(nonMatchedSize);
+        if (selfTradeReducedSize != 0) {
+            eventsSink.appendReduceEvent(price, reserveBidPrice, selfTradeReducedSize);
+        }
+
+        eventsSink.appendRemainingSize(nonMatchedSize - selfTradeReducedSize);
 
-        eventsHelper.appendResultCode(RESULT_SUCCESS, false, action, false);
+        eventsSink.appendResultCode(RESULT_SUCCESS, false, action, selfTradeReducedSize != 0);
 
         if (logDebug) log.debug("placed maker order: {}", orderRecord);
+
+        return orderRecord;
+    }
+
+    private void scheduleExpiry(final NaivePendingOrder order, final long timestamp, final long expireTimestamp) {
+
+        if (expiryTimerWheel.timerCount() == 0) {
+            // re-anchor idle wheel, so expireOrders does not have to catch up ticks from the past
+            expiryTimerWheel.resetStartTime(timestamp);
+        }
+
+        final long timerId = expiryTimerWheel.scheduleTimer(expireTimestamp);
+        order.timerId = timerId;
+        expiryTimers.put(timerId, order);
     }
 
     /**
      * Match IoC order
      *
-     * @param buffer
-     * @param offset
+     * @param price
+     * @param reserveBidPrice
      * @param size
+     * @param uid
      * @param action
      */
-    private void newOrderMatchIoc(final DirectBuffer buffer,
-                                  final int offset,
+    private void newOrderMatchIoc(final long price,
+                                  final long reserveBidPrice,
                                   final long size,
+                                  final long uid,
                                   final OrderAction action) {
 
-        final long price = buffer.getLong(offset + PLACE_OFFSET_PRICE);
-        final long reserveBidPrice = buffer.getLong(offset + PLACE_OFFSET_RESERVED_BID_PRICE);
-
         if (logDebug) log.debug("action={} price={} size={} reserveBidPrice={}", action, price, size, reserveBidPrice);
 
-        final SortedMap<Long, OrdersBucketNaive> subtree = subtreeForMatching(action, price);
-        final long filledSize = tryMatchInstantly(size, reserveBidPrice, subtree, 0);
+        matchingContext.reset(uid, eventsSink.getMakerEventsCapacity());
+        final long filledSize = tryMatchInstantly(action, size, reserveBidPrice, price, 0);
 
+        // includes size cancelled by self-trade prevention
         final long rejectedSize = size - filledSize;
 
         if (logDebug) log.debug("rejected size: {}", rejectedSize);
         if (rejectedSize != 0) {
             // the order was not matched completely - send reject for not-completed IoC order
-            eventsHelper.appendReduceEvent(price, reserveBidPrice, rejectedSize);
+            eventsSink.appendReduceEvent(price, reserveBidPrice, rejectedSize);
         }
 
-        eventsHelper.appendResultCode(RESULT_SUCCESS, true, action, rejectedSize != 0);
+        eventsSink.appendResultCode(RESULT_SUCCESS, true, action, rejectedSize != 0);
     }
 
     /**
      * Match FoK order (budget cap)
      *
-     * @param buffer
-     * @param offset
+     * @param price
+     * @param reserveBidPrice
      * @param size
+     * @param uid
      * @param action
      */
-    private void newOrderMatchFokBudget(final DirectBuffer buffer,
-                                        final int offset,
+    private void newOrderMatchFokBudget(final long price,
+                                        final long reserveBidPrice,
                                         final long size,
+                                        final long uid,
                                         final OrderAction action) {
 
-        final SortedMap<Long, OrdersBucketNaive> fullSubtree = (action == OrderAction.ASK) ? bidBuckets : askBuckets;
-
-        final Optional<Long> budget = checkBudgetToFill(size, fullSubtree);
-
-        final long price = buffer.getLong(offset + PLACE_OFFSET_PRICE);
-        final long reserveBidPrice = buffer.getLong(offset + PLACE_OFFSET_RESERVED_BID_PRICE);
+        final long budget = checkBudgetToFill(action, size);
 
         if (logDebug) log.debug("Budget calc: {} requested: {}", budget, price);
 
-        final boolean canMatch = budget.isPresent() && isBudgetLimitSatisfied(action, budget.get(), price);
+        final boolean canMatch = budget != BUDGET_NOT_ENOUGH_LIQUIDITY && isBudgetLimitSatisfied(action, budget, price);
 
+        final long rejectedSize;
         if (canMatch) {
-            // completely match the order
-            final long filled = tryMatchInstantly(size, reserveBidPrice, fullSubtree, 0);
+            // completely match the order (no price limit)
+            matchingContext.reset(uid, eventsSink.getMakerEventsCapacity());
+            final long filled = tryMatchInstantly(action, size, reserveBidPrice, noPriceLimit(action), 0);
 
-            if (filled != size) {
+            // self-trade prevention takes precedence over fill-or-kill condition
+            rejectedSize = size - filled;
+            if (rejectedSize != 0 && !matchingContext.takerCancelled && matchingContext.takerReducedSize == 0) {
                 throw new IllegalStateException("complete match is expected");
             }
 
         } else {
+            rejectedSize = size;
+        }
+
+        if (rejectedSize != 0) {
             // send reduce event if can not fill
-            eventsHelper.appendReduceEvent(price, reserveBidPrice, size);
+            eventsSink.appendReduceEvent(price, reserveBidPrice, rejectedSize);
+        }
+
+        eventsSink.appendResultCode(RESULT_SUCCESS, true, action, rejectedSize != 0);
+    }
+
+    /**
+     * Place stop order into trigger book (or execute it immediately if last trade price already crossed stop price)
+     *
+     * @param stopPrice
+     * @param orderType
+     * @param price
+     * @param reserveBidPrice
+     * @param size
+     * @param newOrderId
+     * @param uid
+     * @param userCookie
+     * @param action
+     * @param timestamp
+     */
+    private void newStopOrder(final long stopPrice,
+                              final byte orderType,
+                              final long price,
+                              final long reserveBidPrice,
+                              final long size,
+                              final long newOrderId,
+                              final long uid,
+                              final int userCookie,
+                              final OrderAction action,
+                              final long timestamp) {
+
+        if (!eventsSink.isTriggeredOrdersSupported()) {
+            if (logDebug) log.debug("RESULT_UNSUPPORTED_ORDER_TYPE (no triggered results buffer)");
+            eventsSink.appendResultCode(IOrderBook.RESULT_UNSUPPORTED_ORDER_TYPE, true, action, false);
+            return;
+        }
+
+        if (logDebug) log.debug("stop order: stopPrice={} orderType={} lastTradePrice={}", stopPrice, orderType, lastTradePrice);
+
+        if (hasLastTradePrice && isTriggered(action, stopPrice, lastTradePrice)) {
+            // already triggered
+            executeTriggeredOrder(orderType, price, reserveBidPrice, size, newOrderId, uid, action, timestamp);
+            return;
+        }
+
+        if (idMap.containsKey(newOrderId)) {
+            // duplicate order id - reject it
+            eventsSink.appendReduceEvent(price, reserveBidPrice, size);
+            eventsSink.appendResultCode(RESULT_SUCCESS, true, action, true);
+
+            log.warn("reject duplicate order id: {}", newOrderId);
+            return;
+        }
+
+        final NaivePendingOrder orderRecord = newOrderRecord(newOrderId, price, size, 0, reserveBidPrice, action, uid, timestamp);
+        orderRecord.orderType = orderType;
+        orderRecord.stopPrice = stopPrice;
+        orderRecord.userCookie = userCookie;
+
+        getOrCreateStopBucket(action, stopPrice).put(orderRecord);
+        idMap.put(newOrderId, orderRecord);
+
+        eventsSink.appendRemainingSize(size);
+        eventsSink.appendResultCode(RESULT_SUCCESS, false, action, false);
+    }
+
+    /**
+     * Place pegged order into pegged queue (never matched on placement - pegged orders can not cross the book)
+     *
+     * @param pegType
+     * @param pegOffset
+     * @param price
+     * @param reserveBidPrice
+     * @param size
+     * @param newOrderId
+     * @param uid
+     * @param action
+     * @param timestamp
+     */
+    private void newPeggedOrder(final byte pegType,
+                                final long pegOffset,
+                                final long price,
+                                final long reserveBidPrice,
+                                final long size,
+                                final long newOrderId,
+                                final long uid,
+                                final OrderAction action,
+                                final long timestamp) {
+
+        // exchange bids can not be priced above reserved bid price, which is not possible to guarantee for pegged orders
+        if (pegType < PEG_TYPE_PRIMARY || pegType > PEG_TYPE_MARKET || (action == OrderAction.BID && symbolSpec.isExchangeType())) {
+            if (logDebug) log.debug("RESULT_UNSUPPORTED_ORDER_TYPE (pegType={})", pegType);
+            eventsSink.appendResultCode(IOrderBook.RESULT_UNSUPPORTED_ORDER_TYPE, true, action, false);
+            return;
+        }
+
+        if (pegOffset < 0 || (tickSize != 0 && pegOffset % tickSize != 0)) {
+            if (logDebug) log.debug("RESULT_INCORRECT_PEG_OFFSET");
+            eventsSink.appendResultCode(IOrderBook.RESULT_INCORRECT_PEG_OFFSET, true, action, false);
+            return;
+        }
+
+        if (idMap.containsKey(newOrderId)) {
+            // duplicate order id - reject it
+            eventsSink.appendReduceEvent(price, reserveBidPrice, size);
+            eventsSink.appendResultCode(RESULT_SUCCESS, true, action, true);
+
+            log.warn("reject duplicate order id: {}", newOrderId);
+            return;
+        }
+
+        final NaivePendingOrder orderRecord = newOrderRecord(newOrderId, price, size, 0, reserveBidPrice, action, uid, timestamp);
+        orderRecord.pegType = pegType;
+
+        if (logDebug) log.debug("placing into pegged queue: {} pegType={} pegOffset={}", orderRecord, pegType, pegOffset);
+
+        final OrdersBucketNaive bucket = getPeggedQueue(action, pegType).getOrCreateBucket(pegOffset);
+        bucket.put(orderRecord);
+        counters.onBucketDepth(bucket.getNumOrders());
+
+        idMap.put(newOrderId, orderRecord);
+
+        eventsSink.appendRemainingSize(size);
+        eventsSink.appendResultCode(RESULT_SUCCESS, false, action, false);
+    }
+
+    private void executeTriggeredOrder(final byte orderType,
+                                       final long price,
+                                       final long reserveBidPrice,
+                                       final long size,
+                                       final long orderId,
+                                       final long uid,
+                                       final OrderAction action,
+                                       final long timestamp) {
+
+        if (orderType == ORDER_TYPE_STOP) {
+            newOrderMatchIoc(price, reserveBidPrice, size, uid, action);
+        } else {
+            newOrderPlaceGtc(price, reserveBidPrice, size, orderId, uid, action, timestamp, 0);
         }
+    }
+
+    private static boolean isTriggered(final OrderAction action, final long stopPrice, final long tradePrice) {
+        return action == OrderAction.BID ? tradePrice >= stopPrice : tradePrice <= stopPrice;
+    }
+
+    /**
+     * O(1) check if last trade price crossed any stop price
+     *
+     * @return true if at least one stop order should be triggered
+     */
+    private boolean isStopOrderTriggered() {
+        return hasLastTradePrice
+                && ((nextBuyStopBucket != null && lastTradePrice >= nextBuyStopBucket.getPrice())
+                || (nextSellStopBucket != null && lastTradePrice <= nextSellStopBucket.getPrice()));
+    }
+
+    /**
+     * Release triggered stop orders one by one (in trigger price and time order) and execute them.
+     * Trades of triggered orders can trigger more stop orders.
+     * Responses are written into triggeredResultsBuffer, triggering stops when there is no space for one more response.
+     */
+    private void triggerStopOrders() {
+
+        while (true) {
+
+            final OrdersBucketNaive bucket;
+            if (nextBuyStopBucket != null && lastTradePrice >= nextBuyStopBucket.getPrice()) {
+                bucket = nextBuyStopBucket;
+            } else if (nextSellStopBucket != null && lastTradePrice <= nextSellStopBucket.getPrice()) {
+                bucket = nextSellStopBucket;
+            } else {
+                return;
+            }
+
+            if (!eventsSink.hasTriggeredOrderCapacity()) {
+                if (logDebug) log.debug("no space for triggered order result, stop orders are released by next command");
+                return;
+            }
+
+            final NaivePendingOrder order = bucket.getFirstOrder();
 
-        eventsHelper.appendResultCode(RESULT_SUCCESS, true, action, !canMatch);
+            if (logDebug) log.debug("triggered stop order: {} lastTradePrice={}", order, lastTradePrice);
+
+            final byte orderType = order.orderType;
+            final long orderId = order.getOrderId();
+            final long uid = order.getUid();
+            final long price = order.getPrice();
+            final long reserveBidPrice = order.getReserveBidPrice();
+            final long size = order.getUnmatchedSize();
+            final OrderAction action = order.getAction();
+            final long timestamp = order.getTimestamp();
+            final int userCookie = order.userCookie;
+
+            // take it out of the trigger book (record can be reused by triggered GTC order)
+            removeFromBucket(order);
+            idMap.remove(orderId);
+            releaseOrder(order);
+
+            eventsSink.beginTriggeredOrder(uid, orderId, userCookie);
+            executeTriggeredOrder(orderType, price, reserveBidPrice, size, orderId, uid, action, timestamp);
+            eventsSink.completeTriggeredOrder();
+        }
     }
 
     private boolean isBudgetLimitSatisfied(final OrderAction orderAction, final long calculated, final long limit) {
@@ -254,20 +777,21 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
     /**
      * Check if budget can be filled
      *
-     * @param size
-     * @param matchingBuckets
-     * @return
+     * @param action - taker order action
+     * @param size   - taker order size
+     * @return budget required to fill the order, or BUDGET_NOT_ENOUGH_LIQUIDITY
      */
-    private Optional<Long> checkBudgetToFill(
-            long size,
-            final SortedMap<Long, OrdersBucketNaive> matchingBuckets) {
+    private long checkBudgetToFill(final OrderAction action,
+                                   long size) {
 
         long budget = 0;
 
-        for (final OrdersBucketNaive bucket : matchingBuckets.values()) {
+        final OrderAction makerAction = action.opposite();
+        beginMakerLevelsScan(makerAction);
+        while (nextMakerLevel(makerAction)) {
 
-            final long availableSize = bucket.getTotalVolume();
-            final long price = bucket.getPrice();
+            final long availableSize = scanVolume;
+            final long price = scanPrice;
 
             if (size > availableSize) {
                 size -= availableSize;
@@ -276,130 +800,495 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
             } else {
                 final long result = budget + size * price;
                 if (logDebug) log.debug("return {} * {} -> {}", price, size, result);
-                return Optional.of(result);
+                return result;
             }
         }
 
         if (logDebug) log.debug("not enough liquidity to fill size={}", size);
 
-        return Optional.empty();
-    }
-
-    private SortedMap<Long, OrdersBucketNaive> subtreeForMatching(final OrderAction action, final long price) {
-        return (action == OrderAction.ASK ? bidBuckets : askBuckets)
-                .headMap(price, true);
+        return BUDGET_NOT_ENOUGH_LIQUIDITY;
     }
 
     /**
-     * Match the order instantly to specified sorted buckets map
-     * Fully matching orders are removed from orderId index
-     * Should any trades occur - they sent to tradesConsumer
+     * Check if at least requested quantity can be matched instantly within price limit.
+     * Walks price levels aggregated volume from the best price (same levels order as matching, including pegged orders)
+     * and stops as soon as quantity is collected.
+     * Hidden iceberg reserves are counted, because matching replenishes iceberg slices within the level.
+     * With self-trade prevention levels containing taker uid orders are walked order by order in time priority,
+     * applying the same outcome as matching: own orders are skipped (cancel maker), stop matching (cancel taker/both)
+     * or reduce remaining taker size (decrement).
      *
-     * @param matchingBuckets - sorted buckets map
-     * @param filled          - current 'filled' value for the order
-     * @return new filled size
+     * @param action     - taker order action
+     * @param limitPrice - worst price taker can be matched with
+     * @param size       - taker order size
+     * @param uid        - taker uid
+     * @param quantity   - required quantity
+     * @return true if available
      */
-    private long tryMatchInstantly(final long takerSize,
-                                   final long reserveBidPriceTaker,
-                                   final SortedMap<Long, OrdersBucketNaive> matchingBuckets,
-                                   long filled) {
-
-        if (logDebug) log.debug("matchInstantly: takerSize={} filled={}", takerSize, filled);
-
-        if (matchingBuckets.size() == 0) {
-            return filled;
-        }
-
-        final Iterator<OrdersBucketNaive> iterator = matchingBuckets.values().iterator();
-
-        while (iterator.hasNext()) {
+    private boolean isQuantityAvailable(final OrderAction action,
+                                        final long limitPrice,
+                                        final long size,
+                                        final long uid,
+                                        final long quantity) {
 
-            final OrdersBucketNaive bucket = iterator.next();
-            final long sizeLeft = takerSize - filled;
+        final byte selfTradePreventionMode = matchingContext.getSelfTradePreventionMode();
 
-            if (logDebug) log.debug("trying to match sizeLeft={} at price {}", sizeLeft, bucket.getPrice());
+        long available = 0;
+        long remaining = size;
 
-            filled += bucket.match(
-                    sizeLeft,
-                    reserveBidPriceTaker);
+        final OrderAction makerAction = action.opposite();
+        beginMakerLevelsScan(makerAction);
+        while (nextMakerLevel(makerAction) && isMarketable(action, limitPrice, scanPrice)) {
 
-            // remove empty bucket
-            if (bucket.getTotalVolume() == 0) {
-                iterator.remove();
+            if (selfTradePreventionMode == SELF_TRADE_PREVENTION_NONE) {
+                available += scanVolume;
+                if (available >= quantity) {
+                    return true;
+                }
+                continue;
             }
 
-            if (filled == takerSize) {
-                // takerSize matched completely
-                break;
+            for (NaivePendingOrder order = scanLevel.getFirstOrder(); order != null; order = order.next) {
+
+                final long v = Math.min(remaining, order.getUnmatchedSize());
+
+                if (order.getUid() != uid) {
+                    available += v;
+                    if (available >= quantity) {
+                        return true;
+                    }
+                } else if (selfTradePreventionMode == SELF_TRADE_PREVENTION_CANCEL_TAKER
+                        || selfTradePreventionMode == SELF_TRADE_PREVENTION_CANCEL_BOTH) {
+                    return false;
+                } else if (selfTradePreventionMode != SELF_TRADE_PREVENTION_DECREMENT) {
+                    continue;
+                }
+
+                remaining -= v;
+                if (remaining == 0) {
+                    return false;
+                }
             }
         }
 
-        return filled;
+        return false;
     }
 
-    @Override
-    public void cancelOrder(DirectBuffer buffer, int offset) {
-
-        final long orderId = buffer.getLong(offset + CANCEL_OFFSET_ORDER_ID);
-        final long cmdUid = buffer.getLong(offset + CANCEL_OFFSET_UID);
+    /**
+     * Start maker levels scan (see nextMakerLevel)
+     *
+     * @param makerAction - maker orders action
+     */
+    private void beginMakerLevelsScan(final OrderAction makerAction) {
 
-        resultsBuffer.appendByte(IOrderBook.COMMAND_CANCEL_ORDER);
-        resultsBuffer.appendLong(cmdUid);
-        resultsBuffer.appendLong(orderId);
+        scanBucket = getBestBucket(makerAction);
 
-        final NaivePendingOrder order = idMap.get(orderId);
-        if (order == null || order.getUid() != cmdUid) {
-            // order already matched and removed from order book previously
-            eventsHelper.appendResultCode(
-                    RESULT_UNKNOWN_ORDER_ID,
-                    true,
-                    OrderAction.ASK, // arbitrary action, should be ignored
-                    false);
-            return;
+        final NaivePeggedQueue[] queues = getPeggedQueuesByAction(makerAction);
+        for (int i = 0; i < queues.length; i++) {
+            scanPeggedCursors[i] = queues[i].getBestBucket();
         }
+    }
 
-        // now can remove it
-        idMap.remove(orderId);
-
-        final NavigableMap<Long, OrdersBucketNaive> buckets = getBucketsByAction(order.getAction());
-        final long price = order.getPrice();
-        final OrdersBucketNaive ordersBucket = buckets.get(price);
+    /**
+     * Find next maker level in the same order as tryMatchInstantly consumes them, without changing the order book.
+     * Pegged levels are priced against regular levels which are not visited yet (as they are re-priced during matching),
+     * regular level has priority at the same price.
+     * Level, its price and unmatched volume (including hidden iceberg reserves) are stored into scanLevel, scanPrice and scanVolume.
+     *
+     * @param makerAction - maker orders action
+     * @return false if there are no more levels
+     */
+    private boolean nextMakerLevel(final OrderAction makerAction) {
+
+        final OrdersBucketNaive takerSideBest = getBestBucket(makerAction.opposite());
+        final OrdersBucketNaive bestBid = makerAction == OrderAction.BID ? scanBucket : takerSideBest;
+        final OrdersBucketNaive bestAsk = makerAction == OrderAction.ASK ? scanBucket : takerSideBest;
+
+        final NaivePeggedQueue[] queues = getPeggedQueuesByAction(makerAction);
+        int peggedIdx = -1;
+        long peggedPrice = 0;
+        for (int i = 0; i < queues.length; i++) {
+            final OrdersBucketNaive cursor = scanPeggedCursors[i];
+            if (cursor != null) {
+                final long price = peggedPrice(makerAction, queues[i].getPegType(), cursor.getPrice(), bestBid, bestAsk);
+                if (price != NO_PEGGED_PRICE && (peggedIdx == -1 || isBetterPrice(makerAction, price, peggedPrice))) {
+                    peggedIdx = i;
+                    peggedPrice = price;
+                }
+            }
+        }
 
-        // remove order and whole bucket if its empty
-        ordersBucket.remove(orderId);
-        if (ordersBucket.getTotalVolume() == 0) {
-            buckets.remove(price);
+        if (peggedIdx != -1 && (scanBucket == null || isBetterPrice(makerAction, peggedPrice, scanBucket.getPrice()))) {
+            final OrdersBucketNaive cursor = scanPeggedCursors[peggedIdx];
+            scanLevel = cursor;
+            scanPrice = peggedPrice;
+            scanVolume = cursor.getFullVolume();
+            scanPeggedCursors[peggedIdx] = cursor.next;
+            return true;
         }
 
-        // put reduce event
-        eventsHelper.appendReduceEvent(
-                order.getPrice(),
-                order.getReserveBidPrice(),
-                order.getUnmatchedSize());
+        if (scanBucket == null) {
+            return false;
+        }
 
-        // fill events header
-        eventsHelper.appendResultCode(
-                RESULT_SUCCESS,
-                true,
-                order.getAction(),
-                true);
+        scanLevel = scanBucket;
+        scanPrice = scanBucket.getPrice();
+        scanVolume = scanBucket.getFullVolume();
+        scanBucket = scanBucket.next;
+        return true;
     }
 
-    @Override
-    public void reduceOrder(final DirectBuffer buffer, final int offset) {
+    private boolean isLotSizeValid(final long size) {
+        return lotSize == 0 || size % lotSize == 0;
+    }
 
-        final long orderId = buffer.getLong(offset + REDUCE_OFFSET_ORDER_ID);
+    /**
+     * Check price against symbol price grid and price band
+     *
+     * @param price - order price
+     * @return RESULT_SUCCESS or error code
+     */
+    private short validatePrice(final long price) {
+        if (tickSize != 0 && price % tickSize != 0) {
+            return RESULT_INCORRECT_PRICE;
+        }
+        if ((priceBandLow != 0 && price < priceBandLow) || (priceBandHigh != 0 && price > priceBandHigh)) {
+            return RESULT_PRICE_OUT_OF_BAND;
+        }
+        return RESULT_SUCCESS;
+    }
+
+    /**
+     * Validate limit price and stop price of new order (budget orders and pegged orders have no limit price)
+     *
+     * @return RESULT_SUCCESS or error code
+     */
+    private short validatePlacePrices(final DirectBuffer buffer,
+                                      final int offset,
+                                      final byte orderType,
+                                      final long price) {
+
+        switch (orderType) {
+            case ORDER_TYPE_IOC_BUDGET:
+            case ORDER_TYPE_FOK_BUDGET:
+            case ORDER_TYPE_PEGGED:
+                return RESULT_SUCCESS;
+
+            case ORDER_TYPE_STOP:
+            case ORDER_TYPE_STOP_LIMIT:
+                final short stopPriceResult = validatePrice(buffer.getLong(offset + PLACE_OFFSET_STOP_PRICE));
+                return stopPriceResult != RESULT_SUCCESS ? stopPriceResult : validatePrice(price);
+
+            default:
+                return validatePrice(price);
+        }
+    }
+
+    private static boolean isPlaceFlagsSupported(final byte orderType, final byte flags) {
+
+        final boolean postOnly = (flags & PLACE_FLAG_POST_ONLY) != 0;
+        final boolean postOnlySlide = (flags & PLACE_FLAG_POST_ONLY_SLIDE) != 0;
+        final boolean minQuantity = (flags & PLACE_FLAG_MIN_QUANTITY) != 0;
+
+        if ((flags & ~(PLACE_FLAG_POST_ONLY | PLACE_FLAG_POST_ONLY_SLIDE | PLACE_FLAG_MIN_QUANTITY)) != 0) {
+            return false;
+        }
+
+        // post-only order never takes liquidity
+        if ((postOnly || postOnlySlide) && (minQuantity || (postOnly && postOnlySlide))) {
+            return false;
+        }
+
+        switch (orderType) {
+            case ORDER_TYPE_GTC:
+            case ORDER_TYPE_ICEBERG:
+            case ORDER_TYPE_GTD:
+                return true;
+            case ORDER_TYPE_IOC:
+                return !postOnly && !postOnlySlide;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isAuctionOrderType(final byte orderType) {
+        switch (orderType) {
+            case ORDER_TYPE_GTC:
+            case ORDER_TYPE_ICEBERG:
+            case ORDER_TYPE_GTD:
+            case ORDER_TYPE_STOP:
+            case ORDER_TYPE_STOP_LIMIT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private NaivePeggedQueue[] getPeggedQueuesByAction(final OrderAction action) {
+        return action == OrderAction.ASK ? askPeggedQueues : bidPeggedQueues;
+    }
+
+    private NaivePeggedQueue getPeggedQueue(final OrderAction action, final byte pegType) {
+        return getPeggedQueuesByAction(action)[pegType - 1];
+    }
+
+    /**
+     * Find pegged queue with the best effective price (O(1) - one check per peg type).
+     * Effective price of the returned queue is stored into bestPeggedPrice.
+     *
+     * @param action - pegged orders action
+     * @return pegged queue or null if there are no pegged orders which can be priced
+     */
+    private NaivePeggedQueue getBestPeggedQueue(final OrderAction action) {
+
+        NaivePeggedQueue bestQueue = null;
+        for (final NaivePeggedQueue queue : getPeggedQueuesByAction(action)) {
+            final OrdersBucketNaive bucket = queue.getBestBucket();
+            if (bucket == null) {
+                continue;
+            }
+            final long price = peggedPrice(action, queue.getPegType(), bucket.getPrice());
+            if (price != NO_PEGGED_PRICE && (bestQueue == null || isBetterPrice(action, price, bestPeggedPrice))) {
+                bestQueue = queue;
+                bestPeggedPrice = price;
+            }
+        }
+        return bestQueue;
+    }
+
+    /**
+     * Best price of regular and pegged orders
+     *
+     * @param makerAction - orders action
+     * @return best price, or NO_BEST_PRICE if there are no orders which can be matched
+     */
+    private long bestMakerPrice(final OrderAction makerAction) {
+
+        final OrdersBucketNaive bestBucket = getBestBucket(makerAction);
+        if (getBestPeggedQueue(makerAction) != null
+                && (bestBucket == null || isBetterPrice(makerAction, bestPeggedPrice, bestBucket.getPrice()))) {
+            return bestPeggedPrice;
+        }
+        return bestBucket != null ? bestBucket.getPrice() : NO_BEST_PRICE;
+    }
+
+    private long peggedPrice(final OrderAction action, final byte pegType, final long pegOffset) {
+        return peggedPrice(action, pegType, pegOffset, bestBidBucket, bestAskBucket);
+    }
+
+    /**
+     * Evaluate pegged order price from best prices of regular orders.
+     * Bid is capped by floor(midpoint), ask is floored by floor(midpoint)+1, so pegged orders never cross the book
+     * (or by opposite best price if there are no orders at the same side).
+     *
+     * @param action    - pegged order action
+     * @param pegType   - peg type
+     * @param pegOffset - offset from the reference price (away from the opposite side)
+     * @param bestBid   - best bid level of regular orders
+     * @param bestAsk   - best ask level of regular orders
+     * @return effective price or NO_PEGGED_PRICE if reference price is not available
+     */
+    private long peggedPrice(final OrderAction action,
+                             final byte pegType,
+                             final long pegOffset,
+                             final OrdersBucketNaive bestBid,
+                             final OrdersBucketNaive bestAsk) {
+
+        if (action == OrderAction.BID) {
+
+            final long price;
+            if (pegType == PEG_TYPE_PRIMARY && bestBid != null) {
+                price = bestBid.getPrice() - pegOffset;
+            } else if (pegType == PEG_TYPE_MIDPOINT && bestBid != null && bestAsk != null) {
+                price = midpointFloor(bestBid.getPrice(), bestAsk.getPrice()) - pegOffset;
+            } else if (pegType == PEG_TYPE_MARKET && bestAsk != null) {
+                price = bestAsk.getPrice() - pegOffset;
+            } else {
+                return NO_PEGGED_PRICE;
+            }
+
+            if (bestAsk == null) {
+                return price;
+            }
+            final long cap = bestBid == null ? bestAsk.getPrice() - priceStep : midpointFloor(bestBid.getPrice(), bestAsk.getPrice());
+            return Math.min(price, cap);
+
+        } else {
+
+            final long price;
+            if (pegType == PEG_TYPE_PRIMARY && bestAsk != null) {
+                price = bestAsk.getPrice() + pegOffset;
+            } else if (pegType == PEG_TYPE_MIDPOINT && bestBid != null && bestAsk != null) {
+                price = midpointFloor(bestBid.getPrice(), bestAsk.getPrice()) + priceStep + pegOffset;
+            } else if (pegType == PEG_TYPE_MARKET && bestBid != null) {
+                price = bestBid.getPrice() + pegOffset;
+            } else {
+                return NO_PEGGED_PRICE;
+            }
+
+            if (bestBid == null) {
+                return price;
+            }
+            final long floor = bestAsk == null ? bestBid.getPrice() + priceStep : midpointFloor(bestBid.getPrice(), bestAsk.getPrice()) + priceStep;
+            return Math.max(price, floor);
+        }
+    }
+
+    /**
+     * @return midpoint rounded down to the price grid
+     */
+    private long midpointFloor(final long bidPrice, final long askPrice) {
+        return bidPrice + (((askPrice - bidPrice) / priceStep) >> 1) * priceStep;
+    }
+
+    private static boolean isBetterPrice(final OrderAction action, final long price, final long otherPrice) {
+        return action == OrderAction.BID ? price > otherPrice : price < otherPrice;
+    }
+
+    private static long noPriceLimit(final OrderAction takerAction) {
+        return takerAction == OrderAction.ASK ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
+    private static boolean isMarketable(final OrderAction takerAction, final long limitPrice, final long makerPrice) {
+        return takerAction == OrderAction.ASK ? makerPrice >= limitPrice : makerPrice <= limitPrice;
+    }
+
+    /**
+     * Match the order instantly to opposite buckets, starting from the best price
+     * Pegged orders are priced at every step (regular orders have priority at the same price)
+     * Fully matching orders are removed from orderId index
+     * Should any trades occur - they sent to tradesConsumer
+     * Self-trade prevention is applied using matchingContext (should be reset by caller)
+     *
+     * @param takerAction          - taker order action
+     * @param takerSize            - taker order size
+     * @param reserveBidPriceTaker - taker reserved bid price
+     * @param limitPrice           - worst price taker can be matched with
+     * @param filled               - current 'filled' value for the order
+     * @return new filled size
+     */
+    private long tryMatchInstantly(final OrderAction takerAction,
+                                   final long takerSize,
+                                   final long reserveBidPriceTaker,
+                                   final long limitPrice,
+                                   long filled) {
+
+        if (logDebug) log.debug("matchInstantly: takerSize={} filled={}", takerSize, filled);
+
+        if (auction) {
+            // call phase - orders are collected without matching
+            return filled;
+        }
+
+        final OrderAction makerAction = takerAction.opposite();
+
+        while (true) {
+
+            // best prices can change after every step, so pegged orders are re-priced every time
+            final OrdersBucketNaive bestBucket = getBestBucket(makerAction);
+            final NaivePeggedQueue peggedQueue = getBestPeggedQueue(makerAction);
+            final boolean pegged = peggedQueue != null
+                    && (bestBucket == null || isBetterPrice(makerAction, bestPeggedPrice, bestBucket.getPrice()));
+
+            final OrdersBucketNaive bucket = pegged ? peggedQueue.getBestBucket() : bestBucket;
+            if (bucket == null) {
+                break;
+            }
+
+            final long tradePrice = pegged ? bestPeggedPrice : bucket.getPrice();
+            if (!isMarketable(takerAction, limitPrice, tradePrice)) {
+                break;
+            }
+
+            final long sizeLeft = takerSize - filled - matchingContext.takerReducedSize;
+
+            if (logDebug) log.debug("trying to match sizeLeft={} at price {} pegged={}", sizeLeft, tradePrice, pegged);
+
+            final long matched = pegged
+                    ? bucket.matchPegged(sizeLeft, reserveBidPriceTaker, matchingContext, tradePrice)
+                    : bucket.match(sizeLeft, reserveBidPriceTaker, matchingContext);
+
+            if (matched != 0) {
+                filled += matched;
+                lastTradePrice = tradePrice;
+                hasLastTradePrice = true;
+            }
+
+            // remove empty bucket
+            if (bucket.getNumOrders() == 0) {
+                if (pegged) {
+                    peggedQueue.removeBucket(bucket);
+                } else {
+                    removeBucket(makerAction, bucket);
+                }
+                counters.onLevelSwept();
+            }
+
+            if (filled + matchingContext.takerReducedSize == takerSize || matchingContext.takerCancelled) {
+                // takerSize matched completely (or rest of it was cancelled by self-trade prevention)
+                break;
+            }
+        }
+
+        eventsSink.completeLevelTrades();
+
+        return filled;
+    }
+
+    @Override
+    public void cancelOrder(DirectBuffer buffer, int offset) {
+
+        final long orderId = buffer.getLong(offset + CANCEL_OFFSET_ORDER_ID);
+        final long cmdUid = buffer.getLong(offset + CANCEL_OFFSET_UID);
+
+        eventsSink.beginCancelOrder(cmdUid, orderId);
+
+        final NaivePendingOrder order = idMap.get(orderId);
+        if (order == null || order.getUid() != cmdUid) {
+            // order already matched and removed from order book previously
+            eventsSink.appendResultCode(
+                    RESULT_UNKNOWN_ORDER_ID,
+                    true,
+                    OrderAction.ASK, // arbitrary action, should be ignored
+                    false);
+            return;
+        }
+
+        // now can remove it
+        idMap.remove(orderId);
+
+        // remove order and whole bucket if its empty
+        removeFromBucket(order);
+
+        // put reduce event
+        eventsSink.appendReduceEvent(
+                order.getPrice(),
+                order.getReserveBidPrice(),
+                order.getUnmatchedSize());
+
+        // fill events header
+        eventsSink.appendResultCode(
+                RESULT_SUCCESS,
+                true,
+                order.getAction(),
+                true);
+
+        releaseOrder(order);
+    }
+
+    @Override
+    public void reduceOrder(final DirectBuffer buffer, final int offset) {
+
+        final long orderId = buffer.getLong(offset + REDUCE_OFFSET_ORDER_ID);
         final long requestedReduceSize = buffer.getLong(offset + REDUCE_OFFSET_SIZE);
         final long cmdUid = buffer.getLong(offset + REDUCE_OFFSET_UID);
 
-        resultsBuffer.appendByte(IOrderBook.COMMAND_REDUCE_ORDER);
-        resultsBuffer.appendLong(cmdUid);
-        resultsBuffer.appendLong(orderId);
+        eventsSink.beginReduceOrder(cmdUid, orderId);
 
         final NaivePendingOrder order = idMap.get(orderId);
         if (order == null || order.getUid() != cmdUid) {
             // not found or previously matched, moved or cancelled
-            eventsHelper.appendResultCode(
+            eventsSink.appendResultCode(
                     RESULT_UNKNOWN_ORDER_ID,
                     true,
                     OrderAction.ASK, // arbitrary action, should be ignored
@@ -408,7 +1297,7 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
         }
 
         if (requestedReduceSize <= 0) {
-            eventsHelper.appendResultCode(
+            eventsSink.appendResultCode(
                     RESULT_INCORRECT_REDUCE_SIZE,
                     false,
                     OrderAction.ASK, // arbitrary action, should be ignored
@@ -422,11 +1311,10 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
         // always > 0
         final long actualReduceBy = Math.min(remainingSize, requestedReduceSize);
 
-        final NavigableMap<Long, OrdersBucketNaive> buckets = getBucketsByAction(order.getAction());
-        final OrdersBucketNaive ordersBucket = buckets.get(order.getPrice());
+        final OrdersBucketNaive ordersBucket = order.bucket;
 
         // send reduce event
-        eventsHelper.appendReduceEvent(
+        eventsSink.appendReduceEvent(
                 order.getPrice(),
                 order.getReserveBidPrice(),
                 actualReduceBy);
@@ -439,25 +1327,27 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
             idMap.remove(orderId);
 
             // canRemove order and whole bucket if it is empty
-            ordersBucket.remove(orderId);
-            if (ordersBucket.getTotalVolume() == 0) {
-                buckets.remove(order.getPrice());
-            }
+            removeFromBucket(order);
 
         } else {
 
+            final long visibleBefore = order.getVisibleSize();
             order.setSize(order.getSize() - actualReduceBy);
-            ordersBucket.reduceSize(actualReduceBy);
-            resultsBuffer.appendLong(order.getUnmatchedSize()); // remaining unmatched size
+            order.clampVisibleSize();
+            ordersBucket.reduceSize(visibleBefore - order.getVisibleSize(), actualReduceBy);
+            eventsSink.appendRemainingSize(order.getUnmatchedSize()); // remaining unmatched size
         }
 
         // fill events header
-        eventsHelper.appendResultCode(
+        eventsSink.appendResultCode(
                 RESULT_SUCCESS,
                 canRemove,
                 order.getAction(),
                 true);
 
+        if (canRemove) {
+            releaseOrder(order);
+        }
     }
 
     @Override
@@ -467,14 +1357,12 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
         final long newPrice = buffer.getLong(offset + MOVE_OFFSET_PRICE);
         final long cmdUid = buffer.getLong(offset + MOVE_OFFSET_UID);
 
-        resultsBuffer.appendByte(IOrderBook.COMMAND_MOVE_ORDER);
-        resultsBuffer.appendLong(cmdUid);
-        resultsBuffer.appendLong(orderId);
+        eventsSink.beginMoveOrder(cmdUid, orderId);
 
         final NaivePendingOrder order = idMap.get(orderId);
         if (order == null || order.getUid() != cmdUid) {
             // already matched, moved or cancelled
-            eventsHelper.appendResultCode(
+            eventsSink.appendResultCode(
                     RESULT_UNKNOWN_ORDER_ID,
                     true,
                     OrderAction.ASK, // arbitrary action, should be ignored
@@ -482,10 +1370,17 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
             return;
         }
 
+        final short priceResult = validatePrice(newPrice);
+        if (priceResult != RESULT_SUCCESS) {
+            eventsSink.appendRemainingSize(order.getUnmatchedSize());
+            eventsSink.appendResultCode(priceResult, false, order.getAction(), false);
+            return;
+        }
+
         // reserved price risk check for exchange bids
         if (order.getAction() == OrderAction.BID && symbolSpec.isExchangeType() && newPrice > order.getReserveBidPrice()) {
-            resultsBuffer.appendLong(order.getUnmatchedSize());
-            eventsHelper.appendResultCode(
+            eventsSink.appendRemainingSize(order.getUnmatchedSize());
+            eventsSink.appendResultCode(
                     RESULT_MOVE_FAILED_PRICE_OVER_RISK_LIMIT,
                     false,
                     order.getAction(),
@@ -493,43 +1388,337 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
             return;
         }
 
-        final long price = order.getPrice();
-        final NavigableMap<Long, OrdersBucketNaive> buckets = getBucketsByAction(order.getAction());
-        final OrdersBucketNaive bucket = buckets.get(price);
+        final OrderAction action = order.getAction();
 
-        // take order out of the original bucket and clean bucket if its empty
-        bucket.remove(orderId);
+        if (order.isPegged()) {
+            // pegged order has no own price
+            eventsSink.appendRemainingSize(order.getUnmatchedSize());
+            eventsSink.appendResultCode(RESULT_UNSUPPORTED_ORDER_TYPE, false, action, false);
+            return;
+        }
+
+        if (order.isStopPending()) {
+            // stop order is not in the order book yet - only its limit price is changed
+            order.setPrice(newPrice);
+            eventsSink.appendRemainingSize(order.getUnmatchedSize());
+            eventsSink.appendResultCode(RESULT_SUCCESS, false, action, false);
+            return;
+        }
+
+        if (!isMoveMarketable(action, newPrice)) {
+            // fast path - order can not be matched, relink it straight into the target level
+            final OrdersBucketNaive oldBucket = order.bucket;
+            final OrdersBucketNaive newBucket = getOrCreateBucket(action, newPrice);
+
+            oldBucket.remove(order);
+            order.setPrice(newPrice);
+            order.replenishVisibleSize(); // iceberg gets new displayed slice
+            newBucket.put(order);
+            counters.onBucketDepth(newBucket.getNumOrders());
 
-        if (bucket.getTotalVolume() == 0) {
-            buckets.remove(price);
+            if (oldBucket.getNumOrders() == 0) {
+                removeBucket(action, oldBucket);
+            }
+
+            eventsSink.appendRemainingSize(order.getUnmatchedSize()); // unmatched size
+            eventsSink.appendResultCode(RESULT_SUCCESS, false, action, false);
+            return;
         }
 
+        // take order out of the original bucket and clean bucket if its empty
+        removeFromBucket(order);
+
         order.setPrice(newPrice);
 
         // try match with new price
+        matchingContext.reset(cmdUid, eventsSink.getMakerEventsCapacity());
         final long filled = tryMatchInstantly(
+                action,
                 order.getSize(),
                 order.getReserveBidPrice(),
-                subtreeForMatching(order.getAction(), newPrice),
+                newPrice,
                 order.getFilled());
 
-        final boolean takerCompleted = (filled == order.getSize());
+        final long nonMatchedSize = order.getSize() - filled;
+        final long selfTradeReducedSize = matchingContext.takerReducedSize;
+
+        final boolean takerCompleted = nonMatchedSize == 0
+                || matchingContext.takerCancelled
+                || selfTradeReducedSize == nonMatchedSize;
+
+        final boolean hasReduceEvent;
 
         if (takerCompleted) {
-            // order was fully matched (100% marketable) - removing from order book
+            // order was fully matched (100% marketable) or cancelled by self-trade prevention - removing from order book
             idMap.remove(orderId);
 
+            hasReduceEvent = nonMatchedSize != 0;
+            if (hasReduceEvent) {
+                eventsSink.appendReduceEvent(newPrice, order.getReserveBidPrice(), nonMatchedSize);
+            }
+
+            releaseOrder(order);
+
         } else {
             order.setFilled(filled);
+            order.setSize(order.getSize() - selfTradeReducedSize);
+            order.replenishVisibleSize(); // iceberg gets new displayed slice
 
             // if not filled completely - put it into corresponding bucket
-            buckets.computeIfAbsent(newPrice, p -> new OrdersBucketNaive(p, eventsHelper, idMap::remove))
-                    .put(order);
+            final OrdersBucketNaive newBucket = getOrCreateBucket(action, newPrice);
+            newBucket.put(order);
+            counters.onBucketDepth(newBucket.getNumOrders());
 
-            resultsBuffer.appendLong(order.getSize() - filled); // unmatched size
+            hasReduceEvent = selfTradeReducedSize != 0;
+            if (hasReduceEvent) {
+                eventsSink.appendReduceEvent(newPrice, order.getReserveBidPrice(), selfTradeReducedSize);
+            }
+
+            eventsSink.appendRemainingSize(order.getUnmatchedSize()); // unmatched size
         }
 
-        eventsHelper.appendResultCode(RESULT_SUCCESS, takerCompleted, order.getAction(), false);
+        eventsSink.appendResultCode(RESULT_SUCCESS, takerCompleted, action, hasReduceEvent);
+
+        if (isStopOrderTriggered()) {
+            triggerStopOrders();
+        }
+    }
+
+    /**
+     * O(1) check if moved order can be matched, using cached best opposite price.
+     * Opposite pegged orders are priced from the book without moved order, so any of them requires regular (matching) path.
+     *
+     * @param action   - moved order action
+     * @param newPrice - new price
+     * @return false if matching can be skipped
+     */
+    private boolean isMoveMarketable(final OrderAction action, final long newPrice) {
+
+        if (auction) {
+            return false;
+        }
+
+        final OrderAction oppositeAction = action.opposite();
+        for (final NaivePeggedQueue queue : getPeggedQueuesByAction(oppositeAction)) {
+            if (queue.getBestBucket() != null) {
+                return true;
+            }
+        }
+
+        final OrdersBucketNaive bestOppositeBucket = getBestBucket(oppositeAction);
+        return bestOppositeBucket != null && isMarketable(action, newPrice, bestOppositeBucket.getPrice());
+    }
+
+    @Override
+    public void massQuote(final DirectBuffer buffer, final int offset, final long timestamp) {
+
+        final long uid = buffer.getLong(offset + QUOTE_OFFSET_UID);
+        final long quoteSetId = buffer.getLong(offset + QUOTE_OFFSET_QUOTE_SET_ID);
+        final long firstOrderId = buffer.getLong(offset + QUOTE_OFFSET_FIRST_ORDER_ID);
+        final int entriesNum = buffer.getInt(offset + QUOTE_OFFSET_ENTRIES_NUM);
+        final int entriesOffset = offset + QUOTE_OFFSET_END;
+
+        eventsHelper.setTimestamp(timestamp);
+        eventsSink.beginMassQuote(uid, quoteSetId);
+
+        // whole quote is validated before any change (atomic replacement)
+        final short validationResult = validateQuoteEntries(buffer, entriesOffset, entriesNum);
+        if (validationResult != RESULT_SUCCESS) {
+            if (logDebug) log.debug("mass quote rejected: {}", validationResult);
+            eventsSink.completeMassQuote(validationResult, 0, 0);
+            counters.onReject(validationResult);
+            return;
+        }
+
+        // previous quote orders still resting in the order book
+        final NaiveQuoteSet quoteSet = quoteSets.get(uid);
+        int previousNum = 0;
+        if (quoteSet != null) {
+            for (int i = 0; i < quoteSet.size; i++) {
+                final NaivePendingOrder order = idMap.get(quoteSet.orderIds[i]);
+                // order id can be reused by a regular order after quote order was matched or cancelled
+                if (order != null && order.quote && order.getUid() == uid) {
+                    previousQuoteOrders[previousNum++] = order;
+                }
+            }
+        }
+
+        // reuse previous order with the same action and price for every entry
+        for (int i = 0; i < entriesNum; i++) {
+            final int entryOffset = entriesOffset + i * QUOTE_ENTRY_OFFSET_END;
+            final long price = buffer.getLong(entryOffset + QUOTE_ENTRY_OFFSET_PRICE);
+            final long reserveBidPrice = buffer.getLong(entryOffset + QUOTE_ENTRY_OFFSET_RESERVED_BID_PRICE);
+            final byte actionCode = buffer.getByte(entryOffset + QUOTE_ENTRY_OFFSET_ACTION);
+
+            NaivePendingOrder reused = null;
+            for (int j = 0; j < previousNum; j++) {
+                final NaivePendingOrder order = previousQuoteOrders[j];
+                if (order != null
+                        && order.getPrice() == price
+                        && order.getReserveBidPrice() == reserveBidPrice
+                        && order.getAction().getCode() == actionCode) {
+                    reused = order;
+                    previousQuoteOrders[j] = null;
+                    break;
+                }
+            }
+            quoteEntryOrders[i] = reused;
+        }
+
+        // cancel previous orders which are not reused (before placing new ones, so they can not block post-only check)
+        int reduceEventsNum = 0;
+        for (int j = 0; j < previousNum; j++) {
+            final NaivePendingOrder order = previousQuoteOrders[j];
+            if (order != null) {
+                previousQuoteOrders[j] = null;
+                idMap.remove(order.getOrderId());
+                removeFromBucket(order);
+                eventsSink.appendMakerReduceEvent(order, true, order.getUnmatchedSize());
+                reduceEventsNum++;
+                releaseOrder(order);
+            }
+        }
+
+        // reduce reused orders in place (time priority is kept)
+        for (int i = 0; i < entriesNum; i++) {
+            final NaivePendingOrder order = quoteEntryOrders[i];
+            if (order != null) {
+                final long size = buffer.getLong(entriesOffset + i * QUOTE_ENTRY_OFFSET_END + QUOTE_ENTRY_OFFSET_SIZE);
+                final long reduceBy = order.getUnmatchedSize() - size;
+                if (reduceBy > 0) {
+                    order.setSize(order.getSize() - reduceBy);
+                    order.bucket.reduceSize(reduceBy);
+                    eventsSink.appendMakerReduceEvent(order, false, reduceBy);
+                    reduceEventsNum++;
+                }
+            }
+        }
+
+        final NaiveQuoteSet newQuoteSet = quoteSet != null ? quoteSet : new NaiveQuoteSet(QUOTE_MAX_ENTRIES);
+        newQuoteSet.quoteSetId = quoteSetId;
+        newQuoteSet.size = 0;
+
+        // place new orders, write one record per entry
+        for (int i = 0; i < entriesNum; i++) {
+            final int entryOffset = entriesOffset + i * QUOTE_ENTRY_OFFSET_END;
+            final long price = buffer.getLong(entryOffset + QUOTE_ENTRY_OFFSET_PRICE);
+            final long reserveBidPrice = buffer.getLong(entryOffset + QUOTE_ENTRY_OFFSET_RESERVED_BID_PRICE);
+            final long size = buffer.getLong(entryOffset + QUOTE_ENTRY_OFFSET_SIZE);
+            final OrderAction action = OrderAction.of(buffer.getByte(entryOffset + QUOTE_ENTRY_OFFSET_ACTION));
+
+            NaivePendingOrder order = quoteEntryOrders[i];
+            quoteEntryOrders[i] = null;
+
+            short entryResult = RESULT_SUCCESS;
+            if (order == null) {
+                entryResult = checkQuoteEntry(firstOrderId + i, price, action);
+                if (entryResult == RESULT_SUCCESS) {
+                    order = placeQuoteOrder(firstOrderId + i, price, reserveBidPrice, size, action, uid, timestamp);
+                }
+            } else if (size > order.getUnmatchedSize()) {
+                // increased size - order loses time priority
+                final OrdersBucketNaive bucket = order.bucket;
+                bucket.remove(order);
+                order.setSize(order.getFilled() + size);
+                bucket.put(order);
+            }
+
+            if (order != null) {
+                newQuoteSet.orderIds[newQuoteSet.size++] = order.getOrderId();
+                eventsSink.appendQuoteEntry(order.getOrderId(), order.getUnmatchedSize(), RESULT_SUCCESS);
+            } else {
+                eventsSink.appendQuoteEntry(firstOrderId + i, 0L, entryResult);
+            }
+        }
+
+        if (newQuoteSet.size == 0) {
+            if (quoteSet != null) {
+                quoteSets.remove(uid);
+            }
+        } else if (quoteSet == null) {
+            quoteSets.put(uid, newQuoteSet);
+        }
+
+        if (logDebug) log.debug("mass quote uid={} quoteSetId={} entries={} reduced={}", uid, quoteSetId, entriesNum, reduceEventsNum);
+
+        eventsSink.completeMassQuote(RESULT_SUCCESS, entriesNum, reduceEventsNum);
+    }
+
+    private short validateQuoteEntries(final DirectBuffer buffer, final int entriesOffset, final int entriesNum) {
+
+        if (entriesNum < 0 || entriesNum > QUOTE_MAX_ENTRIES) {
+            return RESULT_INCORRECT_QUOTE_ENTRIES;
+        }
+
+        if (auction) {
+            // post-only condition can not be checked against crossed order book
+            return RESULT_UNSUPPORTED_ORDER_TYPE;
+        }
+
+        for (int i = 0; i < entriesNum; i++) {
+            final int entryOffset = entriesOffset + i * QUOTE_ENTRY_OFFSET_END;
+            final long size = buffer.getLong(entryOffset + QUOTE_ENTRY_OFFSET_SIZE);
+            if (size <= 0 || !isLotSizeValid(size)) {
+                return RESULT_INCORRECT_ORDER_SIZE;
+            }
+            final short priceResult = validatePrice(buffer.getLong(entryOffset + QUOTE_ENTRY_OFFSET_PRICE));
+            if (priceResult != RESULT_SUCCESS) {
+                return priceResult;
+            }
+            final byte actionCode = buffer.getByte(entryOffset + QUOTE_ENTRY_OFFSET_ACTION);
+            if (actionCode != OrderAction.ASK.getCode() && actionCode != OrderAction.BID.getCode()) {
+                return RESULT_INCORRECT_QUOTE_ENTRIES;
+            }
+        }
+
+        return RESULT_SUCCESS;
+    }
+
+    /**
+     * Check if new quote order can be placed (post-only, unique order id)
+     *
+     * @return RESULT_SUCCESS, RESULT_POST_ONLY_WOULD_TAKE or RESULT_DUPLICATE_ORDER_ID
+     */
+    private short checkQuoteEntry(final long orderId,
+                                  final long price,
+                                  final OrderAction action) {
+
+        final long bestOppositePrice = bestMakerPrice(action.opposite());
+        if (bestOppositePrice != NO_BEST_PRICE && isMarketable(action, price, bestOppositePrice)) {
+            if (logDebug) log.debug("quote entry would take liquidity: {} {}", action, price);
+            return RESULT_POST_ONLY_WOULD_TAKE;
+        }
+
+        if (idMap.containsKey(orderId)) {
+            log.warn("reject duplicate order id: {}", orderId);
+            return RESULT_DUPLICATE_ORDER_ID;
+        }
+
+        return RESULT_SUCCESS;
+    }
+
+    /**
+     * Place new quote order, should be checked by checkQuoteEntry first
+     *
+     * @return order placed into the order book
+     */
+    private NaivePendingOrder placeQuoteOrder(final long orderId,
+                                              final long price,
+                                              final long reserveBidPrice,
+                                              final long size,
+                                              final OrderAction action,
+                                              final long uid,
+                                              final long timestamp) {
+
+        final NaivePendingOrder order = newOrderRecord(orderId, price, size, 0, reserveBidPrice, action, uid, timestamp);
+        order.quote = true;
+
+        final OrdersBucketNaive bucket = getOrCreateBucket(action, price);
+        bucket.put(order);
+        counters.onBucketDepth(bucket.getNumOrders());
+
+        idMap.put(orderId, order);
+        return order;
     }
 
     /**
@@ -542,34 +1731,382 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
         return action == OrderAction.ASK ? askBuckets : bidBuckets;
     }
 
+    private LongObjectHashMap<OrdersBucketNaive> getLevelsByAction(OrderAction action) {
+        return action == OrderAction.ASK ? askLevels : bidLevels;
+    }
+
+    private OrdersBucketNaive getBestBucket(OrderAction action) {
+        return action == OrderAction.ASK ? bestAskBucket : bestBidBucket;
+    }
+
+    private void setBestBucket(OrderAction action, OrdersBucketNaive bucket) {
+        if (action == OrderAction.ASK) {
+            bestAskBucket = bucket;
+        } else {
+            bestBidBucket = bucket;
+        }
+    }
+
+    /**
+     * Find bucket for specified price, or create a new one and link it between neighbour price levels.
+     * Only creation of a new price level allocates memory.
+     *
+     * @param action - orders action
+     * @param price  - price
+     * @return bucket
+     */
+    private OrdersBucketNaive getOrCreateBucket(final OrderAction action, final long price) {
+
+        final LongObjectHashMap<OrdersBucketNaive> levels = getLevelsByAction(action);
+        final OrdersBucketNaive existing = levels.get(price);
+        if (existing != null) {
+            return existing;
+        }
+
+        final OrdersBucketNaive bucket = new OrdersBucketNaive(price, eventsSink, orderRemover);
+        final NavigableMap<Long, OrdersBucketNaive> buckets = getBucketsByAction(action);
+
+        // find neighbour with better price
+        final Long betterPrice = buckets.lowerKey(bucket.getPriceKey());
+        final OrdersBucketNaive prev = (betterPrice == null) ? null : levels.get(betterPrice);
+        final OrdersBucketNaive next = (prev == null) ? getBestBucket(action) : prev.next;
+
+        bucket.prev = prev;
+        bucket.next = next;
+        if (prev == null) {
+            setBestBucket(action, bucket);
+        } else {
+            prev.next = bucket;
+        }
+        if (next != null) {
+            next.prev = bucket;
+        }
+
+        buckets.put(bucket.getPriceKey(), bucket);
+        levels.put(price, bucket);
+        return bucket;
+    }
+
+    /**
+     * Remove empty bucket
+     *
+     * @param action - orders action
+     * @param bucket - bucket to remove
+     */
+    private void removeBucket(final OrderAction action, final OrdersBucketNaive bucket) {
+
+        final OrdersBucketNaive prev = bucket.prev;
+        final OrdersBucketNaive next = bucket.next;
+
+        if (prev == null) {
+            setBestBucket(action, next);
+        } else {
+            prev.next = next;
+        }
+        if (next != null) {
+            next.prev = prev;
+        }
+        bucket.prev = null;
+        bucket.next = null;
+
+        getBucketsByAction(action).remove(bucket.getPriceKey());
+        getLevelsByAction(action).remove(bucket.getPrice());
+    }
+
+    /**
+     * Remove order from its bucket (order book, trigger book or pegged queue), remove bucket if it is empty
+     *
+     * @param order - order
+     */
+    private void removeFromBucket(final NaivePendingOrder order) {
+
+        final OrdersBucketNaive bucket = order.bucket;
+        bucket.remove(order);
+
+        if (bucket.getNumOrders() == 0) {
+            if (order.isStopPending()) {
+                removeStopBucket(order.getAction(), bucket);
+            } else if (order.isPegged()) {
+                getPeggedQueue(order.getAction(), order.pegType).removeBucket(bucket);
+            } else {
+                removeBucket(order.getAction(), bucket);
+            }
+        }
+    }
+
+    private NavigableMap<Long, OrdersBucketNaive> getStopBucketsByAction(final OrderAction action) {
+        return action == OrderAction.BID ? buyStopBuckets : sellStopBuckets;
+    }
+
+    private OrdersBucketNaive getOrCreateStopBucket(final OrderAction action, final long stopPrice) {
+
+        final NavigableMap<Long, OrdersBucketNaive> buckets = getStopBucketsByAction(action);
+        final OrdersBucketNaive existing = buckets.get(stopPrice);
+        if (existing != null) {
+            return existing;
+        }
+
+        final OrdersBucketNaive bucket = new OrdersBucketNaive(stopPrice, eventsSink, orderRemover);
+        buckets.put(bucket.getPriceKey(), bucket);
+        updateNextStopBucket(action);
+        return bucket;
+    }
+
+    private void removeStopBucket(final OrderAction action, final OrdersBucketNaive bucket) {
+        getStopBucketsByAction(action).remove(bucket.getPriceKey());
+        updateNextStopBucket(action);
+    }
+
+    private void updateNextStopBucket(final OrderAction action) {
+        final Map.Entry<Long, OrdersBucketNaive> first = getStopBucketsByAction(action).firstEntry();
+        final OrdersBucketNaive bucket = first == null ? null : first.getValue();
+        if (action == OrderAction.BID) {
+            nextBuyStopBucket = bucket;
+        } else {
+            nextSellStopBucket = bucket;
+        }
+    }
+
+    private NaivePendingOrder newOrderRecord(final long orderId,
+                                             final long price,
+                                             final long size,
+                                             final long filled,
+                                             final long reserveBidPrice,
+                                             final OrderAction action,
+                                             final long uid,
+                                             final long timestamp) {
+
+        final NaivePendingOrder order = ordersPool.pollFirst();
+        if (order == null) {
+            return new NaivePendingOrder(orderId, price, size, filled, reserveBidPrice, action, uid, timestamp);
+        }
+
+        order.init(orderId, price, size, filled, reserveBidPrice, action, uid, timestamp);
+        return order;
+    }
+
+    private void releaseOrder(final NaivePendingOrder order) {
+        if (order.timerId != NaivePendingOrder.NO_TIMER) {
+            expiryTimerWheel.cancelTimer(order.timerId);
+            expiryTimers.remove(order.timerId);
+            order.timerId = NaivePendingOrder.NO_TIMER;
+        }
+        if (ordersPool.size() < ORDERS_POOL_MAX_SIZE) {
+            ordersPool.addFirst(order);
+        }
+    }
+
+    private void removeCompletedMakerOrder(final long orderId) {
+        releaseOrder(idMap.remove(orderId));
+    }
+
     @Override
-    public void sendL2Snapshot(final DirectBuffer buffer, final int offset) {
+    public void expireOrders(final long timestamp) {
 
-        final int limit = buffer.getInt(offset);
+        eventsHelper.setTimestamp(timestamp);
+        eventsSink.beginExpireOrders();
 
-        resultsBuffer.appendByte(IOrderBook.QUERY_ORDER_BOOK);
-        if (limit <= 0) {
-            // 0 or negative size is not allowed
-            resultsBuffer.appendShort(RESULT_INCORRECT_L2_SIZE_LIMIT);
+        expiredOrdersNum = 0;
+
+        // limited by result space, orders left due are expired by next call
+        final int maxExpiredOrders = eventsSink.getMakerEventsCapacity();
+
+        // wheel is polled tick by tick, until the tick containing provided timestamp is processed.
+        // Every poll expires all due timers of its spoke, so one wheel revolution expires all due orders
+        // whatever time has passed since last call - remaining ticks are skipped.
+        for (int i = 0; i < EXPIRY_TICKS_PER_WHEEL && expiryTimerWheel.timerCount() > 0 && expiredOrdersNum < maxExpiredOrders; i++) {
+            final boolean lastTick = timestamp < expiryTimerWheel.currentTickTime();
+            expiryTimerWheel.poll(timestamp, expiryHandler, maxExpiredOrders - expiredOrdersNum);
+            if (lastTick) {
+                break;
+            }
+        }
+
+        if (expiredOrdersNum < maxExpiredOrders && timestamp >= expiryTimerWheel.currentTickTime()) {
+            expiryTimerWheel.currentTickTime(timestamp);
+        }
+
+        if (expiryTimerWheel.timerCount() == 0) {
+            expiryTimerWheel.resetStartTime(timestamp);
+        }
+
+        if (logDebug) log.debug("expired {} orders", expiredOrdersNum);
+
+        eventsSink.completeExpireOrders(expiredOrdersNum);
+    }
+
+    private boolean onOrderExpiry(final TimeUnit timeUnit, final long now, final long timerId) {
+
+        final NaivePendingOrder order = expiryTimers.remove(timerId);
+        order.timerId = NaivePendingOrder.NO_TIMER;
+
+        if (logDebug) log.debug("expired order: {}", order);
+
+        idMap.remove(order.getOrderId());
+        removeFromBucket(order);
+
+        eventsSink.appendMakerReduceEvent(order, true, order.getUnmatchedSize());
+        expiredOrdersNum++;
+
+        releaseOrder(order);
+        return true;
+    }
+
+    @Override
+    public void startAuction() {
+        if (logDebug) log.debug("call auction phase started");
+        auction = true;
+    }
+
+    @Override
+    public void uncross() {
+
+        eventsSink.beginUncross();
+
+        if (!auction) {
+            eventsSink.completeUncross(RESULT_AUCTION_NOT_STARTED, 0L, 0L);
             return;
         }
 
-        int asks = 0;
-        for (final OrdersBucketNaive bucket : askBuckets.values()) {
-            eventsHelper.appendL2Record(bucket.getPrice(), bucket.getTotalVolume(), bucket.getNumOrders());
-            if (++asks == limit) {
-                break;
+        auction = false;
+
+        calculateEquilibrium();
+
+        if (logDebug) log.debug("uncross: price={} volume={} imbalance={}", auctionPrice, auctionVolume, auctionImbalance);
+
+        if (auctionVolume != 0) {
+            executeAuction(OrderAction.BID, auctionPrice, auctionVolume);
+            executeAuction(OrderAction.ASK, auctionPrice, auctionVolume);
+
+            counters.onTrade(auctionVolume);
+            lastTradePrice = auctionPrice;
+            hasLastTradePrice = true;
+        }
+
+        eventsSink.completeUncross(RESULT_SUCCESS, auctionPrice, auctionVolume);
+
+        // continuous trading is resumed, order book is not crossed anymore
+        if (isStopOrderTriggered()) {
+            triggerStopOrders();
+        }
+    }
+
+    @Override
+    public void sendAuctionIndicative() {
+
+        if (auction) {
+            calculateEquilibrium();
+            eventsSink.appendAuctionIndicative(RESULT_SUCCESS, auctionPrice, auctionVolume, auctionImbalance);
+        } else {
+            eventsSink.appendAuctionIndicative(RESULT_AUCTION_NOT_STARTED, 0L, 0L, 0L);
+        }
+    }
+
+    /**
+     * Calculate auction equilibrium: price with maximum executable volume, then minimum imbalance,
+     * then highest price for buy surplus (lowest price otherwise).
+     * Cumulative bid and ask volume curves are merged in one ascending pass over crossed price levels only
+     * (from best ask to best bid), hidden iceberg reserves are included. Pegged orders do not participate.
+     * Result is stored into auctionPrice, auctionVolume and auctionImbalance (all 0 if order book is not crossed).
+     */
+    private void calculateEquilibrium() {
+
+        auctionPrice = 0;
+        auctionVolume = 0;
+        auctionImbalance = 0;
+
+        if (bestBidBucket == null || bestAskBucket == null || bestBidBucket.getPrice() < bestAskBucket.getPrice()) {
+            return;
+        }
+
+        final long minPrice = bestAskBucket.getPrice();
+        final long maxPrice = bestBidBucket.getPrice();
+
+        // demand at the lowest candidate price - all bids crossing best ask
+        OrdersBucketNaive bid = bestBidBucket;
+        long demand = bid.getFullVolume();
+        while (bid.next != null && bid.next.getPrice() >= minPrice) {
+            bid = bid.next;
+            demand += bid.getFullVolume();
+        }
+
+        OrdersBucketNaive ask = bestAskBucket;
+        long supply = 0;
+
+        // ask levels are visited from best (lowest) price, bid levels from worst crossed price (backwards)
+        while (ask != null || bid != null) {
+
+            final long price = (bid == null || (ask != null && ask.getPrice() < bid.getPrice())) ? ask.getPrice() : bid.getPrice();
+
+            // asks at or below candidate price
+            if (ask != null && ask.getPrice() == price) {
+                supply += ask.getFullVolume();
+                ask = ask.next;
+                if (ask != null && ask.getPrice() > maxPrice) {
+                    ask = null;
+                }
+            }
+
+            final long volume = Math.min(demand, supply);
+            final long imbalance = demand - supply;
+            if (volume > auctionVolume
+                    || (volume == auctionVolume && Math.abs(imbalance) < Math.abs(auctionImbalance))
+                    || (volume == auctionVolume && Math.abs(imbalance) == Math.abs(auctionImbalance) && imbalance > 0)) {
+                auctionPrice = price;
+                auctionVolume = volume;
+                auctionImbalance = imbalance;
+            }
+
+            // bids at or above next candidate price
+            if (bid != null && bid.getPrice() == price) {
+                demand -= bid.getFullVolume();
+                bid = bid.prev;
             }
         }
+    }
 
-        int bids = 0;
-        for (final OrdersBucketNaive bucket : bidBuckets.values()) {
-            eventsHelper.appendL2Record(bucket.getPrice(), bucket.getTotalVolume(), bucket.getNumOrders());
-            if (++bids == limit) {
-                break;
+    /**
+     * Execute one side of the auction at auction price, starting from the best price level.
+     *
+     * @param action - orders action
+     * @param price  - auction price
+     * @param volume - volume to execute (never exceeds volume of levels crossing auction price)
+     */
+    private void executeAuction(final OrderAction action, final long price, final long volume) {
+
+        long remaining = volume;
+        OrdersBucketNaive bucket = getBestBucket(action);
+
+        while (remaining != 0) {
+
+            final OrdersBucketNaive next = bucket.next;
+
+            remaining -= bucket.matchAuction(remaining, price);
+
+            if (bucket.getNumOrders() == 0) {
+                removeBucket(action, bucket);
+                counters.onLevelSwept();
             }
+
+            bucket = next;
+        }
+    }
+
+    @Override
+    public void sendL2Snapshot(final DirectBuffer buffer, final int offset) {
+
+        final int limit = buffer.getInt(offset);
+
+        eventsHelper.beginResponse(IOrderBook.QUERY_ORDER_BOOK);
+        if (limit <= 0) {
+            // 0 or negative size is not allowed
+            resultsBuffer.appendShort(RESULT_INCORRECT_L2_SIZE_LIMIT);
+            return;
         }
 
+        final int asks = appendL2Records(OrderAction.ASK, limit);
+        final int bids = appendL2Records(OrderAction.BID, limit);
+
         resultsBuffer.appendInt(asks);
         resultsBuffer.appendInt(bids);
         resultsBuffer.appendShort(RESULT_SUCCESS);
@@ -577,6 +2114,72 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
         //log.debug("L2 DATA: {}", resultsBuffer.prettyHexDump());
     }
 
+    /**
+     * Append L2 records for one side, merging regular price levels with pegged orders priced at current best prices.
+     *
+     * @param action - side
+     * @param limit  - max number of records
+     * @return number of records
+     */
+    private int appendL2Records(final OrderAction action, final int limit) {
+
+        final NaivePeggedQueue[] queues = getPeggedQueuesByAction(action);
+        for (int i = 0; i < queues.length; i++) {
+            final OrdersBucketNaive first = queues[i].getBestBucket();
+            final boolean priced = first != null && peggedPrice(action, queues[i].getPegType(), first.getPrice()) != NO_PEGGED_PRICE;
+            l2PeggedCursors[i] = priced ? first : null;
+        }
+
+        OrdersBucketNaive bucket = getBestBucket(action);
+        int records = 0;
+
+        while (records < limit) {
+
+            // find best price among regular level and pegged queues cursors
+            boolean found = bucket != null;
+            long price = found ? bucket.getPrice() : 0;
+            for (int i = 0; i < queues.length; i++) {
+                final OrdersBucketNaive cursor = l2PeggedCursors[i];
+                if (cursor != null) {
+                    final long peggedPrice = peggedPrice(action, queues[i].getPegType(), cursor.getPrice());
+                    if (!found || isBetterPrice(action, peggedPrice, price)) {
+                        price = peggedPrice;
+                        found = true;
+                    }
+                }
+            }
+
+            if (!found) {
+                break;
+            }
+
+            long volume = 0;
+            int numOrders = 0;
+
+            if (bucket != null && bucket.getPrice() == price) {
+                volume += bucket.getTotalVolume();
+                numOrders += bucket.getNumOrders();
+                bucket = bucket.next;
+            }
+
+            // several offsets can have same effective price (capped by midpoint)
+            for (int i = 0; i < queues.length; i++) {
+                OrdersBucketNaive cursor = l2PeggedCursors[i];
+                while (cursor != null && peggedPrice(action, queues[i].getPegType(), cursor.getPrice()) == price) {
+                    volume += cursor.getTotalVolume();
+                    numOrders += cursor.getNumOrders();
+                    cursor = cursor.next;
+                }
+                l2PeggedCursors[i] = cursor;
+            }
+
+            eventsHelper.appendL2Record(price, volume, numOrders);
+            records++;
+        }
+
+        return records;
+    }
+
     /**
      * Get order from internal map
      *
@@ -590,8 +2193,78 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
 
     @Override
     public void verifyInternalState() {
-        askBuckets.values().forEach(OrdersBucketNaive::validate);
-        bidBuckets.values().forEach(OrdersBucketNaive::validate);
+        verifyBuckets(askBuckets, askLevels, bestAskBucket);
+        verifyBuckets(bidBuckets, bidLevels, bestBidBucket);
+        verifyStopBuckets(buyStopBuckets, nextBuyStopBucket);
+        verifyStopBuckets(sellStopBuckets, nextSellStopBucket);
+
+        for (final NaivePeggedQueue queue : askPeggedQueues) {
+            queue.validate();
+        }
+        for (final NaivePeggedQueue queue : bidPeggedQueues) {
+            queue.validate();
+        }
+
+        if (expiryTimers.size() != expiryTimerWheel.timerCount()) {
+            throw new IllegalStateException("expiryTimers=" + expiryTimers.size() + " timerCount=" + expiryTimerWheel.timerCount());
+        }
+        expiryTimers.forEachKeyValue((timerId, order) -> {
+            if (order.timerId != timerId || idMap.get(order.getOrderId()) != order) {
+                throw new IllegalStateException("Inconsistent expiry timer for order " + order);
+            }
+        });
+
+        if (isStopOrderTriggered()) {
+            throw new IllegalStateException("Stop order was not triggered, lastTradePrice=" + lastTradePrice);
+        }
+    }
+
+    private static void verifyStopBuckets(final NavigableMap<Long, OrdersBucketNaive> buckets,
+                                          final OrdersBucketNaive nextBucket) {
+
+        final Map.Entry<Long, OrdersBucketNaive> first = buckets.firstEntry();
+        if ((first == null ? null : first.getValue()) != nextBucket) {
+            throw new IllegalStateException("Inconsistent next stop price level");
+        }
+
+        for (final OrdersBucketNaive bucket : buckets.values()) {
+            if (bucket.getNumOrders() == 0) {
+                throw new IllegalStateException("Empty stop price level " + bucket.getPrice());
+            }
+            bucket.forEachOrder(order -> {
+                if (!order.isStopPending() || order.stopPrice != bucket.getPrice()) {
+                    throw new IllegalStateException("Unexpected order in trigger book: " + order);
+                }
+            });
+            bucket.validate();
+        }
+    }
+
+    private static void verifyBuckets(final NavigableMap<Long, OrdersBucketNaive> buckets,
+                                      final LongObjectHashMap<OrdersBucketNaive> levels,
+                                      final OrdersBucketNaive bestBucket) {
+
+        if (buckets.size() != levels.size()) {
+            throw new IllegalStateException("buckets=" + buckets.size() + " levels=" + levels.size());
+        }
+
+        OrdersBucketNaive linked = bestBucket;
+        OrdersBucketNaive prev = null;
+        for (final OrdersBucketNaive bucket : buckets.values()) {
+            if (bucket != linked || bucket.prev != prev || levels.get(bucket.getPrice()) != bucket) {
+                throw new IllegalStateException("Inconsistent price level " + bucket.getPrice());
+            }
+            if (bucket.getNumOrders() == 0) {
+                throw new IllegalStateException("Empty price level " + bucket.getPrice());
+            }
+            bucket.validate();
+            prev = bucket;
+            linked = bucket.next;
+        }
+
+        if (linked != null) {
+            throw new IllegalStateException("Unexpected linked price level " + linked.getPrice());
+        }
     }
 
     @Override
@@ -606,6 +2279,14 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
                         });
         askBuckets.values().forEach(bucketConsumer);
         bidBuckets.values().forEach(bucketConsumer);
+        buyStopBuckets.values().forEach(bucketConsumer);
+        sellStopBuckets.values().forEach(bucketConsumer);
+        for (final NaivePeggedQueue queue : askPeggedQueues) {
+            queue.getBuckets().forEach(bucketConsumer);
+        }
+        for (final NaivePeggedQueue queue : bidPeggedQueues) {
+            queue.getBuckets().forEach(bucketConsumer);
+        }
         return list;
     }
 
@@ -616,11 +2297,17 @@ public final class OrderBookNaiveImpl<S extends ISymbolSpecification> implements
 
     @Override
     public Stream<IOrder> askOrdersStream(final boolean sorted) {
-        return askBuckets.values().stream().flatMap(bucket -> bucket.getAllOrders().stream());
+        return Stream.concat(askBuckets.values().stream(), peggedBucketsStream(askPeggedQueues))
+                .flatMap(bucket -> bucket.getAllOrders().stream());
     }
 
     @Override
     public Stream<IOrder> bidOrdersStream(final boolean sorted) {
-        return bidBuckets.values().stream().flatMap(bucket -> bucket.getAllOrders().stream());
+        return Stream.concat(bidBuckets.values().stream(), peggedBucketsStream(bidPeggedQueues))
+                .flatMap(bucket -> bucket.getAllOrders().stream());
+    }
+
+    private static Stream<OrdersBucketNaive> peggedBucketsStream(final NaivePeggedQueue[] queues) {
+        return Arrays.stream(queues).flatMap(queue -> queue.getBuckets().stream());
     }
 }
@@ -15,28 +15,49 @@
  */
 package exchange.core2.orderbook.naive;
 
+import exchange.core2.orderbook.IOrderBookEventsSink;
 import exchange.core2.orderbook.OrderAction;
-import exchange.core2.orderbook.OrderBookEventsHelper;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Price level - FIFO queue of orders, implemented as intrusive doubly-linked list (no allocations on put/remove/match).
+ * Buckets are also linked into the list sorted by price priority (from best to worst price).
+ * Total volume includes only visible part of iceberg orders.
+ */
 public final class OrdersBucketNaive {
 
     private final long price;
-    private final LinkedHashMap<Long, NaivePendingOrder> entries;
-    private final OrderBookEventsHelper eventsHelper;
+    private final Long priceKey; // boxed price, reused as TreeMap key
+    private final IOrderBookEventsSink eventsHelper;
     private final LongConsumer orderRemover;
 
+    // execution queue (eldest order first)
+    private NaivePendingOrder head;
+    private NaivePendingOrder tail;
+    private int numOrders;
+
     private long totalVolume;
 
+    // unmatched volume including hidden iceberg reserves
+    private long fullVolume;
+
+    // neighbour price levels (better and worse price)
+    OrdersBucketNaive prev;
+    OrdersBucketNaive next;
+
     public OrdersBucketNaive(final long price,
-                             final OrderBookEventsHelper eventsHelper,
+                             final IOrderBookEventsSink eventsHelper,
                              final LongConsumer orderRemover) {
         this.price = price;
-        this.entries = new LinkedHashMap<>();
+        this.priceKey = price;
         this.totalVolume = 0;
         this.eventsHelper = eventsHelper;
         this.orderRemover = orderRemover;
@@ -47,34 +68,81 @@ public final class OrdersBucketNaive {
         return price;
     }
 
+    Long getPriceKey() {
+        return priceKey;
+    }
+
     public long getTotalVolume() {
         return totalVolume;
     }
 
     /**
-     * Put a new order into bucket
+     * @return total unmatched volume, including hidden reserves of iceberg orders
+     */
+    public long getFullVolume() {
+        return fullVolume;
+    }
+
+    /**
+     * Put a new order into the end of the bucket queue
      *
      * @param order - order
      */
-    public void put(NaivePendingOrder order) {
-        entries.put(order.getOrderId(), order);
-        totalVolume += order.getUnmatchedSize();
+    public void put(final NaivePendingOrder order) {
+        link(order);
+        totalVolume += order.getVisibleSize();
+        fullVolume += order.getUnmatchedSize();
+    }
+
+    private void link(final NaivePendingOrder order) {
+        order.bucket = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        numOrders++;
     }
 
     /**
      * Remove order from the bucket
      *
-     * @param orderId - order id
-     * @throws IllegalStateException if order not found
+     * @param order - order
+     * @throws IllegalStateException if order does not belong to this bucket
      */
-    public void remove(final long orderId) {
-        final NaivePendingOrder order = entries.remove(orderId);
-//        log.debug("removing order: {}", order);
-        if (order == null) {
-            throw new IllegalStateException("Removal of unknown order " + orderId);
+    public void remove(final NaivePendingOrder order) {
+        if (order.bucket != this) {
+            throw new IllegalStateException("Removal of unknown order " + order.getOrderId());
+        }
+
+        unlink(order);
+        totalVolume -= order.getVisibleSize();
+        fullVolume -= order.getUnmatchedSize();
+    }
+
+    private void unlink(final NaivePendingOrder order) {
+        final NaivePendingOrder prevOrder = order.prev;
+        final NaivePendingOrder nextOrder = order.next;
+
+        if (prevOrder == null) {
+            head = nextOrder;
+        } else {
+            prevOrder.next = nextOrder;
+        }
+
+        if (nextOrder == null) {
+            tail = prevOrder;
+        } else {
+            nextOrder.prev = prevOrder;
         }
 
-        totalVolume -= order.getUnmatchedSize();
+        order.prev = null;
+        order.next = null;
+        order.bucket = null;
+        numOrders--;
     }
 
     /**
@@ -85,73 +153,441 @@ public final class OrdersBucketNaive {
      * @param activeReservedBidPrice - active reserved price (required for risk release, provided with trade event)
      * @return - total matched volume, events, completed orders to remove
      */
-    public long match(long volumeToCollect,
+    public long match(final long volumeToCollect,
                       final long activeReservedBidPrice) {
 
-        final Iterator<Map.Entry<Long, NaivePendingOrder>> iterator = entries.entrySet().iterator();
+        return match(volumeToCollect, activeReservedBidPrice, null);
+    }
+
+    /**
+     * Collect a list of matching orders starting from eldest records, applying self-trade prevention.
+     * Completely matching orders will be removed, partially matched order kept in the bucked.
+     * Volume removed from taker by self-trade prevention is not included into result, but accumulated in the context.
+     *
+     * @param volumeToCollect        - volume to collect
+     * @param activeReservedBidPrice - active reserved price (required for risk release, provided with trade event)
+     * @param ctx                    - taker matching context (null - no self-trade prevention)
+     * @return - total matched volume, events, completed orders to remove
+     */
+    long match(final long volumeToCollect,
+               final long activeReservedBidPrice,
+               final NaiveMatchingContext ctx) {
+
+        return match(volumeToCollect, activeReservedBidPrice, ctx, false, 0L);
+    }
+
+    /**
+     * Collect a list of matching pegged orders (bucket price is peg offset).
+     * Every visited order gets price evaluated by the order book, so events are reported with that price.
+     *
+     * @param volumeToCollect        - volume to collect
+     * @param activeReservedBidPrice - active reserved price (required for risk release, provided with trade event)
+     * @param ctx                    - taker matching context
+     * @param peggedPrice            - current effective price of the bucket
+     * @return - total matched volume, events, completed orders to remove
+     */
+    long matchPegged(final long volumeToCollect,
+                     final long activeReservedBidPrice,
+                     final NaiveMatchingContext ctx,
+                     final long peggedPrice) {
+
+        return match(volumeToCollect, activeReservedBidPrice, ctx, true, peggedPrice);
+    }
+
+    private long match(long volumeToCollect,
+                       final long activeReservedBidPrice,
+                       final NaiveMatchingContext ctx,
+                       final boolean pegged,
+                       final long peggedPrice) {
+
+        if (ctx != null
+                && ctx.getMatchingPolicy() == MATCHING_POLICY_PRO_RATA
+                && volumeToCollect < totalVolume
+                && head != tail) {
+            return matchProRata(volumeToCollect, activeReservedBidPrice, ctx, pegged, peggedPrice);
+        }
 
         long totalMatchingVolume = 0;
 
+        NaivePendingOrder order = head;
+
         // iterate through all orders
-        while (iterator.hasNext() && volumeToCollect > 0) {
-            final Map.Entry<Long, NaivePendingOrder> next = iterator.next();
-            final NaivePendingOrder order = next.getValue();
+        while (order != null && volumeToCollect > 0) {
+
+            final NaivePendingOrder nextOrder = order.next;
+
+            if (ctx != null && !ctx.reserveMakerEvent()) {
+                return totalMatchingVolume;
+            }
+
+            if (pegged) {
+                order.setPrice(peggedPrice);
+            }
+
+            if (ctx != null && ctx.isSelfTrade(order.getUid())) {
+
+                final long takerReduced = preventSelfTrade(order, ctx, volumeToCollect);
+                if (takerReduced < 0) {
+                    return totalMatchingVolume;
+                }
+                volumeToCollect -= takerReduced;
+
+                order = nextOrder;
+                continue;
+            }
+
+            // calculate exact volume can fill for this order (displayed slice only for iceberg)
+            final long v = Math.min(volumeToCollect, order.getVisibleSize());
+            totalMatchingVolume += v;
+            volumeToCollect -= v;
+
+            final boolean replenished = trade(order, v, activeReservedBidPrice);
+
+            if (replenished && nextOrder == null) {
+                // it was the last order in the queue - continue matching with the new slice
+                continue;
+            }
+
+            order = nextOrder;
+        }
+
+        return totalMatchingVolume;
+    }
+
+    /**
+     * Pro-rata matching, level is never consumed completely (volumeToCollect is less than total volume).
+     * Eldest (top) order is filled first, then volume is allocated proportionally to displayed sizes of other orders (rounded down),
+     * rounding remainder is allocated in time priority. Self-trade orders get no pro-rata allocation.
+     * Two passes without sorting: allocations are calculated into orders, then executed in the queue order (one trade per order).
+     *
+     * @param volumeToCollect        - volume to collect
+     * @param activeReservedBidPrice - active reserved price (required for risk release, provided with trade event)
+     * @param ctx                    - taker matching context
+     * @param pegged                 - pegged orders bucket
+     * @param peggedPrice            - current effective price of the pegged bucket
+     * @return - total matched volume
+     */
+    private long matchProRata(long volumeToCollect,
+                              final long activeReservedBidPrice,
+                              final NaiveMatchingContext ctx,
+                              final boolean pegged,
+                              final long peggedPrice) {
+
+        final NaivePendingOrder top = head;
+        final long topAllocation = ctx.isSelfTrade(top.getUid()) ? 0 : Math.min(volumeToCollect, top.getVisibleSize());
+        final long proRataVolume = volumeToCollect - topAllocation;
+        final long proRataBase = totalVolume - top.getVisibleSize();
+
+        // first pass - pro-rata allocations
+        top.allocatedSize = topAllocation;
+        long remainder = proRataVolume;
+        for (NaivePendingOrder order = top.next; order != null; order = order.next) {
+            final long share = ctx.isSelfTrade(order.getUid())
+                    ? 0
+                    : Math.min(remainder, proRataShare(proRataVolume, order.getVisibleSize(), proRataBase));
+            order.allocatedSize = share;
+            remainder -= share;
+        }
+
+        // second pass - execution, rounding remainder goes to the eldest orders
+        long totalMatchingVolume = 0;
+        NaivePendingOrder order = top;
+        while (order != null && volumeToCollect > 0) {
+
+            final NaivePendingOrder nextOrder = order.next;
+
+            if (pegged) {
+                order.setPrice(peggedPrice);
+            }
+
+            if (ctx.isSelfTrade(order.getUid())) {
+
+                if (!ctx.reserveMakerEvent()) {
+                    return totalMatchingVolume;
+                }
+
+                // same as time priority matching - decrement is limited by remaining taker size only,
+                // allocations of next orders are cut down if taker size is not enough for them
+                final long takerReduced = preventSelfTrade(order, ctx, volumeToCollect);
+                if (takerReduced < 0) {
+                    return totalMatchingVolume;
+                }
+                remainder -= Math.min(remainder, takerReduced);
+                volumeToCollect -= takerReduced;
+
+                order = nextOrder;
+                continue;
+            }
+
+            final long extra = Math.min(remainder, order.getVisibleSize() - order.allocatedSize);
+            final long v = Math.min(volumeToCollect, order.allocatedSize + extra);
+            order.allocatedSize = 0; // replenished iceberg can be visited again
+            remainder -= extra;
+
+            if (v != 0) {
+                if (!ctx.reserveMakerEvent()) {
+                    return totalMatchingVolume;
+                }
+                totalMatchingVolume += v;
+                volumeToCollect -= v;
+                trade(order, v, activeReservedBidPrice);
+            }
+
+            order = nextOrder;
+        }
+
+        return totalMatchingVolume;
+    }
+
+    /**
+     * Pro-rata share of the order, rounded down
+     *
+     * @param volume - volume to allocate
+     * @param size   - order displayed size
+     * @param base   - total displayed size of orders participating in allocation (greater than volume)
+     * @return share
+     */
+    private static long proRataShare(final long volume, final long size, final long base) {
+        if (volume == 0) {
+            return 0;
+        }
+        if (size <= Long.MAX_VALUE / volume) {
+            return size * volume / base;
+        }
+        // very large sizes - approximation (exceeding share is limited by caller, remainder goes to time priority)
+        return Math.min(size, (long) ((double) size * volume / base));
+    }
+
+    /**
+     * Fill maker order, send trade event, remove completed order or replenish iceberg slice
+     *
+     * @param order                  - maker order
+     * @param v                      - trade volume (not greater than displayed size)
+     * @param activeReservedBidPrice - taker reserved price
+     * @return true if iceberg slice was replenished (order moved to the end of the queue)
+     */
+    private boolean trade(final NaivePendingOrder order,
+                          final long v,
+                          final long activeReservedBidPrice) {
+
+        order.setFilled(order.getFilled() + v);
+        order.visibleSize -= v; // ignored for regular orders
+        totalVolume -= v;
+        fullVolume -= v;
+
+        // remove from order book filled orders
+        final boolean makerOrderCompleted = order.getUnmatchedSize() == 0;
+
+        eventsHelper.appendTradeEvent(
+                order,
+                makerOrderCompleted,
+                v,
+                order.getAction() == OrderAction.ASK ? activeReservedBidPrice : order.getReserveBidPrice());
+
+        if (makerOrderCompleted) {
+            unlink(order);
+            orderRemover.accept(order.getOrderId());
+        } else if (order.getVisibleSize() == 0) {
+            // iceberg slice is filled - replenish from reserve and move to the end of the queue
+            replenish(order);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Apply self-trade prevention to the maker order of the same uid
+     *
+     * @param order        - maker order
+     * @param ctx          - taker matching context
+     * @param maxDecrement - maximum taker volume can be decremented
+     * @return taker volume removed (decrement mode), or -1 if remaining taker size is cancelled
+     */
+    private long preventSelfTrade(final NaivePendingOrder order,
+                                  final NaiveMatchingContext ctx,
+                                  final long maxDecrement) {
+
+        switch (ctx.getSelfTradePreventionMode()) {
+            case SELF_TRADE_PREVENTION_CANCEL_TAKER:
+                ctx.takerCancelled = true;
+                return -1;
+
+            case SELF_TRADE_PREVENTION_CANCEL_BOTH:
+                ctx.takerCancelled = true;
+                reduceMakerOrder(order, order.getUnmatchedSize());
+                return -1;
+
+            case SELF_TRADE_PREVENTION_DECREMENT:
+                final long decrement = Math.min(maxDecrement, order.getUnmatchedSize());
+                if (decrement != 0) {
+                    ctx.takerReducedSize += decrement;
+                    reduceMakerOrder(order, decrement);
+                }
+                return decrement;
+
+            case SELF_TRADE_PREVENTION_CANCEL_MAKER:
+            default:
+                reduceMakerOrder(order, order.getUnmatchedSize());
+                return 0;
+        }
+    }
+
+    /**
+     * Execute orders at auction price starting from eldest records (whole unmatched size, including hidden iceberg reserves).
+     * Completely executed orders will be removed, partially executed order kept in the bucket.
+     *
+     * @param volumeToCollect - volume to execute
+     * @param auctionPrice    - auction price (reported with fill events)
+     * @return - total executed volume
+     */
+    long matchAuction(long volumeToCollect, final long auctionPrice) {
+
+        long totalMatchingVolume = 0;
 
-            // calculate exact volume can fill for this order
+        NaivePendingOrder order = head;
+
+        while (order != null && volumeToCollect > 0) {
+
+            final NaivePendingOrder nextOrder = order.next;
+
+            final long visibleBefore = order.getVisibleSize();
             final long v = Math.min(volumeToCollect, order.getUnmatchedSize());
             totalMatchingVolume += v;
 
             order.setFilled(order.getFilled() + v);
             volumeToCollect -= v;
-            totalVolume -= v;
+            fullVolume -= v;
 
-            // remove from order book filled orders
-            final boolean makerOrderCompleted = order.getUnmatchedSize() == 0;
+            final boolean orderCompleted = order.getUnmatchedSize() == 0;
 
-            eventsHelper.appendTradeEvent(
-                    order,
-                    makerOrderCompleted,
-                    v,
-                    order.getAction() == OrderAction.ASK ? activeReservedBidPrice : order.getReserveBidPrice());
+            eventsHelper.appendAuctionFillEvent(order, orderCompleted, v, auctionPrice);
 
-            if (makerOrderCompleted) {
+            if (orderCompleted) {
+                totalVolume -= visibleBefore;
+                unlink(order);
                 orderRemover.accept(order.getOrderId());
-                iterator.remove();
+            } else if (v < visibleBefore) {
+                order.visibleSize -= v; // ignored for regular orders
+                totalVolume -= v;
+            } else {
+                // iceberg slice is filled (and part of reserve) - replenish and move to the end of the queue
+                totalVolume -= visibleBefore;
+                order.visibleSize = 0;
+                replenish(order);
             }
+
+            order = nextOrder;
         }
 
         return totalMatchingVolume;
     }
 
+    private void replenish(final NaivePendingOrder order) {
+        unlink(order);
+        order.replenishVisibleSize();
+        link(order);
+        totalVolume += order.getVisibleSize();
+    }
+
+    /**
+     * Reduce resting order without trade, remove it if nothing left
+     *
+     * @param order      - maker order
+     * @param reduceSize - size to reduce
+     */
+    private void reduceMakerOrder(final NaivePendingOrder order, final long reduceSize) {
+
+        final long visibleBefore = order.getVisibleSize();
+        order.setSize(order.getSize() - reduceSize);
+        order.clampVisibleSize();
+        totalVolume -= visibleBefore - order.getVisibleSize();
+        fullVolume -= reduceSize;
+
+        final boolean makerOrderCompleted = order.getUnmatchedSize() == 0;
+
+        eventsHelper.appendMakerReduceEvent(order, makerOrderCompleted, reduceSize);
+
+        if (makerOrderCompleted) {
+            unlink(order);
+            orderRemover.accept(order.getOrderId());
+        } else if (order.getVisibleSize() == 0) {
+            replenish(order);
+        }
+    }
+
+    /**
+     * Get eldest order in the bucket
+     *
+     * @return first order in the queue or null if bucket is empty
+     */
+    NaivePendingOrder getFirstOrder() {
+        return head;
+    }
+
     /**
      * Get number of orders in the bucket
      *
      * @return number of orders in the bucket
      */
     public int getNumOrders() {
-        return entries.size();
+        return numOrders;
     }
 
     /**
-     * Reduce size of the order
+     * Reduce size of the regular order
      *
      * @param reduceSize - size to reduce (difference)
      */
     public void reduceSize(long reduceSize) {
 
-        totalVolume -= reduceSize;
+        reduceSize(reduceSize, reduceSize);
+    }
+
+    /**
+     * Reduce size of the order (visible size of iceberg order can be reduced less than unmatched size)
+     *
+     * @param visibleReduceSize - visible size to reduce (difference)
+     * @param reduceSize        - unmatched size to reduce
+     */
+    void reduceSize(long visibleReduceSize, long reduceSize) {
+
+        totalVolume -= visibleReduceSize;
+        fullVolume -= reduceSize;
     }
 
     public void validate() {
 
-        final long sum = entries.values().stream()
-                .mapToLong(NaivePendingOrder::getUnmatchedSize)
-                .sum();
+        long sum = 0;
+        long fullSum = 0;
+        int count = 0;
+        NaivePendingOrder prevOrder = null;
+        for (NaivePendingOrder order = head; order != null; order = order.next) {
+            if (order.prev != prevOrder || order.bucket != this) {
+                throw new IllegalStateException("broken links for order " + order.getOrderId());
+            }
+            if (order.getVisibleSize() <= 0 || order.getVisibleSize() > order.getUnmatchedSize()) {
+                throw new IllegalStateException("incorrect visible size for order " + order.getOrderId());
+            }
+            sum += order.getVisibleSize();
+            fullSum += order.getUnmatchedSize();
+            count++;
+            prevOrder = order;
+        }
+
+        if (prevOrder != tail || count != numOrders) {
+            final String msg = String.format("numOrders=%d counted=%d", numOrders, count);
+            throw new IllegalStateException(msg);
+        }
 
         if (sum != totalVolume) {
             final String msg = String.format("totalVolume=%d calculated=%d", totalVolume, sum);
             throw new IllegalStateException(msg);
         }
+
+        if (fullSum != fullVolume) {
+            final String msg = String.format("fullVolume=%d calculated=%d", fullVolume, fullSum);
+            throw new IllegalStateException(msg);
+        }
     }
 
     /**
@@ -160,7 +596,11 @@ public final class OrdersBucketNaive {
      * @return new array with references to orders, preserving execution queue order
      */
     public List<NaivePendingOrder> getAllOrders() {
-        return new ArrayList<>(entries.values());
+        final List<NaivePendingOrder> list = new ArrayList<>(numOrders);
+        for (NaivePendingOrder order = head; order != null; order = order.next) {
+            list.add(order);
+        }
+        return list;
     }
 
 
@@ -170,7 +610,9 @@ public final class OrdersBucketNaive {
      * @param consumer action consumer function
      */
     public void forEachOrder(Consumer<NaivePendingOrder> consumer) {
-        entries.values().forEach(consumer);
+        for (NaivePendingOrder order = head; order != null; order = order.next) {
+            consumer.accept(order);
+        }
     }
 
     public String dumpToSingleLine() {
@@ -184,9 +626,7 @@ public final class OrdersBucketNaive {
 
     @Override
     public int hashCode() {
-        return Objects.hash(
-                price,
-                Arrays.hashCode(entries.values().toArray(new NaivePendingOrder[0])));
+        return Objects.hash(price, getAllOrders());
     }
 
     @Override
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package exchange.core2.orderbook.stats;
+
+import org.agrona.BitUtil;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersManager;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Per-symbol order book counters allocated in Agrona {@link CountersManager}.
+ * <p>
+ * Single writer (matching thread) - counters are updated with ordered stores only,
+ * so external readers can sample them through {@link org.agrona.concurrent.status.CountersReader}
+ * without any locking.
+ * <p>
+ * Counter key layout: symbolId (int), result code (int, rejects only).
+ */
+public final class AgronaOrderBookCounters implements IOrderBookCounters, AutoCloseable {
+
+    public static final int TYPE_ID_ORDERS_PLACED = 2001;
+    public static final int TYPE_ID_TRADES = 2002;
+    public static final int TYPE_ID_TRADED_VOLUME = 2003;
+    public static final int TYPE_ID_LEVELS_SWEPT = 2004;
+    public static final int TYPE_ID_MAX_BUCKET_DEPTH = 2005;
+    public static final int TYPE_ID_REJECTS = 2006;
+
+    public static final int KEY_OFFSET_SYMBOL_ID = 0;
+    public static final int KEY_OFFSET_RESULT_CODE = KEY_OFFSET_SYMBOL_ID + BitUtil.SIZE_OF_INT;
+
+    // rejects with unknown codes are accounted in the last counter
+    private static final int MAX_KNOWN_RESULT_CODE = RESULT_MAX_CODE;
+    private static final short RESULT_CODE_OTHER = MAX_KNOWN_RESULT_CODE + 1;
+
+    private final AtomicCounter ordersPlaced;
+    private final AtomicCounter trades;
+    private final AtomicCounter tradedVolume;
+    private final AtomicCounter levelsSwept;
+    private final AtomicCounter maxBucketDepth;
+    private final AtomicCounter[] rejects;
+
+    public AgronaOrderBookCounters(final CountersManager countersManager,
+                                   final int symbolId) {
+
+        this.ordersPlaced = newCounter(countersManager, TYPE_ID_ORDERS_PLACED, symbolId, "orders placed");
+        this.trades = newCounter(countersManager, TYPE_ID_TRADES, symbolId, "trades");
+        this.tradedVolume = newCounter(countersManager, TYPE_ID_TRADED_VOLUME, symbolId, "traded volume");
+        this.levelsSwept = newCounter(countersManager, TYPE_ID_LEVELS_SWEPT, symbolId, "levels swept");
+        this.maxBucketDepth = newCounter(countersManager, TYPE_ID_MAX_BUCKET_DEPTH, symbolId, "max bucket depth");
+
+        this.rejects = new AtomicCounter[RESULT_CODE_OTHER + 1];
+        for (short code = 1; code <= RESULT_CODE_OTHER; code++) {
+            final int resultCode = code;
+            final String label = String.format("symbol=%d rejects code=%s", symbolId, code == RESULT_CODE_OTHER ? "other" : code);
+            rejects[code] = countersManager.newCounter(
+                    label,
+                    TYPE_ID_REJECTS,
+                    keyBuffer -> {
+                        keyBuffer.putInt(KEY_OFFSET_SYMBOL_ID, symbolId);
+                        keyBuffer.putInt(KEY_OFFSET_RESULT_CODE, resultCode);
+                    });
+        }
+    }
+
+    private static AtomicCounter newCounter(final CountersManager countersManager,
+                                            final int typeId,
+                                            final int symbolId,
+                                            final String name) {
+
+        return countersManager.newCounter(
+                String.format("symbol=%d %s", symbolId, name),
+                typeId,
+                keyBuffer -> keyBuffer.putInt(KEY_OFFSET_SYMBOL_ID, symbolId));
+    }
+
+    @Override
+    public void onOrderPlaced() {
+        ordersPlaced.incrementOrdered();
+    }
+
+    @Override
+    public void onTrade(final long tradeVolume) {
+        trades.incrementOrdered();
+        tradedVolume.getAndAddOrdered(tradeVolume);
+    }
+
+    @Override
+    public void onLevelSwept() {
+        levelsSwept.incrementOrdered();
+    }
+
+    @Override
+    public void onReject(final short resultCode) {
+        final int idx = (resultCode > 0 && resultCode <= MAX_KNOWN_RESULT_CODE) ? resultCode : RESULT_CODE_OTHER;
+        rejects[idx].incrementOrdered();
+    }
+
+    @Override
+    public void onBucketDepth(final int numOrders) {
+        maxBucketDepth.proposeMaxOrdered(numOrders);
+    }
+
+    public long getOrdersPlaced() {
+        return ordersPlaced.get();
+    }
+
+    public long getTrades() {
+        return trades.get();
+    }
+
+    public long getTradedVolume() {
+        return tradedVolume.get();
+    }
+
+    public long getLevelsSwept() {
+        return levelsSwept.get();
+    }
+
+    public long getMaxBucketDepth() {
+        return maxBucketDepth.get();
+    }
+
+    public long getRejects(final short resultCode) {
+        final int idx = (resultCode > 0 && resultCode <= MAX_KNOWN_RESULT_CODE) ? resultCode : RESULT_CODE_OTHER;
+        return rejects[idx].get();
+    }
+
+    /**
+     * Free all counters (should be called when order book is removed)
+     */
+    @Override
+    public void close() {
+        ordersPlaced.close();
+        trades.close();
+        tradedVolume.close();
+        levelsSwept.close();
+        maxBucketDepth.close();
+        for (int i = 1; i < rejects.length; i++) {
+            rejects[i].close();
+        }
+    }
+}
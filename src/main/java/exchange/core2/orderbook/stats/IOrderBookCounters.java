@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package exchange.core2.orderbook.stats;
+
+/**
+ * Hot-path instrumentation surface of an order book.
+ * <p>
+ * Called from the matching thread only, implementations must not allocate or block.
+ */
+public interface IOrderBookCounters {
+
+    /**
+     * New order command received (before validation)
+     */
+    void onOrderPlaced();
+
+    /**
+     * Trade event generated
+     *
+     * @param tradeVolume - traded volume
+     */
+    void onTrade(long tradeVolume);
+
+    /**
+     * Price level was completely consumed by a taker order
+     */
+    void onLevelSwept();
+
+    /**
+     * Command was rejected
+     *
+     * @param resultCode - non-successful result code (without flags)
+     */
+    void onReject(short resultCode);
+
+    /**
+     * Order was put into a price level
+     *
+     * @param numOrders - number of orders in the level after insertion
+     */
+    void onBucketDepth(int numOrders);
+
+    /**
+     * Counters implementation that ignores all events
+     */
+    IOrderBookCounters NONE = new IOrderBookCounters() {
+        @Override
+        public void onOrderPlaced() {
+        }
+
+        @Override
+        public void onTrade(long tradeVolume) {
+        }
+
+        @Override
+        public void onLevelSwept() {
+        }
+
+        @Override
+        public void onReject(short resultCode) {
+        }
+
+        @Override
+        public void onBucketDepth(int numOrders) {
+        }
+    };
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package exchange.core2.orderbook.stats;
+
+import exchange.core2.orderbook.IOrder;
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.ResponseFastDecoder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.agrona.DirectBuffer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Decorator measuring time spent inside order book for each command.
+ * <p>
+ * Latency is recorded (System.nanoTime) into per-command HdrHistogram {@link Recorder}s,
+ * place and move commands are additionally broken down by number of generated trades
+ * (counted from encoded responses, so with direct dispatch events sink all commands are recorded as TRADES_BUCKET_NONE).
+ * Recording is wait-free and does not allocate, interval histograms can be drained from any other thread.
+ *
+ * @param <S> ISymbolSpecification implementation
+ */
+public final class LatencyInstrumentedOrderBook<S extends ISymbolSpecification> implements IOrderBook<S> {
+
+    public static final int TRADES_BUCKET_NONE = 0;
+    public static final int TRADES_BUCKET_ONE = 1;
+    public static final int TRADES_BUCKET_2_TO_4 = 2;
+    public static final int TRADES_BUCKET_5_TO_19 = 3;
+    public static final int TRADES_BUCKET_20_PLUS = 4;
+
+    private static final int TRADES_BUCKETS_NUM = TRADES_BUCKET_20_PLUS + 1;
+    private static final int COMMANDS_NUM = COMMAND_MASS_QUOTE + 1;
+
+    private static final long HIGHEST_TRACKABLE_VALUE_NS = TimeUnit.SECONDS.toNanos(10);
+
+    private final IOrderBook<S> delegate;
+    private final BufferWriter resultsBuffer;
+
+    // [command code][trades bucket]
+    private final Recorder[][] recorders;
+
+    /**
+     * @param delegate      - instrumented order book
+     * @param resultsBuffer - results buffer of the instrumented order book (used for trades counting)
+     */
+    public LatencyInstrumentedOrderBook(final IOrderBook<S> delegate,
+                                        final BufferWriter resultsBuffer) {
+
+        this.delegate = delegate;
+        this.resultsBuffer = resultsBuffer;
+        this.recorders = new Recorder[COMMANDS_NUM][TRADES_BUCKETS_NUM];
+        for (int cmd = 0; cmd < COMMANDS_NUM; cmd++) {
+            for (int b = 0; b < TRADES_BUCKETS_NUM; b++) {
+                recorders[cmd][b] = new Recorder(HIGHEST_TRACKABLE_VALUE_NS, 3);
+            }
+        }
+    }
+
+    @Override
+    public void newOrder(final DirectBuffer buffer, final int offset, final long timestamp) {
+        final int startPosition = resultsBuffer.getWriterPosition();
+        final long t = System.nanoTime();
+        delegate.newOrder(buffer, offset, timestamp);
+        record(COMMAND_PLACE_ORDER, countTrades(startPosition), System.nanoTime() - t);
+    }
+
+    @Override
+    public void cancelOrder(final DirectBuffer buffer, final int offset) {
+        final long t = System.nanoTime();
+        delegate.cancelOrder(buffer, offset);
+        record(COMMAND_CANCEL_ORDER, 0, System.nanoTime() - t);
+    }
+
+    @Override
+    public void reduceOrder(final DirectBuffer buffer, final int offset) {
+        final long t = System.nanoTime();
+        delegate.reduceOrder(buffer, offset);
+        record(COMMAND_REDUCE_ORDER, 0, System.nanoTime() - t);
+    }
+
+    @Override
+    public void moveOrder(final DirectBuffer buffer, final int offset) {
+        final int startPosition = resultsBuffer.getWriterPosition();
+        final long t = System.nanoTime();
+        delegate.moveOrder(buffer, offset);
+        record(COMMAND_MOVE_ORDER, countTrades(startPosition), System.nanoTime() - t);
+    }
+
+    @Override
+    public void sendL2Snapshot(final DirectBuffer buffer, final int offset) {
+        final long t = System.nanoTime();
+        delegate.sendL2Snapshot(buffer, offset);
+        record(QUERY_ORDER_BOOK, 0, System.nanoTime() - t);
+    }
+
+    @Override
+    public void expireOrders(final long timestamp) {
+        final long t = System.nanoTime();
+        delegate.expireOrders(timestamp);
+        record(COMMAND_EXPIRE_ORDERS, 0, System.nanoTime() - t);
+    }
+
+    @Override
+    public void startAuction() {
+        delegate.startAuction();
+    }
+
+    @Override
+    public void uncross() {
+        final int startPosition = resultsBuffer.getWriterPosition();
+        final long t = System.nanoTime();
+        delegate.uncross();
+        record(COMMAND_UNCROSS, countTrades(startPosition), System.nanoTime() - t);
+    }
+
+    @Override
+    public void sendAuctionIndicative() {
+        final long t = System.nanoTime();
+        delegate.sendAuctionIndicative();
+        record(QUERY_AUCTION_INDICATIVE, 0, System.nanoTime() - t);
+    }
+
+    @Override
+    public void massQuote(final DirectBuffer buffer, final int offset, final long timestamp) {
+        final long t = System.nanoTime();
+        delegate.massQuote(buffer, offset, timestamp);
+        record(COMMAND_MASS_QUOTE, 0, System.nanoTime() - t);
+    }
+
+    private int countTrades(final int startPosition) {
+        return ResponseFastDecoder.countTradeEvents(
+                resultsBuffer.getBuffer(),
+                startPosition,
+                resultsBuffer.getWriterPosition() - startPosition);
+    }
+
+    private void record(final byte commandCode, final int trades, final long latencyNs) {
+        recorders[commandCode][tradesBucket(trades)].recordValue(Math.min(latencyNs, HIGHEST_TRACKABLE_VALUE_NS));
+    }
+
+    public static int tradesBucket(final int trades) {
+        if (trades == 0) {
+            return TRADES_BUCKET_NONE;
+        } else if (trades == 1) {
+            return TRADES_BUCKET_ONE;
+        } else if (trades < 5) {
+            return TRADES_BUCKET_2_TO_4;
+        } else if (trades < 20) {
+            return TRADES_BUCKET_5_TO_19;
+        } else {
+            return TRADES_BUCKET_20_PLUS;
+        }
+    }
+
+    /**
+     * Get interval histogram (values recorded since previous call for the same command and bucket).
+     * Can be called from any thread.
+     *
+     * @param commandCode         - command code (COMMAND_PLACE_ORDER, ..., COMMAND_MASS_QUOTE)
+     * @param tradesBucket        - trades bucket (TRADES_BUCKET_NONE for commands without trades)
+     * @param histogramToRecycle  - previously returned histogram to reuse (can be null)
+     * @return interval histogram, latency in nanoseconds
+     */
+    public Histogram getIntervalHistogram(final byte commandCode,
+                                          final int tradesBucket,
+                                          final Histogram histogramToRecycle) {
+
+        return recorders[commandCode][tradesBucket].getIntervalHistogram(histogramToRecycle);
+    }
+
+    /**
+     * Get interval histogram merged for all trades buckets of the command.
+     * Can be called from any thread.
+     *
+     * @param commandCode - command code
+     * @return new interval histogram, latency in nanoseconds
+     */
+    public Histogram getIntervalHistogram(final byte commandCode) {
+        final Histogram histogram = new Histogram(HIGHEST_TRACKABLE_VALUE_NS, 3);
+        for (final Recorder recorder : recorders[commandCode]) {
+            histogram.add(recorder.getIntervalHistogram());
+        }
+        return histogram;
+    }
+
+    public IOrderBook<S> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public IOrder getOrderById(final long orderId) {
+        return delegate.getOrderById(orderId);
+    }
+
+    @Override
+    public List<IOrder> findUserOrders(final long uid) {
+        return delegate.findUserOrders(uid);
+    }
+
+    @Override
+    public S getSymbolSpec() {
+        return delegate.getSymbolSpec();
+    }
+
+    @Override
+    public Stream<? extends IOrder> askOrdersStream(final boolean sorted) {
+        return delegate.askOrdersStream(sorted);
+    }
+
+    @Override
+    public Stream<? extends IOrder> bidOrdersStream(final boolean sorted) {
+        return delegate.bidOrdersStream(sorted);
+    }
+
+    @Override
+    public void verifyInternalState() {
+        delegate.verifyInternalState();
+    }
+
+    @Override
+    public int stateHash() {
+        return delegate.stateHash();
+    }
+}
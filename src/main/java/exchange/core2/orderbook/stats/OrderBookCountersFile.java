@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package exchange.core2.orderbook.stats;
+
+import org.agrona.BitUtil;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.CountersManager;
+import org.agrona.concurrent.status.CountersReader;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Memory-mapped file holding order book counters (similar to Aeron CnC file).
+ * <p>
+ * File layout: header (version, values buffer length), values buffer, metadata buffer.
+ * Writer process creates the file with {@link #create(File, int)},
+ * monitoring tools are attaching to it with {@link #mapExisting(File)}.
+ */
+public final class OrderBookCountersFile implements AutoCloseable {
+
+    public static final int FILE_VERSION = 1;
+
+    public static final int HEADER_OFFSET_VERSION = 0;
+    public static final int HEADER_OFFSET_VALUES_LENGTH = HEADER_OFFSET_VERSION + BitUtil.SIZE_OF_INT;
+    public static final int HEADER_LENGTH = BitUtil.CACHE_LINE_LENGTH * 2;
+
+    private final MappedByteBuffer mappedBuffer;
+    private final UnsafeBuffer valuesBuffer;
+    private final UnsafeBuffer metaDataBuffer;
+
+    private OrderBookCountersFile(final MappedByteBuffer mappedBuffer) {
+
+        this.mappedBuffer = mappedBuffer;
+
+        final UnsafeBuffer headerBuffer = new UnsafeBuffer(mappedBuffer, 0, HEADER_LENGTH);
+        final int version = headerBuffer.getIntVolatile(HEADER_OFFSET_VERSION);
+        if (version != FILE_VERSION) {
+            IoUtil.unmap(mappedBuffer);
+            throw new IllegalStateException("Unsupported counters file version: " + version);
+        }
+
+        final int valuesLength = headerBuffer.getInt(HEADER_OFFSET_VALUES_LENGTH);
+        this.valuesBuffer = new UnsafeBuffer(mappedBuffer, HEADER_LENGTH, valuesLength);
+        this.metaDataBuffer = new UnsafeBuffer(mappedBuffer, HEADER_LENGTH + valuesLength, metaDataLength(valuesLength));
+    }
+
+    /**
+     * Create new counters file (existing file will be overwritten)
+     *
+     * @param file        - file location
+     * @param maxCounters - maximum number of counters
+     * @return counters file
+     */
+    public static OrderBookCountersFile create(final File file, final int maxCounters) {
+
+        IoUtil.deleteIfExists(file);
+
+        final int valuesLength = maxCounters * CountersReader.COUNTER_LENGTH;
+        final MappedByteBuffer mappedBuffer = IoUtil.mapNewFile(file, HEADER_LENGTH + valuesLength + metaDataLength(valuesLength));
+
+        final UnsafeBuffer headerBuffer = new UnsafeBuffer(mappedBuffer, 0, HEADER_LENGTH);
+        headerBuffer.putInt(HEADER_OFFSET_VALUES_LENGTH, valuesLength);
+        headerBuffer.putIntVolatile(HEADER_OFFSET_VERSION, FILE_VERSION);
+
+        return new OrderBookCountersFile(mappedBuffer);
+    }
+
+    /**
+     * Map existing counters file created by another process
+     *
+     * @param file - file location
+     * @return counters file
+     */
+    public static OrderBookCountersFile mapExisting(final File file) {
+        return new OrderBookCountersFile(IoUtil.mapExistingFile(file, "order book counters"));
+    }
+
+    /**
+     * Creates counters manager (writer side). Should be called once by the process owning order books.
+     *
+     * @return counters manager
+     */
+    public CountersManager newCountersManager() {
+        return new CountersManager(metaDataBuffer, valuesBuffer);
+    }
+
+    /**
+     * Creates counters reader (monitoring side)
+     *
+     * @return counters reader
+     */
+    public CountersReader newCountersReader() {
+        return new CountersReader(metaDataBuffer, valuesBuffer);
+    }
+
+    private static int metaDataLength(final int valuesLength) {
+        return valuesLength * (CountersReader.METADATA_LENGTH / CountersReader.COUNTER_LENGTH);
+    }
+
+    @Override
+    public void close() {
+        IoUtil.unmap(mappedBuffer);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package exchange.core2.orderbook.stats;
+
+import org.agrona.concurrent.status.CountersReader;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.time.LocalTime;
+
+/**
+ * Console tool sampling order book counters file while engine is running (similar to AeronStat).
+ * <p>
+ * Usage: OrderBookStat &lt;counters file&gt; [symbolId] [delayMs]
+ */
+public final class OrderBookStat {
+
+    public static void main(final String[] args) throws InterruptedException {
+
+        if (args.length < 1) {
+            System.err.println("Usage: OrderBookStat <counters file> [symbolId] [delayMs]");
+            System.exit(1);
+        }
+
+        final File file = new File(args[0]);
+        final Integer symbolFilter = args.length > 1 ? Integer.valueOf(args[1]) : null;
+        final long delayMs = args.length > 2 ? Long.parseLong(args[2]) : 1000L;
+
+        try (OrderBookCountersFile countersFile = OrderBookCountersFile.mapExisting(file)) {
+            final CountersReader reader = countersFile.newCountersReader();
+            while (true) {
+                print(reader, symbolFilter, System.out);
+                Thread.sleep(delayMs);
+            }
+        }
+    }
+
+    public static void print(final CountersReader reader,
+                             final Integer symbolFilter,
+                             final PrintStream out) {
+
+        out.println(LocalTime.now() + " - order book counters");
+        out.println("======================================================");
+
+        reader.forEach((counterId, typeId, keyBuffer, label) -> {
+            final int symbolId = keyBuffer.getInt(AgronaOrderBookCounters.KEY_OFFSET_SYMBOL_ID);
+            if (symbolFilter == null || symbolFilter == symbolId) {
+                out.format("%3d: %,20d - %s%n", counterId, reader.getCounterValue(counterId), label);
+            }
+        });
+
+        out.println("--");
+    }
+}
@@ -22,13 +22,13 @@ import org.agrona.PrintBufferUtil;
 
 public class BufferReader {
 
-    private final DirectBuffer buffer;
+    private DirectBuffer buffer;
 
     // initial position (start of message)
-    private final int initialPosition;
+    private int initialPosition;
 
     // message size
-    private final int size;
+    private int size;
 
     // position pointer for sequential reading
     private int readPosition;
@@ -44,6 +44,22 @@ public class BufferReader {
         this.readPosition = initialPosition;
     }
 
+    /**
+     * Re-use reader for another message (no allocation)
+     *
+     * @param buffer          - buffer
+     * @param size            - message size
+     * @param initialPosition - start of message
+     */
+    public void wrap(final DirectBuffer buffer, final int size, final int initialPosition) {
+
+        this.buffer = buffer;
+        this.initialPosition = initialPosition;
+        this.size = size;
+
+        this.readPosition = initialPosition;
+    }
+
     public DirectBuffer getBuffer() {
         return buffer;
     }
@@ -88,7 +104,35 @@ public class BufferReader {
         return w;
     }
 
+    /**
+     * Read unsigned variable-length long written by {@link BufferWriter#appendVarLong}
+     *
+     * @return value
+     */
+    public long readVarLong() {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.getByte(readPosition++);
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return v;
+    }
+
+    /**
+     * Read signed variable-length long written by {@link BufferWriter#appendZigZagVarLong}
+     *
+     * @return value
+     */
+    public long readZigZagVarLong() {
+        final long v = readVarLong();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
     public void readBytesToWriter(final BufferWriter bufferWriter, final int length) {
+        bufferWriter.ensureCapacity(length);
         buffer.getBytes(readPosition, bufferWriter.getBuffer(), bufferWriter.getWriterPosition(), length);
         bufferWriter.skipBytes(length);
         readPosition += length;
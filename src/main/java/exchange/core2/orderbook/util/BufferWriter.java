@@ -17,20 +17,36 @@
 package exchange.core2.orderbook.util;
 
 import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.PrintBufferUtil;
 
+/**
+ * Sequential writer with explicit capacity checks.<p>
+ * Fixed-size buffer is never written beyond its capacity - overflow is reported as {@link IllegalStateException}.
+ * Order book checks space for maker events before matching (see IOrderBookEventsSink.getMakerEventsCapacity),
+ * so sweep is stopped before overflow, rather than failing when order book is already changed.
+ * Expandable buffer grows on demand (which copies its content).
+ * For deep sweeps, when response size is not bounded and already written data should not be copied,
+ * use large {@link ReservedDirectBuffer} - its memory is committed by OS only when touched.
+ */
 public class BufferWriter {
 
+    public static final int MAX_VAR_LONG_SIZE = 10;
+
     private final MutableDirectBuffer buffer;
     private final int initialPosition;
     private int writerPosition;
 
+    // cached capacity, refreshed when expandable buffer grows
+    private int capacity;
+
     public BufferWriter(final MutableDirectBuffer buffer, final int initialPosition) {
 
         this.buffer = buffer;
         this.initialPosition = initialPosition;
         this.writerPosition = initialPosition;
+        this.capacity = buffer.capacity();
     }
 
     public MutableDirectBuffer getBuffer() {
@@ -45,7 +61,34 @@ public class BufferWriter {
         return writerPosition;
     }
 
+    public int remainingCapacity() {
+        return buffer.isExpandable() ? Integer.MAX_VALUE - writerPosition : capacity - writerPosition;
+    }
+
+    /**
+     * Make sure next length bytes can be written (or skipped and then overwritten).
+     * Expands buffer if it is expandable.
+     *
+     * @param length - number of bytes to be written
+     * @throws IllegalStateException if fixed-size buffer capacity is not sufficient
+     */
+    public void ensureCapacity(final int length) {
+        final int limit = writerPosition + length;
+        if (limit > capacity) {
+            expand(limit);
+        }
+    }
+
+    private void expand(final int limit) {
+        if (!buffer.isExpandable() || limit < 0) {
+            throw new IllegalStateException("Buffer overflow: position=" + writerPosition + " limit=" + limit + " capacity=" + capacity);
+        }
+        buffer.checkLimit(limit);
+        capacity = buffer.capacity();
+    }
+
     public void skipBytes(int bytesToSkip) {
+        ensureCapacity(bytesToSkip);
         writerPosition += bytesToSkip;
     }
 
@@ -54,25 +97,52 @@ public class BufferWriter {
     }
 
     public void appendByte(final byte b) {
+        ensureCapacity(BitUtil.SIZE_OF_BYTE);
         buffer.putByte(writerPosition, b);
         writerPosition += BitUtil.SIZE_OF_BYTE;
     }
 
     public void appendShort(final short s) {
+        ensureCapacity(BitUtil.SIZE_OF_SHORT);
         buffer.putShort(writerPosition, s);
         writerPosition += BitUtil.SIZE_OF_SHORT;
     }
 
     public void appendInt(final int i) {
+        ensureCapacity(BitUtil.SIZE_OF_INT);
         buffer.putInt(writerPosition, i);
         writerPosition += BitUtil.SIZE_OF_INT;
     }
 
     public void appendLong(final long w) {
+        ensureCapacity(BitUtil.SIZE_OF_LONG);
         buffer.putLong(writerPosition, w);
         writerPosition += BitUtil.SIZE_OF_LONG;
     }
 
+    /**
+     * Append unsigned variable-length long (7 bits per byte, up to 10 bytes)
+     *
+     * @param v - value, treated as unsigned
+     */
+    public void appendVarLong(long v) {
+        ensureCapacity(MAX_VAR_LONG_SIZE);
+        while ((v & ~0x7FL) != 0) {
+            buffer.putByte(writerPosition++, (byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.putByte(writerPosition++, (byte) v);
+    }
+
+    /**
+     * Append signed variable-length long (zigzag encoding - small negative values take few bytes as well)
+     *
+     * @param v - value
+     */
+    public void appendZigZagVarLong(final long v) {
+        appendVarLong((v << 1) ^ (v >> 63));
+    }
+
     public void overwriteByte(final int offset, final byte b) {
         buffer.putByte(offset, b);
     }
@@ -89,7 +159,26 @@ public class BufferWriter {
         buffer.putLong(offset, w);
     }
 
+    public void appendBytes(final DirectBuffer srcBuffer, final int srcOffset, final int length) {
+        ensureCapacity(length);
+        buffer.putBytes(writerPosition, srcBuffer, srcOffset, length);
+        writerPosition += length;
+    }
+
+    /**
+     * Move writer position back, discarding everything written after the position
+     *
+     * @param position - new writer position
+     */
+    public void rewind(final int position) {
+        if (position < initialPosition || position > writerPosition) {
+            throw new IllegalArgumentException("Can not rewind to position " + position);
+        }
+        writerPosition = position;
+    }
+
     public void appendBytesFromReader(final BufferReader reader, final int length) {
+        ensureCapacity(length);
         reader.getBuffer().getBytes(reader.getReadPosition(), buffer, writerPosition, length);
         writerPosition += length;
         reader.skipBytes(length);
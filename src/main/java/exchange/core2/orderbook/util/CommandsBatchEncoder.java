@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.util;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.OrderAction;
+import org.agrona.BitUtil;
+import org.agrona.MutableDirectBuffer;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Writes batch of commands into one reusable buffer, every command is framed as [int length][byte command code][command]
+ * (see IOrderBook.BATCH_FRAME_* offsets). Batch can be executed by {@link IOrderBook#processCommands}.<p>
+ * Frame capacity is checked before any byte is written, so fixed-size buffer overflow
+ * ({@link IllegalStateException}) leaves already encoded commands intact.
+ */
+public final class CommandsBatchEncoder {
+
+    private final BufferWriter writer;
+
+    private int commandsNum = 0;
+
+    public CommandsBatchEncoder(final BufferWriter writer) {
+        this.writer = writer;
+    }
+
+    public CommandsBatchEncoder(final MutableDirectBuffer buffer, final int initialPosition) {
+        this(new BufferWriter(buffer, initialPosition));
+    }
+
+    public MutableDirectBuffer getBuffer() {
+        return writer.getBuffer();
+    }
+
+    public int getInitialPosition() {
+        return writer.getInitialPosition();
+    }
+
+    /**
+     * @return offset where next frame will be written
+     */
+    public int getPosition() {
+        return writer.getWriterPosition();
+    }
+
+    /**
+     * @return total length of encoded frames
+     */
+    public int getLength() {
+        return writer.getWriterPosition() - writer.getInitialPosition();
+    }
+
+    public int getCommandsNum() {
+        return commandsNum;
+    }
+
+    public int remainingCapacity() {
+        return writer.remainingCapacity();
+    }
+
+    /**
+     * Discard all encoded commands, buffer is reused for the next batch
+     */
+    public void reset() {
+        writer.reset();
+        commandsNum = 0;
+    }
+
+    public void placeOrder(final byte type,
+                           final long orderId,
+                           final long uid,
+                           final long price,
+                           final long reservedBidPrice,
+                           final long size,
+                           final OrderAction action,
+                           final int userCookie) {
+
+        final int offset = beginFrame(COMMAND_PLACE_ORDER, PLACE_OFFSET_END);
+        CommandsEncoder.placeOrder(writer.getBuffer(), offset, type, orderId, uid, price, reservedBidPrice, size, action, userCookie);
+    }
+
+    public void placeOrder(final byte type,
+                           final long orderId,
+                           final long uid,
+                           final long price,
+                           final long reservedBidPrice,
+                           final long size,
+                           final OrderAction action,
+                           final int userCookie,
+                           final byte flags,
+                           final long minQuantity) {
+
+        // order type extension is not written here, same as in CommandsEncoder
+        final int offset = beginFrame(COMMAND_PLACE_ORDER, IOrderBook.placeCommandSize(type, flags));
+        CommandsEncoder.placeOrder(writer.getBuffer(), offset, type, orderId, uid, price, reservedBidPrice, size, action, userCookie, flags, minQuantity);
+    }
+
+    public void placeStopOrder(final byte type,
+                               final long orderId,
+                               final long uid,
+                               final long price,
+                               final long reservedBidPrice,
+                               final long size,
+                               final OrderAction action,
+                               final int userCookie,
+                               final long stopPrice) {
+
+        final int offset = beginFrame(COMMAND_PLACE_ORDER, PLACE_STOP_OFFSET_END);
+        CommandsEncoder.placeStopOrder(writer.getBuffer(), offset, type, orderId, uid, price, reservedBidPrice, size, action, userCookie, stopPrice);
+    }
+
+    public void placeIcebergOrder(final long orderId,
+                                  final long uid,
+                                  final long price,
+                                  final long reservedBidPrice,
+                                  final long size,
+                                  final OrderAction action,
+                                  final int userCookie,
+                                  final long displaySize) {
+
+        final int offset = beginFrame(COMMAND_PLACE_ORDER, PLACE_ICEBERG_OFFSET_END);
+        CommandsEncoder.placeIcebergOrder(writer.getBuffer(), offset, orderId, uid, price, reservedBidPrice, size, action, userCookie, displaySize);
+    }
+
+    public void placeGtdOrder(final long orderId,
+                              final long uid,
+                              final long price,
+                              final long reservedBidPrice,
+                              final long size,
+                              final OrderAction action,
+                              final int userCookie,
+                              final long expireTimestamp) {
+
+        final int offset = beginFrame(COMMAND_PLACE_ORDER, PLACE_GTD_OFFSET_END);
+        CommandsEncoder.placeGtdOrder(writer.getBuffer(), offset, orderId, uid, price, reservedBidPrice, size, action, userCookie, expireTimestamp);
+    }
+
+    public void placePeggedOrder(final long orderId,
+                                 final long uid,
+                                 final long reservedBidPrice,
+                                 final long size,
+                                 final OrderAction action,
+                                 final int userCookie,
+                                 final byte pegType,
+                                 final long pegOffset) {
+
+        final int offset = beginFrame(COMMAND_PLACE_ORDER, PLACE_PEGGED_OFFSET_END);
+        CommandsEncoder.placePeggedOrder(writer.getBuffer(), offset, orderId, uid, reservedBidPrice, size, action, userCookie, pegType, pegOffset);
+    }
+
+    public void cancel(final long orderId,
+                       final long uid) {
+
+        final int offset = beginFrame(COMMAND_CANCEL_ORDER, CANCEL_OFFSET_END);
+        CommandsEncoder.cancel(writer.getBuffer(), offset, orderId, uid);
+    }
+
+    public void reduce(final long orderId,
+                       final long uid,
+                       final long size) {
+
+        final int offset = beginFrame(COMMAND_REDUCE_ORDER, REDUCE_OFFSET_END);
+        CommandsEncoder.reduce(writer.getBuffer(), offset, orderId, uid, size);
+    }
+
+    public void move(final long orderId,
+                     final long uid,
+                     final long price) {
+
+        final int offset = beginFrame(COMMAND_MOVE_ORDER, MOVE_OFFSET_END);
+        CommandsEncoder.move(writer.getBuffer(), offset, orderId, uid, price);
+    }
+
+    /**
+     * Mass quote with first entriesNum entries of parallel arrays (reserved bid price equals price).
+     * Arrays can be reused by caller.
+     */
+    public void massQuote(final long uid,
+                          final long quoteSetId,
+                          final long firstOrderId,
+                          final int entriesNum,
+                          final long[] prices,
+                          final long[] sizes,
+                          final OrderAction[] actions) {
+
+        int offset = beginFrame(COMMAND_MASS_QUOTE, QUOTE_OFFSET_END + entriesNum * QUOTE_ENTRY_OFFSET_END);
+        final MutableDirectBuffer buffer = writer.getBuffer();
+        offset += CommandsEncoder.massQuote(buffer, offset, uid, quoteSetId, firstOrderId, entriesNum);
+        for (int i = 0; i < entriesNum; i++) {
+            offset += CommandsEncoder.massQuoteEntry(buffer, offset, prices[i], prices[i], sizes[i], actions[i]);
+        }
+    }
+
+    public void L2DataQuery(final int limit) {
+
+        final int offset = beginFrame(QUERY_ORDER_BOOK, BitUtil.SIZE_OF_INT);
+        CommandsEncoder.L2DataQuery(writer.getBuffer(), offset, limit);
+    }
+
+    public void expireOrders() {
+        beginFrame(COMMAND_EXPIRE_ORDERS, 0);
+    }
+
+    public void startAuction() {
+        beginFrame(COMMAND_START_AUCTION, 0);
+    }
+
+    public void uncross() {
+        beginFrame(COMMAND_UNCROSS, 0);
+    }
+
+    public void auctionIndicative() {
+        beginFrame(QUERY_AUCTION_INDICATIVE, 0);
+    }
+
+    /**
+     * Write frame header and reserve space for the command
+     *
+     * @return command offset
+     */
+    private int beginFrame(final byte cmdCode, final int commandSize) {
+
+        writer.ensureCapacity(BATCH_FRAME_OFFSET_COMMAND + commandSize);
+
+        final int frameOffset = writer.getWriterPosition();
+        writer.appendInt(BitUtil.SIZE_OF_BYTE + commandSize);
+        writer.appendByte(cmdCode);
+        writer.skipBytes(commandSize);
+        commandsNum++;
+
+        return frameOffset + BATCH_FRAME_OFFSET_COMMAND;
+    }
+}
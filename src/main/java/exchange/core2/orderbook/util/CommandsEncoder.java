@@ -85,9 +85,311 @@ public final class CommandsEncoder {
         buf.putInt(offset + PLACE_OFFSET_USER_COOKIE, userCookie);
         buf.putByte(offset + PLACE_OFFSET_ACTION, action.getCode());
         buf.putByte(offset + PLACE_OFFSET_TYPE, type);
+        buf.putByte(offset + PLACE_OFFSET_FLAGS, (byte) 0);
         return IOrderBook.PLACE_OFFSET_END;
     }
 
+    public static void placeOrder(final BufferWriter bufferWriter,
+                                  final byte type,
+                                  final long orderId,
+                                  final long uid,
+                                  final long price,
+                                  final long reservedBidPrice,
+                                  final long size,
+                                  final OrderAction action,
+                                  final int userCookie,
+                                  final byte flags,
+                                  final long minQuantity) {
+
+        final int bytesWritten = placeOrder(
+                bufferWriter.getBuffer(),
+                bufferWriter.getWriterPosition(),
+                type,
+                orderId,
+                uid,
+                price,
+                reservedBidPrice,
+                size,
+                action,
+                userCookie,
+                flags,
+                minQuantity);
+
+        bufferWriter.skipBytes(bytesWritten);
+    }
+
+    public static MutableDirectBuffer placeOrder(final byte type,
+                                                 final long orderId,
+                                                 final long uid,
+                                                 final long price,
+                                                 final long reservedBidPrice,
+                                                 final long size,
+                                                 final OrderAction action,
+                                                 final int userCookie,
+                                                 final byte flags,
+                                                 final long minQuantity) {
+
+        final MutableDirectBuffer buf = new ExpandableDirectByteBuffer(64);
+        placeOrder(buf, 0, type, orderId, uid, price, reservedBidPrice, size, action, userCookie, flags, minQuantity);
+        return buf;
+    }
+
+    /**
+     * Place order with flags. Order type extension (if any) should be written by caller.
+     *
+     * @return command size
+     */
+    public static int placeOrder(final MutableDirectBuffer buf,
+                                 final int offset,
+                                 final byte type,
+                                 final long orderId,
+                                 final long uid,
+                                 final long price,
+                                 final long reservedBidPrice,
+                                 final long size,
+                                 final OrderAction action,
+                                 final int userCookie,
+                                 final byte flags,
+                                 final long minQuantity) {
+
+        placeOrder(buf, offset, type, orderId, uid, price, reservedBidPrice, size, action, userCookie);
+        buf.putByte(offset + PLACE_OFFSET_FLAGS, flags);
+        if ((flags & PLACE_FLAG_MIN_QUANTITY) != 0) {
+            buf.putLong(offset + IOrderBook.placeCommandSize(type), minQuantity);
+        }
+        return IOrderBook.placeCommandSize(type, flags);
+    }
+
+    public static void placeStopOrder(final BufferWriter bufferWriter,
+                                      final byte type,
+                                      final long orderId,
+                                      final long uid,
+                                      final long price,
+                                      final long reservedBidPrice,
+                                      final long size,
+                                      final OrderAction action,
+                                      final int userCookie,
+                                      final long stopPrice) {
+
+        final int bytesWritten = placeStopOrder(
+                bufferWriter.getBuffer(),
+                bufferWriter.getWriterPosition(),
+                type,
+                orderId,
+                uid,
+                price,
+                reservedBidPrice,
+                size,
+                action,
+                userCookie,
+                stopPrice);
+
+        bufferWriter.skipBytes(bytesWritten);
+    }
+
+    public static MutableDirectBuffer placeStopOrder(final byte type,
+                                                     final long orderId,
+                                                     final long uid,
+                                                     final long price,
+                                                     final long reservedBidPrice,
+                                                     final long size,
+                                                     final OrderAction action,
+                                                     final int userCookie,
+                                                     final long stopPrice) {
+
+        final MutableDirectBuffer buf = new ExpandableDirectByteBuffer(64);
+        placeStopOrder(buf, 0, type, orderId, uid, price, reservedBidPrice, size, action, userCookie, stopPrice);
+        return buf;
+    }
+
+    public static int placeStopOrder(final MutableDirectBuffer buf,
+                                     final int offset,
+                                     final byte type,
+                                     final long orderId,
+                                     final long uid,
+                                     final long price,
+                                     final long reservedBidPrice,
+                                     final long size,
+                                     final OrderAction action,
+                                     final int userCookie,
+                                     final long stopPrice) {
+
+        placeOrder(buf, offset, type, orderId, uid, price, reservedBidPrice, size, action, userCookie);
+        buf.putLong(offset + PLACE_OFFSET_STOP_PRICE, stopPrice);
+        return IOrderBook.PLACE_STOP_OFFSET_END;
+    }
+
+    public static void placeIcebergOrder(final BufferWriter bufferWriter,
+                                         final long orderId,
+                                         final long uid,
+                                         final long price,
+                                         final long reservedBidPrice,
+                                         final long size,
+                                         final OrderAction action,
+                                         final int userCookie,
+                                         final long displaySize) {
+
+        final int bytesWritten = placeIcebergOrder(
+                bufferWriter.getBuffer(),
+                bufferWriter.getWriterPosition(),
+                orderId,
+                uid,
+                price,
+                reservedBidPrice,
+                size,
+                action,
+                userCookie,
+                displaySize);
+
+        bufferWriter.skipBytes(bytesWritten);
+    }
+
+    public static MutableDirectBuffer placeIcebergOrder(final long orderId,
+                                                        final long uid,
+                                                        final long price,
+                                                        final long reservedBidPrice,
+                                                        final long size,
+                                                        final OrderAction action,
+                                                        final int userCookie,
+                                                        final long displaySize) {
+
+        final MutableDirectBuffer buf = new ExpandableDirectByteBuffer(64);
+        placeIcebergOrder(buf, 0, orderId, uid, price, reservedBidPrice, size, action, userCookie, displaySize);
+        return buf;
+    }
+
+    public static int placeIcebergOrder(final MutableDirectBuffer buf,
+                                        final int offset,
+                                        final long orderId,
+                                        final long uid,
+                                        final long price,
+                                        final long reservedBidPrice,
+                                        final long size,
+                                        final OrderAction action,
+                                        final int userCookie,
+                                        final long displaySize) {
+
+        placeOrder(buf, offset, ORDER_TYPE_ICEBERG, orderId, uid, price, reservedBidPrice, size, action, userCookie);
+        buf.putLong(offset + PLACE_OFFSET_DISPLAY_SIZE, displaySize);
+        return IOrderBook.PLACE_ICEBERG_OFFSET_END;
+    }
+
+    public static void placeGtdOrder(final BufferWriter bufferWriter,
+                                     final long orderId,
+                                     final long uid,
+                                     final long price,
+                                     final long reservedBidPrice,
+                                     final long size,
+                                     final OrderAction action,
+                                     final int userCookie,
+                                     final long expireTimestamp) {
+
+        final int bytesWritten = placeGtdOrder(
+                bufferWriter.getBuffer(),
+                bufferWriter.getWriterPosition(),
+                orderId,
+                uid,
+                price,
+                reservedBidPrice,
+                size,
+                action,
+                userCookie,
+                expireTimestamp);
+
+        bufferWriter.skipBytes(bytesWritten);
+    }
+
+    public static MutableDirectBuffer placeGtdOrder(final long orderId,
+                                                    final long uid,
+                                                    final long price,
+                                                    final long reservedBidPrice,
+                                                    final long size,
+                                                    final OrderAction action,
+                                                    final int userCookie,
+                                                    final long expireTimestamp) {
+
+        final MutableDirectBuffer buf = new ExpandableDirectByteBuffer(64);
+        placeGtdOrder(buf, 0, orderId, uid, price, reservedBidPrice, size, action, userCookie, expireTimestamp);
+        return buf;
+    }
+
+    public static int placeGtdOrder(final MutableDirectBuffer buf,
+                                    final int offset,
+                                    final long orderId,
+                                    final long uid,
+                                    final long price,
+                                    final long reservedBidPrice,
+                                    final long size,
+                                    final OrderAction action,
+                                    final int userCookie,
+                                    final long expireTimestamp) {
+
+        placeOrder(buf, offset, ORDER_TYPE_GTD, orderId, uid, price, reservedBidPrice, size, action, userCookie);
+        buf.putLong(offset + PLACE_OFFSET_EXPIRE_TIMESTAMP, expireTimestamp);
+        return IOrderBook.PLACE_GTD_OFFSET_END;
+    }
+
+    public static void placePeggedOrder(final BufferWriter bufferWriter,
+                                        final long orderId,
+                                        final long uid,
+                                        final long reservedBidPrice,
+                                        final long size,
+                                        final OrderAction action,
+                                        final int userCookie,
+                                        final byte pegType,
+                                        final long pegOffset) {
+
+        final int bytesWritten = placePeggedOrder(
+                bufferWriter.getBuffer(),
+                bufferWriter.getWriterPosition(),
+                orderId,
+                uid,
+                reservedBidPrice,
+                size,
+                action,
+                userCookie,
+                pegType,
+                pegOffset);
+
+        bufferWriter.skipBytes(bytesWritten);
+    }
+
+    public static MutableDirectBuffer placePeggedOrder(final long orderId,
+                                                       final long uid,
+                                                       final long reservedBidPrice,
+                                                       final long size,
+                                                       final OrderAction action,
+                                                       final int userCookie,
+                                                       final byte pegType,
+                                                       final long pegOffset) {
+
+        final MutableDirectBuffer buf = new ExpandableDirectByteBuffer(64);
+        placePeggedOrder(buf, 0, orderId, uid, reservedBidPrice, size, action, userCookie, pegType, pegOffset);
+        return buf;
+    }
+
+    /**
+     * Place pegged order (price field is not used by pegged orders, written as 0)
+     *
+     * @return command size
+     */
+    public static int placePeggedOrder(final MutableDirectBuffer buf,
+                                       final int offset,
+                                       final long orderId,
+                                       final long uid,
+                                       final long reservedBidPrice,
+                                       final long size,
+                                       final OrderAction action,
+                                       final int userCookie,
+                                       final byte pegType,
+                                       final long pegOffset) {
+
+        placeOrder(buf, offset, ORDER_TYPE_PEGGED, orderId, uid, 0L, reservedBidPrice, size, action, userCookie);
+        buf.putLong(offset + PLACE_OFFSET_PEG_OFFSET, pegOffset);
+        buf.putByte(offset + PLACE_OFFSET_PEG_TYPE, pegType);
+        return IOrderBook.PLACE_PEGGED_OFFSET_END;
+    }
+
     public static void cancel(final BufferWriter bufferWriter,
                               final long orderId,
                               final long uid) {
@@ -194,6 +496,59 @@ public final class CommandsEncoder {
     }
 
 
+    /**
+     * Mass quote header, entries should be written after it by {@link #massQuoteEntry}
+     *
+     * @return header size
+     */
+    public static int massQuote(final MutableDirectBuffer buf,
+                                final int offset,
+                                final long uid,
+                                final long quoteSetId,
+                                final long firstOrderId,
+                                final int entriesNum) {
+
+        buf.putLong(offset + QUOTE_OFFSET_UID, uid);
+        buf.putLong(offset + QUOTE_OFFSET_QUOTE_SET_ID, quoteSetId);
+        buf.putLong(offset + QUOTE_OFFSET_FIRST_ORDER_ID, firstOrderId);
+        buf.putInt(offset + QUOTE_OFFSET_ENTRIES_NUM, entriesNum);
+        return QUOTE_OFFSET_END;
+    }
+
+    public static int massQuoteEntry(final MutableDirectBuffer buf,
+                                     final int offset,
+                                     final long price,
+                                     final long reservedBidPrice,
+                                     final long size,
+                                     final OrderAction action) {
+
+        buf.putLong(offset + QUOTE_ENTRY_OFFSET_PRICE, price);
+        buf.putLong(offset + QUOTE_ENTRY_OFFSET_RESERVED_BID_PRICE, reservedBidPrice);
+        buf.putLong(offset + QUOTE_ENTRY_OFFSET_SIZE, size);
+        buf.putByte(offset + QUOTE_ENTRY_OFFSET_ACTION, action.getCode());
+        return QUOTE_ENTRY_OFFSET_END;
+    }
+
+    /**
+     * Mass quote with entries given as parallel arrays (reserved bid price equals price)
+     *
+     * @return command buffer
+     */
+    public static MutableDirectBuffer massQuote(final long uid,
+                                                final long quoteSetId,
+                                                final long firstOrderId,
+                                                final long[] prices,
+                                                final long[] sizes,
+                                                final OrderAction[] actions) {
+
+        final MutableDirectBuffer buf = new ExpandableDirectByteBuffer(QUOTE_OFFSET_END + prices.length * QUOTE_ENTRY_OFFSET_END);
+        int offset = massQuote(buf, 0, uid, quoteSetId, firstOrderId, prices.length);
+        for (int i = 0; i < prices.length; i++) {
+            offset += massQuoteEntry(buf, offset, prices[i], prices[i], sizes[i], actions[i]);
+        }
+        return buf;
+    }
+
     public static void L2DataQuery(final BufferWriter bufferWriter,
                                    final int limit) {
 
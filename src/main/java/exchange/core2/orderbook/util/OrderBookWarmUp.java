@@ -0,0 +1,243 @@
+/*
+ * Copyright 2020 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.util;
+
+import exchange.core2.orderbook.IOrder;
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.BiFunction;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Exercises all command paths of a throwaway order book instance,
+ * so JIT has compiled them before the first real order arrives.<p>
+ * Throwaway instance is created by provided factory (results writer, triggered results writer)
+ * and should be configured exactly like the real one (same implementation and symbol specification).
+ * Prices and sizes are aligned to tick size, lot size and price band of the specification.<p>
+ * Produces garbage - should be called before trading starts.
+ */
+public final class OrderBookWarmUp {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderBookWarmUp.class);
+
+    private static final long UID_MAKER_ASK = 1L;
+    private static final long UID_MAKER_BID = 2L;
+    private static final long UID_TAKER = 3L;
+    private static final long UID_QUOTER = 4L;
+
+    private static final long QUOTE_SET_ID = 1L;
+
+    // order ids used by one iteration
+    private static final long IDS_PER_ITERATION = 64L;
+
+    private static final long NANOS_PER_ITERATION = 1_000_000_000L;
+
+    private final IOrderBook<?> orderBook;
+    private final BufferWriter resultsWriter;
+    private final BufferWriter triggeredResultsWriter;
+    private final MutableDirectBuffer cmd = new ExpandableDirectByteBuffer(256);
+
+    private final boolean exchangeType;
+    private final long step;
+    private final long lot;
+    private final long mid;
+    private final long bidReserve;
+
+    private OrderBookWarmUp(final BiFunction<BufferWriter, BufferWriter, IOrderBook<?>> factory) {
+
+        this.resultsWriter = new BufferWriter(new ExpandableDirectByteBuffer(4096), 0);
+        this.triggeredResultsWriter = new BufferWriter(new ExpandableDirectByteBuffer(4096), 0);
+        this.orderBook = factory.apply(resultsWriter, triggeredResultsWriter);
+
+        final ISymbolSpecification spec = orderBook.getSymbolSpec();
+        this.exchangeType = spec.isExchangeType();
+        this.step = spec.getTickSize() > 0 ? spec.getTickSize() : 1L;
+        this.lot = spec.getLotSize() > 0 ? spec.getLotSize() : 1L;
+
+        final long low = spec.getPriceBandLow() != 0 ? spec.getPriceBandLow() : spec.getExpectedPriceLow();
+        final long high = spec.getPriceBandHigh() != 0 ? spec.getPriceBandHigh() : spec.getExpectedPriceHigh();
+        final long center = (low != 0 && high != 0) ? (low + high) / 2 : 10_000L * step;
+        this.mid = center - center % step;
+        this.bidReserve = mid + 20 * step;
+    }
+
+    /**
+     * Run warm-up
+     *
+     * @param factory    - creates throwaway order book instance for provided results writers
+     * @param iterations - number of iterations, each iteration sends every command type several times
+     * @return elapsed time (nanoseconds)
+     */
+    public static long warmUp(final BiFunction<BufferWriter, BufferWriter, IOrderBook<?>> factory,
+                              final int iterations) {
+
+        final OrderBookWarmUp warmUp = new OrderBookWarmUp(factory);
+
+        final long t = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            warmUp.iteration(i * IDS_PER_ITERATION, (i + 1) * NANOS_PER_ITERATION);
+        }
+        final long elapsedNs = System.nanoTime() - t;
+
+        log.debug("Order book warm-up: {} iterations in {}us", iterations, elapsedNs / 1000);
+        return elapsedNs;
+    }
+
+    private void iteration(final long firstId, final long timestamp) {
+
+        long id = firstId;
+
+        // resting orders: 5 levels on each side
+        for (int k = 1; k <= 5; k++) {
+            place(ORDER_TYPE_GTC, ++id, UID_MAKER_ASK, mid + k * step, 2 * lot, OrderAction.ASK, timestamp);
+            place(ORDER_TYPE_GTC, ++id, UID_MAKER_BID, mid - k * step, 2 * lot, OrderAction.BID, timestamp);
+        }
+
+        // post-only with slide (crosses the book)
+        CommandsEncoder.placeOrder(cmd, 0, ORDER_TYPE_GTC, ++id, UID_MAKER_BID, mid + 2 * step, bidReserve, lot,
+                OrderAction.BID, 0, PLACE_FLAG_POST_ONLY_SLIDE, 0L);
+        newOrder(timestamp);
+
+        // iceberg, good-till-date and pegged orders
+        CommandsEncoder.placeIcebergOrder(cmd, 0, ++id, UID_MAKER_ASK, mid + 6 * step, mid + 6 * step, 4 * lot, OrderAction.ASK, 0, lot);
+        newOrder(timestamp);
+
+        CommandsEncoder.placeGtdOrder(cmd, 0, ++id, UID_MAKER_BID, mid - 6 * step, bidReserve, lot, OrderAction.BID, 0, timestamp + NANOS_PER_ITERATION / 2);
+        newOrder(timestamp);
+
+        CommandsEncoder.placePeggedOrder(cmd, 0, ++id, UID_MAKER_ASK, 0L, lot, OrderAction.ASK, 0, PEG_TYPE_PRIMARY, step);
+        newOrder(timestamp);
+
+        if (!exchangeType) {
+            CommandsEncoder.placePeggedOrder(cmd, 0, ++id, UID_MAKER_BID, 0L, lot, OrderAction.BID, 0, PEG_TYPE_MIDPOINT, 0L);
+            newOrder(timestamp);
+        }
+
+        // stop orders (triggered by trades below)
+        CommandsEncoder.placeStopOrder(cmd, 0, ORDER_TYPE_STOP_LIMIT, ++id, UID_TAKER, mid + 4 * step, bidReserve, lot, OrderAction.BID, 0, mid + 3 * step);
+        newOrder(timestamp);
+
+        CommandsEncoder.placeStopOrder(cmd, 0, ORDER_TYPE_STOP, ++id, UID_TAKER, mid - 5 * step, mid - 5 * step, lot, OrderAction.ASK, 0, mid - 3 * step);
+        newOrder(timestamp);
+
+        // moves: non-marketable (fast path), then marketable
+        final long firstBidId = firstId + 2;
+        CommandsEncoder.move(cmd, 0, firstBidId, UID_MAKER_BID, mid - 2 * step);
+        orderBook.moveOrder(cmd, 0);
+        resetWriters();
+
+        CommandsEncoder.move(cmd, 0, firstBidId, UID_MAKER_BID, mid + step);
+        orderBook.moveOrder(cmd, 0);
+        resetWriters();
+
+        // reduce and cancel
+        CommandsEncoder.reduce(cmd, 0, firstId + 4, UID_MAKER_BID, lot);
+        orderBook.reduceOrder(cmd, 0);
+        resetWriters();
+
+        CommandsEncoder.cancel(cmd, 0, firstId + 3, UID_MAKER_ASK);
+        orderBook.cancelOrder(cmd, 0);
+        resetWriters();
+
+        // takers
+        place(ORDER_TYPE_IOC, ++id, UID_TAKER, mid + 3 * step, 3 * lot, OrderAction.BID, timestamp);
+        place(ORDER_TYPE_FOK, ++id, UID_TAKER, mid - 4 * step, 2 * lot, OrderAction.ASK, timestamp);
+        place(ORDER_TYPE_FOK_BUDGET, ++id, UID_TAKER, (mid + 10 * step) * 2 * lot, 2 * lot, OrderAction.BID, timestamp);
+        place(ORDER_TYPE_IOC_BUDGET, ++id, UID_TAKER, (mid - 10 * step) * lot, lot, OrderAction.ASK, timestamp);
+
+        // market data
+        CommandsEncoder.L2DataQuery(cmd, 0, 10);
+        orderBook.sendL2Snapshot(cmd, 0);
+        resetWriters();
+
+        // mass quote: new quote set, then replace it (reuses, reduces and cancels previous orders)
+        massQuote(id + 1, mid - 7 * step, 2 * lot, mid + 7 * step, 2 * lot, timestamp);
+        id += 2;
+        massQuote(id + 1, mid - 7 * step, lot, mid + 8 * step, 2 * lot, timestamp);
+        id += 2;
+
+        orderBook.expireOrders(timestamp + NANOS_PER_ITERATION / 2 + 1);
+        resetWriters();
+
+        // call auction
+        orderBook.startAuction();
+        resetWriters();
+        place(ORDER_TYPE_GTC, ++id, UID_TAKER, mid - 9 * step, 3 * lot, OrderAction.ASK, timestamp);
+        place(ORDER_TYPE_GTC, ++id, UID_TAKER, mid + 9 * step, 3 * lot, OrderAction.BID, timestamp);
+        orderBook.sendAuctionIndicative();
+        resetWriters();
+        orderBook.uncross();
+        resetWriters();
+
+        // remove everything left, so iterations do not accumulate orders
+        for (long orderId = firstId + 1; orderId <= id; orderId++) {
+            final IOrder order = orderBook.getOrderById(orderId);
+            if (order != null) {
+                CommandsEncoder.cancel(cmd, 0, orderId, order.getUid());
+                orderBook.cancelOrder(cmd, 0);
+                resetWriters();
+            }
+        }
+
+        if (id - firstId > IDS_PER_ITERATION) {
+            throw new IllegalStateException("Too many order ids per warm-up iteration: " + (id - firstId));
+        }
+    }
+
+    private void place(final byte type,
+                       final long orderId,
+                       final long uid,
+                       final long price,
+                       final long size,
+                       final OrderAction action,
+                       final long timestamp) {
+
+        final long reserve = action == OrderAction.BID ? Math.max(bidReserve, price) : price;
+        CommandsEncoder.placeOrder(cmd, 0, type, orderId, uid, price, reserve, size, action, 0);
+        newOrder(timestamp);
+    }
+
+    private void massQuote(final long firstOrderId,
+                           final long bidPrice,
+                           final long bidSize,
+                           final long askPrice,
+                           final long askSize,
+                           final long timestamp) {
+
+        int offset = CommandsEncoder.massQuote(cmd, 0, UID_QUOTER, QUOTE_SET_ID, firstOrderId, 2);
+        offset += CommandsEncoder.massQuoteEntry(cmd, offset, bidPrice, bidReserve, bidSize, OrderAction.BID);
+        CommandsEncoder.massQuoteEntry(cmd, offset, askPrice, askPrice, askSize, OrderAction.ASK);
+        orderBook.massQuote(cmd, 0, timestamp);
+        resetWriters();
+    }
+
+    private void newOrder(final long timestamp) {
+        orderBook.newOrder(cmd, 0, timestamp);
+        resetWriters();
+    }
+
+    private void resetWriters() {
+        resultsWriter.reset();
+        triggeredResultsWriter.reset();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.util;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.OrderAction;
+import org.agrona.MutableDirectBuffer;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+
+/**
+ * Reusable typed view of place order command (IOrderBook.PLACE_OFFSET_* layout) for reading and in-place editing.<p>
+ * Order type extension fields are accessible only for the corresponding order type,
+ * min quantity - only if PLACE_FLAG_MIN_QUANTITY is set. Order type and flags should be set before optional fields,
+ * as they define where optional fields are located.
+ */
+public final class PlaceOrderFlyweight {
+
+    private MutableDirectBuffer buffer;
+    private int offset;
+
+    public PlaceOrderFlyweight wrap(final MutableDirectBuffer buffer, final int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public MutableDirectBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return command size, including order type and min quantity extensions
+     */
+    public int encodedLength() {
+        return IOrderBook.placeCommandSize(getType(), getFlags());
+    }
+
+    public long getUid() {
+        return buffer.getLong(offset + PLACE_OFFSET_UID);
+    }
+
+    public PlaceOrderFlyweight uid(final long uid) {
+        buffer.putLong(offset + PLACE_OFFSET_UID, uid);
+        return this;
+    }
+
+    public long getOrderId() {
+        return buffer.getLong(offset + PLACE_OFFSET_ORDER_ID);
+    }
+
+    public PlaceOrderFlyweight orderId(final long orderId) {
+        buffer.putLong(offset + PLACE_OFFSET_ORDER_ID, orderId);
+        return this;
+    }
+
+    public long getPrice() {
+        return buffer.getLong(offset + PLACE_OFFSET_PRICE);
+    }
+
+    public PlaceOrderFlyweight price(final long price) {
+        buffer.putLong(offset + PLACE_OFFSET_PRICE, price);
+        return this;
+    }
+
+    public long getReservedBidPrice() {
+        return buffer.getLong(offset + PLACE_OFFSET_RESERVED_BID_PRICE);
+    }
+
+    public PlaceOrderFlyweight reservedBidPrice(final long reservedBidPrice) {
+        buffer.putLong(offset + PLACE_OFFSET_RESERVED_BID_PRICE, reservedBidPrice);
+        return this;
+    }
+
+    public long getSize() {
+        return buffer.getLong(offset + PLACE_OFFSET_SIZE);
+    }
+
+    public PlaceOrderFlyweight size(final long size) {
+        buffer.putLong(offset + PLACE_OFFSET_SIZE, size);
+        return this;
+    }
+
+    public int getUserCookie() {
+        return buffer.getInt(offset + PLACE_OFFSET_USER_COOKIE);
+    }
+
+    public PlaceOrderFlyweight userCookie(final int userCookie) {
+        buffer.putInt(offset + PLACE_OFFSET_USER_COOKIE, userCookie);
+        return this;
+    }
+
+    public OrderAction getAction() {
+        return OrderAction.of(buffer.getByte(offset + PLACE_OFFSET_ACTION));
+    }
+
+    public PlaceOrderFlyweight action(final OrderAction action) {
+        buffer.putByte(offset + PLACE_OFFSET_ACTION, action.getCode());
+        return this;
+    }
+
+    public byte getType() {
+        return buffer.getByte(offset + PLACE_OFFSET_TYPE);
+    }
+
+    public PlaceOrderFlyweight type(final byte type) {
+        buffer.putByte(offset + PLACE_OFFSET_TYPE, type);
+        return this;
+    }
+
+    public byte getFlags() {
+        return buffer.getByte(offset + PLACE_OFFSET_FLAGS);
+    }
+
+    public PlaceOrderFlyweight flags(final byte flags) {
+        buffer.putByte(offset + PLACE_OFFSET_FLAGS, flags);
+        return this;
+    }
+
+    public long getStopPrice() {
+        checkType(getType() == ORDER_TYPE_STOP || getType() == ORDER_TYPE_STOP_LIMIT);
+        return buffer.getLong(offset + PLACE_OFFSET_STOP_PRICE);
+    }
+
+    public PlaceOrderFlyweight stopPrice(final long stopPrice) {
+        checkType(getType() == ORDER_TYPE_STOP || getType() == ORDER_TYPE_STOP_LIMIT);
+        buffer.putLong(offset + PLACE_OFFSET_STOP_PRICE, stopPrice);
+        return this;
+    }
+
+    public long getDisplaySize() {
+        checkType(getType() == ORDER_TYPE_ICEBERG);
+        return buffer.getLong(offset + PLACE_OFFSET_DISPLAY_SIZE);
+    }
+
+    public PlaceOrderFlyweight displaySize(final long displaySize) {
+        checkType(getType() == ORDER_TYPE_ICEBERG);
+        buffer.putLong(offset + PLACE_OFFSET_DISPLAY_SIZE, displaySize);
+        return this;
+    }
+
+    public long getExpireTimestamp() {
+        checkType(getType() == ORDER_TYPE_GTD);
+        return buffer.getLong(offset + PLACE_OFFSET_EXPIRE_TIMESTAMP);
+    }
+
+    public PlaceOrderFlyweight expireTimestamp(final long expireTimestamp) {
+        checkType(getType() == ORDER_TYPE_GTD);
+        buffer.putLong(offset + PLACE_OFFSET_EXPIRE_TIMESTAMP, expireTimestamp);
+        return this;
+    }
+
+    public long getPegOffset() {
+        checkType(getType() == ORDER_TYPE_PEGGED);
+        return buffer.getLong(offset + PLACE_OFFSET_PEG_OFFSET);
+    }
+
+    public PlaceOrderFlyweight pegOffset(final long pegOffset) {
+        checkType(getType() == ORDER_TYPE_PEGGED);
+        buffer.putLong(offset + PLACE_OFFSET_PEG_OFFSET, pegOffset);
+        return this;
+    }
+
+    public byte getPegType() {
+        checkType(getType() == ORDER_TYPE_PEGGED);
+        return buffer.getByte(offset + PLACE_OFFSET_PEG_TYPE);
+    }
+
+    public PlaceOrderFlyweight pegType(final byte pegType) {
+        checkType(getType() == ORDER_TYPE_PEGGED);
+        buffer.putByte(offset + PLACE_OFFSET_PEG_TYPE, pegType);
+        return this;
+    }
+
+    public boolean hasMinQuantity() {
+        return (getFlags() & PLACE_FLAG_MIN_QUANTITY) != 0;
+    }
+
+    public long getMinQuantity() {
+        checkMinQuantity();
+        return buffer.getLong(offset + IOrderBook.placeCommandSize(getType()));
+    }
+
+    public PlaceOrderFlyweight minQuantity(final long minQuantity) {
+        checkMinQuantity();
+        buffer.putLong(offset + IOrderBook.placeCommandSize(getType()), minQuantity);
+        return this;
+    }
+
+    private void checkType(final boolean present) {
+        if (!present) {
+            throw new IllegalStateException("Field is not present for order type " + getType());
+        }
+    }
+
+    private void checkMinQuantity() {
+        if (!hasMinQuantity()) {
+            throw new IllegalStateException("Min quantity flag is not set");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PlaceOrderFlyweight{" +
+                "uid=" + getUid() +
+                ", orderId=" + getOrderId() +
+                ", price=" + getPrice() +
+                ", reservedBidPrice=" + getReservedBidPrice() +
+                ", size=" + getSize() +
+                ", userCookie=" + getUserCookie() +
+                ", action=" + getAction() +
+                ", type=" + getType() +
+                ", flags=" + getFlags() +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.util;
+
+import org.agrona.UnsafeAccess;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Large fixed-size off-heap buffer for responses of unbounded size (deep sweeps through thousands of makers).<p>
+ * Memory is reserved but not initialized, so physical pages are committed by OS only when touched first time -
+ * buffer "grows" without copying already written data, and responses always stay contiguous,
+ * so they can be handed off to consumers (decoders, readers) without copying.<p>
+ * Lazy commit is not guaranteed by Unsafe.allocateMemory (malloc): it relies on allocator serving large blocks
+ * with anonymous mmap (glibc does it above M_MMAP_THRESHOLD, 128KB by default) and on OS overcommit (Linux default).
+ * On other platforms or allocators whole capacity can be committed upfront, so capacity should fit into physical memory.<p>
+ * Typically reserved once per engine thread with capacity matching the worst case response batch
+ * (for example 64MB, which is about 1.6M trade events).<p>
+ * Memory is not managed by GC - call {@link #close()} when buffer is not used anymore.
+ */
+public final class ReservedDirectBuffer extends UnsafeBuffer implements AutoCloseable {
+
+    private final long address;
+    private boolean closed = false;
+
+    public ReservedDirectBuffer(final int capacity) {
+        this(UnsafeAccess.UNSAFE.allocateMemory(checkCapacity(capacity)), capacity);
+    }
+
+    private ReservedDirectBuffer(final long address, final int capacity) {
+        super(address, capacity);
+        this.address = address;
+    }
+
+    private static int checkCapacity(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive: " + capacity);
+        }
+        return capacity;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            // detach from released memory before freeing it
+            wrap(new byte[0]);
+            UnsafeAccess.UNSAFE.freeMemory(address);
+        }
+    }
+}
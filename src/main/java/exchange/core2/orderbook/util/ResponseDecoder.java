@@ -18,6 +18,7 @@ package exchange.core2.orderbook.util;
 
 import exchange.core2.orderbook.OrderAction;
 import exchange.core2.orderbook.api.*;
+import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,11 +42,37 @@ public final class ResponseDecoder {
         return readResult(new BufferReader(buf, responseMsgSize, 0));
     }
 
+    /**
+     * Read response header
+     *
+     * @param buf - response
+     * @return response header, or null if response has no header
+     */
+    public static ResponseHeader readHeader(final BufferReader buf) {
+
+        final DirectBuffer buffer = buf.getBuffer();
+        final int headerStart = buf.getReadPosition();
+        if (buffer.getByte(headerStart) != RESPONSE_HEADER) {
+            return null;
+        }
+
+        return new ResponseHeader(
+                buffer.getInt(headerStart + RESPONSE_HEADER_OFFSET_SYMBOL_ID),
+                buffer.getLong(headerStart + RESPONSE_HEADER_OFFSET_TIMESTAMP),
+                buffer.getLong(headerStart + RESPONSE_HEADER_OFFSET_SEQUENCE));
+    }
+
     // TODO attach custom commands handler (risk/binarycmd/query)
     public static OrderBookResponse readResult(final BufferReader buf) {
 
 //        log.debug("Parsing response:\n{}", buf.prettyHexDump());
 
+        final int headerStart = buf.getReadPosition();
+        if (buf.getBuffer().getByte(headerStart) == RESPONSE_HEADER) {
+            // response header is skipped, see readHeader
+            return readResult(new BufferReader(buf.getBuffer(), buf.getRemainingSize() - RESPONSE_HEADER_SIZE, headerStart + RESPONSE_HEADER_SIZE));
+        }
+
         final int msgSize = buf.getRemainingSize();
 
         final byte commandType = buf.readByte();
@@ -54,6 +81,26 @@ public final class ResponseDecoder {
             return decodeL2Data(buf, msgSize);
         }
 
+        if (commandType == COMMAND_EXPIRE_ORDERS) {
+            return decodeExpireOrders(buf, msgSize);
+        }
+
+        if (commandType == COMMAND_UNCROSS) {
+            return decodeUncross(buf, msgSize);
+        }
+
+        if (commandType == COMMAND_MASS_QUOTE) {
+            return decodeMassQuote(buf, msgSize);
+        }
+
+        if (commandType == QUERY_AUCTION_INDICATIVE) {
+            return new QueryResponseAuctionIndicative(
+                    buf.getShort(msgSize - RESPONSE_OFFSET_AUCTION_RESULT),
+                    buf.getLong(msgSize - RESPONSE_OFFSET_AUCTION_PRICE),
+                    buf.getLong(msgSize - RESPONSE_OFFSET_AUCTION_VOLUME),
+                    buf.getLong(msgSize - RESPONSE_OFFSET_AUCTION_IMBALANCE));
+        }
+
         final long uid = buf.readLong();
         final long orderId = buf.readLong();
 
@@ -87,7 +134,63 @@ public final class ResponseDecoder {
         }
 
         final List<TradeEvent> tradeEvents;
-        if (commandType == COMMAND_PLACE_ORDER || commandType == COMMAND_MOVE_ORDER) {
+        List<MakerReduceEvent> makerReduceEvents = Collections.emptyList();
+        List<LevelTradeEvent> levelTrades = Collections.emptyList();
+        if ((encodedResultCode & RESULT_OFFSET_COMPACT_TEVT_FLAG) != 0) {
+
+            final int num = buf.readInt();
+            tradeEvents = new ArrayList<>(num);
+
+            long makerOrderId = 0L;
+            long makerUid = 0L;
+            long price = 0L;
+            long reservedBidPrice = 0L;
+
+            for (int i = 0; i < num; i++) {
+                final byte flags = buf.readByte();
+
+                if ((flags & TEVT_FLAG_LEVEL_TRADE) != 0) {
+                    final int makers = (int) buf.readVarLong();
+                    final int completedMakers = (int) buf.readVarLong();
+                    if ((flags & CTEVT_FLAG_PRICE) != 0) {
+                        price += buf.readZigZagVarLong();
+                    }
+                    if (levelTrades.isEmpty()) {
+                        levelTrades = new ArrayList<>();
+                    }
+                    levelTrades.add(new LevelTradeEvent(price, buf.readVarLong(), makers, completedMakers));
+                    continue;
+                }
+
+                makerOrderId += buf.readZigZagVarLong();
+                if ((flags & CTEVT_FLAG_UID) != 0) {
+                    makerUid += buf.readZigZagVarLong();
+                }
+                if ((flags & CTEVT_FLAG_PRICE) != 0) {
+                    price += buf.readZigZagVarLong();
+                }
+                if ((flags & CTEVT_FLAG_RESERV_BID_PRICE) != 0) {
+                    reservedBidPrice += buf.readZigZagVarLong();
+                }
+                final long size = buf.readVarLong();
+                final boolean makerCompleted = (flags & TEVT_FLAG_MAKER_COMPLETED) != 0;
+
+                if ((flags & TEVT_FLAG_MAKER_REDUCED) == 0) {
+                    tradeEvents.add(new TradeEvent(makerOrderId, makerUid, price, reservedBidPrice, size, makerCompleted));
+                } else {
+                    if (makerReduceEvents.isEmpty()) {
+                        makerReduceEvents = new ArrayList<>();
+                    }
+                    final OrderAction makerAction = (flags & TEVT_FLAG_MAKER_ACTION_BID) != 0 ? OrderAction.BID : OrderAction.ASK;
+                    makerReduceEvents.add(new MakerReduceEvent(makerOrderId, makerUid, makerAction, price, reservedBidPrice, size, makerCompleted));
+                }
+            }
+
+            if (buf.getReadPosition() - buf.getInitialPosition() != reduceOffsetStart) {
+                throw new IllegalStateException("Incorrect compact trade events block length");
+            }
+
+        } else if (commandType == COMMAND_PLACE_ORDER || commandType == COMMAND_MOVE_ORDER) {
             // TODO change to sizes
             final int userCookieSize = commandType == COMMAND_PLACE_ORDER ? SIZE_OF_INT : 0;
             final int tradeEventsBlockStartOffset = SIZE_OF_BYTE + SIZE_OF_LONG + SIZE_OF_LONG + userCookieSize;
@@ -101,7 +204,20 @@ public final class ResponseDecoder {
 
                 tradeEvents = new ArrayList<>(numberOfBlocks);
                 for (int offset = tradeEventsBlockStartOffset; offset < reduceOffsetStart; offset += RESPONSE_OFFSET_TEVT_END) {
-                    tradeEvents.add(readTradeEvent(buf, offset));
+                    final byte flags = buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED);
+                    if ((flags & TEVT_FLAG_LEVEL_TRADE) != 0) {
+                        if (levelTrades.isEmpty()) {
+                            levelTrades = new ArrayList<>();
+                        }
+                        levelTrades.add(readLevelTradeEvent(buf, offset));
+                    } else if ((flags & TEVT_FLAG_MAKER_REDUCED) == 0) {
+                        tradeEvents.add(readTradeEvent(buf, offset));
+                    } else {
+                        if (makerReduceEvents.isEmpty()) {
+                            makerReduceEvents = new ArrayList<>();
+                        }
+                        makerReduceEvents.add(readMakerReduceEvent(buf, offset));
+                    }
                 }
             } else {
                 tradeEvents = Collections.emptyList();
@@ -122,7 +238,9 @@ public final class ResponseDecoder {
                         userCookie,
                         remainingSize,
                         tradeEvents,
-                        reduceEvent);
+                        reduceEvent,
+                        makerReduceEvents,
+                        levelTrades);
 
             case COMMAND_CANCEL_ORDER:
                 return new CommandResponseCancel(
@@ -143,7 +261,9 @@ public final class ResponseDecoder {
                         takerOrderCompleted,
                         remainingSize,
                         tradeEvents,
-                        reduceEvent);
+                        reduceEvent,
+                        makerReduceEvents,
+                        levelTrades);
 
             case COMMAND_REDUCE_ORDER:
                 return new CommandResponseReduce(
@@ -178,6 +298,61 @@ public final class ResponseDecoder {
         }
     }
 
+    private static OrderBookResponse decodeExpireOrders(final BufferReader buf, final int msgSize) {
+
+        final short resultCode = buf.getShort(msgSize - RESPONSE_OFFSET_EXPIRE_RESULT);
+        final int num = buf.getInt(msgSize - RESPONSE_OFFSET_EXPIRE_RECORDS);
+
+        final List<MakerReduceEvent> expiredOrders = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            expiredOrders.add(readMakerReduceEvent(buf, SIZE_OF_BYTE + i * RESPONSE_OFFSET_TEVT_END));
+        }
+
+        return new CommandResponseExpire(resultCode, expiredOrders);
+    }
+
+    private static OrderBookResponse decodeUncross(final BufferReader buf, final int msgSize) {
+
+        final short resultCode = buf.getShort(msgSize - RESPONSE_OFFSET_UNCROSS_RESULT);
+        final int num = buf.getInt(msgSize - RESPONSE_OFFSET_UNCROSS_RECORDS);
+        final long volume = buf.getLong(msgSize - RESPONSE_OFFSET_UNCROSS_VOLUME);
+        final long price = buf.getLong(msgSize - RESPONSE_OFFSET_UNCROSS_PRICE);
+
+        final List<AuctionFillEvent> fills = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            fills.add(readAuctionFillEvent(buf, SIZE_OF_BYTE + i * RESPONSE_OFFSET_TEVT_END));
+        }
+
+        return new CommandResponseUncross(resultCode, price, volume, fills);
+    }
+
+    private static OrderBookResponse decodeMassQuote(final BufferReader buf, final int msgSize) {
+
+        final long uid = buf.readLong();
+        final long quoteSetId = buf.readLong();
+
+        final short resultCode = buf.getShort(msgSize - RESPONSE_OFFSET_QUOTE_RESULT);
+        final int reducedNum = buf.getInt(msgSize - RESPONSE_OFFSET_QUOTE_REDUCE_RECORDS);
+        final int entriesNum = buf.getInt(msgSize - RESPONSE_OFFSET_QUOTE_ENTRY_RECORDS);
+
+        final List<MakerReduceEvent> reducedOrders = new ArrayList<>(reducedNum);
+        for (int i = 0; i < reducedNum; i++) {
+            reducedOrders.add(readMakerReduceEvent(buf, RESPONSE_QUOTE_HEADER_SIZE + i * RESPONSE_OFFSET_TEVT_END));
+        }
+
+        final int entriesOffset = RESPONSE_QUOTE_HEADER_SIZE + reducedNum * RESPONSE_OFFSET_TEVT_END;
+        final List<QuoteEntryResult> entries = new ArrayList<>(entriesNum);
+        for (int i = 0; i < entriesNum; i++) {
+            final int offset = entriesOffset + i * RESPONSE_OFFSET_QREC_END;
+            entries.add(new QuoteEntryResult(
+                    buf.getLong(offset + RESPONSE_OFFSET_QREC_ORDER_ID),
+                    buf.getLong(offset + RESPONSE_OFFSET_QREC_SIZE),
+                    buf.getShort(offset + RESPONSE_OFFSET_QREC_RESULT)));
+        }
+
+        return new CommandResponseMassQuote(resultCode, uid, quoteSetId, reducedOrders, entries);
+    }
+
     private static List<QueryResponseL2Data.L2Record> readL2Records(final BufferReader buf, final int num) {
         final List<QueryResponseL2Data.L2Record> list = new ArrayList<>(num);
         for (int i = 0; i < num; i++) {
@@ -199,11 +374,51 @@ public final class ResponseDecoder {
         final long price = buf.getLong(offset + RESPONSE_OFFSET_TEVT_PRICE);
         final long reservedBidPrice = buf.getLong(offset + RESPONSE_OFFSET_TEVT_RESERV_BID_PRICE);
         final long tradeSize = buf.getLong(offset + RESPONSE_OFFSET_TEVT_TRADE_SIZE);
-        final boolean makerCompleted = buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED) != 0;
+        final boolean makerCompleted = (buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED) & TEVT_FLAG_MAKER_COMPLETED) != 0;
 
         return new TradeEvent(makerOrderId, makerUid, price, reservedBidPrice, tradeSize, makerCompleted);
     }
 
+    private static LevelTradeEvent readLevelTradeEvent(final BufferReader buf,
+                                                       final int offset) {
+
+        return new LevelTradeEvent(
+                buf.getLong(offset + RESPONSE_OFFSET_TEVT_PRICE),
+                buf.getLong(offset + RESPONSE_OFFSET_TEVT_TRADE_SIZE),
+                (int) buf.getLong(offset + RESPONSE_OFFSET_TEVT_LEVEL_MAKERS),
+                (int) buf.getLong(offset + RESPONSE_OFFSET_TEVT_LEVEL_COMPLETED_MAKERS));
+    }
+
+    private static MakerReduceEvent readMakerReduceEvent(final BufferReader buf,
+                                                         final int offset) {
+
+        final long makerOrderId = buf.getLong(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_ID);
+        final long makerUid = buf.getLong(offset + RESPONSE_OFFSET_TEVT_MAKER_UID);
+        final long price = buf.getLong(offset + RESPONSE_OFFSET_TEVT_PRICE);
+        final long reservedBidPrice = buf.getLong(offset + RESPONSE_OFFSET_TEVT_RESERV_BID_PRICE);
+        final long reducedSize = buf.getLong(offset + RESPONSE_OFFSET_TEVT_TRADE_SIZE);
+        final byte flags = buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED);
+        final boolean makerCompleted = (flags & TEVT_FLAG_MAKER_COMPLETED) != 0;
+        final OrderAction makerAction = (flags & TEVT_FLAG_MAKER_ACTION_BID) != 0 ? OrderAction.BID : OrderAction.ASK;
+
+        return new MakerReduceEvent(makerOrderId, makerUid, makerAction, price, reservedBidPrice, reducedSize, makerCompleted);
+    }
+
+    private static AuctionFillEvent readAuctionFillEvent(final BufferReader buf,
+                                                         final int offset) {
+
+        final long orderId = buf.getLong(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_ID);
+        final long uid = buf.getLong(offset + RESPONSE_OFFSET_TEVT_MAKER_UID);
+        final long price = buf.getLong(offset + RESPONSE_OFFSET_TEVT_PRICE);
+        final long reservedBidPrice = buf.getLong(offset + RESPONSE_OFFSET_TEVT_RESERV_BID_PRICE);
+        final long fillSize = buf.getLong(offset + RESPONSE_OFFSET_TEVT_TRADE_SIZE);
+        final byte flags = buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED);
+        final boolean completed = (flags & TEVT_FLAG_MAKER_COMPLETED) != 0;
+        final OrderAction action = (flags & TEVT_FLAG_MAKER_ACTION_BID) != 0 ? OrderAction.BID : OrderAction.ASK;
+
+        return new AuctionFillEvent(orderId, uid, action, price, reservedBidPrice, fillSize, completed);
+    }
+
     private static ReduceEvent readReduceEvent(final BufferReader buf, final int offset) {
 
         final long price = buf.getLong(offset + RESPONSE_OFFSET_REVT_PRICE);
@@ -19,6 +19,7 @@ package exchange.core2.orderbook.util;
 import exchange.core2.orderbook.IResponseHandler;
 import exchange.core2.orderbook.OrderAction;
 import exchange.core2.orderbook.api.QueryResponseL2Data;
+import org.agrona.DirectBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,17 +33,91 @@ public final class ResponseFastDecoder {
 
     private final IResponseHandler responseHandler;
 
+    // reader of response following response header (reused)
+    private final BufferReader responseReader = new BufferReader(null, 0, 0);
+
+    // reader of batch messages (reused)
+    private final BufferReader batchReader = new BufferReader(null, 0, 0);
+
     // TODO exceptions handler ?
 
     public ResponseFastDecoder(final IResponseHandler responseHandler) {
         this.responseHandler = responseHandler;
     }
 
+    /**
+     * Decode response and invoke handler callbacks.
+     * If response starts with response header, header is reported first, then symbol id and time are taken from the header.
+     *
+     * @param buf           - response
+     * @param time          - time (if response has no header)
+     * @param correlationId - correlation id
+     * @param symbolId      - symbol id (if response has no header)
+     */
     public void readResult(final BufferReader buf,
                            final long time,
                            final long correlationId,
                            final int symbolId) {
 
+        final DirectBuffer buffer = buf.getBuffer();
+        final int headerStart = buf.getReadPosition();
+
+        if (buffer.getByte(headerStart) == RESPONSE_HEADER) {
+            final int headerSymbolId = buffer.getInt(headerStart + RESPONSE_HEADER_OFFSET_SYMBOL_ID);
+            final long timestamp = buffer.getLong(headerStart + RESPONSE_HEADER_OFFSET_TIMESTAMP);
+            responseHandler.onResponseHeader(headerSymbolId, timestamp, buffer.getLong(headerStart + RESPONSE_HEADER_OFFSET_SEQUENCE));
+            responseReader.wrap(buffer, buf.getRemainingSize() - RESPONSE_HEADER_SIZE, headerStart + RESPONSE_HEADER_SIZE);
+            decodeResponse(responseReader, timestamp, correlationId, headerSymbolId);
+        } else {
+            decodeResponse(buf, time, correlationId, symbolId);
+        }
+    }
+
+    /**
+     * Decode batch of responses framed as [int length][response] (same framing as triggered results buffer).
+     * Single reader is reused for all messages (no allocation).
+     *
+     * @param buffer        - buffer containing framed responses
+     * @param offset        - batch start offset
+     * @param length        - batch length
+     * @param time          - time (for responses without header)
+     * @param correlationId - correlation id (reported with every response)
+     * @param symbolId      - symbol id (for responses without header)
+     * @return number of decoded responses
+     */
+    public int readResults(final DirectBuffer buffer,
+                           final int offset,
+                           final int length,
+                           final long time,
+                           final long correlationId,
+                           final int symbolId) {
+
+        final int end = offset + length;
+        int position = offset;
+        int messages = 0;
+
+        while (position < end) {
+            final int msgSize = buffer.getInt(position);
+            if (msgSize <= 0 || position + SIZE_OF_INT + msgSize > end) {
+                throw new IllegalArgumentException("Incorrect message length " + msgSize + " at offset " + position);
+            }
+            position += SIZE_OF_INT;
+
+            batchReader.wrap(buffer, msgSize, position);
+            readResult(batchReader, time, correlationId, symbolId);
+
+            position += msgSize;
+            messages++;
+        }
+
+        return messages;
+    }
+
+    private void decodeResponse(final BufferReader buf,
+                                final long time,
+                                final long correlationId,
+                                final int symbolId) {
+
 //        log.debug("Parsing response:\n{}", buf.prettyHexDump());
 
         final int msgSize = buf.getRemainingSize();
@@ -52,7 +127,7 @@ public final class ResponseFastDecoder {
 
 //        log.debug("commandType:{}", commandType);
 
-        if (commandType < 1 || commandType > 5) {
+        if (commandType < 1 || commandType > COMMAND_MASS_QUOTE) {
             throw new IllegalArgumentException("unsupported by ResponseFastDecoder commandType=" + commandType);
         }
 
@@ -61,6 +136,33 @@ public final class ResponseFastDecoder {
             return;
         }
 
+        if (commandType == COMMAND_EXPIRE_ORDERS) {
+            decodeExpireOrders(buf, msgSize, time, correlationId, symbolId);
+            return;
+        }
+
+        if (commandType == COMMAND_UNCROSS) {
+            decodeUncross(buf, msgSize, time, correlationId, symbolId);
+            return;
+        }
+
+        if (commandType == COMMAND_MASS_QUOTE) {
+            decodeMassQuote(buf, msgSize, time, correlationId, symbolId);
+            return;
+        }
+
+        if (commandType == QUERY_AUCTION_INDICATIVE) {
+            responseHandler.onAuctionIndicativeResult(
+                    buf.getShort(msgSize - RESPONSE_OFFSET_AUCTION_RESULT),
+                    time,
+                    correlationId,
+                    symbolId,
+                    buf.getLong(msgSize - RESPONSE_OFFSET_AUCTION_PRICE),
+                    buf.getLong(msgSize - RESPONSE_OFFSET_AUCTION_VOLUME),
+                    buf.getLong(msgSize - RESPONSE_OFFSET_AUCTION_IMBALANCE));
+            return;
+        }
+
 
         final long uid = buf.readLong();
         final long orderId = buf.readLong();
@@ -108,7 +210,10 @@ public final class ResponseFastDecoder {
             reduceOffsetStart = msgSize - reduceOffsetEndRev;
         }
 
-        if (commandType == COMMAND_PLACE_ORDER || commandType == COMMAND_MOVE_ORDER) {
+        if ((encodedResultCode & RESULT_OFFSET_COMPACT_TEVT_FLAG) != 0) {
+            decodeCompactTradeEvents(buf, reduceOffsetStart, time, symbolId, uid, orderId, takerOrderAction);
+
+        } else if (commandType == COMMAND_PLACE_ORDER || commandType == COMMAND_MOVE_ORDER) {
             // TODO change to sizes
             final int userCookieSize = commandType == COMMAND_PLACE_ORDER ? SIZE_OF_INT : 0;
             final int tradeEventsBlockStartOffset = SIZE_OF_BYTE + SIZE_OF_LONG + SIZE_OF_LONG + userCookieSize;
@@ -128,7 +233,29 @@ public final class ResponseFastDecoder {
                     final long price = buf.getLong(offset + RESPONSE_OFFSET_TEVT_PRICE);
                     final long reservedBidPrice = buf.getLong(offset + RESPONSE_OFFSET_TEVT_RESERV_BID_PRICE);
                     final long tradeVolume = buf.getLong(offset + RESPONSE_OFFSET_TEVT_TRADE_SIZE);
-                    final boolean makerCompleted = buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED) != 0;
+                    final byte flags = buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED);
+
+                    if ((flags & TEVT_FLAG_MAKER_REDUCED) != 0) {
+                        // maker order reduced without trade (self-trade prevention)
+                        onMakerReduceEvent(buf, offset, time, symbolId);
+                        continue;
+                    }
+
+                    if ((flags & TEVT_FLAG_LEVEL_TRADE) != 0) {
+                        responseHandler.onLevelTradeEvent(
+                                symbolId,
+                                time,
+                                uid,
+                                orderId,
+                                takerOrderAction,
+                                price,
+                                tradeVolume,
+                                (int) buf.getLong(offset + RESPONSE_OFFSET_TEVT_LEVEL_MAKERS),
+                                (int) buf.getLong(offset + RESPONSE_OFFSET_TEVT_LEVEL_COMPLETED_MAKERS));
+                        continue;
+                    }
+
+                    final boolean makerCompleted = (flags & TEVT_FLAG_MAKER_COMPLETED) != 0;
 
                     responseHandler.onTradeEvent(
                             symbolId,
@@ -204,6 +331,184 @@ public final class ResponseFastDecoder {
         }
     }
 
+    /**
+     * Decode compact trade events block (reader should be positioned at block start)
+     */
+    private void decodeCompactTradeEvents(final BufferReader buf,
+                                          final int blockEndOffset,
+                                          final long time,
+                                          final int symbolId,
+                                          final long uid,
+                                          final long orderId,
+                                          final OrderAction takerOrderAction) {
+
+        final int num = buf.readInt();
+
+        long makerOrderId = 0L;
+        long makerUid = 0L;
+        long price = 0L;
+        long reservedBidPrice = 0L;
+
+        for (int i = 0; i < num; i++) {
+
+            final byte flags = buf.readByte();
+
+            if ((flags & TEVT_FLAG_LEVEL_TRADE) != 0) {
+                final int makers = (int) buf.readVarLong();
+                final int completedMakers = (int) buf.readVarLong();
+                if ((flags & CTEVT_FLAG_PRICE) != 0) {
+                    price += buf.readZigZagVarLong();
+                }
+                responseHandler.onLevelTradeEvent(symbolId, time, uid, orderId, takerOrderAction, price, buf.readVarLong(), makers, completedMakers);
+                continue;
+            }
+
+            makerOrderId += buf.readZigZagVarLong();
+            if ((flags & CTEVT_FLAG_UID) != 0) {
+                makerUid += buf.readZigZagVarLong();
+            }
+            if ((flags & CTEVT_FLAG_PRICE) != 0) {
+                price += buf.readZigZagVarLong();
+            }
+            if ((flags & CTEVT_FLAG_RESERV_BID_PRICE) != 0) {
+                reservedBidPrice += buf.readZigZagVarLong();
+            }
+            final long size = buf.readVarLong();
+
+            if ((flags & TEVT_FLAG_MAKER_REDUCED) != 0) {
+                responseHandler.onReduceEvent(
+                        symbolId,
+                        time,
+                        makerUid,
+                        makerOrderId,
+                        (flags & TEVT_FLAG_MAKER_ACTION_BID) != 0 ? OrderAction.BID : OrderAction.ASK,
+                        size,
+                        price,
+                        reservedBidPrice);
+            } else {
+                responseHandler.onTradeEvent(
+                        symbolId,
+                        time,
+                        uid,
+                        orderId,
+                        takerOrderAction,
+                        makerUid,
+                        makerOrderId,
+                        price,
+                        reservedBidPrice,
+                        size,
+                        (flags & TEVT_FLAG_MAKER_COMPLETED) != 0);
+            }
+        }
+
+        if (buf.getReadPosition() - buf.getInitialPosition() != blockEndOffset) {
+            throw new IllegalStateException("Incorrect compact trade events block length");
+        }
+    }
+
+    private void decodeExpireOrders(final BufferReader buf,
+                                    final int msgSize,
+                                    final long time,
+                                    final long correlationId,
+                                    final int symbolId) {
+
+        final short resultCode = buf.getShort(msgSize - RESPONSE_OFFSET_EXPIRE_RESULT);
+        final int num = buf.getInt(msgSize - RESPONSE_OFFSET_EXPIRE_RECORDS);
+
+        for (int i = 0; i < num; i++) {
+            onMakerReduceEvent(buf, SIZE_OF_BYTE + i * RESPONSE_OFFSET_TEVT_END, time, symbolId);
+        }
+
+        responseHandler.onOrdersExpireResult(resultCode, time, correlationId, symbolId, num);
+    }
+
+    private void decodeUncross(final BufferReader buf,
+                               final int msgSize,
+                               final long time,
+                               final long correlationId,
+                               final int symbolId) {
+
+        final short resultCode = buf.getShort(msgSize - RESPONSE_OFFSET_UNCROSS_RESULT);
+        final int num = buf.getInt(msgSize - RESPONSE_OFFSET_UNCROSS_RECORDS);
+
+        for (int i = 0; i < num; i++) {
+            final int offset = SIZE_OF_BYTE + i * RESPONSE_OFFSET_TEVT_END;
+            final byte flags = buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED);
+
+            responseHandler.onAuctionFillEvent(
+                    symbolId,
+                    time,
+                    buf.getLong(offset + RESPONSE_OFFSET_TEVT_MAKER_UID),
+                    buf.getLong(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_ID),
+                    (flags & TEVT_FLAG_MAKER_ACTION_BID) != 0 ? OrderAction.BID : OrderAction.ASK,
+                    buf.getLong(offset + RESPONSE_OFFSET_TEVT_PRICE),
+                    buf.getLong(offset + RESPONSE_OFFSET_TEVT_RESERV_BID_PRICE),
+                    buf.getLong(offset + RESPONSE_OFFSET_TEVT_TRADE_SIZE),
+                    (flags & TEVT_FLAG_MAKER_COMPLETED) != 0);
+        }
+
+        responseHandler.onUncrossResult(
+                resultCode,
+                time,
+                correlationId,
+                symbolId,
+                buf.getLong(msgSize - RESPONSE_OFFSET_UNCROSS_PRICE),
+                buf.getLong(msgSize - RESPONSE_OFFSET_UNCROSS_VOLUME),
+                num);
+    }
+
+    private void decodeMassQuote(final BufferReader buf,
+                                 final int msgSize,
+                                 final long time,
+                                 final long correlationId,
+                                 final int symbolId) {
+
+        final long uid = buf.readLong();
+        final long quoteSetId = buf.readLong();
+
+        final short resultCode = buf.getShort(msgSize - RESPONSE_OFFSET_QUOTE_RESULT);
+        final int reducedNum = buf.getInt(msgSize - RESPONSE_OFFSET_QUOTE_REDUCE_RECORDS);
+        final int entriesNum = buf.getInt(msgSize - RESPONSE_OFFSET_QUOTE_ENTRY_RECORDS);
+
+        for (int i = 0; i < reducedNum; i++) {
+            onMakerReduceEvent(buf, RESPONSE_QUOTE_HEADER_SIZE + i * RESPONSE_OFFSET_TEVT_END, time, symbolId);
+        }
+
+        final int entriesOffset = RESPONSE_QUOTE_HEADER_SIZE + reducedNum * RESPONSE_OFFSET_TEVT_END;
+        for (int i = 0; i < entriesNum; i++) {
+            final int offset = entriesOffset + i * RESPONSE_OFFSET_QREC_END;
+            responseHandler.onQuoteEntryResult(
+                    symbolId,
+                    time,
+                    uid,
+                    quoteSetId,
+                    i,
+                    buf.getLong(offset + RESPONSE_OFFSET_QREC_ORDER_ID),
+                    buf.getLong(offset + RESPONSE_OFFSET_QREC_SIZE),
+                    buf.getShort(offset + RESPONSE_OFFSET_QREC_RESULT));
+        }
+
+        responseHandler.onMassQuoteResult(resultCode, time, correlationId, symbolId, uid, quoteSetId, entriesNum);
+    }
+
+    private void onMakerReduceEvent(final BufferReader buf,
+                                    final int offset,
+                                    final long time,
+                                    final int symbolId) {
+
+        final byte flags = buf.getByte(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_COMPLETED);
+
+        responseHandler.onReduceEvent(
+                symbolId,
+                time,
+                buf.getLong(offset + RESPONSE_OFFSET_TEVT_MAKER_UID),
+                buf.getLong(offset + RESPONSE_OFFSET_TEVT_MAKER_ORDER_ID),
+                (flags & TEVT_FLAG_MAKER_ACTION_BID) != 0 ? OrderAction.BID : OrderAction.ASK,
+                buf.getLong(offset + RESPONSE_OFFSET_TEVT_TRADE_SIZE),
+                buf.getLong(offset + RESPONSE_OFFSET_TEVT_PRICE),
+                buf.getLong(offset + RESPONSE_OFFSET_TEVT_RESERV_BID_PRICE));
+    }
+
     private void decodeL2Data(final BufferReader buf,
                               final int msgSize,
                               final long time,
@@ -264,7 +569,7 @@ public final class ResponseFastDecoder {
             @Override
             public int getAskOrders(final int index) {
                 validateBoundsOrThrow(index, asksNum);
-                return buf.getInt(asksOffset + RESPONSE_OFFSET_L2_RECORD_END * index + RESPONSE_OFFSET_L2_RECORD_VOLUME);
+                return buf.getInt(asksOffset + RESPONSE_OFFSET_L2_RECORD_END * index + RESPONSE_OFFSET_L2_RECORD_ORDERS);
             }
 
             @Override
@@ -295,6 +600,53 @@ public final class ResponseFastDecoder {
         responseHandler.onL2DataResult(encodedResultCode, time, correlationId, symbolId, proxy);
     }
 
+    /**
+     * Count trade events in the response without decoding it
+     *
+     * @param buf     - buffer containing response
+     * @param offset  - response start offset
+     * @param msgSize - response size
+     * @return number of trade events, including maker reduce records and auction fills
+     * (0 for commands that can not produce trades, and for empty response - e.g. when events are dispatched directly)
+     */
+    public static int countTradeEvents(final DirectBuffer buf,
+                                       final int offset,
+                                       final int msgSize) {
+
+        if (msgSize <= 0) {
+            // nothing was written (stale data can be found at the offset)
+            return 0;
+        }
+
+        final byte commandType = buf.getByte(offset);
+        if (commandType == RESPONSE_HEADER) {
+            return countTradeEvents(buf, offset + RESPONSE_HEADER_SIZE, msgSize - RESPONSE_HEADER_SIZE);
+        }
+        if (commandType == COMMAND_UNCROSS) {
+            return buf.getInt(offset + msgSize - RESPONSE_OFFSET_UNCROSS_RECORDS);
+        }
+        if (commandType == COMMAND_MASS_QUOTE) {
+            return buf.getInt(offset + msgSize - RESPONSE_OFFSET_QUOTE_REDUCE_RECORDS);
+        }
+        if (commandType != COMMAND_PLACE_ORDER && commandType != COMMAND_MOVE_ORDER) {
+            return 0;
+        }
+
+        final short encodedResultCode = buf.getShort(offset + msgSize - SIZE_OF_SHORT);
+        final boolean hasReduceEvent = (encodedResultCode & RESULT_OFFSET_REDUCE_EVT_FLAG) != 0;
+        final boolean takerOrderCompleted = (encodedResultCode & RESULT_OFFSET_TAKE_ORDER_COMPLETED_FLAG) != 0;
+
+        final int headerSize = SIZE_OF_BYTE + SIZE_OF_LONG + SIZE_OF_LONG + (commandType == COMMAND_PLACE_ORDER ? SIZE_OF_INT : 0);
+
+        if ((encodedResultCode & RESULT_OFFSET_COMPACT_TEVT_FLAG) != 0) {
+            return buf.getInt(offset + headerSize);
+        }
+
+        final int trailerSize = SIZE_OF_SHORT + (takerOrderCompleted ? 0 : SIZE_OF_LONG) + (hasReduceEvent ? RESPONSE_OFFSET_REVT_END : 0);
+
+        return (msgSize - headerSize - trailerSize) / RESPONSE_OFFSET_TEVT_END;
+    }
+
     private void validateBoundsOrThrow(final int index, final int maxIndex) {
         if (index < 0 || index >= maxIndex) {
             throw new IllegalArgumentException(String.format("index %d out of bounds [0, %d)", index, maxIndex));
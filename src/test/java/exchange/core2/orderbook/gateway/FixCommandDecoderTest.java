@@ -0,0 +1,210 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.gateway;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.PlaceOrderFlyweight;
+import exchange.core2.orderbook.util.ResponseFastDecoder;
+import exchange.core2.tests.util.TestSymbolSpecification;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class FixCommandDecoderTest {
+
+    private static final int SYMBOL_ID = 3;
+
+    private final FixCommandDecoder decoder = new FixCommandDecoder(2);
+    private final MutableDirectBuffer commandBuffer = new ExpandableArrayBuffer(128);
+
+    @Test
+    public void shouldDecodeNewOrderSingle() {
+        assertThat(parse(fix("35=D|49=CLIENT|11=7|1=10|55=X|54=1|38=20|40=2|44=101.25|59=3|110=5|18=6|")), is(true));
+        assertThat(decoder.getCommandCode(), is(COMMAND_PLACE_ORDER));
+
+        final int size = decoder.encodeCommand(commandBuffer, 0);
+        final PlaceOrderFlyweight place = new PlaceOrderFlyweight().wrap(commandBuffer, 0);
+        assertThat(size, is(place.encodedLength()));
+        assertThat(place.getOrderId(), is(7L));
+        assertThat(place.getUid(), is(10L));
+        assertThat(place.getAction(), is(OrderAction.BID));
+        assertThat(place.getSize(), is(20L));
+        assertThat(place.getPrice(), is(10125L));
+        assertThat(place.getType(), is(ORDER_TYPE_IOC));
+        assertThat(place.getFlags(), is((byte) (PLACE_FLAG_POST_ONLY | PLACE_FLAG_MIN_QUANTITY)));
+        assertThat(place.getMinQuantity(), is(5L));
+    }
+
+    @Test
+    public void shouldDecodeOrderTypeExtensions() {
+        assertThat(parse(fix("35=D|11=8|1=10|54=2|38=100|40=2|44=99|111=10|")), is(true));
+        decoder.encodeCommand(commandBuffer, 0);
+        final PlaceOrderFlyweight place = new PlaceOrderFlyweight().wrap(commandBuffer, 0);
+        assertThat(place.getType(), is(ORDER_TYPE_ICEBERG));
+        assertThat(place.getPrice(), is(9900L));
+        assertThat(place.getDisplaySize(), is(10L));
+
+        assertThat(parse(fix("35=D|11=9|1=10|54=1|38=3|40=4|44=101.5|99=101.00|59=1|")), is(true));
+        decoder.encodeCommand(commandBuffer, 0);
+        assertThat(place.getType(), is(ORDER_TYPE_STOP_LIMIT));
+        assertThat(place.getStopPrice(), is(10100L));
+    }
+
+    @Test
+    public void shouldDecodeCancelReduceAndReplace() {
+        assertThat(parse(fix("35=F|11=20|41=7|1=10|54=1|")), is(true));
+        assertThat(decoder.getCommandCode(), is(COMMAND_CANCEL_ORDER));
+        decoder.encodeCommand(commandBuffer, 0);
+        assertThat(commandBuffer.getLong(CANCEL_OFFSET_ORDER_ID), is(7L));
+        assertThat(commandBuffer.getLong(CANCEL_OFFSET_UID), is(10L));
+
+        assertThat(parse(fix("35=F|11=21|41=7|1=10|84=4|")), is(true));
+        assertThat(decoder.getCommandCode(), is(COMMAND_REDUCE_ORDER));
+        decoder.encodeCommand(commandBuffer, 0);
+        assertThat(commandBuffer.getLong(REDUCE_OFFSET_SIZE), is(4L));
+
+        assertThat(parse(fix("35=G|11=22|41=7|1=10|44=100.5|")), is(true));
+        assertThat(decoder.getCommandCode(), is(COMMAND_MOVE_ORDER));
+        decoder.encodeCommand(commandBuffer, 0);
+        assertThat(commandBuffer.getLong(MOVE_OFFSET_ORDER_ID), is(7L));
+        assertThat(commandBuffer.getLong(MOVE_OFFSET_PRICE), is(10050L));
+    }
+
+    @Test
+    public void shouldReportErrors() {
+        final byte[] corrupted = fix("35=D|11=7|1=10|54=1|38=20|40=2|44=1|");
+        corrupted[corrupted.length - 2]++;
+        assertThat(decoder.parse(new UnsafeBuffer(corrupted), 0, corrupted.length), is(false));
+        assertThat(decoder.getError(), is(FixCommandDecoder.ERROR_CHECKSUM));
+
+        assertThat(parse(fix("35=D|11=7|1=10|54=1|38=20|40=2|")), is(false));
+        assertThat(decoder.getError(), is(FixCommandDecoder.ERROR_MISSING_FIELD));
+        assertThat(decoder.getErrorTag(), is(FixCommandDecoder.TAG_PRICE));
+
+        assertThat(parse(fix("35=D|11=7|1=10|54=1|38=20|40=2|44=1.005|")), is(false));
+        assertThat(decoder.getError(), is(FixCommandDecoder.ERROR_INVALID_VALUE));
+
+        assertThat(parse(fix("35=D|11=7|1=10|54=1|38=20|40=1|44=1|")), is(false));
+        assertThat(decoder.getError(), is(FixCommandDecoder.ERROR_UNSUPPORTED_VALUE));
+        assertThat(decoder.getErrorTag(), is(FixCommandDecoder.TAG_ORD_TYPE));
+
+        assertThat(parse(fix("35=A|98=0|108=30|")), is(false));
+        assertThat(decoder.getError(), is(FixCommandDecoder.ERROR_UNSUPPORTED_MSG_TYPE));
+    }
+
+    @Test
+    public void shouldFindMessagesInStream() {
+        final byte[] first = fix("35=F|41=7|1=10|");
+        final byte[] second = fix("35=F|41=8|1=10|");
+        final UnsafeBuffer stream = new UnsafeBuffer(new byte[first.length + second.length]);
+        stream.putBytes(0, first);
+        stream.putBytes(first.length, second);
+
+        assertThat(FixCommandDecoder.messageLength(stream, 0, first.length + second.length), is(first.length));
+        assertThat(FixCommandDecoder.messageLength(stream, first.length, second.length), is(second.length));
+        assertThat(FixCommandDecoder.messageLength(stream, first.length, second.length - 1), is(0));
+    }
+
+    @Test
+    public void shouldProduceExecutionReports() {
+        final BufferWriter resultsWriter = new BufferWriter(new ExpandableArrayBuffer(256), 0);
+        final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(
+                new TestSymbolSpecification(SYMBOL_ID, true), false, resultsWriter);
+        final BufferWriter fixWriter = new BufferWriter(new ExpandableArrayBuffer(256), 0);
+        final FixExecutionReportEncoder encoder = new FixExecutionReportEncoder(fixWriter, 2);
+        final ResponseFastDecoder responseDecoder = new ResponseFastDecoder(encoder);
+
+        execute(orderBook, resultsWriter, responseDecoder, encoder, "35=D|11=1|1=10|54=2|38=5|40=2|44=100.5|");
+        assertThat(readFix(fixWriter), is(fixText("35=8|37=1|11=1|17=1|1=10|55=3|54=2|150=0|39=0|14=0|151=5|")));
+
+        execute(orderBook, resultsWriter, responseDecoder, encoder, "35=D|11=2|1=11|54=1|38=7|40=2|44=101|59=3|");
+        assertThat(readFix(fixWriter), is(fixText("35=8|37=1|11=1|17=2|1=10|55=3|54=2|150=F|39=2|31=100.50|32=5|6=100.50|")
+                + fixText("35=8|37=2|11=2|17=3|1=11|55=3|54=1|150=F|39=1|31=100.50|32=5|6=100.50|")
+                + fixText("35=8|37=2|11=2|17=4|1=11|55=3|54=1|150=4|39=4|151=0|84=2|")));
+
+        execute(orderBook, resultsWriter, responseDecoder, encoder, "35=F|41=1|1=10|");
+        assertThat(readFix(fixWriter), is(fixText("35=9|37=1|11=1|17=5|1=10|55=3|41=1|39=8|434=1|58=" + RESULT_UNKNOWN_ORDER_ID + "|")));
+
+        // reports are valid FIX messages (body length and checksum are verified before message type)
+        final byte[] report = fix("35=D|11=3|1=10|54=2|38=5|40=2|44=100.5|");
+        assertThat(decoder.parse(new UnsafeBuffer(report), 0, report.length), is(true));
+        fixWriter.reset();
+        encoder.onOrderPlaceResult(RESULT_SUCCESS, 0L, 0L, SYMBOL_ID, 10L, 3L, OrderAction.ASK, false, 0, 5L);
+        assertThat(decoder.parse(fixWriter.getBuffer(), 0, fixWriter.getWriterPosition()), is(false));
+        assertThat(decoder.getError(), is(FixCommandDecoder.ERROR_UNSUPPORTED_MSG_TYPE));
+    }
+
+    private void execute(final IOrderBook<ISymbolSpecification> orderBook,
+                         final BufferWriter resultsWriter,
+                         final ResponseFastDecoder responseDecoder,
+                         final FixExecutionReportEncoder encoder,
+                         final String body) {
+
+        final byte[] message = fix(body);
+        assertThat(decoder.parse(new UnsafeBuffer(message), 0, message.length), is(true));
+        decoder.encodeCommand(commandBuffer, 0);
+
+        resultsWriter.reset();
+        switch (decoder.getCommandCode()) {
+            case COMMAND_PLACE_ORDER:
+                orderBook.newOrder(commandBuffer, 0, 0L);
+                break;
+            case COMMAND_CANCEL_ORDER:
+                orderBook.cancelOrder(commandBuffer, 0);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+
+        encoder.getWriter().reset();
+        responseDecoder.readResult(new BufferReader(resultsWriter.getBuffer(), resultsWriter.getWriterPosition(), 0), 0L, 0L, SYMBOL_ID);
+        encoder.flush();
+    }
+
+    private boolean parse(final byte[] message) {
+        return decoder.parse(new UnsafeBuffer(message), 0, message.length);
+    }
+
+    private static String readFix(final BufferWriter writer) {
+        return new String(writer.getBytes(), StandardCharsets.US_ASCII).replace('\u0001', '|');
+    }
+
+    private static String fixText(final String body) {
+        return new String(fix(body), StandardCharsets.US_ASCII).replace('\u0001', '|');
+    }
+
+    private static byte[] fix(final String body) {
+        final String bodySoh = body.replace('|', '\u0001');
+        final String header = "8=FIX.4.4\u00019=" + bodySoh.length() + "\u0001";
+        int checksum = 0;
+        for (char c : (header + bodySoh).toCharArray()) {
+            checksum += c;
+        }
+        return (header + bodySoh + String.format("10=%03d\u0001", checksum & 0xFF)).getBytes(StandardCharsets.US_ASCII);
+    }
+}
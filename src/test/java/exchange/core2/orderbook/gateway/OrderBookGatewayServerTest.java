@@ -0,0 +1,217 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.gateway;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.CommandResponseCancel;
+import exchange.core2.orderbook.api.CommandResponsePlace;
+import exchange.core2.orderbook.api.OrderBookResponse;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsBatchEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.tests.util.TestSymbolSpecification;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class OrderBookGatewayServerTest {
+
+    private OrderBookGatewayServer server;
+    private InetSocketAddress address;
+
+    @Before
+    public void before() throws IOException {
+        final BufferWriter resultsBuffer = new BufferWriter(new ExpandableDirectByteBuffer(1 << 16), 0);
+        final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(new TestSymbolSpecification(1, true), false, resultsBuffer);
+        server = new OrderBookGatewayServer(orderBook, resultsBuffer, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4, 1 << 16, 1 << 16);
+        server.start();
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+    }
+
+    @After
+    public void after() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void shouldStreamResponses() throws IOException {
+
+        try (SocketChannel channel = SocketChannel.open(address)) {
+
+            final CommandsBatchEncoder encoder = new CommandsBatchEncoder(new UnsafeBuffer(ByteBuffer.allocateDirect(1024)), 0);
+            encoder.placeOrder(ORDER_TYPE_GTC, 1L, 10L, 100L, 100L, 5L, OrderAction.ASK, 0);
+            encoder.placeOrder(ORDER_TYPE_IOC, 2L, 11L, 100L, 100L, 3L, OrderAction.BID, 0);
+            encoder.cancel(1L, 10L);
+            encoder.cancel(1L, 10L);
+            send(channel, encoder);
+
+            final OrderBookResponse resting = readResponse(channel);
+            assertThat(resting.getResultCode(), is(RESULT_SUCCESS));
+            assertThat(((CommandResponsePlace) resting).getOrderId(), is(1L));
+
+            final CommandResponsePlace taker = (CommandResponsePlace) readResponse(channel);
+            assertThat(taker.getOrderId(), is(2L));
+            assertThat(taker.getTrades().size(), is(1));
+            assertThat(taker.getTrades().get(0).getTradeSize(), is(3L));
+
+            final CommandResponseCancel cancel = (CommandResponseCancel) readResponse(channel);
+            assertThat(cancel.getResultCode(), is(RESULT_SUCCESS));
+            assertThat(cancel.getReduceEventOpt().get().getReducedSize(), is(2L));
+
+            assertThat(readResponse(channel).getResultCode(), is(RESULT_UNKNOWN_ORDER_ID));
+        }
+    }
+
+    @Test
+    public void shouldCloseConnectionOnInvalidFrame() throws IOException {
+
+        try (SocketChannel channel = SocketChannel.open(address)) {
+
+            final ByteBuffer frame = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+            frame.putInt(1).put((byte) 99).flip();
+            channel.write(frame);
+
+            assertThat(channel.read(ByteBuffer.allocate(16)), is(-1));
+        }
+    }
+
+    @Test
+    public void shouldSkipFrameShorterThanCommand() throws IOException {
+
+        try (SocketChannel channel = SocketChannel.open(address)) {
+
+            final BufferWriter writer = new BufferWriter(new UnsafeBuffer(ByteBuffer.allocateDirect(1024)), 0);
+            final CommandsBatchEncoder encoder = new CommandsBatchEncoder(writer);
+            encoder.placeOrder(ORDER_TYPE_GTC, 1L, 10L, 100L, 100L, 5L, OrderAction.ASK, 0);
+            // place order frame cut to cancel command size
+            writer.overwriteInt(BATCH_FRAME_OFFSET_LENGTH, 1 + CANCEL_OFFSET_END);
+            writer.rewind(BATCH_FRAME_OFFSET_COMMAND + CANCEL_OFFSET_END);
+            encoder.cancel(1L, 10L);
+            send(channel, encoder);
+
+            // matcher thread is still running, order was not placed
+            assertThat(readResponse(channel).getResultCode(), is(RESULT_UNKNOWN_ORDER_ID));
+        }
+    }
+
+    @Test
+    public void shouldCloseSessionIfResponseDoesNotFitRing() throws IOException {
+
+        // max ring message is 512 bytes
+        final BufferWriter resultsBuffer = new BufferWriter(new ExpandableDirectByteBuffer(1 << 16), 0);
+        try (OrderBookGatewayServer smallRingServer = startServer(resultsBuffer, 1 << 12)) {
+            assertSessionClosedOnLargeSnapshot(smallRingServer);
+        }
+    }
+
+    @Test
+    public void shouldCloseSessionIfCommandFails() throws IOException {
+
+        // L2 snapshot overflows fixed results buffer
+        final BufferWriter resultsBuffer = new BufferWriter(new UnsafeBuffer(new byte[1024]), 0);
+        try (OrderBookGatewayServer fixedBufferServer = startServer(resultsBuffer, 1 << 16)) {
+            assertSessionClosedOnLargeSnapshot(fixedBufferServer);
+        }
+    }
+
+    @Test
+    public void shouldServeMultipleConnections() throws InterruptedException {
+
+        final GatewayLoadClient.Result result = new GatewayLoadClient(address, 3, 2000, 16).run();
+        assertThat(result.getResponses(), is(6000L));
+        assertThat(result.getLatency().getTotalCount(), is(6000L));
+    }
+
+    private static OrderBookGatewayServer startServer(final BufferWriter resultsBuffer, final int ringBufferCapacity) throws IOException {
+        final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(new TestSymbolSpecification(1, true), false, resultsBuffer);
+        final OrderBookGatewayServer server = new OrderBookGatewayServer(
+                orderBook, resultsBuffer, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4, ringBufferCapacity, 1 << 16);
+        server.start();
+        return server;
+    }
+
+    private static void assertSessionClosedOnLargeSnapshot(final OrderBookGatewayServer server) throws IOException {
+
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        final int levels = 100;
+
+        try (SocketChannel channel = SocketChannel.open(address)) {
+
+            final CommandsBatchEncoder encoder = new CommandsBatchEncoder(new UnsafeBuffer(ByteBuffer.allocateDirect(1 << 14)), 0);
+            for (int i = 0; i < levels; i++) {
+                encoder.placeOrder(ORDER_TYPE_GTC, i + 1, 10L, 100L + i, 100L + i, 1L, OrderAction.ASK, 0);
+            }
+            encoder.L2DataQuery(levels);
+            send(channel, encoder);
+
+            for (int i = 0; i < levels; i++) {
+                assertThat(readResponse(channel).getResultCode(), is(RESULT_SUCCESS));
+            }
+
+            // no response for snapshot, connection is closed
+            assertThat(channel.read(ByteBuffer.allocate(16)), is(-1));
+        }
+
+        // matcher thread is still running
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            final CommandsBatchEncoder encoder = new CommandsBatchEncoder(new UnsafeBuffer(ByteBuffer.allocateDirect(1024)), 0);
+            encoder.cancel(1L, 10L);
+            send(channel, encoder);
+            assertThat(readResponse(channel).getResultCode(), is(RESULT_SUCCESS));
+        }
+    }
+
+    private static void send(final SocketChannel channel, final CommandsBatchEncoder encoder) throws IOException {
+        final ByteBuffer bb = ByteBuffer.allocate(encoder.getLength());
+        encoder.getBuffer().getBytes(encoder.getInitialPosition(), bb, encoder.getLength());
+        bb.flip();
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+    }
+
+    private static OrderBookResponse readResponse(final SocketChannel channel) throws IOException {
+        final ByteBuffer length = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+        readFully(channel, length);
+        final ByteBuffer response = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, response);
+        return ResponseDecoder.readResult(new UnsafeBuffer(response.array()), response.capacity());
+    }
+
+    private static void readFully(final SocketChannel channel, final ByteBuffer bb) throws IOException {
+        while (bb.hasRemaining()) {
+            if (channel.read(bb) == -1) {
+                throw new IOException("Connection closed");
+            }
+        }
+    }
+}
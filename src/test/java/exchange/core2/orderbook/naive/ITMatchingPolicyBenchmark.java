@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.tests.util.TestSymbolSpecification;
+import org.HdrHistogram.Histogram;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Matching policies latency comparison (integration tests profile: mvn -P it test).
+ * <p>
+ * Every cycle places N resting orders into a single price level, matches a quarter of level volume with IOC order
+ * and cancels the rest. Only IOC command latency is recorded.
+ */
+public class ITMatchingPolicyBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(ITMatchingPolicyBenchmark.class);
+
+    private static final int[] LEVEL_ORDERS = {1, 8, 64, 512};
+    private static final long COMMANDS_PER_RUN = 4_000_000L;
+
+    private static final long UID_MAKER = 1001L;
+    private static final long UID_TAKER = 1002L;
+    private static final long PRICE = 10_000L;
+    private static final long ORDER_SIZE = 100L;
+
+    private final BufferWriter bufferWriter = new BufferWriter(new ExpandableDirectByteBuffer(1 << 16), 0);
+
+    @Test
+    public void compareFifoAndProRata() {
+
+        for (final int levelOrders : LEVEL_ORDERS) {
+
+            // warm-up both policies first
+            run(MATCHING_POLICY_FIFO, levelOrders);
+            run(MATCHING_POLICY_PRO_RATA, levelOrders);
+
+            final Histogram fifo = run(MATCHING_POLICY_FIFO, levelOrders);
+            final Histogram proRata = run(MATCHING_POLICY_PRO_RATA, levelOrders);
+
+            log.info("{} orders in level: FIFO {} | PRO-RATA {}", levelOrders, format(fifo), format(proRata));
+
+            assertTrue(fifo.getTotalCount() > 0 && proRata.getTotalCount() > 0);
+        }
+    }
+
+    private Histogram run(final byte matchingPolicy, final int levelOrders) {
+
+        final IOrderBook<TestSymbolSpecification> orderBook = new OrderBookNaiveImpl<>(
+                new TestSymbolSpecification(1, false, matchingPolicy), false, bufferWriter);
+
+        final MutableDirectBuffer[] placeCmds = new MutableDirectBuffer[levelOrders];
+        final MutableDirectBuffer[] cancelCmds = new MutableDirectBuffer[levelOrders];
+        for (int i = 0; i < levelOrders; i++) {
+            // different sizes, so pro-rata shares are rounded
+            placeCmds[i] = CommandsEncoder.placeOrder(ORDER_TYPE_GTC, i + 1, UID_MAKER, PRICE, PRICE, ORDER_SIZE + i, ASK, 0);
+            cancelCmds[i] = CommandsEncoder.cancel(i + 1, UID_MAKER);
+        }
+
+        final long iocSize = Math.max(1L, ORDER_SIZE * levelOrders / 4);
+        final MutableDirectBuffer iocCmd = CommandsEncoder.placeOrder(ORDER_TYPE_IOC, 0L, UID_TAKER, PRICE, PRICE, iocSize, BID, 0);
+
+        final Histogram histogram = new Histogram(TimeUnit.SECONDS.toNanos(1), 3);
+        final long cycles = COMMANDS_PER_RUN / (2L * levelOrders + 1);
+
+        for (long c = 0; c < cycles; c++) {
+            for (final MutableDirectBuffer cmd : placeCmds) {
+                bufferWriter.reset();
+                orderBook.newOrder(cmd, 0, 0L);
+            }
+
+            bufferWriter.reset();
+            final long t = System.nanoTime();
+            orderBook.newOrder(iocCmd, 0, 0L);
+            histogram.recordValue(System.nanoTime() - t);
+
+            for (final MutableDirectBuffer cmd : cancelCmds) {
+                bufferWriter.reset();
+                orderBook.cancelOrder(cmd, 0);
+            }
+        }
+
+        orderBook.verifyInternalState();
+        return histogram;
+    }
+
+    private static String format(final Histogram h) {
+        return String.format("mean=%.0fns p50=%dns p99=%dns", h.getMean(), h.getValueAtPercentile(50), h.getValueAtPercentile(99));
+    }
+}
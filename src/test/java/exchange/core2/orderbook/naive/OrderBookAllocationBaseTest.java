@@ -0,0 +1,284 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Allocation regression tests: every command type is executed in a cycle which returns order book into initial state.
+ * After warm-up, allocated memory per cycle is measured with ThreadMXBean.getThreadAllocatedBytes
+ * and compared to the budget (zero for everything except creating new price levels).
+ * <p>
+ * Warm-up goes through the same measurement path and repeats until a whole round fits the budget:
+ * when a method is submitted for C2 compilation, the submitting thread resolves all string constants
+ * of its class (validation messages of the buckets, ArrayDeque internals etc.) - a one-off allocation
+ * that must happen before measuring, so the budget stays exact.
+ */
+public abstract class OrderBookAllocationBaseTest<S extends ISymbolSpecification> {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderBookAllocationBaseTest.class);
+
+    // C2 compilation of the hot path is requested after tens of thousands of cycles, later when compiler queue is busy
+    private static final int WARMUP_CYCLES = 20_000;
+    private static final int WARMUP_MIN_ROUNDS = 10;
+    private static final int WARMUP_MAX_ROUNDS = 30;
+    private static final int MEASURE_CYCLES = 20_000;
+
+    // new price level: tree index entry, boxed price key and bucket object
+    protected static final long NEW_PRICE_LEVEL_BUDGET = 256L;
+
+    static final long UID_1 = 7162534L;
+    static final long UID_2 = 7162535L;
+
+    static final long ASK_PRICE = 10_100L;
+    static final long ASK_PRICE_2 = 10_200L;
+    static final long BID_PRICE = 9_900L;
+    static final long BID_PRICE_2 = 9_800L;
+    static final long SPREAD_PRICE = 10_050L;
+
+    static final long DEEP_SIZE = 1_000_000_000_000L;
+
+    private final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    protected final BufferWriter bufferWriter = new BufferWriter(new ExpandableDirectByteBuffer(4096), 0);
+
+    protected IOrderBook<S> orderBook;
+
+    protected abstract IOrderBook<S> createNewOrderBook(BufferWriter bufferWriter);
+
+    @Before
+    public void before() {
+        orderBook = createNewOrderBook(bufferWriter);
+
+        // deep orders on top of the book are never fully matched by tests
+        place(ORDER_TYPE_GTC, 1L, UID_1, ASK_PRICE, 0L, DEEP_SIZE, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, ASK_PRICE, 0L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_1, ASK_PRICE_2, 0L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 11L, UID_1, BID_PRICE, ASK_PRICE_2, DEEP_SIZE, BID);
+        place(ORDER_TYPE_GTC, 12L, UID_1, BID_PRICE, ASK_PRICE_2, 10L, BID);
+        place(ORDER_TYPE_GTC, 13L, UID_1, BID_PRICE_2, ASK_PRICE_2, 10L, BID);
+
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldNotAllocateWhenPlacingAndCancelling() {
+        final DirectBuffer placeCmd = placeCmd(ORDER_TYPE_GTC, 100L, UID_2, ASK_PRICE_2, 0L, 5L, ASK);
+        final DirectBuffer cancelCmd = CommandsEncoder.cancel(100L, UID_2);
+
+        verifyAllocations("place+cancel", 0L, () -> {
+            newOrder(placeCmd);
+            cancel(cancelCmd);
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenReducing() {
+        final DirectBuffer placeCmd = placeCmd(ORDER_TYPE_GTC, 100L, UID_2, BID_PRICE_2, ASK_PRICE_2, 5L, BID);
+        final DirectBuffer reduceCmd = CommandsEncoder.reduce(100L, UID_2, 2L);
+        final DirectBuffer reduceAllCmd = CommandsEncoder.reduce(100L, UID_2, Long.MAX_VALUE);
+
+        verifyAllocations("place+reduce", 0L, () -> {
+            newOrder(placeCmd);
+            bufferWriter.reset();
+            orderBook.reduceOrder(reduceCmd, 0);
+            bufferWriter.reset();
+            orderBook.reduceOrder(reduceAllCmd, 0);
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenMovingBetweenExistingLevels() {
+        final DirectBuffer placeCmd = placeCmd(ORDER_TYPE_GTC, 100L, UID_2, ASK_PRICE, 0L, 5L, ASK);
+        final DirectBuffer moveCmd1 = CommandsEncoder.move(100L, UID_2, ASK_PRICE_2);
+        final DirectBuffer moveCmd2 = CommandsEncoder.move(100L, UID_2, ASK_PRICE);
+        final DirectBuffer cancelCmd = CommandsEncoder.cancel(100L, UID_2);
+
+        verifyAllocations("place+move+move+cancel", 0L, () -> {
+            newOrder(placeCmd);
+            move(moveCmd1);
+            move(moveCmd2);
+            cancel(cancelCmd);
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenMovingMarketableOrder() {
+        final DirectBuffer placeCmd = placeCmd(ORDER_TYPE_GTC, 100L, UID_2, BID_PRICE, ASK_PRICE_2, 1L, BID);
+        final DirectBuffer moveCmd = CommandsEncoder.move(100L, UID_2, ASK_PRICE);
+
+        verifyAllocations("place+move(match)", 0L, () -> {
+            newOrder(placeCmd);
+            move(moveCmd);
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenMatchingIocOrders() {
+        final DirectBuffer iocBidCmd = placeCmd(ORDER_TYPE_IOC, 100L, UID_2, ASK_PRICE, ASK_PRICE, 1L, BID);
+        final DirectBuffer iocAskCmd = placeCmd(ORDER_TYPE_IOC, 101L, UID_2, BID_PRICE, 0L, 1L, ASK);
+
+        verifyAllocations("ioc bid+ask", 0L, () -> {
+            newOrder(iocBidCmd);
+            newOrder(iocAskCmd);
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenMatchingMarketableGtcOrder() {
+        final DirectBuffer gtcBidCmd = placeCmd(ORDER_TYPE_GTC, 100L, UID_2, ASK_PRICE, ASK_PRICE, 1L, BID);
+
+        verifyAllocations("gtc(match)", 0L, () -> newOrder(gtcBidCmd));
+    }
+
+    @Test
+    public void shouldNotAllocateWhenMatchingFokBudgetOrders() {
+        final DirectBuffer fokBidCmd = placeCmd(ORDER_TYPE_FOK_BUDGET, 100L, UID_2, ASK_PRICE * 2, ASK_PRICE, 2L, BID);
+        final DirectBuffer fokRejectCmd = placeCmd(ORDER_TYPE_FOK_BUDGET, 101L, UID_2, 1L, ASK_PRICE, 2L, BID);
+
+        verifyAllocations("fok budget match+reject", 0L, () -> {
+            newOrder(fokBidCmd);
+            newOrder(fokRejectCmd);
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenQueryingL2Data() {
+        final DirectBuffer l2Cmd = CommandsEncoder.L2DataQuery(100);
+
+        verifyAllocations("l2 query", 0L, () -> {
+            bufferWriter.reset();
+            orderBook.sendL2Snapshot(l2Cmd, 0);
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateWhenRejecting() {
+        final DirectBuffer cancelCmd = CommandsEncoder.cancel(7777L, UID_2);
+        final DirectBuffer moveCmd = CommandsEncoder.move(1L, UID_2, ASK_PRICE_2);
+        final DirectBuffer placeCmd = placeCmd(ORDER_TYPE_GTC, 100L, UID_2, ASK_PRICE, 0L, 0L, ASK);
+
+        verifyAllocations("rejects", 0L, () -> {
+            cancel(cancelCmd);
+            move(moveCmd);
+            newOrder(placeCmd);
+        });
+    }
+
+    @Test
+    public void shouldLimitAllocationsWhenCreatingAndSweepingLevel() {
+        final DirectBuffer placeCmd = placeCmd(ORDER_TYPE_GTC, 100L, UID_2, SPREAD_PRICE, 0L, 3L, ASK);
+        final DirectBuffer iocCmd = placeCmd(ORDER_TYPE_IOC, 101L, UID_2, SPREAD_PRICE, SPREAD_PRICE, 3L, BID);
+
+        verifyAllocations("new level+sweep", NEW_PRICE_LEVEL_BUDGET, () -> {
+            newOrder(placeCmd);
+            newOrder(iocCmd);
+        });
+    }
+
+    // ------------------------------- UTILITY METHODS --------------------------
+
+    private void verifyAllocations(final String name, final long budgetPerCycle, final Runnable cycle) {
+
+        // warm-up until a whole round fits the budget (one-off compilation allocations are done)
+        for (int round = 0; round < WARMUP_MAX_ROUNDS; round++) {
+            final long allocated = measureAllocatedBytes(cycle, WARMUP_CYCLES);
+            if (round >= WARMUP_MIN_ROUNDS - 1 && allocated <= budgetPerCycle * WARMUP_CYCLES) {
+                break;
+            }
+        }
+        orderBook.verifyInternalState();
+
+        final long allocated = measureAllocatedBytes(cycle, MEASURE_CYCLES);
+
+        orderBook.verifyInternalState();
+
+        final double perCycle = (double) allocated / MEASURE_CYCLES;
+        log.debug("{}: allocated {} bytes per cycle", name, perCycle);
+
+        assertTrue(String.format("%s: allocated %.2f bytes per cycle, budget=%d", name, perCycle, budgetPerCycle),
+                perCycle <= budgetPerCycle);
+    }
+
+    private long measureAllocatedBytes(final Runnable cycle, final int cycles) {
+
+        final long threadId = Thread.currentThread().getId();
+
+        // calibrate measurement overhead
+        final long calibrationStart = threadMXBean.getThreadAllocatedBytes(threadId);
+        final long overhead = threadMXBean.getThreadAllocatedBytes(threadId) - calibrationStart;
+
+        final long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < cycles; i++) {
+            cycle.run();
+        }
+        return threadMXBean.getThreadAllocatedBytes(threadId) - start - overhead;
+    }
+
+    private static DirectBuffer placeCmd(final byte type,
+                                         final long orderId,
+                                         final long uid,
+                                         final long price,
+                                         final long reservedBidPrice,
+                                         final long size,
+                                         final OrderAction action) {
+
+        return CommandsEncoder.placeOrder(type, orderId, uid, price, reservedBidPrice, size, action, 0);
+    }
+
+    private void place(final byte type,
+                       final long orderId,
+                       final long uid,
+                       final long price,
+                       final long reservedBidPrice,
+                       final long size,
+                       final OrderAction action) {
+
+        newOrder(placeCmd(type, orderId, uid, price, reservedBidPrice, size, action));
+    }
+
+    private void newOrder(final DirectBuffer cmd) {
+        bufferWriter.reset();
+        orderBook.newOrder(cmd, 0, 0L);
+    }
+
+    private void cancel(final DirectBuffer cmd) {
+        bufferWriter.reset();
+        orderBook.cancelOrder(cmd, 0);
+    }
+
+    private void move(final DirectBuffer cmd) {
+        bufferWriter.reset();
+        orderBook.moveOrder(cmd, 0);
+    }
+}
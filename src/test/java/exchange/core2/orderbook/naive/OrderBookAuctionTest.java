@@ -0,0 +1,236 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookAuctionTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldCollectCrossedOrdersWithoutMatching() {
+        orderBook.startAuction();
+
+        CommandResponsePlace res = place(ORDER_TYPE_GTC, 1L, UID_1, 105L, 10L, BID);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getRemainingSizeOpt().get(), is(10L));
+
+        res = place(ORDER_TYPE_GTC, 2L, UID_2, 100L, 5L, ASK);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(res.getRemainingSizeOpt().get(), is(5L));
+
+        final QueryResponseL2Data l2 = queryL2();
+        assertThat(l2.getBids(), is(Collections.singletonList(new QueryResponseL2Data.L2Record(105L, 10L, 1))));
+        assertThat(l2.getAsks(), is(Collections.singletonList(new QueryResponseL2Data.L2Record(100L, 5L, 1))));
+
+        // moved order is not matched either
+        final OrderBookResponse moveRes = execute(() -> orderBook.moveOrder(CommandsEncoder.move(2L, UID_2, 99L), 0));
+        assertThat(moveRes.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(orderBook.getOrderById(2L).getPrice(), is(99L));
+    }
+
+    @Test
+    public void shouldUncrossAtMaximumVolumeAndMinimumImbalancePrice() {
+        orderBook.startAuction();
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 103L, 10L, BID);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 101L, 10L, BID);
+        place(ORDER_TYPE_GTC, 3L, UID_2, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 4L, UID_2, 102L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 5L, UID_2, 104L, 5L, ASK);
+
+        // 102 and 103 both execute 10 with sell surplus 5 - lower price is taken
+        final CommandResponseUncross res = uncross();
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getPrice(), is(102L));
+        assertThat(res.getVolume(), is(10L));
+        assertThat(res.getFills(), is(Arrays.asList(
+                new AuctionFillEvent(1L, UID_1, BID, 102L, 103L, 10L, true),
+                new AuctionFillEvent(3L, UID_2, ASK, 102L, 100L, 5L, true),
+                new AuctionFillEvent(4L, UID_2, ASK, 102L, 102L, 5L, false))));
+
+        assertThat(orderBook.getOrderById(1L), nullValue());
+        assertThat(orderBook.getOrderById(3L), nullValue());
+        assertThat(orderBook.getOrderById(4L).getFilled(), is(5L));
+
+        final QueryResponseL2Data l2 = queryL2();
+        assertThat(l2.getBids(), is(Collections.singletonList(new QueryResponseL2Data.L2Record(101L, 10L, 1))));
+        assertThat(l2.getAsks(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(102L, 5L, 1),
+                new QueryResponseL2Data.L2Record(104L, 5L, 1))));
+
+        // continuous trading is resumed
+        final CommandResponsePlace placeRes = place(ORDER_TYPE_IOC, 6L, UID_1, 102L, 2L, BID);
+        assertThat(placeRes.getTrades(), is(Collections.singletonList(new TradeEvent(4L, UID_2, 102L, 102L, 2L, false))));
+    }
+
+    @Test
+    public void shouldPublishIndicativePriceDuringCallPhase() {
+        orderBook.startAuction();
+
+        assertThat(indicative(), is(new QueryResponseAuctionIndicative(RESULT_SUCCESS, 0L, 0L, 0L)));
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 102L, 8L, BID);
+        place(ORDER_TYPE_GTC, 2L, UID_2, 100L, 3L, ASK);
+        assertThat(indicative(), is(new QueryResponseAuctionIndicative(RESULT_SUCCESS, 102L, 3L, 5L)));
+
+        place(ORDER_TYPE_GTC, 3L, UID_2, 101L, 5L, ASK);
+        assertThat(indicative(), is(new QueryResponseAuctionIndicative(RESULT_SUCCESS, 101L, 8L, 0L)));
+
+        // query does not change the state
+        assertThat(orderBook.getOrderById(1L).getFilled(), is(0L));
+        assertThat(queryL2().getAsks().size(), is(2));
+    }
+
+    @Test
+    public void shouldExecuteHiddenIcebergReserveAndLeaveBookNotCrossed() {
+        orderBook.startAuction();
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeIcebergOrder(1L, UID_1, 103L, 103L, 10L, BID, 0, 2L);
+        execute(() -> orderBook.newOrder(cmd, 0, 0L));
+        place(ORDER_TYPE_GTC, 2L, UID_2, 103L, 5L, ASK);
+
+        final CommandResponseUncross res = uncross();
+        assertThat(res.getPrice(), is(103L));
+        assertThat(res.getVolume(), is(5L));
+        assertThat(res.getFills(), is(Arrays.asList(
+                new AuctionFillEvent(1L, UID_1, BID, 103L, 103L, 5L, false),
+                new AuctionFillEvent(2L, UID_2, ASK, 103L, 103L, 5L, true))));
+
+        final QueryResponseL2Data l2 = queryL2();
+        assertThat(l2.getBids(), is(Collections.singletonList(new QueryResponseL2Data.L2Record(103L, 2L, 1))));
+        assertThat(l2.getAsks().isEmpty(), is(true));
+        assertThat(orderBook.getOrderById(1L).getFilled(), is(5L));
+    }
+
+    @Test
+    public void shouldRejectImmediateOrdersDuringCallPhase() {
+        orderBook.startAuction();
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+
+        CommandResponsePlace res = place(ORDER_TYPE_IOC, 2L, UID_2, 100L, 5L, BID);
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+
+        res = placePostOnly(3L, UID_2, 100L, 5L, BID);
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+
+        res = (CommandResponsePlace) execute(() -> orderBook.newOrder(
+                CommandsEncoder.placePeggedOrder(4L, UID_2, 0L, 5L, BID, 0, PEG_TYPE_PRIMARY, 0L), 0, 0L));
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+
+        assertThat(orderBook.getOrderById(1L).getFilled(), is(0L));
+    }
+
+    @Test
+    public void shouldRejectAuctionCommandsOutsideOfCallPhase() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+
+        final CommandResponseUncross res = uncross();
+        assertThat(res.getResultCode(), is(RESULT_AUCTION_NOT_STARTED));
+        assertThat(res.getFills().isEmpty(), is(true));
+
+        assertThat(indicative().getResultCode(), is(RESULT_AUCTION_NOT_STARTED));
+
+        // not crossed order book - nothing to execute
+        orderBook.startAuction();
+        final CommandResponseUncross emptyRes = uncross();
+        assertThat(emptyRes, is(new CommandResponseUncross(RESULT_SUCCESS, 0L, 0L, Collections.emptyList())));
+    }
+
+    private CommandResponseUncross uncross() {
+        return (CommandResponseUncross) execute(() -> orderBook.uncross());
+    }
+
+    private QueryResponseAuctionIndicative indicative() {
+        return (QueryResponseAuctionIndicative) execute(() -> orderBook.sendAuctionIndicative());
+    }
+
+    private QueryResponseL2Data queryL2() {
+        return (QueryResponseL2Data) execute(() -> orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(100), 0));
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private CommandResponsePlace placePostOnly(final long orderId,
+                                               final long uid,
+                                               final long price,
+                                               final long size,
+                                               final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(ORDER_TYPE_GTC, orderId, uid, price, price, size, action, 0, PLACE_FLAG_POST_ONLY, 0L);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
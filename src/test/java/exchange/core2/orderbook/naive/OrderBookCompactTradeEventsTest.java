@@ -0,0 +1,196 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.IResponseHandler;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.CommandResponse;
+import exchange.core2.orderbook.api.MakerReduceEvent;
+import exchange.core2.orderbook.api.TradeEvent;
+import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.orderbook.util.ResponseFastDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookCompactTradeEventsTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+    private static final long UID_3 = 5_000_000_000L;
+
+    @Mock
+    private ISymbolSpecification fixedSpec;
+
+    @Mock
+    private ISymbolSpecification compactSpec;
+
+    @Mock
+    private IResponseHandler responseHandler;
+
+    private final MutableDirectBuffer fixedResponseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter fixedWriter = new BufferWriter(fixedResponseBuffer, 0);
+
+    private final MutableDirectBuffer compactResponseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter compactWriter = new BufferWriter(compactResponseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> fixedOrderBook;
+    private IOrderBook<ISymbolSpecification> compactOrderBook;
+
+    @Before
+    public void before() {
+        when(fixedSpec.getSelfTradePreventionMode()).thenReturn(SELF_TRADE_PREVENTION_CANCEL_MAKER);
+        when(compactSpec.getSelfTradePreventionMode()).thenReturn(SELF_TRADE_PREVENTION_CANCEL_MAKER);
+        when(compactSpec.getTradeEventsFormat()).thenReturn(TRADE_EVENTS_FORMAT_COMPACT);
+        fixedOrderBook = new OrderBookNaiveImpl<>(fixedSpec, false, fixedWriter);
+        compactOrderBook = new OrderBookNaiveImpl<>(compactSpec, false, compactWriter);
+    }
+
+    @Test
+    public void shouldDecodeSameEventsAsFixedFormat() {
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_3, 100L, 3L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_2, 101L, 4L, ASK);
+        place(ORDER_TYPE_GTC, 900_000_000_000L, UID_1, 103L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 5L, UID_3, 90L, 10L, BID);
+
+        // sweeps 3 levels, maker of the same uid is cancelled by self-trade prevention
+        CommandResponse res = place(ORDER_TYPE_GTC, 6L, UID_2, 103L, 15L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 103L, 5L, true),
+                new TradeEvent(2L, UID_3, 100L, 103L, 3L, true),
+                new TradeEvent(900_000_000_000L, UID_1, 103L, 103L, 7L, false))));
+        assertThat(res.getMakerReduceEvents(), is(Collections.singletonList(
+                new MakerReduceEvent(3L, UID_2, ASK, 101L, 101L, 4L, true))));
+
+        // marketable move
+        res = move(5L, UID_3, 103L);
+        assertThat(res.getTrades(), is(Collections.singletonList(
+                new TradeEvent(900_000_000_000L, UID_1, 103L, 90L, 3L, true))));
+
+        // no trades
+        res = place(ORDER_TYPE_GTC, 7L, UID_1, 120L, 1L, ASK);
+        assertThat(res.getTrades().isEmpty(), is(true));
+
+        fixedOrderBook.verifyInternalState();
+        compactOrderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldReduceSweepResponseSize() {
+
+        long orderId = 1L;
+        for (int level = 0; level < 10; level++) {
+            for (int i = 0; i < 100; i++) {
+                place(ORDER_TYPE_GTC, orderId++, UID_1 + i % 7, 10_000L + level, 10L + i % 3, ASK);
+            }
+        }
+
+        final CommandResponse res = place(ORDER_TYPE_IOC, orderId, UID_3, 20_000L, 100_000L, BID);
+        assertThat(res.getTrades().size(), is(1000));
+
+        final int fixedSize = fixedWriter.getWriterPosition();
+        final int compactSize = compactWriter.getWriterPosition();
+        assertThat("fixed=" + fixedSize + " compact=" + compactSize, compactSize * 5 < fixedSize, is(true));
+
+        assertThat(ResponseFastDecoder.countTradeEvents(compactResponseBuffer, 0, compactSize), is(1000));
+        assertThat(ResponseFastDecoder.countTradeEvents(fixedResponseBuffer, 0, fixedSize), is(1000));
+    }
+
+    @Test
+    public void shouldDecodeCompactEventsWithFastDecoder() {
+
+        place(ORDER_TYPE_GTC, 1L, UID_2, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 101L, 5L, ASK);
+        place(ORDER_TYPE_IOC, 3L, UID_2, 101L, 8L, BID);
+
+        new ResponseFastDecoder(responseHandler).readResult(
+                new BufferReader(compactResponseBuffer, compactWriter.getWriterPosition(), 0), 1L, 2L, 3);
+
+        verify(responseHandler).onReduceEvent(3, 1L, UID_2, 1L, ASK, 5L, 100L, 100L);
+        verify(responseHandler).onTradeEvent(3, 1L, UID_2, 3L, BID, UID_1, 2L, 101L, 101L, 5L, true);
+        verify(responseHandler).onReduceEvent(3, 1L, UID_2, 3L, BID, 3L, 101L, 101L);
+        verify(responseHandler).onOrderPlaceResult(RESULT_SUCCESS, 1L, 2L, 3, UID_2, 3L, BID, true, 0, UNSPECIFIED_REMAINING_SIZE_MARKER);
+    }
+
+    /**
+     * Execute place command on both order books, check responses are the same
+     *
+     * @return decoded compact response
+     */
+    private CommandResponse place(final byte type,
+                                  final long orderId,
+                                  final long uid,
+                                  final long price,
+                                  final long size,
+                                  final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        fixedWriter.reset();
+        compactWriter.reset();
+        fixedOrderBook.newOrder(cmd, 0, 0L);
+        compactOrderBook.newOrder(cmd, 0, 0L);
+        return decodeAndCompare();
+    }
+
+    private CommandResponse move(final long orderId,
+                                 final long uid,
+                                 final long price) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.move(orderId, uid, price);
+        fixedWriter.reset();
+        compactWriter.reset();
+        fixedOrderBook.moveOrder(cmd, 0);
+        compactOrderBook.moveOrder(cmd, 0);
+        return decodeAndCompare();
+    }
+
+    private CommandResponse decodeAndCompare() {
+
+        final CommandResponse fixed = (CommandResponse) ResponseDecoder.readResult(fixedResponseBuffer, fixedWriter.getWriterPosition());
+        final CommandResponse compact = (CommandResponse) ResponseDecoder.readResult(compactResponseBuffer, compactWriter.getWriterPosition());
+
+        assertThat(compact.getResultCode(), is(fixed.getResultCode()));
+        assertThat(compact.getTrades(), is(fixed.getTrades()));
+        assertThat(compact.getMakerReduceEvents(), is(fixed.getMakerReduceEvents()));
+        assertThat(compact.getReduceEventOpt(), is(fixed.getReduceEventOpt()));
+        assertThat(compact.getRemainingSizeOpt(), is(fixed.getRemainingSizeOpt()));
+        assertThat(compact.isOrderCompleted(), is(fixed.isOrderCompleted()));
+        return compact;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.*;
+import exchange.core2.orderbook.api.QueryResponseL2Data;
+import exchange.core2.orderbook.stats.IOrderBookCounters;
+import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.orderbook.util.ResponseFastDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.when;
+
+/**
+ * Direct dispatch mode should deliver the same callbacks as decoding of encoded responses
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookDirectDispatchTest {
+
+    private static final int SYMBOL_ID = 7;
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+    private static final long UID_3 = 1003L;
+    private static final long UID_4 = 1004L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+    private final MutableDirectBuffer triggeredBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter triggeredWriter = new BufferWriter(triggeredBuffer, 0);
+    private final MutableDirectBuffer directResponseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter directBufferWriter = new BufferWriter(directResponseBuffer, 0);
+
+    private final RecordingHandler decodedEvents = new RecordingHandler();
+    private final RecordingHandler directEvents = new RecordingHandler();
+    private final ResponseFastDecoder decoder = new ResponseFastDecoder(decodedEvents);
+
+    private OrderBookEventsDispatcher dispatcher;
+
+    private IOrderBook<ISymbolSpecification> encodingOrderBook;
+    private IOrderBook<ISymbolSpecification> directOrderBook;
+
+    private long correlationId;
+
+    @After
+    public void after() {
+        encodingOrderBook.verifyInternalState();
+        directOrderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldDispatchSameEventsAsDecodedResponses() {
+        createOrderBooks();
+        executeScenario();
+
+        assertThat(directEvents.total, is(decodedEvents.total));
+        assertThat(directEvents.count("onTradeEvent"), is(4));
+        assertThat(directEvents.count("onLevelTradeEvent"), is(0));
+        assertThat(directEvents.count("onAuctionFillEvent"), is(3));
+    }
+
+    @Test
+    public void shouldDispatchLevelTrades() {
+        when(spec.getTradeReportingMode()).thenReturn(TRADE_REPORTING_PER_LEVEL);
+        createOrderBooks();
+        executeScenario();
+
+        assertThat(directEvents.total, is(decodedEvents.total));
+        assertThat(directEvents.count("onTradeEvent"), is(0));
+        assertThat(directEvents.count("onLevelTradeEvent"), is(4));
+    }
+
+    @Test
+    public void shouldKeepL2DataInResultsBuffer() {
+        createOrderBooks();
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, 1L, UID_1, 100L, 100L, 10L, ASK, 0), 0, 0L));
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, 2L, UID_2, 98L, 98L, 4L, BID, 0), 0, 0L));
+
+        bufferWriter.reset();
+        encodingOrderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(10), 0);
+        directOrderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(10), 0);
+
+        final QueryResponseL2Data expected = (QueryResponseL2Data) ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+        final QueryResponseL2Data direct = (QueryResponseL2Data) ResponseDecoder.readResult(directResponseBuffer, directBufferWriter.getWriterPosition());
+        assertThat(direct, is(expected));
+        assertThat(direct.getAsks().size(), is(1));
+    }
+
+    private void createOrderBooks() {
+        encodingOrderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter, IOrderBookCounters.NONE, triggeredWriter);
+        dispatcher = new OrderBookEventsDispatcher(directEvents, SYMBOL_ID, IOrderBookCounters.NONE, spec.getTradeReportingMode());
+        directOrderBook = new OrderBookNaiveImpl<>(spec, false, directBufferWriter, IOrderBookCounters.NONE, OrderBookCapacityHints.NONE, dispatcher);
+    }
+
+    private void executeScenario() {
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, 1L, UID_1, 100L, 100L, 10L, ASK, 11), 0, 0L));
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, 2L, UID_2, 101L, 101L, 5L, ASK, 12), 0, 0L));
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, 3L, UID_1, 98L, 98L, 10L, BID, 13), 0, 0L));
+
+        // two levels matched, rest is cancelled (reduce event)
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_IOC, 4L, UID_3, 101L, 101L, 20L, BID, 14), 0, 0L));
+
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, 5L, UID_2, 105L, 105L, 10L, ASK, 15), 0, 0L));
+        execute(ob -> ob.newOrder(CommandsEncoder.placeStopOrder(ORDER_TYPE_STOP_LIMIT, 6L, UID_3, 105L, 105L, 3L, BID, 16, 104L), 0, 0L));
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, 7L, UID_1, 104L, 104L, 2L, BID, 17), 0, 0L));
+
+        // moved order trades and triggers stop order
+        execute(ob -> ob.moveOrder(CommandsEncoder.move(7L, UID_1, 105L), 0));
+        assertThat(decodedEvents.count("onOrderPlaceResult"), is(8));
+
+        execute(ob -> ob.reduceOrder(CommandsEncoder.reduce(5L, UID_2, 2L), 0));
+        execute(ob -> ob.cancelOrder(CommandsEncoder.cancel(3L, UID_1), 0));
+        execute(ob -> ob.cancelOrder(CommandsEncoder.cancel(99L, UID_1), 0));
+
+        // second quote reuses bid order, replaces ask order
+        execute(ob -> ob.massQuote(CommandsEncoder.massQuote(UID_4, 1L, 20L,
+                new long[]{95L, 110L}, new long[]{5L, 5L}, new OrderAction[]{BID, ASK}), 0, 0L));
+        execute(ob -> ob.massQuote(CommandsEncoder.massQuote(UID_4, 1L, 30L,
+                new long[]{95L, 111L}, new long[]{3L, 5L}, new OrderAction[]{BID, ASK}), 0, 0L));
+
+        execute(ob -> ob.newOrder(CommandsEncoder.placeGtdOrder(8L, UID_2, 90L, 90L, 1L, BID, 18, 1000L), 0, 0L));
+        execute(ob -> ob.expireOrders(2000L));
+
+        execute(IOrderBook::startAuction);
+        execute(ob -> ob.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, 9L, UID_3, 112L, 112L, 4L, BID, 19), 0, 0L));
+        execute(IOrderBook::sendAuctionIndicative);
+        execute(IOrderBook::uncross);
+        execute(IOrderBook::sendAuctionIndicative);
+        execute(IOrderBook::uncross);
+    }
+
+    private void execute(final Consumer<IOrderBook<ISymbolSpecification>> command) {
+
+        final long time = 1_000_000L + correlationId;
+        correlationId++;
+
+        bufferWriter.reset();
+        triggeredWriter.reset();
+        command.accept(encodingOrderBook);
+        if (bufferWriter.getWriterPosition() != 0) {
+            decoder.readResult(new BufferReader(responseBuffer, bufferWriter.getWriterPosition(), 0), time, correlationId, SYMBOL_ID);
+        }
+        int offset = 0;
+        while (offset < triggeredWriter.getWriterPosition()) {
+            final int length = triggeredBuffer.getInt(offset);
+            offset += SIZE_OF_INT;
+            decoder.readResult(new BufferReader(triggeredBuffer, length, offset), time, correlationId, SYMBOL_ID);
+            offset += length;
+        }
+
+        dispatcher.startCommand(time, correlationId);
+        command.accept(directOrderBook);
+
+        // nothing encoded, trade events are delivered while matching (order within command is not the same)
+        assertThat(directBufferWriter.getWriterPosition(), is(0));
+        assertThat(directEvents.completeCommand(), is(decodedEvents.completeCommand()));
+    }
+
+    private static final class RecordingHandler implements IResponseHandler {
+
+        private final List<String> events = new ArrayList<>();
+        private final List<String> total = new ArrayList<>();
+
+        private List<String> completeCommand() {
+            final List<String> commandEvents = new ArrayList<>(events);
+            Collections.sort(commandEvents);
+            total.addAll(commandEvents);
+            events.clear();
+            return commandEvents;
+        }
+
+        private int count(final String callback) {
+            return (int) total.stream().filter(e -> e.startsWith(callback + "[")).count();
+        }
+
+        private void record(final String callback, final Object... args) {
+            events.add(callback + Arrays.toString(args));
+        }
+
+        @Override
+        public void onOrderPlaceResult(short resultCode, long time, long correlationId, int symbolId, long uid, long orderId,
+                                       OrderAction action, boolean orderCompleted, int userCookie, long remainingSize) {
+            record("onOrderPlaceResult", resultCode, time, correlationId, symbolId, uid, orderId, action, orderCompleted, userCookie, remainingSize);
+        }
+
+        @Override
+        public void onOrderCancelResult(short resultCode, long time, long correlationId, int symbolId, long uid, long orderId,
+                                        OrderAction action, boolean orderCompleted) {
+            record("onOrderCancelResult", resultCode, time, correlationId, symbolId, uid, orderId, action, orderCompleted);
+        }
+
+        @Override
+        public void onOrderMoveResult(short resultCode, long time, long correlationId, int symbolId, long uid, long orderId,
+                                      OrderAction action, boolean orderCompleted, long remainingSize) {
+            record("onOrderMoveResult", resultCode, time, correlationId, symbolId, uid, orderId, action, orderCompleted, remainingSize);
+        }
+
+        @Override
+        public void onOrderReduceResult(short resultCode, long time, long correlationId, int symbolId, long uid, long orderId,
+                                        OrderAction action, boolean orderCompleted, long remainingSize) {
+            record("onOrderReduceResult", resultCode, time, correlationId, symbolId, uid, orderId, action, orderCompleted, remainingSize);
+        }
+
+        @Override
+        public void onTradeEvent(int symbolId, long time, long takerUid, long takerOrderId, OrderAction takerAction, long makerUid,
+                                 long makerOrderId, long tradePrice, long reservedBidPrice, long tradeVolume, boolean makerOrderCompleted) {
+            record("onTradeEvent", symbolId, time, takerUid, takerOrderId, takerAction, makerUid, makerOrderId, tradePrice, reservedBidPrice, tradeVolume, makerOrderCompleted);
+        }
+
+        @Override
+        public void onReduceEvent(int symbolId, long time, long uid, long orderId, OrderAction action, long reducedSize,
+                                  long price, long reservedBidPrice) {
+            record("onReduceEvent", symbolId, time, uid, orderId, action, reducedSize, price, reservedBidPrice);
+        }
+
+        @Override
+        public void onLevelTradeEvent(int symbolId, long time, long takerUid, long takerOrderId, OrderAction takerAction,
+                                      long price, long volume, int makers, int completedMakers) {
+            record("onLevelTradeEvent", symbolId, time, takerUid, takerOrderId, takerAction, price, volume, makers, completedMakers);
+        }
+
+        @Override
+        public void onOrdersExpireResult(short resultCode, long time, long correlationId, int symbolId, int expiredOrders) {
+            record("onOrdersExpireResult", resultCode, time, correlationId, symbolId, expiredOrders);
+        }
+
+        @Override
+        public void onAuctionFillEvent(int symbolId, long time, long uid, long orderId, OrderAction action, long price,
+                                       long reservedBidPrice, long fillSize, boolean orderCompleted) {
+            record("onAuctionFillEvent", symbolId, time, uid, orderId, action, price, reservedBidPrice, fillSize, orderCompleted);
+        }
+
+        @Override
+        public void onUncrossResult(short resultCode, long time, long correlationId, int symbolId, long price, long volume, int fills) {
+            record("onUncrossResult", resultCode, time, correlationId, symbolId, price, volume, fills);
+        }
+
+        @Override
+        public void onAuctionIndicativeResult(short resultCode, long time, long correlationId, int symbolId, long price,
+                                              long volume, long imbalance) {
+            record("onAuctionIndicativeResult", resultCode, time, correlationId, symbolId, price, volume, imbalance);
+        }
+
+        @Override
+        public void onQuoteEntryResult(int symbolId, long time, long uid, long quoteSetId, int entryIndex, long orderId, long size,
+                                       short resultCode) {
+            record("onQuoteEntryResult", symbolId, time, uid, quoteSetId, entryIndex, orderId, size, resultCode);
+        }
+
+        @Override
+        public void onMassQuoteResult(short resultCode, long time, long correlationId, int symbolId, long uid, long quoteSetId, int entries) {
+            record("onMassQuoteResult", resultCode, time, correlationId, symbolId, uid, quoteSetId, entries);
+        }
+
+        @Override
+        public void onL2DataResult(short resultCode, long time, long correlationId, int symbolId, IL2Proxy l2dataProxy) {
+            record("onL2DataResult", resultCode, time, correlationId, symbolId);
+        }
+    }
+}
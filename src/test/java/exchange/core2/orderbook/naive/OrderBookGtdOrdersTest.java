@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.IResponseHandler;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.orderbook.util.ResponseFastDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookGtdOrdersTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    private static final long T0 = 1_600_000_000_000_000_000L;
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    @Mock
+    private IResponseHandler responseHandler;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldExpireOrdersAtExpirationTime() {
+        placeGtd(1L, UID_1, 100L, 10L, ASK, T0, T0 + 5 * MS);
+        placeGtd(2L, UID_2, 90L, 20L, BID, T0, T0 + 50 * MS);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 101L, 10L, ASK, T0);
+
+        assertThat(expire(T0 + 5 * MS - 1).isEmpty(), is(true));
+        assertThat(orderBook.getOrderById(1L), notNullValue());
+
+        assertThat(expire(T0 + 5 * MS), is(Collections.singletonList(
+                new MakerReduceEvent(1L, UID_1, ASK, 100L, 100L, 10L, true))));
+        assertThat(orderBook.getOrderById(1L), nullValue());
+
+        assertThat(expire(T0 + 1000 * MS), is(Collections.singletonList(
+                new MakerReduceEvent(2L, UID_2, BID, 90L, 90L, 20L, true))));
+        assertThat(orderBook.getOrderById(2L), nullValue());
+
+        // regular orders never expire
+        assertThat(orderBook.getOrderById(3L), notNullValue());
+        assertThat(queryL2().getAsks().size(), is(1));
+        assertThat(queryL2().getBids().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldExpireRemainingSizeOnly() {
+        placeGtd(1L, UID_1, 100L, 10L, ASK, T0, T0 + 5 * MS);
+        placeGtd(2L, UID_1, 100L, 10L, ASK, T0, T0 + 5 * MS);
+        placeGtd(3L, UID_1, 99L, 10L, BID, T0, T0 + 5 * MS);
+
+        // partially filled, cancelled and fully filled orders
+        place(ORDER_TYPE_IOC, 4L, UID_2, 100L, 4L, BID, T0 + MS);
+        execute(() -> orderBook.cancelOrder(CommandsEncoder.cancel(2L, UID_1), 0));
+        place(ORDER_TYPE_IOC, 5L, UID_2, 99L, 10L, ASK, T0 + MS);
+
+        assertThat(expire(T0 + 10 * MS), is(Collections.singletonList(
+                new MakerReduceEvent(1L, UID_1, ASK, 100L, 100L, 6L, true))));
+        assertThat(queryL2().getAsks().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldMatchAlreadyExpiredOrderAsIoc() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK, T0);
+
+        final CommandResponsePlace res = placeGtd(2L, UID_2, 100L, 8L, BID, T0, T0);
+        assertThat(res.getTrades(), is(Collections.singletonList(new TradeEvent(1L, UID_1, 100L, 100L, 5L, true))));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(3L));
+        assertThat(res.isOrderCompleted(), is(true));
+        assertThat(orderBook.getOrderById(2L), nullValue());
+    }
+
+    @Test
+    public void shouldKeepExpirationWhenMoved() {
+        placeGtd(1L, UID_1, 100L, 10L, BID, T0, T0 + 5 * MS);
+
+        execute(() -> orderBook.moveOrder(CommandsEncoder.move(1L, UID_1, 98L), 0));
+
+        assertThat(expire(T0 + 5 * MS), is(Collections.singletonList(
+                new MakerReduceEvent(1L, UID_1, BID, 98L, 100L, 10L, true))));
+    }
+
+    @Test
+    public void shouldExpireBeyondWheelRangeInSingleBatch() {
+        placeGtd(1L, UID_1, 100L, 10L, ASK, T0, T0 + 20_000 * MS);
+        placeGtd(2L, UID_1, 101L, 10L, ASK, T0, T0 + 3 * MS);
+        placeGtd(3L, UID_1, 102L, 10L, ASK, T0, T0 + 3 * MS);
+        placeGtd(4L, UID_1, 103L, 10L, ASK, T0, T0 + 60_000 * MS);
+
+        final List<MakerReduceEvent> expired = expire(T0 + 30_000 * MS);
+        assertThat(expired, is(Arrays.asList(
+                new MakerReduceEvent(2L, UID_1, ASK, 101L, 101L, 10L, true),
+                new MakerReduceEvent(3L, UID_1, ASK, 102L, 102L, 10L, true),
+                new MakerReduceEvent(1L, UID_1, ASK, 100L, 100L, 10L, true))));
+
+        assertThat(orderBook.getOrderById(4L), notNullValue());
+        assertThat(expire(T0 + 60_000 * MS).size(), is(1));
+    }
+
+    @Test
+    public void shouldSkipIdleTicksAfterLongGap() {
+        final long day = TimeUnit.DAYS.toNanos(1);
+        placeGtd(1L, UID_1, 100L, 10L, ASK, T0, T0 + 365 * day);
+        placeGtd(2L, UID_1, 101L, 10L, ASK, T0, T0 + 3 * MS);
+
+        // one wheel revolution per call, not one poll per elapsed tick
+        assertThat(expire(T0 + 200 * day).size(), is(1));
+        assertThat(expire(T0 + 365 * day - 1).isEmpty(), is(true));
+
+        placeGtd(3L, UID_2, 90L, 10L, BID, T0 + 365 * day, T0 + 365 * day + 5 * MS);
+        assertThat(expire(T0 + 365 * day), is(Collections.singletonList(
+                new MakerReduceEvent(1L, UID_1, ASK, 100L, 100L, 10L, true))));
+        assertThat(expire(T0 + 365 * day + 5 * MS), is(Collections.singletonList(
+                new MakerReduceEvent(3L, UID_2, BID, 90L, 90L, 10L, true))));
+    }
+
+    @Test
+    public void shouldExpireMillisecondTimestampsWithConfiguredTick() {
+        when(spec.getExpiryTickResolution()).thenReturn(1L);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+
+        final long t0 = TimeUnit.NANOSECONDS.toMillis(T0);
+        placeGtd(1L, UID_1, 100L, 10L, ASK, t0, t0 + 5);
+        placeGtd(2L, UID_1, 101L, 10L, ASK, t0, t0 + 5_000);
+
+        assertThat(expire(t0 + 4).isEmpty(), is(true));
+        assertThat(expire(t0 + 5), is(Collections.singletonList(
+                new MakerReduceEvent(1L, UID_1, ASK, 100L, 100L, 10L, true))));
+        assertThat(expire(t0 + 4_999).isEmpty(), is(true));
+        assertThat(expire(t0 + 5_000).size(), is(1));
+    }
+
+    @Test
+    public void shouldDecodeExpiredOrdersWithFastDecoder() {
+        placeGtd(1L, UID_1, 100L, 10L, ASK, T0, T0 + 5 * MS);
+        placeGtd(2L, UID_2, 90L, 20L, BID, T0, T0 + 5 * MS);
+
+        bufferWriter.reset();
+        orderBook.expireOrders(T0 + 5 * MS);
+
+        new ResponseFastDecoder(responseHandler).readResult(
+                new BufferReader(responseBuffer, bufferWriter.getWriterPosition(), 0), 1L, 2L, 3);
+
+        verify(responseHandler).onReduceEvent(3, 1L, UID_1, 1L, ASK, 10L, 100L, 100L);
+        verify(responseHandler).onReduceEvent(3, 1L, UID_2, 2L, BID, 20L, 90L, 90L);
+        verify(responseHandler).onOrdersExpireResult(RESULT_SUCCESS, 1L, 2L, 3, 2);
+    }
+
+    private List<MakerReduceEvent> expire(final long timestamp) {
+        final CommandResponseExpire res = (CommandResponseExpire) execute(() -> orderBook.expireOrders(timestamp));
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        return res.getExpiredOrders();
+    }
+
+    private QueryResponseL2Data queryL2() {
+        return (QueryResponseL2Data) execute(() -> orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(100), 0));
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action,
+                                       final long timestamp) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, timestamp));
+    }
+
+    private CommandResponsePlace placeGtd(final long orderId,
+                                          final long uid,
+                                          final long price,
+                                          final long size,
+                                          final OrderAction action,
+                                          final long timestamp,
+                                          final long expireTimestamp) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeGtdOrder(orderId, uid, price, price, size, action, 0, expireTimestamp);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, timestamp));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookIcebergOrdersTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldShowDisplayedSizeOnly() {
+        final CommandResponsePlace res = placeIceberg(1L, UID_1, 100L, 50L, ASK, 10L);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getRemainingSizeOpt().get(), is(50L));
+
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 7L, ASK);
+
+        final QueryResponseL2Data l2 = queryL2();
+        assertThat(l2.getAsks().size(), is(1));
+        assertThat(l2.getAsks().get(0), is(new QueryResponseL2Data.L2Record(100L, 17L, 2)));
+    }
+
+    @Test
+    public void shouldReplenishAndRequeueFilledSlice() {
+        placeIceberg(1L, UID_1, 100L, 30L, ASK, 10L);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 5L, ASK);
+
+        // first slice filled, iceberg goes behind order 2
+        CommandResponsePlace res = place(ORDER_TYPE_IOC, 3L, UID_2, 100L, 12L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 100L, 10L, false),
+                new TradeEvent(2L, UID_1, 100L, 100L, 2L, false))));
+        assertThat(queryL2().getAsks().get(0), is(new QueryResponseL2Data.L2Record(100L, 13L, 2)));
+
+        // last order in the queue is replenished and matched again within the same call
+        res = place(ORDER_TYPE_IOC, 4L, UID_2, 100L, 20L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(2L, UID_1, 100L, 100L, 3L, true),
+                new TradeEvent(1L, UID_1, 100L, 100L, 10L, false),
+                new TradeEvent(1L, UID_1, 100L, 100L, 7L, false))));
+
+        assertThat(orderBook.getOrderById(1L).getFilled(), is(27L));
+        assertThat(queryL2().getAsks().get(0), is(new QueryResponseL2Data.L2Record(100L, 3L, 1)));
+    }
+
+    @Test
+    public void shouldMatchAllSlicesOfSingleIceberg() {
+        placeIceberg(1L, UID_1, 100L, 25L, ASK, 10L);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 2L, UID_2, 101L, 30L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 101L, 10L, false),
+                new TradeEvent(1L, UID_1, 100L, 101L, 10L, false),
+                new TradeEvent(1L, UID_1, 100L, 101L, 5L, true))));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(5L));
+        assertThat(orderBook.getOrderById(1L), nullValue());
+        assertThat(queryL2().getAsks().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldReduceHiddenReserveFirst() {
+        placeIceberg(1L, UID_1, 100L, 30L, BID, 10L);
+
+        final CommandResponseReduce res = (CommandResponseReduce) execute(() -> orderBook.reduceOrder(CommandsEncoder.reduce(1L, UID_1, 15L), 0));
+        assertThat(res.getRemainingSizeOpt().get(), is(15L));
+        assertThat(queryL2().getBids().get(0), is(new QueryResponseL2Data.L2Record(100L, 10L, 1)));
+
+        execute(() -> orderBook.reduceOrder(CommandsEncoder.reduce(1L, UID_1, 12L), 0));
+        assertThat(queryL2().getBids().get(0), is(new QueryResponseL2Data.L2Record(100L, 3L, 1)));
+    }
+
+    @Test
+    public void shouldReplenishSliceWhenMoved() {
+        placeIceberg(1L, UID_1, 100L, 30L, BID, 10L);
+        place(ORDER_TYPE_IOC, 2L, UID_2, 100L, 4L, ASK);
+        assertThat(queryL2().getBids().get(0), is(new QueryResponseL2Data.L2Record(100L, 6L, 1)));
+
+        execute(() -> orderBook.moveOrder(CommandsEncoder.move(1L, UID_1, 99L), 0));
+        assertThat(queryL2().getBids().get(0), is(new QueryResponseL2Data.L2Record(99L, 10L, 1)));
+    }
+
+    @Test
+    public void shouldRejectIncorrectDisplaySize() {
+        final CommandResponsePlace res = placeIceberg(1L, UID_1, 100L, 30L, BID, 0L);
+        assertThat(res.getResultCode(), is(RESULT_INCORRECT_ORDER_SIZE));
+        assertThat(orderBook.getOrderById(1L), nullValue());
+    }
+
+    @Test
+    public void shouldPlaceRegularOrderIfDisplaySizeCoversOrder() {
+        placeIceberg(1L, UID_1, 100L, 30L, BID, 50L);
+        assertThat(queryL2().getBids().get(0), is(new QueryResponseL2Data.L2Record(100L, 30L, 1)));
+    }
+
+    private QueryResponseL2Data queryL2() {
+        return (QueryResponseL2Data) execute(() -> orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(100), 0));
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private CommandResponsePlace placeIceberg(final long orderId,
+                                              final long uid,
+                                              final long price,
+                                              final long size,
+                                              final OrderAction action,
+                                              final long displaySize) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeIcebergOrder(orderId, uid, price, price, size, action, 0, displaySize);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.IResponseHandler;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.orderbook.util.ResponseFastDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookLevelTradesTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+    private static final long UID_3 = 1003L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    @Mock
+    private IResponseHandler responseHandler;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldReportTradesPerOrderAndLevel() {
+        createOrderBook(TRADE_REPORTING_PER_ORDER_AND_LEVEL, TRADE_EVENTS_FORMAT_FIXED);
+        placeAsks();
+
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 10L, UID_3, 102L, 12L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 102L, 3L, true),
+                new TradeEvent(2L, UID_2, 100L, 102L, 4L, true),
+                new TradeEvent(3L, UID_1, 101L, 102L, 5L, false))));
+        assertThat(res.getLevelTrades(), is(Arrays.asList(
+                new LevelTradeEvent(100L, 7L, 2, 2),
+                new LevelTradeEvent(101L, 5L, 1, 0))));
+    }
+
+    @Test
+    public void shouldReportTradesPerLevelOnly() {
+        createOrderBook(TRADE_REPORTING_PER_LEVEL, TRADE_EVENTS_FORMAT_COMPACT);
+        placeAsks();
+
+        // taker meets own orders - maker reduce events are still reported
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 10L, UID_1, 102L, 20L, BID);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(res.getLevelTrades(), is(Arrays.asList(
+                new LevelTradeEvent(100L, 4L, 1, 1),
+                new LevelTradeEvent(102L, 6L, 1, 1))));
+        assertThat(res.getMakerReduceEvents(), is(Arrays.asList(
+                new MakerReduceEvent(1L, UID_1, ASK, 100L, 100L, 3L, true),
+                new MakerReduceEvent(3L, UID_1, ASK, 101L, 101L, 6L, true))));
+        assertThat(res.getRemainingSizeOpt().get(), is(10L));
+    }
+
+    @Test
+    public void shouldDeliverLevelTradesWithFastDecoder() {
+        createOrderBook(TRADE_REPORTING_PER_LEVEL, TRADE_EVENTS_FORMAT_FIXED);
+        placeAsks();
+
+        place(ORDER_TYPE_IOC, 10L, UID_3, 101L, 9L, BID);
+
+        new ResponseFastDecoder(responseHandler).readResult(
+                new BufferReader(responseBuffer, bufferWriter.getWriterPosition(), 0), 1L, 2L, 3);
+
+        verify(responseHandler).onLevelTradeEvent(3, 1L, UID_3, 10L, BID, 100L, 7L, 2, 2);
+        verify(responseHandler).onLevelTradeEvent(3, 1L, UID_3, 10L, BID, 101L, 2L, 1, 0);
+        assertThat(ResponseFastDecoder.countTradeEvents(responseBuffer, 0, bufferWriter.getWriterPosition()), is(2));
+    }
+
+    private void placeAsks() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 3L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_2, 100L, 4L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 101L, 6L, ASK);
+        place(ORDER_TYPE_GTC, 4L, UID_2, 102L, 6L, ASK);
+    }
+
+    private void createOrderBook(final byte tradeReportingMode, final byte tradeEventsFormat) {
+        when(spec.getSelfTradePreventionMode()).thenReturn(SELF_TRADE_PREVENTION_CANCEL_MAKER);
+        when(spec.getTradeReportingMode()).thenReturn(tradeReportingMode);
+        when(spec.getTradeEventsFormat()).thenReturn(tradeEventsFormat);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        bufferWriter.reset();
+        orderBook.newOrder(cmd, 0, 0L);
+        return (CommandResponsePlace) ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
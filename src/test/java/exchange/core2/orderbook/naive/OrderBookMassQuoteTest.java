@@ -0,0 +1,266 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookMassQuoteTest {
+
+    private static final long UID_MM = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldReplaceQuoteSetReusingOrdersWithSamePrice() {
+
+        CommandResponseMassQuote res = quote(1L, 100L,
+                new long[]{99L, 98L, 101L, 102L},
+                new long[]{10L, 10L, 10L, 10L},
+                new OrderAction[]{BID, BID, ASK, ASK});
+
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getQuoteSetId(), is(1L));
+        assertThat(res.getReducedOrders().isEmpty(), is(true));
+        assertThat(res.getEntries(), is(Arrays.asList(
+                new QuoteEntryResult(100L, 10L, RESULT_SUCCESS),
+                new QuoteEntryResult(101L, 10L, RESULT_SUCCESS),
+                new QuoteEntryResult(102L, 10L, RESULT_SUCCESS),
+                new QuoteEntryResult(103L, 10L, RESULT_SUCCESS))));
+
+        res = quote(2L, 200L,
+                new long[]{99L, 97L, 101L, 103L},
+                new long[]{5L, 10L, 20L, 10L},
+                new OrderAction[]{BID, BID, ASK, ASK});
+
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getReducedOrders(), is(Arrays.asList(
+                new MakerReduceEvent(101L, UID_MM, BID, 98L, 98L, 10L, true),
+                new MakerReduceEvent(103L, UID_MM, ASK, 102L, 102L, 10L, true),
+                new MakerReduceEvent(100L, UID_MM, BID, 99L, 99L, 5L, false))));
+        assertThat(res.getEntries(), is(Arrays.asList(
+                new QuoteEntryResult(100L, 5L, RESULT_SUCCESS),
+                new QuoteEntryResult(201L, 10L, RESULT_SUCCESS),
+                new QuoteEntryResult(102L, 20L, RESULT_SUCCESS),
+                new QuoteEntryResult(203L, 10L, RESULT_SUCCESS))));
+
+        final QueryResponseL2Data l2 = queryL2();
+        assertThat(l2.getBids(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(99L, 5L, 1),
+                new QueryResponseL2Data.L2Record(97L, 10L, 1))));
+        assertThat(l2.getAsks(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(101L, 20L, 1),
+                new QueryResponseL2Data.L2Record(103L, 10L, 1))));
+
+        assertThat(orderBook.getOrderById(101L), nullValue());
+        assertThat(orderBook.getOrderById(103L), nullValue());
+        assertThat(orderBook.getOrderById(200L), nullValue());
+    }
+
+    @Test
+    public void shouldKeepTimePriorityUnlessSizeIncreased() {
+
+        quote(1L, 100L, new long[]{101L, 102L}, new long[]{10L, 10L}, new OrderAction[]{ASK, ASK});
+        place(ORDER_TYPE_GTC, 1L, UID_2, 101L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_2, 102L, 10L, ASK);
+
+        // reduced quote at 101 stays first, increased quote at 102 goes behind other order
+        quote(2L, 200L, new long[]{101L, 102L}, new long[]{8L, 12L}, new OrderAction[]{ASK, ASK});
+
+        CommandResponsePlace res = place(ORDER_TYPE_IOC, 3L, UID_2, 101L, 4L, BID);
+        assertThat(res.getTrades(), is(Collections.singletonList(
+                new TradeEvent(100L, UID_MM, 101L, 101L, 4L, false))));
+
+        place(ORDER_TYPE_IOC, 4L, UID_2, 101L, 14L, BID);
+        res = place(ORDER_TYPE_IOC, 5L, UID_2, 102L, 4L, BID);
+        assertThat(res.getTrades(), is(Collections.singletonList(
+                new TradeEvent(2L, UID_2, 102L, 102L, 4L, false))));
+    }
+
+    @Test
+    public void shouldRejectEntriesTakingLiquidity() {
+
+        place(ORDER_TYPE_GTC, 1L, UID_2, 100L, 10L, ASK);
+        quote(1L, 100L, new long[]{101L}, new long[]{10L}, new OrderAction[]{ASK});
+
+        final CommandResponseMassQuote res = quote(2L, 200L,
+                new long[]{100L, 99L, 100L},
+                new long[]{10L, 10L, 10L},
+                new OrderAction[]{BID, BID, ASK});
+
+        // previous quote ask 101 is cancelled, bid 100 would cross other user ask
+        assertThat(res.getReducedOrders(), is(Collections.singletonList(
+                new MakerReduceEvent(100L, UID_MM, ASK, 101L, 101L, 10L, true))));
+        assertThat(res.getEntries(), is(Arrays.asList(
+                new QuoteEntryResult(200L, 0L, RESULT_POST_ONLY_WOULD_TAKE),
+                new QuoteEntryResult(201L, 10L, RESULT_SUCCESS),
+                new QuoteEntryResult(202L, 10L, RESULT_SUCCESS))));
+        assertThat(res.getEntries().get(0).isRejected(), is(true));
+
+        final QueryResponseL2Data l2 = queryL2();
+        assertThat(l2.getBids(), is(Collections.singletonList(new QueryResponseL2Data.L2Record(99L, 10L, 1))));
+        assertThat(l2.getAsks(), is(Collections.singletonList(new QueryResponseL2Data.L2Record(100L, 20L, 2))));
+    }
+
+    @Test
+    public void shouldNotTouchRegularOrderReusingQuoteOrderId() {
+
+        quote(1L, 100L, new long[]{99L, 101L}, new long[]{10L, 10L}, new OrderAction[]{BID, ASK});
+
+        // quote order is cancelled, then its id is used by a regular order at the same price
+        execute(() -> orderBook.cancelOrder(CommandsEncoder.cancel(100L, UID_MM), 0));
+        place(ORDER_TYPE_GTC, 100L, UID_MM, 99L, 30L, BID);
+
+        final CommandResponseMassQuote res = quote(2L, 200L, new long[]{99L, 101L}, new long[]{5L, 5L}, new OrderAction[]{BID, ASK});
+        assertThat(res.getReducedOrders(), is(Collections.singletonList(
+                new MakerReduceEvent(101L, UID_MM, ASK, 101L, 101L, 5L, false))));
+        assertThat(res.getEntries(), is(Arrays.asList(
+                new QuoteEntryResult(200L, 5L, RESULT_SUCCESS),
+                new QuoteEntryResult(101L, 5L, RESULT_SUCCESS))));
+        assertThat(orderBook.getOrderById(100L).getSize(), is(30L));
+
+        // regular order is not cancelled by the next quote, its id can not be used by quote entry
+        final CommandResponseMassQuote res2 = quote(3L, 100L, new long[]{98L}, new long[]{5L}, new OrderAction[]{BID});
+        assertThat(res2.getReducedOrders().size(), is(2));
+        assertThat(res2.getEntries(), is(Collections.singletonList(
+                new QuoteEntryResult(100L, 0L, RESULT_DUPLICATE_ORDER_ID))));
+        assertThat(orderBook.getOrderById(100L).getSize(), is(30L));
+        assertThat(orderBook.getOrderById(100L).getPrice(), is(99L));
+    }
+
+    @Test
+    public void shouldCancelAllQuotesWithEmptyQuote() {
+
+        quote(1L, 100L, new long[]{99L, 101L}, new long[]{10L, 10L}, new OrderAction[]{BID, ASK});
+
+        // partially matched and individually cancelled quote orders are handled
+        place(ORDER_TYPE_IOC, 1L, UID_2, 101L, 4L, BID);
+        execute(() -> orderBook.cancelOrder(CommandsEncoder.cancel(100L, UID_MM), 0));
+
+        CommandResponseMassQuote res = quote(2L, 200L, new long[0], new long[0], new OrderAction[0]);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getReducedOrders(), is(Collections.singletonList(
+                new MakerReduceEvent(101L, UID_MM, ASK, 101L, 101L, 6L, true))));
+        assertThat(res.getEntries().isEmpty(), is(true));
+
+        assertThat(queryL2().getAsks().isEmpty(), is(true));
+        assertThat(queryL2().getBids().isEmpty(), is(true));
+
+        res = quote(3L, 300L, new long[0], new long[0], new OrderAction[0]);
+        assertThat(res.getReducedOrders().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldRejectInvalidQuoteAtomically() {
+
+        quote(1L, 100L, new long[]{99L, 101L}, new long[]{10L, 10L}, new OrderAction[]{BID, ASK});
+
+        final CommandResponseMassQuote res = quote(2L, 200L,
+                new long[]{98L, 102L},
+                new long[]{10L, 0L},
+                new OrderAction[]{BID, ASK});
+
+        assertThat(res.getResultCode(), is(RESULT_INCORRECT_ORDER_SIZE));
+        assertThat(res.getReducedOrders().isEmpty(), is(true));
+        assertThat(res.getEntries().isEmpty(), is(true));
+
+        assertThat(orderBook.getOrderById(100L).getSize(), is(10L));
+        assertThat(orderBook.getOrderById(101L).getSize(), is(10L));
+        assertThat(orderBook.getOrderById(200L), nullValue());
+    }
+
+    @Test
+    public void shouldRejectQuoteDuringAuction() {
+
+        orderBook.startAuction();
+
+        final CommandResponseMassQuote res = quote(1L, 100L, new long[]{99L}, new long[]{10L}, new OrderAction[]{BID});
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+        assertThat(orderBook.getOrderById(100L), nullValue());
+    }
+
+    private CommandResponseMassQuote quote(final long quoteSetId,
+                                           final long firstOrderId,
+                                           final long[] prices,
+                                           final long[] sizes,
+                                           final OrderAction[] actions) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.massQuote(UID_MM, quoteSetId, firstOrderId, prices, sizes, actions);
+        return (CommandResponseMassQuote) execute(() -> orderBook.massQuote(cmd, 0, 0L));
+    }
+
+    private QueryResponseL2Data queryL2() {
+        return (QueryResponseL2Data) execute(() -> orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(100), 0));
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
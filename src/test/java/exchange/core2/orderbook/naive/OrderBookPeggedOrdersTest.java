@@ -0,0 +1,270 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookPeggedOrdersTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldRepriceLazilyWhenBestPriceChanges() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 110L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 10L, BID);
+
+        final CommandResponsePlace res = placePegged(3L, UID_2, 5L, BID, PEG_TYPE_PRIMARY, 0L);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getRemainingSizeOpt().get(), is(5L));
+        assertThat(res.getTrades().isEmpty(), is(true));
+
+        placePegged(4L, UID_2, 3L, BID, PEG_TYPE_MIDPOINT, 0L);
+        placePegged(5L, UID_2, 4L, ASK, PEG_TYPE_MARKET, 2L);
+
+        QueryResponseL2Data l2 = queryL2();
+        assertThat(l2.getBids(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(105L, 3L, 1),
+                new QueryResponseL2Data.L2Record(100L, 15L, 2))));
+        // market peg ask 100+2 is floored by midpoint
+        assertThat(l2.getAsks(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(106L, 4L, 1),
+                new QueryResponseL2Data.L2Record(110L, 10L, 1))));
+
+        // new best bid - pegged orders follow without being moved
+        place(ORDER_TYPE_GTC, 6L, UID_1, 104L, 1L, BID);
+
+        l2 = queryL2();
+        assertThat(l2.getBids(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(107L, 3L, 1),
+                new QueryResponseL2Data.L2Record(104L, 6L, 2),
+                new QueryResponseL2Data.L2Record(100L, 10L, 1))));
+        assertThat(l2.getAsks(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(108L, 4L, 1),
+                new QueryResponseL2Data.L2Record(110L, 10L, 1))));
+    }
+
+    @Test
+    public void shouldNeverCrossTheBook() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 102L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 10L, BID);
+
+        placePegged(3L, UID_2, 5L, BID, PEG_TYPE_MARKET, 0L);
+        placePegged(4L, UID_2, 7L, ASK, PEG_TYPE_MARKET, 0L);
+
+        final QueryResponseL2Data l2 = queryL2();
+        assertThat(l2.getBids(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(101L, 5L, 1),
+                new QueryResponseL2Data.L2Record(100L, 10L, 1))));
+        assertThat(l2.getAsks(), is(Arrays.asList(
+                new QueryResponseL2Data.L2Record(102L, 17L, 2))));
+    }
+
+    @Test
+    public void shouldMatchPeggedOrderAtEffectivePrice() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 110L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 10L, BID);
+        placePegged(3L, UID_1, 4L, ASK, PEG_TYPE_MIDPOINT, 0L);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 4L, UID_2, 110L, 6L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(3L, UID_1, 106L, 110L, 4L, true),
+                new TradeEvent(1L, UID_1, 110L, 110L, 2L, false))));
+        assertThat(orderBook.getOrderById(3L), nullValue());
+    }
+
+    @Test
+    public void shouldPreferRegularOrdersAndStopWithoutReferencePrice() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 101L, 2L, ASK);
+        placePegged(2L, UID_1, 5L, ASK, PEG_TYPE_PRIMARY, 0L);
+
+        // pegged ask has same price, but can not be priced when there are no regular asks left
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 3L, UID_2, 103L, 4L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 101L, 103L, 2L, true))));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(2L));
+
+        assertThat(orderBook.getOrderById(2L).getSize(), is(5L));
+        assertThat(queryL2().getAsks().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldCancelAndReducePeggedOrder() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, BID);
+        placePegged(2L, UID_2, 8L, BID, PEG_TYPE_PRIMARY, 1L);
+
+        execute(() -> orderBook.reduceOrder(CommandsEncoder.reduce(2L, UID_2, 3L), 0));
+        assertThat(queryL2().getBids().get(1), is(new QueryResponseL2Data.L2Record(99L, 5L, 1)));
+
+        final CommandResponseCancel res = (CommandResponseCancel) execute(() -> orderBook.cancelOrder(CommandsEncoder.cancel(2L, UID_2), 0));
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(5L));
+        assertThat(orderBook.getOrderById(2L), nullValue());
+        assertThat(queryL2().getBids().size(), is(1));
+    }
+
+    @Test
+    public void shouldRejectMoveOfPeggedOrder() {
+        placePegged(1L, UID_1, 8L, BID, PEG_TYPE_MIDPOINT, 0L);
+
+        final OrderBookResponse res = execute(() -> orderBook.moveOrder(CommandsEncoder.move(1L, UID_1, 99L), 0));
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+        assertThat(orderBook.getOrderById(1L).getSize(), is(8L));
+    }
+
+    @Test
+    public void shouldMatchPeggedOrderRepricedByMovedOrder() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, BID);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 95L, 10L, BID);
+        placePegged(3L, UID_2, 5L, ASK, PEG_TYPE_MARKET, 0L);
+
+        // without moved order pegged ask is priced from best bid 95
+        final CommandResponseMove res = (CommandResponseMove) execute(() -> orderBook.moveOrder(CommandsEncoder.move(1L, UID_1, 97L), 0));
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(3L, UID_2, 96L, 100L, 5L, true))));
+        assertThat(orderBook.getOrderById(1L).getPrice(), is(97L));
+        assertThat(orderBook.getOrderById(3L), nullValue());
+    }
+
+    @Test
+    public void shouldCheckPlaceConditionsAgainstPeggedOrders() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 110L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 10L, BID);
+        placePegged(3L, UID_1, 4L, ASK, PEG_TYPE_MIDPOINT, 0L);
+
+        // post-only bid would take pegged ask at 106
+        CommandResponsePlace res = placeWithFlags(ORDER_TYPE_GTC, 4L, 107L, 5L, PLACE_FLAG_POST_ONLY, 0L);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(5L));
+        assertThat(orderBook.getOrderById(4L), nullValue());
+
+        // sliding post-only bid rests just below pegged ask
+        res = placeWithFlags(ORDER_TYPE_GTC, 5L, 108L, 5L, PLACE_FLAG_POST_ONLY_SLIDE, 0L);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(orderBook.getOrderById(5L).getPrice(), is(105L));
+        execute(() -> orderBook.cancelOrder(CommandsEncoder.cancel(5L, UID_2), 0));
+
+        // minimum quantity is available only together with pegged ask
+        res = placeWithFlags(ORDER_TYPE_IOC, 6L, 110L, 6L, PLACE_FLAG_MIN_QUANTITY, 6L);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(3L, UID_1, 106L, 110L, 4L, true),
+                new TradeEvent(1L, UID_1, 110L, 110L, 2L, false))));
+
+        // budget includes pegged ask: 3 x 106 + 1 x 110
+        placePegged(7L, UID_1, 3L, ASK, PEG_TYPE_MIDPOINT, 0L);
+        res = place(ORDER_TYPE_FOK_BUDGET, 8L, UID_2, 428L, 4L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(7L, UID_1, 106L, 428L, 3L, true),
+                new TradeEvent(1L, UID_1, 110L, 428L, 1L, false))));
+    }
+
+    @Test
+    public void shouldRejectIncorrectPegParameters() {
+        CommandResponsePlace res = placePegged(1L, UID_1, 8L, BID, PEG_TYPE_PRIMARY, -1L);
+        assertThat(res.getResultCode(), is(RESULT_INCORRECT_PEG_OFFSET));
+
+        res = placePegged(2L, UID_1, 8L, BID, PEG_TYPE_NONE, 0L);
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+
+        assertThat(orderBook.getOrderById(1L), nullValue());
+        assertThat(orderBook.getOrderById(2L), nullValue());
+    }
+
+    private QueryResponseL2Data queryL2() {
+        return (QueryResponseL2Data) execute(() -> orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(100), 0));
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private CommandResponsePlace placeWithFlags(final byte type,
+                                                final long orderId,
+                                                final long price,
+                                                final long size,
+                                                final byte flags,
+                                                final long minQuantity) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, UID_2, price, price, size, BID, 0, flags, minQuantity);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private CommandResponsePlace placePegged(final long orderId,
+                                             final long uid,
+                                             final long size,
+                                             final OrderAction action,
+                                             final byte pegType,
+                                             final long pegOffset) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placePeggedOrder(orderId, uid, 0L, size, action, 0, pegType, pegOffset);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookPlaceFlagsTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK, (byte) 0, 0L);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 101L, 10L, ASK, (byte) 0, 0L);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 98L, 10L, BID, (byte) 0, 0L);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldPlacePostOnlyOrderIfNotCrossing() {
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 10L, UID_2, 99L, 5L, BID, PLACE_FLAG_POST_ONLY, 0L);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getRemainingSizeOpt().get(), is(5L));
+        assertThat(orderBook.getOrderById(10L).getPrice(), is(99L));
+    }
+
+    @Test
+    public void shouldCancelPostOnlyOrderIfCrossing() {
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 10L, UID_2, 100L, 5L, BID, PLACE_FLAG_POST_ONLY, 0L);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(5L));
+        assertThat(res.isOrderCompleted(), is(true));
+        assertThat(orderBook.getOrderById(10L), nullValue());
+        assertThat(orderBook.getOrderById(1L).getFilled(), is(0L));
+    }
+
+    @Test
+    public void shouldRepricePostOnlySlideOrderIfCrossing() {
+        CommandResponsePlace res = place(ORDER_TYPE_GTC, 10L, UID_2, 105L, 5L, BID, PLACE_FLAG_POST_ONLY_SLIDE, 0L);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(orderBook.getOrderById(10L).getPrice(), is(99L));
+
+        res = place(ORDER_TYPE_GTC, 11L, UID_2, 90L, 5L, ASK, PLACE_FLAG_POST_ONLY_SLIDE, 0L);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(orderBook.getOrderById(11L).getPrice(), is(100L));
+    }
+
+    @Test
+    public void shouldRejectPostOnlySlideOrderWithInvalidPrice() {
+        when(spec.getPriceBandLow()).thenReturn(99L);
+        when(spec.getPriceBandHigh()).thenReturn(200L);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+        place(ORDER_TYPE_GTC, 1L, UID_1, 99L, 10L, ASK, (byte) 0, 0L);
+
+        // one step behind best ask is below the price band
+        CommandResponsePlace res = place(ORDER_TYPE_GTC, 10L, UID_2, 105L, 5L, BID, PLACE_FLAG_POST_ONLY_SLIDE, 0L);
+        assertThat(res.getResultCode(), is(RESULT_PRICE_OUT_OF_BAND));
+        assertThat(orderBook.getOrderById(10L), nullValue());
+
+        when(spec.getPriceBandLow()).thenReturn(0L);
+        when(spec.getPriceBandHigh()).thenReturn(0L);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+        place(ORDER_TYPE_GTC, 1L, UID_1, 1L, 10L, ASK, (byte) 0, 0L);
+
+        // one step behind best ask is not positive
+        res = place(ORDER_TYPE_GTC, 11L, UID_2, 5L, 5L, BID, PLACE_FLAG_POST_ONLY_SLIDE, 0L);
+        assertThat(res.getResultCode(), is(RESULT_INCORRECT_PRICE));
+        assertThat(orderBook.getOrderById(11L), nullValue());
+    }
+
+    @Test
+    public void shouldCountIcebergReserveAsAvailableQuantity() {
+        final MutableDirectBuffer cmd = CommandsEncoder.placeIcebergOrder(4L, UID_1, 100L, 100L, 20L, ASK, 0, 2L);
+        execute(() -> orderBook.newOrder(cmd, 0, 0L));
+
+        // 12 visible at 100, 30 including hidden reserve
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 10L, UID_2, 100L, 25L, BID, PLACE_FLAG_MIN_QUANTITY, 25L);
+        assertThat(res.getTrades().stream().mapToLong(TradeEvent::getTradeSize).sum(), is(25L));
+        assertThat(res.getReduceEventOpt().isPresent(), is(false));
+        assertThat(orderBook.getOrderById(4L).getFilled(), is(15L));
+    }
+
+    @Test
+    public void shouldMatchMinQuantityOrder() {
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 10L, UID_2, 101L, 25L, BID, PLACE_FLAG_MIN_QUANTITY, 20L);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 101L, 10L, true),
+                new TradeEvent(2L, UID_1, 101L, 101L, 10L, true))));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(5L));
+    }
+
+    @Test
+    public void shouldCancelMinQuantityOrderWithoutTrades() {
+        // only 10 available within price limit
+        CommandResponsePlace res = place(ORDER_TYPE_GTC, 10L, UID_2, 100L, 25L, BID, PLACE_FLAG_MIN_QUANTITY, 11L);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(25L));
+        assertThat(res.isOrderCompleted(), is(true));
+        assertThat(orderBook.getOrderById(10L), nullValue());
+        assertThat(orderBook.getOrderById(1L).getFilled(), is(0L));
+
+        // minimum quantity matched, rest is placed
+        res = place(ORDER_TYPE_GTC, 11L, UID_2, 100L, 25L, BID, PLACE_FLAG_MIN_QUANTITY, 10L);
+        assertThat(res.getTrades().size(), is(1));
+        assertThat(res.getRemainingSizeOpt().get(), is(15L));
+        assertThat(orderBook.getOrderById(11L).getFilled(), is(10L));
+    }
+
+    @Test
+    public void shouldNotCountSelfTradeVolumeAsAvailableQuantity() {
+        // own ask of taker uid between two other asks
+        createOrderBookWithSelfTradePrevention(SELF_TRADE_PREVENTION_CANCEL_TAKER);
+        CommandResponsePlace res = place(ORDER_TYPE_IOC, 10L, UID_2, 101L, 25L, BID, PLACE_FLAG_MIN_QUANTITY, 20L);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(25L));
+        assertThat(orderBook.getOrderById(1L).getFilled(), is(0L));
+        assertThat(orderBook.getOrderById(4L).getFilled(), is(0L));
+
+        // 10 traded, 10 decremented by own order, only 5 left for order 2
+        createOrderBookWithSelfTradePrevention(SELF_TRADE_PREVENTION_DECREMENT);
+        res = place(ORDER_TYPE_IOC, 10L, UID_2, 101L, 25L, BID, PLACE_FLAG_MIN_QUANTITY, 20L);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(orderBook.getOrderById(4L).getFilled(), is(0L));
+        res = place(ORDER_TYPE_IOC, 11L, UID_2, 101L, 25L, BID, PLACE_FLAG_MIN_QUANTITY, 15L);
+        assertThat(res.getTrades().stream().mapToLong(TradeEvent::getTradeSize).sum(), is(15L));
+
+        // own order is cancelled, other orders are matched
+        createOrderBookWithSelfTradePrevention(SELF_TRADE_PREVENTION_CANCEL_MAKER);
+        res = place(ORDER_TYPE_IOC, 10L, UID_2, 101L, 25L, BID, PLACE_FLAG_MIN_QUANTITY, 20L);
+        assertThat(res.getTrades().stream().mapToLong(TradeEvent::getTradeSize).sum(), is(20L));
+        assertThat(orderBook.getOrderById(4L), nullValue());
+    }
+
+    @Test
+    public void shouldEncodeMinQuantityAfterOrderTypeExtension() {
+        final MutableDirectBuffer cmd = CommandsEncoder.placeIcebergOrder(10L, UID_2, 101L, 101L, 30L, BID, 0, 5L);
+        final int size = CommandsEncoder.placeOrder(cmd, 0, ORDER_TYPE_ICEBERG, 10L, UID_2, 101L, 101L, 30L, BID, 0, PLACE_FLAG_MIN_QUANTITY, 15L);
+        assertThat(size, is(PLACE_ICEBERG_OFFSET_END + PLACE_MIN_QUANTITY_EXTENSION_SIZE));
+
+        final CommandResponsePlace res = (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+        assertThat(res.getTrades().size(), is(2));
+        assertThat(res.getRemainingSizeOpt().get(), is(10L));
+    }
+
+    @Test
+    public void shouldRejectIncorrectFlags() {
+        CommandResponsePlace res = place(ORDER_TYPE_IOC, 10L, UID_2, 90L, 5L, BID, PLACE_FLAG_POST_ONLY, 0L);
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+
+        res = place(ORDER_TYPE_GTC, 11L, UID_2, 90L, 5L, BID, (byte) (PLACE_FLAG_POST_ONLY | PLACE_FLAG_MIN_QUANTITY), 1L);
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+
+        res = place(ORDER_TYPE_GTC, 12L, UID_2, 90L, 5L, BID, PLACE_FLAG_MIN_QUANTITY, 6L);
+        assertThat(res.getResultCode(), is(RESULT_INCORRECT_ORDER_SIZE));
+    }
+
+    private void createOrderBookWithSelfTradePrevention(final byte selfTradePreventionMode) {
+        when(spec.getSelfTradePreventionMode()).thenReturn(selfTradePreventionMode);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK, (byte) 0, 0L);
+        place(ORDER_TYPE_GTC, 4L, UID_2, 100L, 10L, ASK, (byte) 0, 0L);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 101L, 10L, ASK, (byte) 0, 0L);
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action,
+                                       final byte flags,
+                                       final long minQuantity) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0, flags, minQuantity);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.stats.IOrderBookCounters;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.tests.util.TestSymbolSpecification;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Collections;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookPriceGridTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private final MutableDirectBuffer triggeredBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter triggeredWriter = new BufferWriter(triggeredBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        when(spec.getTickSize()).thenReturn(5L);
+        when(spec.getLotSize()).thenReturn(10L);
+        when(spec.getPriceBandLow()).thenReturn(50L);
+        when(spec.getPriceBandHigh()).thenReturn(200L);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter, IOrderBookCounters.NONE, triggeredWriter);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldValidatePriceAndSizeOfNewOrder() {
+        assertThat(place(ORDER_TYPE_GTC, 1L, 101L, 10L, ASK, (byte) 0).getResultCode(), is(RESULT_INCORRECT_PRICE));
+        assertThat(place(ORDER_TYPE_GTC, 2L, 205L, 10L, ASK, (byte) 0).getResultCode(), is(RESULT_PRICE_OUT_OF_BAND));
+        assertThat(place(ORDER_TYPE_IOC, 3L, 45L, 10L, ASK, (byte) 0).getResultCode(), is(RESULT_PRICE_OUT_OF_BAND));
+        assertThat(place(ORDER_TYPE_GTC, 4L, 100L, 15L, ASK, (byte) 0).getResultCode(), is(RESULT_INCORRECT_ORDER_SIZE));
+
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 5L, 100L, 20L, ASK, (byte) 0);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getRemainingSizeOpt().get(), is(20L));
+
+        assertThat(orderBook.getOrderById(1L), nullValue());
+        assertThat(orderBook.getOrderById(4L), nullValue());
+    }
+
+    @Test
+    public void shouldValidateStopPrice() {
+        final MutableDirectBuffer cmd = CommandsEncoder.placeStopOrder(ORDER_TYPE_STOP_LIMIT, 1L, UID_1, 110L, 110L, 10L, BID, 0, 107L);
+        final CommandResponsePlace res = (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+        assertThat(res.getResultCode(), is(RESULT_INCORRECT_PRICE));
+        assertThat(orderBook.getOrderById(1L), nullValue());
+    }
+
+    @Test
+    public void shouldValidateMovePrice() {
+        place(ORDER_TYPE_GTC, 1L, 100L, 10L, BID, (byte) 0);
+
+        CommandResponseMove res = move(1L, 102L);
+        assertThat(res.getResultCode(), is(RESULT_INCORRECT_PRICE));
+        assertThat(res.getRemainingSizeOpt().get(), is(10L));
+
+        res = move(1L, 40L);
+        assertThat(res.getResultCode(), is(RESULT_PRICE_OUT_OF_BAND));
+        assertThat(orderBook.getOrderById(1L).getPrice(), is(100L));
+
+        res = move(1L, 95L);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(orderBook.getOrderById(1L).getPrice(), is(95L));
+    }
+
+    @Test
+    public void shouldSlidePostOnlyOrderByTickSize() {
+        place(ORDER_TYPE_GTC, 1L, 100L, 10L, ASK, (byte) 0);
+
+        place(ORDER_TYPE_GTC, 2L, 110L, 10L, BID, PLACE_FLAG_POST_ONLY_SLIDE);
+        assertThat(orderBook.getOrderById(2L).getPrice(), is(95L));
+    }
+
+    @Test
+    public void shouldRejectMassQuoteOffGrid() {
+        final MutableDirectBuffer cmd = CommandsEncoder.massQuote(UID_2, 1L, 100L,
+                new long[]{95L, 103L}, new long[]{10L, 10L}, new OrderAction[]{BID, ASK});
+
+        final CommandResponseMassQuote res = (CommandResponseMassQuote) execute(() -> orderBook.massQuote(cmd, 0, 0L));
+        assertThat(res.getResultCode(), is(RESULT_INCORRECT_PRICE));
+        assertThat(res.getEntries(), is(Collections.emptyList()));
+        assertThat(orderBook.getOrderById(100L), nullValue());
+    }
+
+    @Test
+    public void shouldCalculateExpectedPriceTicks() {
+        final ISymbolSpecification gridSpec = new TestSymbolSpecification(1, false) {
+            @Override
+            public long getTickSize() {
+                return 5L;
+            }
+
+            @Override
+            public long getExpectedPriceLow() {
+                return 1000L;
+            }
+
+            @Override
+            public long getExpectedPriceHigh() {
+                return 2000L;
+            }
+        };
+
+        assertThat(gridSpec.getExpectedPriceTicks(), is(201));
+        assertThat(new TestSymbolSpecification(1, false).getExpectedPriceTicks(), is(0));
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action,
+                                       final byte flags) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, UID_1, price, price, size, action, 0, flags, 0L);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private CommandResponseMove move(final long orderId, final long price) {
+        return (CommandResponseMove) execute(() -> orderBook.moveOrder(CommandsEncoder.move(orderId, UID_1, price), 0));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
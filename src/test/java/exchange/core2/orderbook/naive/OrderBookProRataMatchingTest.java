@@ -0,0 +1,184 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookProRataMatchingTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldFillTopOrderThenAllocateProRataWithRemainderByTime() {
+        createOrderBook(SELF_TRADE_PREVENTION_NONE);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 20L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 100L, 30L, ASK);
+        place(ORDER_TYPE_GTC, 4L, UID_1, 100L, 40L, ASK);
+
+        // top order takes 10, then 40 is split 20:30:40 -> 8, 13, 17, remainder 2 goes to the eldest order
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 5L, UID_2, 100L, 50L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 100L, 10L, true),
+                new TradeEvent(2L, UID_1, 100L, 100L, 10L, false),
+                new TradeEvent(3L, UID_1, 100L, 100L, 13L, false),
+                new TradeEvent(4L, UID_1, 100L, 100L, 17L, false))));
+
+        assertThat(queryL2().getAsks(), is(Collections.singletonList(new QueryResponseL2Data.L2Record(100L, 50L, 3))));
+    }
+
+    @Test
+    public void shouldGiveSmallVolumeToTopOrder() {
+        createOrderBook(SELF_TRADE_PREVENTION_NONE);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 90L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 3L, UID_2, 100L, 4L, BID);
+        assertThat(res.getTrades(), is(Collections.singletonList(new TradeEvent(1L, UID_1, 100L, 100L, 4L, false))));
+    }
+
+    @Test
+    public void shouldSweepWholeLevelInTimePriority() {
+        createOrderBook(SELF_TRADE_PREVENTION_NONE);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 20L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 101L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 4L, UID_1, 101L, 30L, ASK);
+
+        // second level is not consumed completely - 10 is allocated as top order 10 + pro-rata 0
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 5L, UID_2, 101L, 40L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 101L, 10L, true),
+                new TradeEvent(2L, UID_1, 100L, 101L, 20L, true),
+                new TradeEvent(3L, UID_1, 101L, 101L, 10L, true))));
+    }
+
+    @Test
+    public void shouldAllocateByDisplayedSizeOfIcebergOrders() {
+        createOrderBook(SELF_TRADE_PREVENTION_NONE);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK);
+        execute(() -> orderBook.newOrder(CommandsEncoder.placeIcebergOrder(2L, UID_1, 100L, 100L, 100L, ASK, 0, 10L), 0, 0L));
+        place(ORDER_TYPE_GTC, 3L, UID_1, 100L, 30L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 4L, UID_2, 100L, 30L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 100L, 10L, true),
+                new TradeEvent(2L, UID_1, 100L, 100L, 5L, false),
+                new TradeEvent(3L, UID_1, 100L, 100L, 15L, false))));
+    }
+
+    @Test
+    public void shouldExcludeSelfTradeOrdersFromAllocation() {
+        createOrderBook(SELF_TRADE_PREVENTION_CANCEL_MAKER);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_2, 100L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 100L, 20L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 4L, UID_2, 100L, 20L, BID);
+        assertThat(res.getTrades(), is(Arrays.asList(
+                new TradeEvent(1L, UID_1, 100L, 100L, 10L, true),
+                new TradeEvent(3L, UID_1, 100L, 100L, 10L, false))));
+        assertThat(res.getMakerReduceEvents(), is(Collections.singletonList(
+                new MakerReduceEvent(2L, UID_2, ASK, 100L, 100L, 10L, true))));
+    }
+
+    @Test
+    public void shouldDecrementTakerByRemainingSize() {
+        createOrderBook(SELF_TRADE_PREVENTION_DECREMENT);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_2, 100L, 10L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 100L, 20L, ASK);
+
+        // same as time priority: top order takes 10, own order decrements remaining 10, nothing left for order 3
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 4L, UID_2, 100L, 20L, BID);
+        assertThat(res.getTrades(), is(Collections.singletonList(
+                new TradeEvent(1L, UID_1, 100L, 100L, 10L, true))));
+        assertThat(res.getMakerReduceEvents(), is(Collections.singletonList(
+                new MakerReduceEvent(2L, UID_2, ASK, 100L, 100L, 10L, true))));
+        assertThat(orderBook.getOrderById(3L).getFilled(), is(0L));
+    }
+
+    private void createOrderBook(final byte selfTradePreventionMode) {
+        when(spec.getSelfTradePreventionMode()).thenReturn(selfTradePreventionMode);
+        when(spec.getMatchingPolicy()).thenReturn(MATCHING_POLICY_PRO_RATA);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    private QueryResponseL2Data queryL2() {
+        return (QueryResponseL2Data) execute(() -> orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(100), 0));
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.IResponseHandler;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.stats.IOrderBookCounters;
+import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.orderbook.util.ResponseFastDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookResponseHeaderTest {
+
+    private static final int SYMBOL_ID = 42;
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    @Mock
+    private IResponseHandler responseHandler;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+    private final MutableDirectBuffer triggeredBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter triggeredWriter = new BufferWriter(triggeredBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldWriteHeaderWithSequenceIntoEveryResponse() {
+        createOrderBook();
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK, 500L);
+        assertThat(readHeader(), is(new ResponseHeader(SYMBOL_ID, 500L, 1L)));
+        final CommandResponsePlace res = (CommandResponsePlace) readResponse();
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getRemainingSizeOpt().get(), is(5L));
+
+        // commands without timestamp report engine time of the last command
+        execute(() -> orderBook.moveOrder(CommandsEncoder.move(1L, UID_1, 101L), 0));
+        assertThat(readHeader(), is(new ResponseHeader(SYMBOL_ID, 500L, 2L)));
+        assertThat(readResponse().getResultCode(), is(RESULT_SUCCESS));
+
+        execute(() -> orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(10), 0));
+        assertThat(readHeader(), is(new ResponseHeader(SYMBOL_ID, 500L, 3L)));
+        assertThat(((QueryResponseL2Data) readResponse()).getAsks().get(0), is(new QueryResponseL2Data.L2Record(101L, 5L, 1)));
+
+        execute(() -> orderBook.expireOrders(900L));
+        assertThat(readHeader(), is(new ResponseHeader(SYMBOL_ID, 900L, 4L)));
+        assertThat(((CommandResponseExpire) readResponse()).getResultCode(), is(RESULT_SUCCESS));
+    }
+
+    @Test
+    public void shouldReportHeaderWithFastDecoder() {
+        createOrderBook();
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK, 500L);
+        place(ORDER_TYPE_IOC, 2L, UID_2, 100L, 2L, BID, 700L);
+
+        // symbol id and time are taken from the header
+        new ResponseFastDecoder(responseHandler).readResult(
+                new BufferReader(responseBuffer, bufferWriter.getWriterPosition(), 0), 1L, 2L, 3);
+
+        verify(responseHandler).onResponseHeader(SYMBOL_ID, 700L, 2L);
+        verify(responseHandler).onTradeEvent(SYMBOL_ID, 700L, UID_2, 2L, BID, UID_1, 1L, 100L, 100L, 2L, false);
+        verify(responseHandler).onOrderPlaceResult(RESULT_SUCCESS, 700L, 2L, SYMBOL_ID, UID_2, 2L, BID, true, 0, UNSPECIFIED_REMAINING_SIZE_MARKER);
+        assertThat(ResponseFastDecoder.countTradeEvents(responseBuffer, 0, bufferWriter.getWriterPosition()), is(1));
+    }
+
+    @Test
+    public void shouldSequenceTriggeredOrdersResponses() {
+        createOrderBook();
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK, 10L);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 106L, 5L, ASK, 20L);
+        execute(() -> orderBook.newOrder(CommandsEncoder.placeStopOrder(ORDER_TYPE_STOP_LIMIT, 3L, UID_2, 110L, 110L, 4L, BID, 0, 100L), 0, 30L));
+        assertThat(readHeader().getSequence(), is(3L));
+
+        triggeredWriter.reset();
+        place(ORDER_TYPE_IOC, 4L, UID_2, 100L, 1L, BID, 40L);
+        assertThat(readHeader(), is(new ResponseHeader(SYMBOL_ID, 40L, 4L)));
+
+        final int length = triggeredBuffer.getInt(0);
+        assertThat(triggeredWriter.getWriterPosition(), is(length + SIZE_OF_INT));
+        final BufferReader triggered = new BufferReader(triggeredBuffer, length, SIZE_OF_INT);
+        assertThat(ResponseDecoder.readHeader(triggered), is(new ResponseHeader(SYMBOL_ID, 40L, 5L)));
+        assertThat(((CommandResponsePlace) ResponseDecoder.readResult(triggered)).getOrderId(), is(3L));
+    }
+
+    @Test
+    public void shouldNotWriteHeaderByDefault() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK, 500L);
+        assertThat(responseBuffer.getByte(0), is(COMMAND_PLACE_ORDER));
+        assertThat(readHeader(), nullValue());
+        assertThat(readResponse().getResultCode(), is(RESULT_SUCCESS));
+    }
+
+    private void createOrderBook() {
+        when(spec.isResponseHeaderEnabled()).thenReturn(true);
+        when(spec.getSymbolId()).thenReturn(SYMBOL_ID);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter, IOrderBookCounters.NONE, triggeredWriter);
+    }
+
+    private ResponseHeader readHeader() {
+        return ResponseDecoder.readHeader(new BufferReader(responseBuffer, bufferWriter.getWriterPosition(), 0));
+    }
+
+    private OrderBookResponse readResponse() {
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+
+    private void place(final byte type,
+                       final long orderId,
+                       final long uid,
+                       final long price,
+                       final long size,
+                       final OrderAction action,
+                       final long timestamp) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        execute(() -> orderBook.newOrder(cmd, 0, timestamp));
+    }
+
+    private void execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.CommandResponseExpire;
+import exchange.core2.orderbook.api.CommandResponsePlace;
+import exchange.core2.orderbook.api.OrderBookResponse;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+/**
+ * Fixed-size results buffer: matching and expiration are limited by space left in the buffer,
+ * so buffer never overflows after the order book was changed.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookResultsCapacityTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    private static final int MAKERS = 100;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new UnsafeBuffer(new byte[1024]);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldStopSweepWhenResultsBufferIsFull() {
+
+        for (int i = 0; i < MAKERS; i++) {
+            place(ORDER_TYPE_GTC, i + 1, UID_1, 100L + i, 1L, ASK);
+        }
+
+        // remaining size is cancelled, not placed into crossed order book
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 1000L, UID_2, 100L + MAKERS, MAKERS, BID);
+        final int trades = res.getTrades().size();
+        assertThat(trades > 0 && trades < MAKERS, is(true));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is((long) (MAKERS - trades)));
+        assertThat(res.isOrderCompleted(), is(true));
+        assertThat(orderBook.getOrderById(1000L), nullValue());
+
+        // next commands continue sweeping
+        int filled = trades;
+        while (filled < MAKERS) {
+            final CommandResponsePlace next = place(ORDER_TYPE_IOC, 1001L, UID_2, 100L + MAKERS, MAKERS, BID);
+            assertThat(next.getTrades().isEmpty(), is(false));
+            filled += next.getTrades().size();
+        }
+        assertThat(filled, is(MAKERS));
+        assertThat(orderBook.getOrderById(MAKERS), nullValue());
+    }
+
+    @Test
+    public void shouldExpireInBatchesWhenResultsBufferIsFull() {
+
+        for (int i = 0; i < MAKERS; i++) {
+            final MutableDirectBuffer cmd = CommandsEncoder.placeGtdOrder(i + 1, UID_1, 100L + i, 100L + i, 1L, ASK, 0, 1000L + i);
+            execute(() -> orderBook.newOrder(cmd, 0, 0L));
+        }
+
+        final int firstBatch = expire(2000L);
+        assertThat(firstBatch > 0 && firstBatch < MAKERS, is(true));
+
+        int expired = firstBatch;
+        while (expired < MAKERS) {
+            final int batch = expire(2000L);
+            assertThat(batch > 0, is(true));
+            expired += batch;
+        }
+        assertThat(expired, is(MAKERS));
+        assertThat(expire(2000L), is(0));
+    }
+
+    private int expire(final long timestamp) {
+        final CommandResponseExpire res = (CommandResponseExpire) execute(() -> orderBook.expireOrders(timestamp));
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        return res.getExpiredOrders().size();
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
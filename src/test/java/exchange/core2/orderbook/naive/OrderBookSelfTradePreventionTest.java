@@ -0,0 +1,231 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrder;
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.IResponseHandler;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.orderbook.util.ResponseFastDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Collections;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookSelfTradePreventionTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    @Mock
+    private IResponseHandler responseHandler;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Test
+    public void shouldSelfTradeWhenPreventionDisabled() {
+        createOrderBook(SELF_TRADE_PREVENTION_NONE);
+
+        place(ORDER_TYPE_GTC, 1L, UID_2, 100L, 5L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 2L, UID_2, 100L, 5L, BID);
+        assertThat(res.getTrades(), is(Collections.singletonList(new TradeEvent(1L, UID_2, 100L, 100L, 5L, true))));
+        assertThat(res.getMakerReduceEvents().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldCancelTaker() {
+        createOrderBook(SELF_TRADE_PREVENTION_CANCEL_TAKER);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_2, 100L, 5L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 3L, UID_2, 100L, 10L, BID);
+        assertThat(res.getTrades(), is(Collections.singletonList(new TradeEvent(1L, UID_1, 100L, 100L, 5L, true))));
+        assertThat(res.getMakerReduceEvents().isEmpty(), is(true));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(5L));
+        assertThat(res.isOrderCompleted(), is(true));
+
+        // own resting order is untouched, taker not placed
+        assertThat(orderBook.getOrderById(2L).getSize(), is(5L));
+        assertThat(orderBook.getOrderById(3L), nullValue());
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldCancelMaker() {
+        createOrderBook(SELF_TRADE_PREVENTION_CANCEL_MAKER);
+
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_2, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 101L, 4L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 4L, UID_2, 101L, 12L, BID);
+        assertThat(res.getTrades().size(), is(2));
+        assertThat(res.getTrades().get(0), is(new TradeEvent(1L, UID_1, 100L, 101L, 5L, true)));
+        assertThat(res.getTrades().get(1), is(new TradeEvent(3L, UID_1, 101L, 101L, 4L, true)));
+        assertThat(res.getMakerReduceEvents(), is(Collections.singletonList(new MakerReduceEvent(2L, UID_2, ASK, 100L, 100L, 5L, true))));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(3L));
+
+        assertThat(orderBook.getOrderById(2L), nullValue());
+        assertThat(orderBook.askOrdersStream(false).count(), is(0L));
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldCancelBoth() {
+        createOrderBook(SELF_TRADE_PREVENTION_CANCEL_BOTH);
+
+        place(ORDER_TYPE_GTC, 1L, UID_2, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 5L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 3L, UID_2, 100L, 10L, BID);
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(res.getMakerReduceEvents(), is(Collections.singletonList(new MakerReduceEvent(1L, UID_2, ASK, 100L, 100L, 5L, true))));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(10L));
+        assertThat(res.isOrderCompleted(), is(true));
+
+        assertThat(orderBook.getOrderById(1L), nullValue());
+        assertThat(orderBook.getOrderById(2L).getSize(), is(5L));
+        assertThat(orderBook.getOrderById(3L), nullValue());
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldDecrementBoth() {
+        createOrderBook(SELF_TRADE_PREVENTION_DECREMENT);
+
+        place(ORDER_TYPE_GTC, 1L, UID_2, 100L, 3L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 3L, UID_2, 100L, 8L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 4L, UID_2, 100L, 10L, BID);
+        assertThat(res.getTrades(), is(Collections.singletonList(new TradeEvent(2L, UID_1, 100L, 100L, 5L, true))));
+        assertThat(res.getMakerReduceEvents().size(), is(2));
+        assertThat(res.getMakerReduceEvents().get(0), is(new MakerReduceEvent(1L, UID_2, ASK, 100L, 100L, 3L, true)));
+        assertThat(res.getMakerReduceEvents().get(1), is(new MakerReduceEvent(3L, UID_2, ASK, 100L, 100L, 2L, false)));
+
+        // taker size fully consumed - nothing placed
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(5L));
+        assertThat(res.isOrderCompleted(), is(true));
+        assertThat(orderBook.getOrderById(4L), nullValue());
+
+        final IOrder remainingMaker = orderBook.getOrderById(3L);
+        assertThat(remainingMaker.getSize(), is(6L));
+        assertThat(remainingMaker.getFilled(), is(0L));
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldDecrementAndPlaceRemainingSize() {
+        createOrderBook(SELF_TRADE_PREVENTION_DECREMENT);
+
+        place(ORDER_TYPE_GTC, 1L, UID_2, 100L, 3L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 100L, 5L, ASK);
+
+        final CommandResponsePlace res = place(ORDER_TYPE_GTC, 3L, UID_2, 100L, 10L, BID);
+        assertThat(res.getTrades().size(), is(1));
+        assertThat(res.getMakerReduceEvents(), is(Collections.singletonList(new MakerReduceEvent(1L, UID_2, ASK, 100L, 100L, 3L, true))));
+        assertThat(res.getReduceEventOpt().get().getReducedSize(), is(3L));
+        assertThat(res.isOrderCompleted(), is(false));
+        assertThat(res.getRemainingSizeOpt().get(), is(2L));
+
+        final IOrder placed = orderBook.getOrderById(3L);
+        assertThat(placed.getSize(), is(7L));
+        assertThat(placed.getFilled(), is(5L));
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldCancelMovedTaker() {
+        createOrderBook(SELF_TRADE_PREVENTION_CANCEL_TAKER);
+
+        place(ORDER_TYPE_GTC, 1L, UID_2, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_2, 90L, 4L, BID);
+
+        final MutableDirectBuffer cmd = CommandsEncoder.move(2L, UID_2, 100L);
+        final CommandResponseMove res = (CommandResponseMove) execute(() -> orderBook.moveOrder(cmd, 0));
+        assertThat(res.getTrades().isEmpty(), is(true));
+        assertThat(res.getReduceEventOpt().get(), is(new ReduceEvent(4L, 100L, 90L)));
+        assertThat(res.isOrderCompleted(), is(true));
+
+        assertThat(orderBook.getOrderById(2L), nullValue());
+        assertThat(orderBook.getOrderById(1L).getSize(), is(5L));
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldDecodeMakerReduceEventsWithFastDecoder() {
+        createOrderBook(SELF_TRADE_PREVENTION_CANCEL_MAKER);
+
+        place(ORDER_TYPE_GTC, 1L, UID_2, 100L, 5L, ASK);
+        place(ORDER_TYPE_IOC, 2L, UID_2, 100L, 5L, BID);
+
+        new ResponseFastDecoder(responseHandler).readResult(
+                new BufferReader(responseBuffer, bufferWriter.getWriterPosition(), 0), 1L, 2L, 3);
+
+        verify(responseHandler).onReduceEvent(3, 1L, UID_2, 1L, ASK, 5L, 100L, 100L);
+        verify(responseHandler).onReduceEvent(3, 1L, UID_2, 2L, BID, 5L, 100L, 100L);
+    }
+
+    private void createOrderBook(final byte selfTradePreventionMode) {
+        when(spec.getSelfTradePreventionMode()).thenReturn(selfTradePreventionMode);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.*;
+import exchange.core2.orderbook.stats.IOrderBookCounters;
+import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookStopOrdersTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+
+    private final MutableDirectBuffer triggeredBuffer = new ExpandableDirectByteBuffer(256);
+    private final BufferWriter triggeredWriter = new BufferWriter(triggeredBuffer, 0);
+
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter, IOrderBookCounters.NONE, triggeredWriter);
+    }
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldRejectStopOrdersWithoutTriggeredResultsBuffer() {
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter);
+
+        final CommandResponsePlace res = placeStop(ORDER_TYPE_STOP_LIMIT, 1L, UID_1, 110L, 5L, BID, 105L);
+        assertThat(res.getResultCode(), is(RESULT_UNSUPPORTED_ORDER_TYPE));
+        assertThat(orderBook.getOrderById(1L), nullValue());
+    }
+
+    @Test
+    public void shouldKeepStopOrderOutOfOrderBookUntilTriggered() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 106L, 5L, ASK);
+
+        final CommandResponsePlace res = placeStop(ORDER_TYPE_STOP_LIMIT, 3L, UID_2, 110L, 4L, BID, 105L);
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.isOrderCompleted(), is(false));
+        assertThat(res.getRemainingSizeOpt().get(), is(4L));
+        assertThat(orderBook.getOrderById(3L).getSize(), is(4L));
+        assertThat(orderBook.bidOrdersStream(false).count(), is(0L));
+
+        // trade below stop price
+        place(ORDER_TYPE_IOC, 4L, UID_1, 100L, 5L, BID);
+        assertThat(readTriggeredResponses().isEmpty(), is(true));
+
+        // trade at stop price triggers stop order
+        place(ORDER_TYPE_GTC, 5L, UID_1, 105L, 1L, ASK);
+        place(ORDER_TYPE_IOC, 6L, UID_1, 105L, 1L, BID);
+
+        final List<CommandResponsePlace> triggered = readTriggeredResponses();
+        assertThat(triggered.size(), is(1));
+
+        final CommandResponsePlace triggeredRes = triggered.get(0);
+        assertThat(triggeredRes.getOrderId(), is(3L));
+        assertThat(triggeredRes.getUid(), is(UID_2));
+        assertThat(triggeredRes.getTrades().size(), is(1));
+        assertThat(triggeredRes.getTrades().get(0).getMakerOrderId(), is(2L));
+        assertThat(triggeredRes.getTrades().get(0).getTradeSize(), is(4L));
+        assertThat(triggeredRes.isOrderCompleted(), is(true));
+        assertThat(orderBook.getOrderById(3L), nullValue());
+    }
+
+    @Test
+    public void shouldTriggerCascadeInStopPriceOrder() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 96L, 1L, BID);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 95L, 5L, BID);
+        place(ORDER_TYPE_GTC, 3L, UID_1, 90L, 5L, BID);
+
+        placeStop(ORDER_TYPE_STOP, 11L, UID_2, 80L, 3L, ASK, 90L);
+        placeStop(ORDER_TYPE_STOP, 10L, UID_2, 80L, 6L, ASK, 95L);
+
+        place(ORDER_TYPE_IOC, 4L, UID_1, 96L, 1L, ASK);
+        assertThat(readTriggeredResponses().isEmpty(), is(true));
+
+        // trade at 95 triggers first stop, which trades at 90 and triggers second one
+        final CommandResponsePlace res = place(ORDER_TYPE_IOC, 5L, UID_1, 95L, 1L, ASK);
+        assertThat(res.getTrades().size(), is(1));
+
+        final List<CommandResponsePlace> triggered = readTriggeredResponses();
+        assertThat(triggered.size(), is(2));
+
+        assertThat(triggered.get(0).getOrderId(), is(10L));
+        assertThat(triggered.get(0).getTrades().size(), is(2));
+        assertThat(triggered.get(0).getTrades().get(0).getTradePrice(), is(95L));
+        assertThat(triggered.get(0).getTrades().get(1).getTradePrice(), is(90L));
+
+        assertThat(triggered.get(1).getOrderId(), is(11L));
+        assertThat(triggered.get(1).getTrades().get(0).getTradePrice(), is(90L));
+        assertThat(triggered.get(1).getTrades().get(0).getTradeSize(), is(3L));
+        assertThat(triggered.get(1).isOrderCompleted(), is(true));
+
+        assertThat(orderBook.getOrderById(3L), nullValue());
+    }
+
+    @Test
+    public void shouldTriggerSameStopPriceInTimeOrder() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 1L, ASK);
+        place(ORDER_TYPE_GTC, 2L, UID_1, 101L, 10L, ASK);
+
+        placeStop(ORDER_TYPE_STOP_LIMIT, 10L, UID_2, 101L, 2L, BID, 100L);
+        placeStop(ORDER_TYPE_STOP_LIMIT, 11L, UID_2, 101L, 3L, BID, 99L);
+        placeStop(ORDER_TYPE_STOP_LIMIT, 12L, UID_2, 101L, 4L, BID, 100L);
+
+        place(ORDER_TYPE_IOC, 3L, UID_1, 100L, 1L, BID);
+
+        final List<CommandResponsePlace> triggered = readTriggeredResponses();
+        assertThat(triggered.size(), is(3));
+        assertThat(triggered.get(0).getOrderId(), is(11L));
+        assertThat(triggered.get(1).getOrderId(), is(10L));
+        assertThat(triggered.get(2).getOrderId(), is(12L));
+    }
+
+    @Test
+    public void shouldCancelStopOrder() {
+        placeStop(ORDER_TYPE_STOP_LIMIT, 1L, UID_2, 110L, 4L, BID, 105L);
+
+        final CommandResponseCancel res = (CommandResponseCancel) execute(() -> orderBook.cancelOrder(CommandsEncoder.cancel(1L, UID_2), 0));
+        assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        assertThat(res.getReduceEventOpt().get(), is(new ReduceEvent(4L, 110L, 110L)));
+        assertThat(orderBook.getOrderById(1L), nullValue());
+    }
+
+    @Test
+    public void shouldExecuteImmediatelyWhenAlreadyTriggered() {
+        place(ORDER_TYPE_GTC, 1L, UID_1, 100L, 10L, ASK);
+        place(ORDER_TYPE_IOC, 2L, UID_1, 100L, 1L, BID);
+
+        final CommandResponsePlace res = placeStop(ORDER_TYPE_STOP, 3L, UID_2, 100L, 4L, BID, 99L);
+        assertThat(res.getTrades().size(), is(1));
+        assertThat(res.getTrades().get(0).getTradeSize(), is(4L));
+        assertThat(res.isOrderCompleted(), is(true));
+        assertThat(readTriggeredResponses().isEmpty(), is(true));
+    }
+
+    private List<CommandResponsePlace> readTriggeredResponses() {
+        final List<CommandResponsePlace> responses = new ArrayList<>();
+        int offset = 0;
+        while (offset < triggeredWriter.getWriterPosition()) {
+            final int length = triggeredBuffer.getInt(offset);
+            offset += SIZE_OF_INT;
+            responses.add((CommandResponsePlace) ResponseDecoder.readResult(new BufferReader(triggeredBuffer, length, offset)));
+            offset += length;
+        }
+        triggeredWriter.reset();
+        return responses;
+    }
+
+    private CommandResponsePlace place(final byte type,
+                                       final long orderId,
+                                       final long uid,
+                                       final long price,
+                                       final long size,
+                                       final OrderAction action) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private CommandResponsePlace placeStop(final byte type,
+                                           final long orderId,
+                                           final long uid,
+                                           final long price,
+                                           final long size,
+                                           final OrderAction action,
+                                           final long stopPrice) {
+
+        final MutableDirectBuffer cmd = CommandsEncoder.placeStopOrder(type, orderId, uid, price, price, size, action, 0, stopPrice);
+        return (CommandResponsePlace) execute(() -> orderBook.newOrder(cmd, 0, 0L));
+    }
+
+    private OrderBookResponse execute(final Runnable command) {
+        bufferWriter.reset();
+        command.run();
+        return ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+    }
+}
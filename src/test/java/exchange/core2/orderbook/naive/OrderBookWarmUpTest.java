@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.naive;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.OrderBookCapacityHints;
+import exchange.core2.orderbook.api.CommandResponsePlace;
+import exchange.core2.orderbook.api.QueryResponseL2Data;
+import exchange.core2.orderbook.stats.IOrderBookCounters;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import exchange.core2.orderbook.util.OrderBookWarmUp;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import exchange.core2.tests.util.TestSymbolSpecification;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static exchange.core2.orderbook.IOrderBook.ORDER_TYPE_GTC;
+import static exchange.core2.orderbook.IOrderBook.RESULT_SUCCESS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OrderBookWarmUpTest {
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    @Test
+    public void shouldWarmUpAndLeaveThrowawayBookEmpty() {
+        warmUpAndVerify(new TestSymbolSpecification(1, false));
+        warmUpAndVerify(new TestSymbolSpecification(2, true));
+    }
+
+    @Test
+    public void shouldWarmUpWithPriceGrid() {
+        when(spec.getTickSize()).thenReturn(5L);
+        when(spec.getLotSize()).thenReturn(10L);
+        when(spec.getPriceBandLow()).thenReturn(50_000L);
+        when(spec.getPriceBandHigh()).thenReturn(60_000L);
+        warmUpAndVerify(spec);
+    }
+
+    @Test
+    public void shouldOperateWithCapacityHints() {
+        final MutableDirectBuffer responseBuffer = new ExpandableDirectByteBuffer(256);
+        final BufferWriter bufferWriter = new BufferWriter(responseBuffer, 0);
+        final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(
+                spec, false, bufferWriter, IOrderBookCounters.NONE, null, new OrderBookCapacityHints(1000, 100, 10));
+
+        // pre-filled orders pool is used
+        for (long i = 1; i <= 200; i++) {
+            bufferWriter.reset();
+            orderBook.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, i, 1L, 1000L + i % 20, 1000L + i % 20, 1L, OrderAction.ASK, 0), 0, 0L);
+            final CommandResponsePlace res = (CommandResponsePlace) ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+            assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+        }
+
+        bufferWriter.reset();
+        orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(1), 0);
+        final QueryResponseL2Data l2 = (QueryResponseL2Data) ResponseDecoder.readResult(responseBuffer, bufferWriter.getWriterPosition());
+        assertThat(l2.getAsks(), is(Arrays.asList(new QueryResponseL2Data.L2Record(1000L, 10L, 10))));
+        orderBook.verifyInternalState();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeCapacityHints() {
+        new OrderBookCapacityHints(1000, -1, 0);
+    }
+
+    private void warmUpAndVerify(final ISymbolSpecification symbolSpec) {
+
+        final List<IOrderBook<ISymbolSpecification>> created = new ArrayList<>();
+
+        OrderBookWarmUp.warmUp((resultsWriter, triggeredWriter) -> {
+            final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(
+                    symbolSpec, false, resultsWriter, IOrderBookCounters.NONE, triggeredWriter, OrderBookCapacityHints.NONE);
+            created.add(orderBook);
+            return orderBook;
+        }, 20);
+
+        assertThat(created.size(), is(1));
+        final IOrderBook<ISymbolSpecification> orderBook = created.get(0);
+        orderBook.verifyInternalState();
+        assertThat(orderBook.askOrdersStream(false).count(), is(0L));
+        assertThat(orderBook.bidOrdersStream(false).count(), is(0L));
+    }
+}
@@ -85,13 +85,13 @@ public class OrdersBucketNaiveTest {
 
         // add orders
         addNewOrder(1L, 1L);
-        addNewOrder(2L, 2L);
+        NaivePendingOrder order2 = addNewOrder(2L, 2L);
         NaivePendingOrder order3 = addNewOrder(3L, 10L, 3L);
         assertThat(bucket.getTotalVolume(), is(10L));
         bucket.validate();
 
         // cancel
-        bucket.remove(2L);
+        bucket.remove(order2);
         assertThat(bucket.getTotalVolume(), is(8L));
         bucket.validate();
 
@@ -114,14 +114,14 @@ public class OrdersBucketNaiveTest {
         assertThat(bucket.getNumOrders(), is(0));
 
         // add orders
-        addNewOrder(1L, 1L);
+        NaivePendingOrder order1 = addNewOrder(1L, 1L);
         addNewOrder(2L, 2L);
         addNewOrder(3L, 10L, 3L);
         assertThat(bucket.getNumOrders(), is(3));
         bucket.validate();
 
         // cancel
-        bucket.remove(1L);
+        bucket.remove(order1);
         assertThat(bucket.getNumOrders(), is(2));
         bucket.validate();
 
@@ -134,7 +134,7 @@ public class OrdersBucketNaiveTest {
     @Test(expected = IllegalStateException.class)
     public void validationNotRemoveUnknownOrder() {
 
-        bucket.remove(312837912873L);
+        bucket.remove(createOrder(312837912873L, 1L, 0L));
     }
 
 
@@ -274,12 +274,12 @@ public class OrdersBucketNaiveTest {
     public void shouldAffectExecutionOrder() {
         // add orders
         NaivePendingOrder order1 = addNewOrder(1L, 4L);
-        addNewOrder(2L, 10L, 3L);
+        NaivePendingOrder order2 = addNewOrder(2L, 10L, 3L);
         NaivePendingOrder order3 = addNewOrder(3L, 1L);
 
         // remove and re-insert order2
-        bucket.remove(2);
-        NaivePendingOrder order2 = addNewOrder(2L, 10L, 3L);
+        bucket.remove(order2);
+        bucket.put(order2);
 
         long matched = match(12L);
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package exchange.core2.orderbook.stats;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.MutableLong;
+import org.agrona.concurrent.status.CountersManager;
+import org.agrona.concurrent.status.CountersReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AgronaOrderBookCountersTest {
+
+    private static final int SYMBOL_ID = 3712;
+    private static final long UID = 812731L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    private File file;
+    private OrderBookCountersFile countersFile;
+    private AgronaOrderBookCounters counters;
+
+    private final BufferWriter bufferWriter = new BufferWriter(new ExpandableDirectByteBuffer(256), 0);
+    private IOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("orderbook-counters", ".dat");
+        countersFile = OrderBookCountersFile.create(file, 64);
+        final CountersManager countersManager = countersFile.newCountersManager();
+        counters = new AgronaOrderBookCounters(countersManager, SYMBOL_ID);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter, counters);
+    }
+
+    @After
+    public void after() {
+        counters.close();
+        countersFile.close();
+        file.delete();
+    }
+
+    @Test
+    public void shouldCountOrdersTradesAndSweptLevels() {
+
+        placeOrder(ORDER_TYPE_GTC, 1L, 100L, 10L, ASK);
+        placeOrder(ORDER_TYPE_GTC, 2L, 100L, 15L, ASK);
+        placeOrder(ORDER_TYPE_GTC, 3L, 101L, 20L, ASK);
+        placeOrder(ORDER_TYPE_GTC, 4L, 101L, 7L, ASK);
+        placeOrder(ORDER_TYPE_GTC, 5L, 101L, 9L, ASK);
+
+        assertThat(counters.getMaxBucketDepth(), is(3L));
+
+        // sweeps level 100 completely and matches part of level 101
+        placeOrder(ORDER_TYPE_IOC, 6L, 101L, 30L, BID);
+
+        assertThat(counters.getOrdersPlaced(), is(6L));
+        assertThat(counters.getTrades(), is(3L));
+        assertThat(counters.getTradedVolume(), is(30L));
+        assertThat(counters.getLevelsSwept(), is(1L));
+    }
+
+    @Test
+    public void shouldCountRejectsByResultCode() {
+
+        placeOrder(ORDER_TYPE_GTC, 1L, 100L, 0L, ASK);
+        placeOrder(ORDER_TYPE_IOC_BUDGET, 2L, 100L, 10L, ASK);
+        placeOrder(ORDER_TYPE_FOK, 3L, 100L, 10L, ASK);
+
+        bufferWriter.reset();
+        orderBook.cancelOrder(CommandsEncoder.cancel(8765L, UID), 0);
+
+        assertThat(counters.getRejects(RESULT_INCORRECT_ORDER_SIZE), is(1L));
+        assertThat(counters.getRejects(RESULT_UNSUPPORTED_ORDER_TYPE), is(2L));
+        assertThat(counters.getRejects(RESULT_UNKNOWN_ORDER_ID), is(1L));
+        assertThat(counters.getRejects(RESULT_INCORRECT_REDUCE_SIZE), is(0L));
+    }
+
+    @Test
+    public void shouldCountPriceBandRejectsSeparately() {
+
+        when(spec.getPriceBandLow()).thenReturn(90L);
+        when(spec.getPriceBandHigh()).thenReturn(110L);
+        orderBook = new OrderBookNaiveImpl<>(spec, false, bufferWriter, counters);
+
+        placeOrder(ORDER_TYPE_GTC, 1L, 111L, 10L, ASK);
+        placeOrder(ORDER_TYPE_GTC, 2L, 89L, 10L, BID);
+
+        assertThat(counters.getRejects(RESULT_PRICE_OUT_OF_BAND), is(2L));
+        assertThat(counters.getRejects((short) (RESULT_MAX_CODE + 1)), is(0L));
+    }
+
+    @Test
+    public void shouldExposeCountersToExternalReader() {
+
+        placeOrder(ORDER_TYPE_GTC, 1L, 100L, 10L, ASK);
+        placeOrder(ORDER_TYPE_IOC, 2L, 100L, 4L, BID);
+
+        try (OrderBookCountersFile readerFile = OrderBookCountersFile.mapExisting(file)) {
+            final CountersReader reader = readerFile.newCountersReader();
+
+            final MutableLong tradedVolume = new MutableLong(-1);
+            reader.forEach((counterId, typeId, keyBuffer, label) -> {
+                if (typeId == AgronaOrderBookCounters.TYPE_ID_TRADED_VOLUME
+                        && keyBuffer.getInt(AgronaOrderBookCounters.KEY_OFFSET_SYMBOL_ID) == SYMBOL_ID) {
+                    tradedVolume.set(reader.getCounterValue(counterId));
+                }
+            });
+
+            assertThat(tradedVolume.get(), is(4L));
+        }
+    }
+
+    private void placeOrder(final byte type, final long orderId, final long price, final long size, final OrderAction action) {
+        bufferWriter.reset();
+        orderBook.newOrder(CommandsEncoder.placeOrder(type, orderId, UID, price, price, size, action, 0), 0, 0L);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package exchange.core2.orderbook.stats;
+
+import exchange.core2.orderbook.IResponseHandler;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.OrderBookCapacityHints;
+import exchange.core2.orderbook.OrderBookEventsDispatcher;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+import org.HdrHistogram.Histogram;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static exchange.core2.orderbook.stats.LatencyInstrumentedOrderBook.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LatencyInstrumentedOrderBookTest {
+
+    private static final long UID = 281731L;
+
+    @Mock
+    private ISymbolSpecification spec;
+
+    @Mock
+    private IResponseHandler responseHandler;
+
+    private final BufferWriter bufferWriter = new BufferWriter(new ExpandableDirectByteBuffer(256), 0);
+    private LatencyInstrumentedOrderBook<ISymbolSpecification> orderBook;
+
+    @Before
+    public void before() {
+        orderBook = new LatencyInstrumentedOrderBook<>(new OrderBookNaiveImpl<>(spec, false, bufferWriter), bufferWriter);
+    }
+
+    @Test
+    public void shouldRecordPlaceCommandsByTradesNumber() {
+
+        for (long id = 1; id <= 6; id++) {
+            placeOrder(ORDER_TYPE_GTC, id, 100L + id, 10L, ASK);
+        }
+
+        placeOrder(ORDER_TYPE_IOC, 7L, 101L, 5L, BID);
+        placeOrder(ORDER_TYPE_IOC, 8L, 106L, 35L, BID);
+        placeOrder(ORDER_TYPE_IOC, 9L, 106L, 5L, BID);
+
+        assertThat(totalCount(COMMAND_PLACE_ORDER, TRADES_BUCKET_NONE), is(6L));
+        assertThat(totalCount(COMMAND_PLACE_ORDER, TRADES_BUCKET_ONE), is(2L));
+        assertThat(totalCount(COMMAND_PLACE_ORDER, TRADES_BUCKET_2_TO_4), is(1L));
+        assertThat(totalCount(COMMAND_PLACE_ORDER, TRADES_BUCKET_5_TO_19), is(0L));
+
+        // interval histogram is drained
+        assertThat(totalCount(COMMAND_PLACE_ORDER, TRADES_BUCKET_ONE), is(0L));
+    }
+
+    @Test
+    public void shouldRecordOtherCommands() {
+
+        placeOrder(ORDER_TYPE_GTC, 1L, 100L, 10L, ASK);
+        placeOrder(ORDER_TYPE_GTC, 2L, 90L, 10L, BID);
+
+        bufferWriter.reset();
+        orderBook.moveOrder(CommandsEncoder.move(2L, UID, 100L), 0);
+        bufferWriter.reset();
+        orderBook.reduceOrder(CommandsEncoder.reduce(1L, UID, 10L), 0);
+        bufferWriter.reset();
+        orderBook.cancelOrder(CommandsEncoder.cancel(1L, UID), 0);
+        bufferWriter.reset();
+        orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(10), 0);
+        bufferWriter.reset();
+        orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(10), 0);
+
+        assertThat(totalCount(COMMAND_MOVE_ORDER, TRADES_BUCKET_ONE), is(1L));
+        assertThat(orderBook.getIntervalHistogram(COMMAND_REDUCE_ORDER).getTotalCount(), is(1L));
+        assertThat(orderBook.getIntervalHistogram(COMMAND_CANCEL_ORDER).getTotalCount(), is(1L));
+        assertThat(orderBook.getIntervalHistogram(QUERY_ORDER_BOOK).getTotalCount(), is(2L));
+    }
+
+    @Test
+    public void shouldNotCountTradesWithDirectDispatch() {
+
+        // stale response from previous use of the buffer
+        bufferWriter.appendByte(COMMAND_PLACE_ORDER);
+        bufferWriter.reset();
+
+        final OrderBookEventsDispatcher dispatcher = new OrderBookEventsDispatcher(responseHandler, 1);
+        orderBook = new LatencyInstrumentedOrderBook<>(
+                new OrderBookNaiveImpl<>(spec, false, bufferWriter, IOrderBookCounters.NONE, OrderBookCapacityHints.NONE, dispatcher),
+                bufferWriter);
+
+        placeOrder(ORDER_TYPE_GTC, 1L, 100L, 10L, ASK);
+        placeOrder(ORDER_TYPE_IOC, 2L, 100L, 5L, BID);
+
+        assertThat(bufferWriter.getWriterPosition(), is(0));
+        assertThat(totalCount(COMMAND_PLACE_ORDER, TRADES_BUCKET_NONE), is(2L));
+        assertThat(totalCount(COMMAND_PLACE_ORDER, TRADES_BUCKET_ONE), is(0L));
+    }
+
+    @Test
+    public void shouldMapTradesNumberToBuckets() {
+        assertThat(tradesBucket(0), is(TRADES_BUCKET_NONE));
+        assertThat(tradesBucket(1), is(TRADES_BUCKET_ONE));
+        assertThat(tradesBucket(4), is(TRADES_BUCKET_2_TO_4));
+        assertThat(tradesBucket(5), is(TRADES_BUCKET_5_TO_19));
+        assertThat(tradesBucket(20), is(TRADES_BUCKET_20_PLUS));
+    }
+
+    private long totalCount(final byte commandCode, final int tradesBucket) {
+        final Histogram histogram = orderBook.getIntervalHistogram(commandCode, tradesBucket, null);
+        return histogram.getTotalCount();
+    }
+
+    private void placeOrder(final byte type, final long orderId, final long price, final long size, final OrderAction action) {
+        bufferWriter.reset();
+        orderBook.newOrder(CommandsEncoder.placeOrder(type, orderId, UID, price, price, size, action, 0), 0, 0L);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.util;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.CommandResponsePlace;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.tests.util.TestSymbolSpecification;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class BufferWriterTest {
+
+    @Test
+    public void shouldReportOverflowOfFixedBuffer() {
+        final BufferWriter writer = new BufferWriter(new UnsafeBuffer(new byte[20]), 4);
+        writer.appendLong(1L);
+        writer.appendLong(2L);
+        assertThat(writer.remainingCapacity(), is(0));
+
+        try {
+            writer.appendByte((byte) 3);
+            throw new AssertionError("overflow expected");
+        } catch (final IllegalStateException ex) {
+            // expected
+        }
+        assertThat(writer.getWriterPosition(), is(20));
+        assertThat(writer.getBuffer().getLong(12), is(2L));
+    }
+
+    @Test
+    public void shouldExpandExpandableBuffer() {
+        final BufferWriter writer = new BufferWriter(new ExpandableArrayBuffer(16), 0);
+        for (int i = 0; i < 1000; i++) {
+            writer.appendLong(i);
+        }
+        writer.skipBytes(100);
+        assertThat(writer.getWriterPosition(), is(8100));
+        assertThat(writer.getBuffer().getLong(8 * 999), is(999L));
+    }
+
+    @Test
+    public void shouldWriteDeepSweepIntoReservedBuffer() {
+
+        try (final ReservedDirectBuffer buffer = new ReservedDirectBuffer(1 << 20)) {
+
+            final BufferWriter writer = new BufferWriter(buffer, 0);
+            final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(new TestSymbolSpecification(1, false), false, writer);
+
+            final int makers = 5000;
+            for (int i = 1; i <= makers; i++) {
+                writer.reset();
+                orderBook.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_GTC, i, 1L, 1000L + i, 1000L + i, 1L, OrderAction.ASK, 0), 0, 0L);
+            }
+
+            writer.reset();
+            orderBook.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_IOC, makers + 1, 2L, 1000L + makers, 1000L + makers, makers, OrderAction.BID, 0), 0, 0L);
+            assertThat(writer.getWriterPosition() > makers * RESPONSE_OFFSET_TEVT_END, is(true));
+
+            final CommandResponsePlace res = (CommandResponsePlace) ResponseDecoder.readResult(buffer, writer.getWriterPosition());
+            assertThat(res.getResultCode(), is(RESULT_SUCCESS));
+            assertThat(res.getTrades().size(), is(makers));
+            assertThat(res.getTrades().get(makers - 1).getMakerOrderId(), is((long) makers));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.util;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.tests.util.TestSymbolSpecification;
+import org.agrona.BitUtil;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Test;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class CommandsBatchEncoderTest {
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    private final BufferWriter resultsWriter = new BufferWriter(new ExpandableArrayBuffer(256), 0);
+
+    private final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(
+            new TestSymbolSpecification(7, true), false, resultsWriter);
+
+    private final CommandsBatchEncoder encoder = new CommandsBatchEncoder(new ExpandableArrayBuffer(64), 16);
+
+    @After
+    public void after() {
+        orderBook.verifyInternalState();
+    }
+
+    @Test
+    public void shouldEncodeFramesAndExecuteBatch() {
+        encoder.placeOrder(ORDER_TYPE_GTC, 1L, UID_1, 100L, 100L, 5L, ASK, 0);
+        encoder.placeIcebergOrder(2L, UID_1, 101L, 101L, 10L, ASK, 0, 2L);
+        encoder.placeOrder(ORDER_TYPE_IOC, 3L, UID_2, 100L, 100L, 2L, BID, 0);
+        encoder.move(1L, UID_1, 102L);
+        encoder.reduce(2L, UID_1, 4L);
+        encoder.cancel(1L, UID_1);
+        encoder.L2DataQuery(10);
+
+        assertThat(encoder.getCommandsNum(), is(7));
+
+        // first frame: [length][command code][place command]
+        assertThat(encoder.getBuffer().getInt(16), is(1 + PLACE_OFFSET_END));
+        assertThat(encoder.getBuffer().getByte(16 + BATCH_FRAME_OFFSET_COMMAND_CODE), is(COMMAND_PLACE_ORDER));
+        assertThat(encoder.getBuffer().getLong(16 + BATCH_FRAME_OFFSET_COMMAND + PLACE_OFFSET_ORDER_ID), is(1L));
+        assertThat(encoder.getPosition(), is(16 + encoder.getLength()));
+
+        assertThat(orderBook.processCommands(encoder.getBuffer(), encoder.getInitialPosition(), encoder.getLength(), 0L), is(7));
+
+        assertThat(orderBook.getOrderById(1L), nullValue());
+        assertThat(orderBook.getOrderById(2L).getSize() - orderBook.getOrderById(2L).getFilled(), is(6L));
+        assertThat(orderBook.getOrderById(3L), nullValue());
+    }
+
+    @Test
+    public void shouldReuseBufferAfterReset() {
+        encoder.startAuction();
+        encoder.placeOrder(ORDER_TYPE_GTC, 1L, UID_1, 100L, 100L, 5L, ASK, 0);
+        encoder.placeOrder(ORDER_TYPE_GTC, 2L, UID_2, 101L, 101L, 5L, BID, 0);
+        encoder.auctionIndicative();
+        assertThat(orderBook.processCommands(encoder.getBuffer(), encoder.getInitialPosition(), encoder.getLength(), 0L), is(4));
+        assertThat(orderBook.getOrderById(2L).getFilled(), is(0L));
+
+        encoder.reset();
+        assertThat(encoder.getLength(), is(0));
+        assertThat(encoder.getCommandsNum(), is(0));
+
+        encoder.uncross();
+        encoder.massQuote(UID_1, 1L, 10L, 2, new long[]{99L, 105L, 0L}, new long[]{3L, 3L, 0L}, new OrderAction[]{BID, ASK, null});
+        assertThat(orderBook.processCommands(encoder.getBuffer(), encoder.getInitialPosition(), encoder.getLength(), 0L), is(2));
+
+        assertThat(orderBook.getOrderById(1L), nullValue());
+        assertThat(orderBook.getOrderById(2L), nullValue());
+        assertThat(orderBook.getOrderById(10L).getPrice(), is(99L));
+        assertThat(orderBook.getOrderById(11L).getPrice(), is(105L));
+    }
+
+    @Test
+    public void shouldKeepEncodedFramesOnOverflow() {
+        final CommandsBatchEncoder fixedEncoder = new CommandsBatchEncoder(new UnsafeBuffer(new byte[64]), 0);
+        fixedEncoder.cancel(1L, UID_1);
+        final int position = fixedEncoder.getPosition();
+
+        try {
+            fixedEncoder.placeOrder(ORDER_TYPE_GTC, 1L, UID_1, 100L, 100L, 5L, ASK, 0);
+            throw new AssertionError("overflow expected");
+        } catch (IllegalStateException ex) {
+            assertThat(fixedEncoder.getPosition(), is(position));
+            assertThat(fixedEncoder.getCommandsNum(), is(1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTruncatedBatch() {
+        encoder.cancel(1L, UID_1);
+        orderBook.processCommands(encoder.getBuffer(), encoder.getInitialPosition(), encoder.getLength() - 1, 0L);
+    }
+
+    @Test
+    public void shouldRejectFrameShorterThanCommand() {
+        // iceberg order frame without display size extension
+        encoder.placeIcebergOrder(1L, UID_1, 101L, 101L, 10L, ASK, 0, 2L);
+        assertRejectedWithFrameLength(encoder.getLength() - BATCH_FRAME_OFFSET_COMMAND_CODE - BitUtil.SIZE_OF_LONG);
+        assertThat(orderBook.getOrderById(1L), nullValue());
+
+        // regular order frame cut to cancel command size
+        encoder.reset();
+        encoder.placeOrder(ORDER_TYPE_GTC, 2L, UID_1, 100L, 100L, 5L, ASK, 0);
+        assertRejectedWithFrameLength(BitUtil.SIZE_OF_BYTE + CANCEL_OFFSET_END);
+        assertThat(orderBook.getOrderById(2L), nullValue());
+    }
+
+    private void assertRejectedWithFrameLength(final int frameLength) {
+        encoder.getBuffer().putInt(encoder.getInitialPosition() + BATCH_FRAME_OFFSET_LENGTH, frameLength);
+        try {
+            orderBook.processCommands(encoder.getBuffer(), encoder.getInitialPosition(), BATCH_FRAME_OFFSET_COMMAND_CODE + frameLength, 0L);
+            throw new AssertionError("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
@@ -171,4 +171,37 @@ public class CommandsEncoderTest {
         assertThat(buf.getInt(0), is(1000000000));
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReadAndEditPlaceOrderWithFlyweight() {
+
+        final int size = CommandsEncoder.placeOrder(buffer, OFFSET, ORDER_TYPE_GTD, ORDER_ID, UID, PRICE, RESERVED_BID_PRICE, SIZE,
+                OrderAction.BID, USER_COOKIE, PLACE_FLAG_MIN_QUANTITY, 17L);
+        buffer.putLong(OFFSET + PLACE_OFFSET_EXPIRE_TIMESTAMP, 3000L);
+
+        final PlaceOrderFlyweight flyweight = new PlaceOrderFlyweight().wrap(buffer, OFFSET);
+        assertThat(flyweight.encodedLength(), is(size));
+        assertThat(flyweight.getUid(), is(UID));
+        assertThat(flyweight.getOrderId(), is(ORDER_ID));
+        assertThat(flyweight.getPrice(), is(PRICE));
+        assertThat(flyweight.getReservedBidPrice(), is(RESERVED_BID_PRICE));
+        assertThat(flyweight.getSize(), is(SIZE));
+        assertThat(flyweight.getUserCookie(), is(USER_COOKIE));
+        assertThat(flyweight.getAction(), is(OrderAction.BID));
+        assertThat(flyweight.getType(), is(ORDER_TYPE_GTD));
+        assertThat(flyweight.getExpireTimestamp(), is(3000L));
+        assertThat(flyweight.hasMinQuantity(), is(true));
+        assertThat(flyweight.getMinQuantity(), is(17L));
+
+        flyweight.price(PRICE + 1).expireTimestamp(4000L).minQuantity(18L);
+        assertThat(buffer.getLong(OFFSET + PLACE_OFFSET_PRICE), is(PRICE + 1));
+        assertThat(buffer.getLong(OFFSET + PLACE_OFFSET_EXPIRE_TIMESTAMP), is(4000L));
+        assertThat(buffer.getLong(OFFSET + PLACE_GTD_OFFSET_END), is(18L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectFieldOfOtherOrderType() {
+        CommandsEncoder.placeOrder(buffer, OFFSET, ORDER_TYPE_GTC, ORDER_ID, UID, PRICE, RESERVED_BID_PRICE, SIZE, OrderAction.ASK, USER_COOKIE);
+        new PlaceOrderFlyweight().wrap(buffer, OFFSET).getStopPrice();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.orderbook.util;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.IResponseHandler;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.stats.IOrderBookCounters;
+import exchange.core2.tests.util.TestSymbolSpecification;
+import org.agrona.ExpandableArrayBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static exchange.core2.orderbook.IOrderBook.*;
+import static exchange.core2.orderbook.OrderAction.ASK;
+import static exchange.core2.orderbook.OrderAction.BID;
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResponseFastDecoderTest {
+
+    private static final int SYMBOL_ID = 5;
+
+    private static final long UID_1 = 1001L;
+    private static final long UID_2 = 1002L;
+
+    @Mock
+    private IResponseHandler responseHandler;
+
+    private final BufferWriter batchWriter = new BufferWriter(new ExpandableArrayBuffer(256), 0);
+    private final BufferWriter triggeredWriter = new BufferWriter(new ExpandableArrayBuffer(256), 0);
+
+    private final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(
+            new TestSymbolSpecification(SYMBOL_ID, true), false, batchWriter, IOrderBookCounters.NONE, triggeredWriter);
+
+    @Test
+    public void shouldDecodeBatchOfFramedResponses() {
+        placeFramed(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+        placeFramed(ORDER_TYPE_GTC, 2L, UID_1, 101L, 5L, ASK);
+        placeFramed(ORDER_TYPE_IOC, 3L, UID_2, 101L, 7L, BID);
+
+        final int frameStart = batchWriter.getWriterPosition();
+        batchWriter.appendInt(0);
+        orderBook.cancelOrder(CommandsEncoder.cancel(2L, UID_1), 0);
+        batchWriter.overwriteInt(frameStart, batchWriter.getWriterPosition() - frameStart - SIZE_OF_INT);
+
+        final ResponseFastDecoder decoder = new ResponseFastDecoder(responseHandler);
+        assertThat(decoder.readResults(batchWriter.getBuffer(), 0, batchWriter.getWriterPosition(), 10L, 20L, SYMBOL_ID), is(4));
+
+        verify(responseHandler).onOrderPlaceResult(RESULT_SUCCESS, 10L, 20L, SYMBOL_ID, UID_1, 1L, ASK, false, 0, 5L);
+        verify(responseHandler).onOrderPlaceResult(RESULT_SUCCESS, 10L, 20L, SYMBOL_ID, UID_1, 2L, ASK, false, 0, 5L);
+        verify(responseHandler).onTradeEvent(SYMBOL_ID, 10L, UID_2, 3L, BID, UID_1, 1L, 100L, 101L, 5L, true);
+        verify(responseHandler).onTradeEvent(SYMBOL_ID, 10L, UID_2, 3L, BID, UID_1, 2L, 101L, 101L, 2L, false);
+        verify(responseHandler).onOrderPlaceResult(RESULT_SUCCESS, 10L, 20L, SYMBOL_ID, UID_2, 3L, BID, true, 0, UNSPECIFIED_REMAINING_SIZE_MARKER);
+        verify(responseHandler).onReduceEvent(SYMBOL_ID, 10L, UID_1, 2L, ASK, 3L, 101L, 101L);
+        verify(responseHandler).onOrderCancelResult(RESULT_SUCCESS, 10L, 20L, SYMBOL_ID, UID_1, 2L, ASK, true);
+    }
+
+    @Test
+    public void shouldDecodeTriggeredResultsBuffer() {
+        placeFramed(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+        placeFramed(ORDER_TYPE_GTC, 2L, UID_1, 105L, 5L, ASK);
+        batchWriter.reset();
+        orderBook.newOrder(CommandsEncoder.placeStopOrder(ORDER_TYPE_STOP_LIMIT, 3L, UID_2, 105L, 105L, 2L, BID, 0, 100L), 0, 0L);
+        orderBook.newOrder(CommandsEncoder.placeStopOrder(ORDER_TYPE_STOP_LIMIT, 4L, UID_2, 105L, 105L, 3L, BID, 0, 100L), 0, 0L);
+
+        // both stop orders are triggered by one trade
+        orderBook.newOrder(CommandsEncoder.placeOrder(ORDER_TYPE_IOC, 5L, UID_2, 100L, 100L, 1L, BID, 0), 0, 0L);
+
+        final ResponseFastDecoder decoder = new ResponseFastDecoder(responseHandler);
+        assertThat(decoder.readResults(triggeredWriter.getBuffer(), 0, triggeredWriter.getWriterPosition(), 10L, 20L, SYMBOL_ID), is(2));
+
+        // triggered orders match in trigger order, starting from the rest of the best ask
+        verify(responseHandler).onTradeEvent(SYMBOL_ID, 10L, UID_2, 3L, BID, UID_1, 1L, 100L, 105L, 2L, false);
+        verify(responseHandler).onOrderPlaceResult(RESULT_SUCCESS, 10L, 20L, SYMBOL_ID, UID_2, 3L, BID, true, 0, UNSPECIFIED_REMAINING_SIZE_MARKER);
+        verify(responseHandler).onTradeEvent(SYMBOL_ID, 10L, UID_2, 4L, BID, UID_1, 1L, 100L, 105L, 2L, true);
+        verify(responseHandler).onTradeEvent(SYMBOL_ID, 10L, UID_2, 4L, BID, UID_1, 2L, 105L, 105L, 1L, false);
+        verify(responseHandler).onOrderPlaceResult(RESULT_SUCCESS, 10L, 20L, SYMBOL_ID, UID_2, 4L, BID, true, 0, UNSPECIFIED_REMAINING_SIZE_MARKER);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTruncatedBatch() {
+        placeFramed(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+
+        new ResponseFastDecoder(responseHandler).readResults(batchWriter.getBuffer(), 0, batchWriter.getWriterPosition() - 1, 10L, 20L, SYMBOL_ID);
+    }
+
+    @Test
+    public void shouldReadL2RecordsThroughProxy() {
+        placeFramed(ORDER_TYPE_GTC, 1L, UID_1, 100L, 5L, ASK);
+        placeFramed(ORDER_TYPE_GTC, 2L, UID_2, 100L, 3L, ASK);
+        placeFramed(ORDER_TYPE_GTC, 3L, UID_1, 102L, 4L, ASK);
+        placeFramed(ORDER_TYPE_GTC, 4L, UID_2, 98L, 7L, BID);
+        batchWriter.reset();
+        orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(10), 0);
+
+        final L2RecordsHandler handler = new L2RecordsHandler();
+        new ResponseFastDecoder(handler).readResult(new BufferReader(batchWriter.getBuffer(), batchWriter.getWriterPosition(), 0), 10L, 20L, SYMBOL_ID);
+
+        assertThat(handler.records, is("A 100 8 2;A 102 4 1;B 98 7 1;"));
+    }
+
+    private void placeFramed(final byte type,
+                             final long orderId,
+                             final long uid,
+                             final long price,
+                             final long size,
+                             final OrderAction action) {
+
+        final int frameStart = batchWriter.getWriterPosition();
+        batchWriter.appendInt(0);
+        orderBook.newOrder(CommandsEncoder.placeOrder(type, orderId, uid, price, price, size, action, 0), 0, 0L);
+        batchWriter.overwriteInt(frameStart, batchWriter.getWriterPosition() - frameStart - SIZE_OF_INT);
+    }
+
+    private static final class L2RecordsHandler implements IResponseHandler {
+
+        private String records;
+
+        @Override
+        public void onL2DataResult(short resultCode, long time, long correlationId, int symbolId, IL2Proxy l2dataProxy) {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < l2dataProxy.getAskRecordsNum(); i++) {
+                sb.append("A ").append(l2dataProxy.getAskPrice(i)).append(' ').append(l2dataProxy.getAskVolume(i)).append(' ').append(l2dataProxy.getAskOrders(i)).append(';');
+            }
+            for (int i = 0; i < l2dataProxy.getBidRecordsNum(); i++) {
+                sb.append("B ").append(l2dataProxy.getBidPrice(i)).append(' ').append(l2dataProxy.getBidVolume(i)).append(' ').append(l2dataProxy.getBidOrders(i)).append(';');
+            }
+            records = sb.toString();
+        }
+
+        @Override
+        public void onOrderPlaceResult(short resultCode, long time, long correlationId, int symbolId, long uid, long orderId,
+                                       OrderAction action, boolean orderCompleted, int userCookie, long remainingSize) {
+        }
+
+        @Override
+        public void onOrderCancelResult(short resultCode, long time, long correlationId, int symbolId, long uid, long orderId,
+                                        OrderAction action, boolean orderCompleted) {
+        }
+
+        @Override
+        public void onOrderMoveResult(short resultCode, long time, long correlationId, int symbolId, long uid, long orderId,
+                                      OrderAction action, boolean orderCompleted, long remainingSize) {
+        }
+
+        @Override
+        public void onOrderReduceResult(short resultCode, long time, long correlationId, int symbolId, long uid, long orderId,
+                                        OrderAction action, boolean orderCompleted, long remainingSize) {
+        }
+
+        @Override
+        public void onTradeEvent(int symbolId, long time, long takerUid, long takerOrderId, OrderAction takerAction, long makerUid,
+                                 long makerOrderId, long tradePrice, long reservedBidPrice, long tradeVolume, boolean makerOrderCompleted) {
+        }
+
+        @Override
+        public void onReduceEvent(int symbolId, long time, long uid, long orderId, OrderAction action, long reducedSize,
+                                  long price, long reservedBidPrice) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.tests.util;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+
+import java.util.Objects;
+
+/**
+ * Plain symbol specification for tests where mocks can not be used (mock invocations are allocating memory)
+ */
+public class TestSymbolSpecification implements ISymbolSpecification {
+
+    private final int symbolId;
+    private final boolean exchangeType;
+    private final byte matchingPolicy;
+
+    public TestSymbolSpecification(final int symbolId, final boolean exchangeType) {
+        this(symbolId, exchangeType, IOrderBook.MATCHING_POLICY_FIFO);
+    }
+
+    public TestSymbolSpecification(final int symbolId, final boolean exchangeType, final byte matchingPolicy) {
+        this.symbolId = symbolId;
+        this.exchangeType = exchangeType;
+        this.matchingPolicy = matchingPolicy;
+    }
+
+    @Override
+    public boolean isExchangeType() {
+        return exchangeType;
+    }
+
+    @Override
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    @Override
+    public byte getMatchingPolicy() {
+        return matchingPolicy;
+    }
+
+    @Override
+    public int stateHash() {
+        return Objects.hash(symbolId, exchangeType, matchingPolicy);
+    }
+}